@@ -0,0 +1,158 @@
+package com.pasdam.regexren.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.pasdam.regexren.engine.AbstractRuleFactory;
+import com.pasdam.regexren.engine.ChangeCaseFactory;
+import com.pasdam.regexren.engine.CompiledRuleChain;
+import com.pasdam.regexren.engine.FileStore;
+import com.pasdam.regexren.engine.InsertCounterOnCollisionFactory;
+import com.pasdam.regexren.engine.InsertTextBeforeAfterFactory;
+import com.pasdam.regexren.engine.InvalidParametersException;
+import com.pasdam.regexren.engine.ReplaceFactory;
+import com.pasdam.regexren.engine.SyntheticFiles;
+
+/**
+ * <p>
+ * Benchmark of the pass that applies the rules to the files list, i.e. the
+ * work done by {@link FilesListManager} to compute the preview, without the
+ * notification of the listeners.
+ * </p>
+ * <p>
+ * {@link #applyAll()} applies the whole chain to each file, while
+ * {@link #applyLastRuleChanged()} alternates two chains that differ only in
+ * the last rule, as happens when the user edits it.
+ * </p>
+ *
+ * @author paco
+ * @version 0.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xmx4g" })
+public class ApplyRulesBenchmark {
+
+	/** Number of files in the list */
+	@Param({ "1000", "10000", "100000", "1000000" })
+	public int size;
+
+	/** Indicates whether the stateless rules are applied concurrently */
+	@Param({ "false", "true" })
+	public boolean parallel;
+
+	/**
+	 * Chain to apply: "stateless" contains only rules that can be applied
+	 * concurrently, "counter" ends with a counter on name collision
+	 */
+	@Param({ "stateless", "counter" })
+	public String chain;
+
+	/** Files to which apply the rules */
+	private FileStore files;
+
+	/** Applier under test */
+	private RulesApplier applier;
+
+	/** Chain applied by {@link #applyAll()} */
+	private CompiledRuleChain rules;
+
+	/** Chain that differs from {@link #rules} only in the last rule */
+	private CompiledRuleChain editedRules;
+
+	/** Number of invocations of {@link #applyLastRuleChanged()} */
+	private long edits;
+
+	@Setup
+	public void setup() throws Exception {
+		this.files   = SyntheticFiles.store(this.size);
+		this.applier = new RulesApplier();
+
+		List<AbstractRuleFactory> factories = createFactories();
+		this.rules = CompiledRuleChain.compile(factories);
+
+		// replace the last rule with a different one
+		factories.remove(factories.size() - 1);
+		ReplaceFactory edited = new ReplaceFactory();
+		edited.setTextToReplace("_");
+		edited.setTextToInsert(" ");
+		edited.setEnabled(true);
+		factories.add(edited);
+		this.editedRules = CompiledRuleChain.compile(factories);
+	}
+
+	/**
+	 * Returns the factories of the rules of the {@link #chain} to apply
+	 *
+	 * @return the factories of the rules to apply
+	 * @throws Exception
+	 *             if a factory can't be configured
+	 */
+	private List<AbstractRuleFactory> createFactories() throws Exception {
+		List<AbstractRuleFactory> factories = new ArrayList<AbstractRuleFactory>();
+
+		ReplaceFactory replace = new ReplaceFactory();
+		replace.setTextToReplace("IMG_([0-9]{4})([0-9]{2})");
+		replace.setRegex(true);
+		replace.setTextToInsert("$1-$2 ");
+		factories.add(replace);
+
+		InsertTextBeforeAfterFactory insert = new InsertTextBeforeAfterFactory();
+		insert.setBeforeAfterType(InsertTextBeforeAfterFactory.BEFORE_LAST);
+		try {
+			insert.setTextToInsert("(");
+		} catch (InvalidParametersException e) {
+			// expected: the text to search is not set yet
+		}
+		insert.setTextToSearch("v");
+		factories.add(insert);
+
+		ChangeCaseFactory changeCase = new ChangeCaseFactory();
+		changeCase.setTarget(ChangeCaseFactory.TARGET_NAME);
+		changeCase.setOperation(ChangeCaseFactory.OPERATION_CAPITALIZE_WORDS);
+		factories.add(changeCase);
+
+		if ("counter".equals(this.chain)) {
+			factories.add(new InsertCounterOnCollisionFactory());
+		}
+
+		ReplaceFactory spaces = new ReplaceFactory();
+		spaces.setTextToReplace(" ");
+		spaces.setTextToInsert("_");
+		factories.add(spaces);
+
+		for (AbstractRuleFactory factory : factories) {
+			factory.setEnabled(true);
+		}
+		return factories;
+	}
+
+	@Benchmark
+	public FileStore applyAll() {
+		this.applier.invalidate();
+		this.applier.apply(this.rules, this.files, this.parallel);
+		return this.files;
+	}
+
+	@Benchmark
+	public FileStore applyLastRuleChanged() {
+		this.applier.apply((this.edits++ & 1) == 0 ? this.rules : this.editedRules, this.files, this.parallel);
+		return this.files;
+	}
+}
@@ -0,0 +1,169 @@
+package com.pasdam.regexren.engine;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * <p>
+ * Benchmark of each {@link Rule} implementation.
+ * </p>
+ * <p>
+ * Each invocation applies the rule selected by {@link #rule} to
+ * {@link #FILES_COUNT} synthetic files, restoring their original name before
+ * applying it: the score is the time needed to rename the whole batch.
+ * </p>
+ *
+ * @author paco
+ * @version 0.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleBenchmark {
+
+	/** Number of files to which the rule is applied by each invocation */
+	static final int FILES_COUNT = 1000;
+
+	/** Name of the rule to benchmark, i.e. the key in {@link #createRules()} */
+	@Param({
+		"ReplaceNameAll", "ReplaceNameFirst", "ReplaceNameLast",
+		"ReplaceExtensionAll", "ReplaceExtensionFirst", "ReplaceExtensionLast",
+		"ReplaceNameAllRegex", "RemoveNameAll",
+		"InsertBeforeAll", "InsertBeforeFirst", "InsertBeforeLast",
+		"InsertAfterAll", "InsertAfterFirst", "InsertAfterLast", "InsertBeforeAllRegex",
+		"MoveBefore", "MoveAfter", "MoveAtBeginning", "MoveAtEnding", "MoveBeforeRegex", "MoveAfterRegex",
+		"MoveBeforeIgnoreCase",
+		"InsertTextFromNameBeginning", "InsertTextFromNameEnd",
+		"InsertTextFromExtensionBeginning", "InsertTextFromExtensionEnd",
+		"LowerCaseName", "UpperCaseName", "CapitalizeWordsName", "CapitalizeSentencesName",
+		"CapitalizeSentencesNameRegex", "LowerCaseExtension", "UpperCaseExtension", "CapitalizeWordsExtension",
+		"CounterFromNameBeginning", "CounterFromNameEnd",
+		"CounterFromExtensionBeginning", "CounterFromExtensionEnd",
+		"CounterBefore", "CounterAfter", "CounterOnCollision"
+	})
+	public String rule;
+
+	/** Rule to apply */
+	private Rule configuredRule;
+
+	/** Files to which apply the rule */
+	private FileModelItem[] files;
+
+	/** Original names of the files */
+	private String[] names;
+
+	/** Original extensions of the files */
+	private String[] extensions;
+
+	/**
+	 * Returns a configured instance of each rule, indexed by the name used in
+	 * the {@link #rule} parameter
+	 *
+	 * @return the configured rules, indexed by name
+	 */
+	static Map<String, Rule> createRules() {
+		Map<String, Rule> rules = new LinkedHashMap<String, Rule>();
+
+		// replace
+		rules.put("ReplaceNameAll",        ReplaceFactory.getRule("a", false, false, "4", 0, 100, ReplaceFactory.TARGET_NAME_ALL));
+		rules.put("ReplaceNameFirst",      ReplaceFactory.getRule("a", false, false, "4", 0, 100, ReplaceFactory.TARGET_NAME_FIRST));
+		rules.put("ReplaceNameLast",       ReplaceFactory.getRule("a", false, false, "4", 0, 100, ReplaceFactory.TARGET_NAME_LAST));
+		rules.put("ReplaceExtensionAll",   ReplaceFactory.getRule("p", false, false, "P", 0, 100, ReplaceFactory.TARGET_EXTENSION_ALL));
+		rules.put("ReplaceExtensionFirst", ReplaceFactory.getRule("p", false, false, "P", 0, 100, ReplaceFactory.TARGET_EXTENSION_FIRST));
+		rules.put("ReplaceExtensionLast",  ReplaceFactory.getRule("p", false, false, "P", 0, 100, ReplaceFactory.TARGET_EXTENSION_LAST));
+		rules.put("ReplaceNameAllRegex",   ReplaceFactory.getRule("[0-9]+", true, true, "#", 0, 100, ReplaceFactory.TARGET_NAME_ALL));
+		rules.put("RemoveNameAll",         ReplaceFactory.getRule(" ", false, true, "", 0, 100, ReplaceFactory.TARGET_NAME_ALL));
+
+		// insert text before/after
+		rules.put("InsertBeforeAll",       InsertTextBeforeAfterFactory.getRule("[", InsertTextBeforeAfterFactory.BEFORE_ALL,   "e", false, false));
+		rules.put("InsertBeforeFirst",     InsertTextBeforeAfterFactory.getRule("[", InsertTextBeforeAfterFactory.BEFORE_FIRST, "e", false, false));
+		rules.put("InsertBeforeLast",      InsertTextBeforeAfterFactory.getRule("[", InsertTextBeforeAfterFactory.BEFORE_LAST,  "e", false, false));
+		rules.put("InsertAfterAll",        InsertTextBeforeAfterFactory.getRule("]", InsertTextBeforeAfterFactory.AFTER_ALL,    "e", false, false));
+		rules.put("InsertAfterFirst",      InsertTextBeforeAfterFactory.getRule("]", InsertTextBeforeAfterFactory.AFTER_FIRST,  "e", false, false));
+		rules.put("InsertAfterLast",       InsertTextBeforeAfterFactory.getRule("]", InsertTextBeforeAfterFactory.AFTER_LAST,   "e", false, false));
+		rules.put("InsertBeforeAllRegex",  InsertTextBeforeAfterFactory.getRule("_", InsertTextBeforeAfterFactory.BEFORE_ALL,   "[0-9]+", true, true));
+
+		// move
+		rules.put("MoveBefore",            MoveTextBeforeAfterFactory.getRule("IMG", MoveTextBeforeAfterFactory.POSITION_BEFORE, "_", false, true));
+		rules.put("MoveAfter",             MoveTextBeforeAfterFactory.getRule("IMG", MoveTextBeforeAfterFactory.POSITION_AFTER,  "_", false, true));
+		rules.put("MoveAtBeginning",       MoveTextBeforeAfterFactory.getRule("final", MoveTextBeforeAfterFactory.POSITION_BEGIN, null, false, false));
+		rules.put("MoveAtEnding",          MoveTextBeforeAfterFactory.getRule("final", MoveTextBeforeAfterFactory.POSITION_END,   null, false, false));
+		rules.put("MoveBeforeRegex",       MoveTextBeforeAfterFactory.getRule("[0-9]{4}", MoveTextBeforeAfterFactory.POSITION_BEFORE, " - ", true, true));
+		rules.put("MoveAfterRegex",        MoveTextBeforeAfterFactory.getRule("_[0-9]{6}$", MoveTextBeforeAfterFactory.POSITION_AFTER, "IMG", true, true));
+		rules.put("MoveBeforeIgnoreCase",  MoveTextBeforeAfterFactory.getRule("draft", MoveTextBeforeAfterFactory.POSITION_BEFORE, " v", false, false));
+
+		// insert text at position
+		rules.put("InsertTextFromNameBeginning",      InsertTextAtPositionFactory.getRule("new_", 0, true,  InsertTextAtPositionFactory.TARGET_NAME));
+		rules.put("InsertTextFromNameEnd",            InsertTextAtPositionFactory.getRule("_new", 0, false, InsertTextAtPositionFactory.TARGET_NAME));
+		rules.put("InsertTextFromExtensionBeginning", InsertTextAtPositionFactory.getRule("x",    0, true,  InsertTextAtPositionFactory.TARGET_EXTENSION));
+		rules.put("InsertTextFromExtensionEnd",       InsertTextAtPositionFactory.getRule("x",    0, false, InsertTextAtPositionFactory.TARGET_EXTENSION));
+
+		// change case
+		rules.put("LowerCaseName",                ChangeCaseFactory.getRule(ChangeCaseFactory.TARGET_NAME,      ChangeCaseFactory.OPERATION_TO_LOWERCASE,         null,   false));
+		rules.put("UpperCaseName",                ChangeCaseFactory.getRule(ChangeCaseFactory.TARGET_NAME,      ChangeCaseFactory.OPERATION_TO_UPPERCASE,         null,   false));
+		rules.put("CapitalizeWordsName",          ChangeCaseFactory.getRule(ChangeCaseFactory.TARGET_NAME,      ChangeCaseFactory.OPERATION_CAPITALIZE_WORDS,     null,   false));
+		rules.put("CapitalizeSentencesName",      ChangeCaseFactory.getRule(ChangeCaseFactory.TARGET_NAME,      ChangeCaseFactory.OPERATION_CAPITALIZE_SENTENCES, " - ",  false));
+		rules.put("CapitalizeSentencesNameRegex", ChangeCaseFactory.getRule(ChangeCaseFactory.TARGET_NAME,      ChangeCaseFactory.OPERATION_CAPITALIZE_SENTENCES, "[-_]", true));
+		rules.put("LowerCaseExtension",           ChangeCaseFactory.getRule(ChangeCaseFactory.TARGET_EXTENSION, ChangeCaseFactory.OPERATION_TO_LOWERCASE,         null,   false));
+		rules.put("UpperCaseExtension",           ChangeCaseFactory.getRule(ChangeCaseFactory.TARGET_EXTENSION, ChangeCaseFactory.OPERATION_TO_UPPERCASE,         null,   false));
+		rules.put("CapitalizeWordsExtension",     ChangeCaseFactory.getRule(ChangeCaseFactory.TARGET_EXTENSION, ChangeCaseFactory.OPERATION_CAPITALIZE_WORDS,     null,   false));
+
+		// counters
+		rules.put("CounterFromNameBeginning",      InsertCounterAtPositionFactory.getRule(1, 4, 0, true,  InsertCounterAtPositionFactory.OF_NAME));
+		rules.put("CounterFromNameEnd",            InsertCounterAtPositionFactory.getRule(1, 4, 0, false, InsertCounterAtPositionFactory.OF_NAME));
+		rules.put("CounterFromExtensionBeginning", InsertCounterAtPositionFactory.getRule(1, 4, 0, true,  InsertCounterAtPositionFactory.OF_EXTENSION));
+		rules.put("CounterFromExtensionEnd",       InsertCounterAtPositionFactory.getRule(1, 4, 0, false, InsertCounterAtPositionFactory.OF_EXTENSION));
+		rules.put("CounterBefore",                 InsertCounterBeforeAfterFactory.getRule(1, 4, true,  "_", false, true));
+		rules.put("CounterAfter",                  InsertCounterBeforeAfterFactory.getRule(1, 4, false, "_", false, true));
+		rules.put("CounterOnCollision",            InsertCounterOnCollisionFactory.getRule(1, 1));
+
+		return rules;
+	}
+
+	@Setup
+	public void setup() {
+		this.configuredRule = createRules().get(this.rule);
+		if (this.configuredRule == null) {
+			throw new IllegalArgumentException("Unknown rule: " + this.rule);
+		}
+
+		List<FileModelItem> items = SyntheticFiles.items(FILES_COUNT);
+		this.files      = items.toArray(new FileModelItem[FILES_COUNT]);
+		this.names      = new String[FILES_COUNT];
+		this.extensions = new String[FILES_COUNT];
+		for (int i = 0; i < FILES_COUNT; i++) {
+			this.names[i]      = this.files[i].getName();
+			this.extensions[i] = this.files[i].getExtension();
+		}
+	}
+
+	@Benchmark
+	public void apply(Blackhole blackhole) {
+		this.configuredRule.reset();
+		FileModelItem file;
+		for (int i = 0; i < FILES_COUNT; i++) {
+			file = this.files[i];
+			file.setName(this.names[i]);
+			file.setExtension(this.extensions[i]);
+			blackhole.consume(this.configuredRule.apply(file).getName());
+		}
+	}
+}
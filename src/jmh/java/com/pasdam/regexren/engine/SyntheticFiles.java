@@ -0,0 +1,135 @@
+package com.pasdam.regexren.engine;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * <p>
+ * Generator of synthetic files lists used by the benchmarks.
+ * </p>
+ * <p>
+ * Names follow the distribution of a typical personal folder: camera photos,
+ * music tracks, documents with spaces and versions, screenshots, archives
+ * with dotted names, files without extension and a few names that collide
+ * within the same folder. The files are spread among folders of
+ * {@link #FILES_PER_FOLDER} elements and don't need to exist, since rules
+ * never access the file system.
+ * </p>
+ *
+ * @author paco
+ * @version 0.1
+ */
+public final class SyntheticFiles {
+
+	/** Seed of the generator: the same size always produces the same list */
+	private static final long SEED = 0x5EED;
+
+	/** Number of files in each synthetic folder */
+	public static final int FILES_PER_FOLDER = 500;
+
+	/** Root of the synthetic folders */
+	private static final File ROOT = new File("/bench");
+
+	private static final String[] ARTISTS = { "The Beatles", "Daft Punk", "Miles Davis", "Radiohead", "Ludovico Einaudi", "Björk" };
+	private static final String[] WORDS   = { "report", "final", "Draft", "invoice", "meeting notes", "budget", "CV", "holiday", "Contract", "scan" };
+	private static final String[] DOCS    = { "pdf", "docx", "txt", "xlsx", "odt", "md" };
+	private static final String[] ARCHIVE = { "tar.gz", "zip", "7z", "tar.bz2" };
+
+	private SyntheticFiles() {}
+
+	/**
+	 * Returns the full names (name and extension) of the specified number of
+	 * synthetic files
+	 *
+	 * @param size
+	 *            number of names to generate
+	 * @return the full names of the synthetic files
+	 */
+	public static String[] names(int size) {
+		Random random = new Random(SEED);
+		String[] names = new String[size];
+		int kind;
+		for (int i = 0; i < size; i++) {
+			kind = random.nextInt(100);
+			if (kind < 35) {
+				names[i] = String.format("IMG_2019%02d%02d_%06d.jpg", 1 + random.nextInt(12), 1 + random.nextInt(28), random.nextInt(1000000));
+
+			} else if (kind < 55) {
+				names[i] = String.format("%02d - %s - Track %d.mp3", 1 + random.nextInt(20), ARTISTS[random.nextInt(ARTISTS.length)], random.nextInt(1000));
+
+			} else if (kind < 70) {
+				names[i] = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " v" + random.nextInt(10)
+						+ "." + DOCS[random.nextInt(DOCS.length)];
+
+			} else if (kind < 80) {
+				names[i] = String.format("Screenshot 2020-%02d-%02d at %02d.%02d.%02d.png", 1 + random.nextInt(12), 1 + random.nextInt(28),
+						random.nextInt(24), random.nextInt(60), random.nextInt(60));
+
+			} else if (kind < 90) {
+				names[i] = "lib-" + WORDS[random.nextInt(WORDS.length)].replace(' ', '_') + "-" + random.nextInt(5) + "." + random.nextInt(20)
+						+ "." + random.nextInt(100) + "." + ARCHIVE[random.nextInt(ARCHIVE.length)];
+
+			} else if (kind < 95) {
+				names[i] = WORDS[random.nextInt(WORDS.length)].toUpperCase().replace(' ', '_') + random.nextInt(100);
+
+			} else {
+				// collides with a previous name of the same folder, if any
+				names[i] = i % FILES_PER_FOLDER > 0 ? names[i - 1 - random.nextInt(i % FILES_PER_FOLDER)] : "README";
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Returns the specified number of synthetic files
+	 *
+	 * @param size
+	 *            number of files to generate
+	 * @return the list of synthetic files
+	 */
+	public static List<File> files(int size) {
+		String[] names = names(size);
+		List<File> files = new ArrayList<File>(size);
+		File folder = null;
+		for (int i = 0; i < size; i++) {
+			if (i % FILES_PER_FOLDER == 0) {
+				folder = new File(ROOT, "folder" + (i / FILES_PER_FOLDER));
+			}
+			files.add(new File(folder, names[i]));
+		}
+		return files;
+	}
+
+	/**
+	 * Returns the specified number of synthetic files, wrapped in checked
+	 * {@link FileModelItem}
+	 *
+	 * @param size
+	 *            number of files to generate
+	 * @return the list of items of the synthetic files
+	 */
+	public static ArrayList<FileModelItem> items(int size) {
+		List<File> files = files(size);
+		ArrayList<FileModelItem> items = new ArrayList<FileModelItem>(size);
+		for (File file : files) {
+			items.add(new FileModelItem(file));
+		}
+		return items;
+	}
+
+	/**
+	 * Returns the specified number of synthetic files, stored in a
+	 * {@link FileStore}
+	 *
+	 * @param size
+	 *            number of files to generate
+	 * @return the store of the synthetic files
+	 */
+	public static FileStore store(int size) {
+		FileStore store = new FileStore();
+		store.addAll(files(size));
+		return store;
+	}
+}
@@ -3,7 +3,9 @@ package com.pasdam.regexren.controller;
 import java.io.File;
 
 /**
- * Application manager, it allows access to all data managers
+ * Application manager, it allows access to all data managers. Managers are
+ * created on first access, so that code that uses only some of them (i.e. the
+ * command line renamer) doesn't load the others (preferences, locale, ...)
  * 
  * @author paco
  * @version 0.1
@@ -14,16 +16,16 @@ public class ApplicationManager {
 	private static final ApplicationManager instance = new ApplicationManager();
 
 	/** Preferences manager */
-	private final PreferenceManager preferenceManager = new PreferenceManager();
+	private PreferenceManager preferenceManager;
 	
 	/** Manager of the current locale */
-	private final LocaleManager localeManager = new LocaleManager();
+	private LocaleManager localeManager;
 	
 	/** Manager of rules list */
-	private final RulesManager rulesManager = new RulesManager();
+	private RulesManager rulesManager;
 	
 	/** Manager of files list */
-	private final FilesListManager filesListManager = new FilesListManager();
+	private FilesListManager filesListManager;
 	
 	/** Private constructor: it avoids direct instantiation */
 	private ApplicationManager() {}
@@ -39,9 +41,16 @@ public class ApplicationManager {
 	
 	/** Initialize the application managers */
 	public void init() {
-		this.preferenceManager.addCurrentFolderListener(this.filesListManager);
-		this.preferenceManager.addFilterListener(this.filesListManager);
-		this.preferenceManager.loadPreferences();
+		// complete the renames interrupted by a crash, before listing any folder
+		getFilesListManager().recoverRenames();
+		
+		// preview the rules whenever they change
+		getRulesManager().addConfigurationListener(getFilesListManager());
+		
+		PreferenceManager preferenceManager = getPreferenceManager();
+		preferenceManager.addCurrentFolderListener(getFilesListManager());
+		preferenceManager.addFilterListener(getFilesListManager());
+		preferenceManager.loadPreferences();
 	}
 
 	/**
@@ -49,8 +58,11 @@ public class ApplicationManager {
 	 * 
 	 * @return the preference manager of the application
 	 */
-	public PreferenceManager getPreferenceManager() {
-		return preferenceManager;
+	public synchronized PreferenceManager getPreferenceManager() {
+		if (this.preferenceManager == null) {
+			this.preferenceManager = new PreferenceManager();
+		}
+		return this.preferenceManager;
 	}
 	
 	/**
@@ -58,8 +70,11 @@ public class ApplicationManager {
 	 * 
 	 * @return the locale manager
 	 */
-	public LocaleManager getLocaleManager() {
-		return localeManager;
+	public synchronized LocaleManager getLocaleManager() {
+		if (this.localeManager == null) {
+			this.localeManager = new LocaleManager();
+		}
+		return this.localeManager;
 	}
 	
 	/**
@@ -67,8 +82,11 @@ public class ApplicationManager {
 	 * 
 	 * @return the rules manager
 	 */
-	public RulesManager getRulesManager() {
-		return rulesManager;
+	public synchronized RulesManager getRulesManager() {
+		if (this.rulesManager == null) {
+			this.rulesManager = new RulesManager();
+		}
+		return this.rulesManager;
 	}
 	
 	/**
@@ -76,16 +94,20 @@ public class ApplicationManager {
 	 * 
 	 * @return the files list manager
 	 */
-	public FilesListManager getFilesListManager() {
-		return filesListManager;
+	public synchronized FilesListManager getFilesListManager() {
+		if (this.filesListManager == null) {
+			this.filesListManager = new FilesListManager();
+		}
+		return this.filesListManager;
 	}
 	
 	/** Terminates the application */
 	public void terminate() {
-		if (this.preferenceManager.getRememberPreviousScript()) {
+		PreferenceManager preferenceManager = getPreferenceManager();
+		if (preferenceManager.getRememberPreviousScript()) {
 			File file = new File(PreferenceManager.LAST_SCRIPT_FILE);
-			if (this.rulesManager.saveToFile(file)) {
-				this.preferenceManager.setPreviousScriptFile(file);
+			if (getRulesManager().saveToFile(file)) {
+				preferenceManager.setPreviousScriptFile(file);
 			}
 		}
 	}
@@ -0,0 +1,18 @@
+package com.pasdam.regexren.controller;
+
+/**
+ * Interface implemented by objects that can request to stop a background
+ * operation
+ *
+ * @author paco
+ * @version 0.1
+ */
+interface CancellationSignal {
+
+	/**
+	 * Returns true if the operation should be stopped as soon as possible
+	 *
+	 * @return true if the operation should be stopped as soon as possible
+	 */
+	public boolean isCancelled();
+}
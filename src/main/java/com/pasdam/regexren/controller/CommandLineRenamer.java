@@ -0,0 +1,530 @@
+package com.pasdam.regexren.controller;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.pasdam.regexren.controller.DirectoryLoader.LoadListener;
+import com.pasdam.regexren.controller.DirectoryLoader.WalkPolicy;
+import com.pasdam.regexren.engine.CompiledRuleChain;
+import com.pasdam.regexren.engine.FileStore;
+
+/**
+ * <p>
+ * Command line entry point, that applies a script to the files of one or more
+ * folders without starting the graphical interface.
+ * </p>
+ * <p>
+ * Usage: <code>CommandLineRenamer [options] script.brr folder...</code>, see
+ * {@link #USAGE} for the supported options. Each processed file is reported on
+ * the standard output, as plain text or as JSON lines; log messages are
+ * redirected to the standard error. The exit code is one of the
+ * <code>EXIT_*</code> constants.
+ * </p>
+ *
+ * @author paco
+ * @version 0.1
+ */
+public class CommandLineRenamer {
+
+	// Exit codes
+	public static final int EXIT_SUCCESS        = 0;
+	public static final int EXIT_RENAME_FAILED  = 1;
+	public static final int EXIT_INVALID_USAGE  = 2;
+	public static final int EXIT_INVALID_SCRIPT = 3;
+	public static final int EXIT_IO_ERROR       = 4;
+
+	// Result status
+	private static final String STATUS_COLLISION = "collision";
+	private static final String STATUS_DRY_RUN   = "dry-run";
+	private static final String STATUS_ERROR     = "error";
+	private static final String STATUS_RENAMED   = "renamed";
+
+	/** Size of the output buffer */
+	private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+	/** Usage message */
+	private static final String USAGE =
+			  "Usage: CommandLineRenamer [options] <script.brr> <folder>...\n"
+			+ "Options:\n"
+			+ "  -n, --dry-run        show the new names without renaming the files\n"
+			+ "  -r, --recursive      process the files of all the subfolders\n"
+			+ "  -d, --depth <n>      levels of subfolders to process (implies -r, 0 = unlimited)\n"
+			+ "  -L, --follow-links   walk symbolic links to folders\n"
+			+ "  -a, --all            include hidden files and folders\n"
+			+ "  -j, --json           print one JSON object per line\n"
+			+ "  -s, --sequential     apply the rules in a single thread\n"
+			+ "  -t, --transactional  rename all the files or none\n"
+			+ "  -h, --help           show this message\n"
+			+ "Exit codes: 0 success, 1 some files not renamed, 2 invalid usage,\n"
+			+ "            3 invalid script, 4 unreadable folder";
+
+	/** Stream where results are printed */
+	private final PrintStream out;
+
+	// Options
+	private boolean dryRun;
+	private boolean followLinks;
+	private boolean includeHidden;
+	private boolean json;
+	private boolean sequential;
+	private boolean transactional;
+	private int maxDepth = 1;
+	private File script;
+	private final List<File> folders = new ArrayList<File>();
+
+	// Statistics
+	private int collisions;
+	private int errors;
+	private int renamed;
+	private int unchanged;
+
+	/**
+	 * Creates a renamer that prints results on the specified stream
+	 *
+	 * @param out
+	 *            stream where results are printed
+	 */
+	public CommandLineRenamer(PrintStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Runs the renamer and exits with the resulting code
+	 *
+	 * @param args
+	 *            command line arguments
+	 * @throws UnsupportedEncodingException
+	 *             if UTF-8 is not supported
+	 */
+	public static void main(String[] args) throws UnsupportedEncodingException {
+		// results go to the standard output, anything else to the standard error
+		PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), OUTPUT_BUFFER_SIZE), false, "UTF-8");
+		System.setOut(System.err);
+
+		int exitCode;
+		try {
+			exitCode = new CommandLineRenamer(out).run(args);
+		} finally {
+			out.flush();
+		}
+		System.exit(exitCode);
+	}
+
+	/**
+	 * Parses the arguments, then loads the script and applies it to the files
+	 * of the folders
+	 *
+	 * @param args
+	 *            command line arguments
+	 * @return the exit code
+	 */
+	public int run(String[] args) {
+		if (!parseArguments(args)) {
+			System.err.println(USAGE);
+			return EXIT_INVALID_USAGE;
+		}
+
+		// load script
+		CompiledRuleChain rules = loadScript();
+		if (rules == null) {
+			return EXIT_INVALID_SCRIPT;
+		}
+
+		// list files
+		FileStore files = new FileStore();
+		boolean ioError = !listFiles(files);
+
+		// apply rules and rename
+		new RulesApplier().apply(rules, files, !this.sequential);
+		rename(files);
+		printSummary();
+
+		if (ioError) {
+			return EXIT_IO_ERROR;
+		}
+		return this.errors + this.collisions > 0 ? EXIT_RENAME_FAILED : EXIT_SUCCESS;
+	}
+
+	/**
+	 * Parses the command line arguments
+	 *
+	 * @param args
+	 *            command line arguments
+	 * @return true if the arguments are valid, false otherwise
+	 */
+	private boolean parseArguments(String[] args) {
+		int i = 0;
+		for (; i < args.length && args[i].startsWith("-"); i++) {
+			String option = args[i];
+			if ("-n".equals(option) || "--dry-run".equals(option)) {
+				this.dryRun = true;
+
+			} else if ("-r".equals(option) || "--recursive".equals(option)) {
+				if (this.maxDepth == 1) {
+					this.maxDepth = 0;
+				}
+
+			} else if ("-d".equals(option) || "--depth".equals(option)) {
+				if (++i == args.length) {
+					return false;
+				}
+				try {
+					int depth = Integer.parseInt(args[i]);
+					if (depth < 0) {
+						return false;
+					}
+					this.maxDepth = depth > 0 ? depth + 1 : 0;
+				} catch (NumberFormatException e) {
+					return false;
+				}
+
+			} else if ("-L".equals(option) || "--follow-links".equals(option)) {
+				this.followLinks = true;
+
+			} else if ("-a".equals(option) || "--all".equals(option)) {
+				this.includeHidden = true;
+
+			} else if ("-j".equals(option) || "--json".equals(option)) {
+				this.json = true;
+
+			} else if ("-s".equals(option) || "--sequential".equals(option)) {
+				this.sequential = true;
+
+			} else if ("-t".equals(option) || "--transactional".equals(option)) {
+				this.transactional = true;
+
+			} else {
+				// unknown option, or help
+				return false;
+			}
+		}
+
+		if (args.length - i < 2) {
+			return false;
+		}
+
+		this.script = new File(args[i++]);
+		for (; i < args.length; i++) {
+			this.folders.add(new File(args[i]));
+		}
+		return true;
+	}
+
+	/**
+	 * Loads the script file through the {@link RulesManager}
+	 *
+	 * @return the compiled rules of the script, or null if the script is not
+	 *         valid or doesn't contain any enabled rule
+	 */
+	private CompiledRuleChain loadScript() {
+		if (!this.script.isFile()) {
+			printError("Script not found", this.script.getPath());
+			return null;
+		}
+
+		RulesManager rulesManager = ApplicationManager.getInstance().getRulesManager();
+		if (!rulesManager.loadScript(this.script)) {
+			printError("Invalid script", this.script.getPath());
+			return null;
+		}
+
+		CompiledRuleChain rules = rulesManager.getCompiledRules();
+		if (rules.isEmpty()) {
+			printError("The script doesn't contain any enabled and valid rule", this.script.getPath());
+			return null;
+		}
+		return rules;
+	}
+
+	/**
+	 * Lists the files of all the folders, sorted by folder and name
+	 *
+	 * @param files
+	 *            list to which add the files
+	 * @return true if all the folders have been listed, false if any of them
+	 *         is not readable
+	 */
+	private boolean listFiles(final FileStore files) {
+		DirectoryLoader loader = new DirectoryLoader(new LoadListener() {
+
+			@Override
+			public void filesLoaded(List<File> loaded, CancellationSignal signal) {
+				synchronized (files) {
+					files.addAll(loaded);
+				}
+			}
+
+			@Override
+			public void loadCompleted(CancellationSignal signal) {}
+		});
+
+		// only files are renamed, and hidden ones only if requested
+		FileFilter filter = new FileFilter() {
+
+			@Override
+			public boolean accept(File file) {
+				return file.isFile() && (CommandLineRenamer.this.includeHidden || !file.isHidden());
+			}
+		};
+		WalkPolicy policy = new WalkPolicy(this.maxDepth, this.followLinks, this.includeHidden);
+
+		boolean allListed = true;
+		for (File folder : this.folders) {
+			if (folder.isDirectory()) {
+				loader.loadNow(folder, filter, policy);
+			} else {
+				printError("Folder not readable", folder.getPath());
+				allListed = false;
+			}
+		}
+
+		// sort by folder and name, so that counters follow the same order of
+		// the graphical interface
+		files.sort(new Comparator<File>() {
+
+			@Override
+			public int compare(File file1, File file2) {
+				int result = file1.getParent().compareTo(file2.getParent());
+				return result != 0 ? result : file1.getName().compareToIgnoreCase(file2.getName());
+			}
+		});
+		return allListed;
+	}
+
+	/**
+	 * Renames the files, or only reports the new names in dry-run mode; the
+	 * files are renamed concurrently by a {@link RenameExecutor}
+	 *
+	 * @param files
+	 *            files to rename, with the rules already applied
+	 */
+	private void rename(FileStore files) {
+		// paths already assigned: collisions are checked within the same folder
+		Set<String> assignedPaths = new HashSet<String>(files.size() * 2);
+		List<RenameStep> steps = new ArrayList<RenameStep>();
+		File source;
+		File target;
+		String targetPath;
+
+		for (int i = 0; i < files.size(); i++) {
+			source = files.getFile(i);
+			targetPath = files.getNewPath(i);
+			if (targetPath.equals(source.getPath())) {
+				this.unchanged++;
+				continue;
+			}
+
+			target = new File(targetPath);
+			if (!assignedPaths.add(targetPath)) {
+				this.collisions++;
+				printResult(STATUS_COLLISION, source, target, "Name already assigned to another file");
+
+			} else {
+				steps.add(new RenameStep(i, source, target));
+			}
+		}
+
+		if (this.dryRun) {
+			reportDryRun(steps);
+
+		} else if (!steps.isEmpty()) {
+			RenameExecutor.ProgressListener listener = new RenameExecutor.ProgressListener() {
+
+				@Override
+				public void renameProgress(int completed, int total, double throughput) {
+					if (!CommandLineRenamer.this.json && completed < total) {
+						System.err.println("Renaming: " + completed + "/" + total + " (" + Math.round(throughput) + " files/s)");
+					}
+				}
+			};
+			RenamePlan plan = RenamePlan.create(steps, this.transactional);
+			if (this.transactional) {
+				new RenameExecutor().executeTransaction(plan.stage(), listener);
+			} else {
+				new RenameExecutor().execute(plan, listener);
+			}
+
+			// report the results in the order of the list
+			Exception error;
+			for (RenameStep step : steps) {
+				if (step.isDone()) {
+					this.renamed++;
+					printResult(STATUS_RENAMED, step.getSource(), step.getTarget(), null);
+
+				} else {
+					this.errors++;
+					error = step.getError();
+					printResult(STATUS_ERROR, step.getSource(), step.getTarget(), error.getClass().getSimpleName() + ": " + error.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reports the renames that would be done, in the order of the list: a
+	 * target that exists is an error only if it is not freed by another
+	 * rename of the batch, i.e. for the first rename of a chain that is not a
+	 * cycle, that blocks the rest of its chain too
+	 *
+	 * @param steps
+	 *            renames to report
+	 */
+	private void reportDryRun(List<RenameStep> steps) {
+		Map<RenameStep, String> failures = new IdentityHashMap<RenameStep, String>();
+		RenameStep first;
+		for (List<RenameStep> chain : RenamePlan.create(steps).getChains()) {
+			first = chain.get(0);
+			if (!RenamePlan.isCycle(chain) && first.getTarget().exists()) {
+				failures.put(first, "Target already exists");
+				for (int i = 1; i < chain.size(); i++) {
+					failures.put(chain.get(i), "Target not freed, since " + first.getSource() + " can't be renamed");
+				}
+			}
+		}
+
+		String failure;
+		for (RenameStep step : steps) {
+			failure = failures.get(step);
+			if (failure != null) {
+				this.errors++;
+				printResult(STATUS_ERROR, step.getSource(), step.getTarget(), failure);
+			} else {
+				this.renamed++;
+				printResult(STATUS_DRY_RUN, step.getSource(), step.getTarget(), null);
+			}
+		}
+	}
+
+	/**
+	 * Prints the result of a single file
+	 *
+	 * @param status
+	 *            status of the operation
+	 * @param source
+	 *            file to rename
+	 * @param target
+	 *            new file
+	 * @param message
+	 *            error message, it may be null
+	 */
+	private void printResult(String status, File source, File target, String message) {
+		if (this.json) {
+			StringBuilder line = new StringBuilder(128);
+			line.append("{\"status\":");
+			appendJsonString(line, status);
+			line.append(",\"source\":");
+			appendJsonString(line, source.getPath());
+			line.append(",\"target\":");
+			appendJsonString(line, target.getPath());
+			if (message != null) {
+				line.append(",\"message\":");
+				appendJsonString(line, message);
+			}
+			line.append('}');
+			this.out.println(line);
+
+		} else {
+			this.out.println(status + ": " + source.getPath() + " -> " + target.getPath()
+					+ (message != null ? " (" + message + ")" : ""));
+		}
+	}
+
+	/**
+	 * Prints an error that prevents processing a script or a folder
+	 *
+	 * @param message
+	 *            error message
+	 * @param path
+	 *            path of the file that caused the error
+	 */
+	private void printError(String message, String path) {
+		if (this.json) {
+			StringBuilder line = new StringBuilder(128);
+			line.append("{\"status\":");
+			appendJsonString(line, STATUS_ERROR);
+			line.append(",\"source\":");
+			appendJsonString(line, path);
+			line.append(",\"message\":");
+			appendJsonString(line, message);
+			line.append('}');
+			this.out.println(line);
+
+		} else {
+			System.err.println(message + ": " + path);
+		}
+	}
+
+	/** Prints the final statistics */
+	private void printSummary() {
+		if (this.json) {
+			this.out.println("{\"summary\":{\"renamed\":" + this.renamed
+					+ ",\"unchanged\":" + this.unchanged
+					+ ",\"collisions\":" + this.collisions
+					+ ",\"errors\":" + this.errors
+					+ ",\"dryRun\":" + this.dryRun + "}}");
+
+		} else {
+			System.err.println((this.dryRun ? "To rename: " : "Renamed: ") + this.renamed
+					+ ", unchanged: " + this.unchanged
+					+ ", collisions: " + this.collisions
+					+ ", errors: " + this.errors);
+		}
+	}
+
+	/**
+	 * Appends the specified value as a JSON string
+	 *
+	 * @param builder
+	 *            builder to which append the value
+	 * @param value
+	 *            value to append
+	 */
+	private static void appendJsonString(StringBuilder builder, String value) {
+		builder.append('"');
+		char c;
+		for (int i = 0; i < value.length(); i++) {
+			c = value.charAt(i);
+			switch (c) {
+				case '"':
+					builder.append("\\\"");
+					break;
+
+				case '\\':
+					builder.append("\\\\");
+					break;
+
+				case '\n':
+					builder.append("\\n");
+					break;
+
+				case '\r':
+					builder.append("\\r");
+					break;
+
+				case '\t':
+					builder.append("\\t");
+					break;
+
+				default:
+					if (c < 0x20) {
+						builder.append(String.format("\\u%04x", (int) c));
+					} else {
+						builder.append(c);
+					}
+			}
+		}
+		builder.append('"');
+	}
+}
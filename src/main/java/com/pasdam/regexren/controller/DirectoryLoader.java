@@ -0,0 +1,428 @@
+package com.pasdam.regexren.controller;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Loader that lists the children of a folder in a dedicated background thread.
+ * </p>
+ * <p>
+ * Children are read through a {@link DirectoryStream}, so the listing is never
+ * copied as a whole, and they are handed to the {@link LoadListener} in
+ * batches, as soon as they are discovered: the first batch is small, in order
+ * to show the first files immediately, then the size of each batch doubles, up
+ * to {@link #MAX_BATCH_SIZE}. A new request cancels the loading in progress.
+ * </p>
+ * <p>
+ * Depending on the {@link WalkPolicy}, subfolders are walked too: each one is
+ * listed by a different task of a fork-join pool, so that idle threads steal
+ * the pending subfolders.
+ * </p>
+ *
+ * @author paco
+ * @version 0.1
+ */
+class DirectoryLoader {
+
+	/** Number of files of the first batch */
+	static final int FIRST_BATCH_SIZE = 256;
+
+	/** Maximum number of files of each batch */
+	static final int MAX_BATCH_SIZE = 65536;
+
+	/** Executor that runs the loadings */
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "DirectoryLoader");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/** Pool used to walk subfolders concurrently */
+	private final ForkJoinPool pool = new ForkJoinPool();
+
+	/** Generation of the latest request: older tasks are cancelled */
+	private final AtomicLong generation = new AtomicLong();
+
+	/** Listener to which the loaded files are handed */
+	private final LoadListener listener;
+
+	/**
+	 * Creates a loader for the specified listener
+	 *
+	 * @param listener
+	 *            listener to which the loaded files are handed
+	 */
+	public DirectoryLoader(LoadListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Starts loading the children of the specified folder, cancelling the
+	 * loading in progress
+	 *
+	 * @param folder
+	 *            folder to list
+	 * @param filter
+	 *            filter that children must satisfy, it may be null
+	 * @param policy
+	 *            policy that defines which subfolders to walk
+	 */
+	public void load(File folder, FileFilter filter, WalkPolicy policy) {
+		this.executor.execute(new LoadTask(this.generation.incrementAndGet(), folder, filter, policy));
+	}
+
+	/**
+	 * Loads the children of the specified folder in the current thread,
+	 * cancelling the loading in progress; it returns after the listener has
+	 * been notified of the completion
+	 *
+	 * @param folder
+	 *            folder to list
+	 * @param filter
+	 *            filter that children must satisfy, it may be null
+	 * @param policy
+	 *            policy that defines which subfolders to walk
+	 */
+	public void loadNow(File folder, FileFilter filter, WalkPolicy policy) {
+		new LoadTask(this.generation.incrementAndGet(), folder, filter, policy).run();
+	}
+
+	/** Cancels the loading in progress, if any */
+	public void cancel() {
+		this.generation.incrementAndGet();
+	}
+
+	/**
+	 * Interface to be implemented by objects that receive the loaded files
+	 *
+	 * @author paco
+	 * @version 0.1
+	 */
+	public static interface LoadListener {
+
+		/**
+		 * Invoked when a batch of files has been loaded; it may be invoked
+		 * concurrently by different threads
+		 *
+		 * @param files
+		 *            loaded files, it may be empty
+		 * @param signal
+		 *            signal that indicates whether the loading has been
+		 *            cancelled
+		 */
+		public void filesLoaded(List<File> files, CancellationSignal signal);
+
+		/**
+		 * Invoked when the loading is completed, after the last batch
+		 *
+		 * @param signal
+		 *            signal that indicates whether the loading has been
+		 *            cancelled
+		 */
+		public void loadCompleted(CancellationSignal signal);
+	}
+
+	/**
+	 * <p>
+	 * Policy that defines which subfolders are walked.
+	 * </p>
+	 * <p>
+	 * With a maximum depth of 1 only the children of the folder are listed,
+	 * folders included; otherwise the subfolders are walked, and only the files
+	 * they contain are listed, since renaming a folder would invalidate the
+	 * path of its children.
+	 * </p>
+	 *
+	 * @author paco
+	 * @version 0.1
+	 */
+	public static class WalkPolicy {
+
+		/** Policy that lists only the children of the folder */
+		public static final WalkPolicy CHILDREN_ONLY = new WalkPolicy(1, false, true);
+
+		/** Maximum depth to walk, 0 means unlimited */
+		private final int maxDepth;
+
+		/** Indicates whether symbolic links to folders are walked */
+		private final boolean followLinks;
+
+		/** Indicates whether hidden subfolders are walked */
+		private final boolean walkHidden;
+
+		/**
+		 * Creates a policy
+		 *
+		 * @param maxDepth
+		 *            maximum depth to walk: 1 lists only the children of the
+		 *            folder, 0 means unlimited
+		 * @param followLinks
+		 *            true if symbolic links to folders should be walked
+		 * @param walkHidden
+		 *            true if hidden subfolders should be walked
+		 */
+		public WalkPolicy(int maxDepth, boolean followLinks, boolean walkHidden) {
+			this.maxDepth    = maxDepth;
+			this.followLinks = followLinks;
+			this.walkHidden  = walkHidden;
+		}
+
+		/**
+		 * Returns true if the subfolders at the specified depth can be walked
+		 *
+		 * @param depth
+		 *            depth of the folder that contains the subfolders, 1 is
+		 *            the listed folder
+		 * @return true if the subfolders at the specified depth can be walked
+		 */
+		private boolean canWalk(int depth) {
+			return this.maxDepth == 0 || depth < this.maxDepth;
+		}
+
+		/**
+		 * Returns true if this policy walks subfolders
+		 *
+		 * @return true if this policy walks subfolders
+		 */
+		public boolean isRecursive() {
+			return this.maxDepth != 1;
+		}
+	}
+
+	/** Task that lists a folder, unless a newer request has been received */
+	private class LoadTask implements Runnable, CancellationSignal {
+
+		/** Generation of the request */
+		private final long generation;
+
+		/** Folder to list */
+		private final File folder;
+
+		/** Filter that children must satisfy */
+		private final FileFilter filter;
+
+		/** Policy that defines which subfolders to walk */
+		private final WalkPolicy policy;
+
+		/** Folders already walked, used to avoid cycles of symbolic links */
+		private final Map<Path, Object> visited = new ConcurrentHashMap<Path, Object>();
+
+		/** Files discovered and not handed to the manager yet */
+		private List<File> batch = new ArrayList<File>(FIRST_BATCH_SIZE);
+
+		/** Size of the current batch */
+		private int batchSize = FIRST_BATCH_SIZE;
+
+		/**
+		 * Creates a task for the specified request
+		 *
+		 * @param generation
+		 *            generation of the request
+		 * @param folder
+		 *            folder to list
+		 * @param filter
+		 *            filter that children must satisfy, it may be null
+		 * @param policy
+		 *            policy that defines which subfolders to walk
+		 */
+		public LoadTask(long generation, File folder, FileFilter filter, WalkPolicy policy) {
+			this.generation = generation;
+			this.folder = folder;
+			this.filter = filter;
+			this.policy = policy;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return DirectoryLoader.this.generation.get() != this.generation;
+		}
+
+		@Override
+		public void run() {
+			if (isCancelled()) {
+				return;
+			}
+
+			if (this.policy.isRecursive()) {
+				DirectoryLoader.this.pool.invoke(new WalkTask(this, this.folder.toPath(), 1));
+			} else {
+				list(this.folder.toPath(), 1, null);
+			}
+
+			List<File> lastBatch;
+			synchronized (this) {
+				lastBatch = this.batch;
+				this.batch = new ArrayList<File>(0);
+			}
+			DirectoryLoader.this.listener.filesLoaded(lastBatch, this);
+			DirectoryLoader.this.listener.loadCompleted(this);
+		}
+
+		/**
+		 * Lists the children of the specified folder, adding to the batch those
+		 * to show, and to the list of subfolders those to walk
+		 *
+		 * @param folder
+		 *            folder to list
+		 * @param depth
+		 *            depth of the folder, 1 is the listed folder
+		 * @param subfolders
+		 *            list to which add the subfolders to walk, it may be null
+		 *            if subfolders are not walked
+		 */
+		private void list(Path folder, int depth, List<Path> subfolders) {
+			boolean walk = subfolders != null && this.policy.canWalk(depth);
+			LinkOption[] options = this.policy.followLinks ? new LinkOption[0] : new LinkOption[] { LinkOption.NOFOLLOW_LINKS };
+
+			DirectoryStream<Path> stream = null;
+			try {
+				stream = Files.newDirectoryStream(folder);
+				File file;
+				for (Path child : stream) {
+					if (isCancelled()) {
+						return;
+					}
+
+					file = child.toFile();
+					if (subfolders == null) {
+						// list all children accepted by the filter
+						if (this.filter == null || this.filter.accept(file)) {
+							add(file);
+						}
+
+					} else if (Files.isDirectory(child, options)) {
+						if (walk && (this.policy.walkHidden || !file.isHidden())) {
+							subfolders.add(child);
+						}
+
+					} else if (this.filter == null || this.filter.accept(file)) {
+						add(file);
+					}
+				}
+
+			} catch (Exception e) {
+				if (LogManager.ENABLED) LogManager.error("DirectoryLoader.list> Error listing folder " + folder + ": " + e.getMessage());
+
+			} finally {
+				if (stream != null) {
+					try {
+						stream.close();
+					} catch (IOException e) {
+						if (LogManager.ENABLED) LogManager.warning("DirectoryLoader.list> Error closing stream: " + e.getMessage());
+					}
+				}
+			}
+		}
+
+		/**
+		 * Returns true if the specified folder has not been walked yet; it
+		 * matters only if symbolic links are followed, since otherwise the
+		 * tree cannot contain cycles
+		 *
+		 * @param folder
+		 *            folder to check
+		 * @return true if the specified folder has not been walked yet
+		 */
+		private boolean markVisited(Path folder) {
+			if (!this.policy.followLinks) {
+				return true;
+			}
+			try {
+				return this.visited.put(folder.toRealPath(), Boolean.TRUE) == null;
+			} catch (IOException e) {
+				if (LogManager.ENABLED) LogManager.warning("DirectoryLoader.markVisited> Unable to resolve folder " + folder + ": " + e.getMessage());
+				return false;
+			}
+		}
+
+		/**
+		 * Adds the specified file to the batch, handing the batch to the
+		 * manager when full
+		 *
+		 * @param file
+		 *            file to add
+		 */
+		private void add(File file) {
+			List<File> fullBatch = null;
+			synchronized (this) {
+				this.batch.add(file);
+				if (this.batch.size() >= this.batchSize) {
+					fullBatch = this.batch;
+					this.batchSize = Math.min(this.batchSize << 1, MAX_BATCH_SIZE);
+					this.batch = new ArrayList<File>(this.batchSize);
+				}
+			}
+
+			if (fullBatch != null) {
+				DirectoryLoader.this.listener.filesLoaded(fullBatch, this);
+			}
+		}
+	}
+
+	/** Task that walks a folder, forking a task for each subfolder */
+	private static class WalkTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 2617480512403917584L;
+
+		/** Loading to which this walk belongs */
+		private final LoadTask loadTask;
+
+		/** Folder to walk */
+		private final Path folder;
+
+		/** Depth of the folder, 1 is the listed folder */
+		private final int depth;
+
+		/**
+		 * Creates a task that walks the specified folder
+		 *
+		 * @param loadTask
+		 *            loading to which this walk belongs
+		 * @param folder
+		 *            folder to walk
+		 * @param depth
+		 *            depth of the folder, 1 is the listed folder
+		 */
+		public WalkTask(LoadTask loadTask, Path folder, int depth) {
+			this.loadTask = loadTask;
+			this.folder = folder;
+			this.depth = depth;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.loadTask.isCancelled() || !this.loadTask.markVisited(this.folder)) {
+				return;
+			}
+
+			List<Path> subfolders = new ArrayList<Path>();
+			this.loadTask.list(this.folder, this.depth, subfolders);
+
+			List<WalkTask> tasks = new ArrayList<WalkTask>(subfolders.size());
+			for (Path subfolder : subfolders) {
+				tasks.add(new WalkTask(this.loadTask, subfolder, this.depth + 1));
+			}
+			invokeAll(tasks);
+		}
+	}
+}
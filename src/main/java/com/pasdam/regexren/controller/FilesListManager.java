@@ -2,17 +2,27 @@ package com.pasdam.regexren.controller;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Pattern;
 
+import javax.swing.SwingUtilities;
+
+import com.pasdam.regexren.controller.DirectoryLoader.WalkPolicy;
 import com.pasdam.regexren.controller.FilterManager.FiltersListener;
-import com.pasdam.regexren.gui.rules.AbstractRuleFactory;
-import com.pasdam.regexren.model.FileModelItem;
+import com.pasdam.regexren.engine.CompiledRuleChain;
+import com.pasdam.regexren.engine.FileStore;
+import com.pasdam.regexren.engine.RuleFactoryListener;
 import com.pasdam.utils.PropertyChangeListener;
-import com.pasdam.utils.file.FileRenamer;
 import com.pasdam.utils.file.fileFilters.FirstFolderComparator;
 
 /**
@@ -21,23 +31,111 @@ import com.pasdam.utils.file.fileFilters.FirstFolderComparator;
  * @author paco
  * @version 0.1
  */
-public class FilesListManager implements PropertyChangeListener<File>, FiltersListener {
+public class FilesListManager extends ErrorListenerManager implements PropertyChangeListener<File>, FiltersListener, RuleFactoryListener {
 
 	/** List of files data */
-	private final ArrayList<FileModelItem> filesDataList = new ArrayList<FileModelItem>();
+	private final FileStore filesDataList = new FileStore();
+
+	/**
+	 * Renames executed by each rename operation, the latest first: undo
+	 * executes the inverse of the latest one
+	 */
+	private final Deque<RenamePlan> renameHistory = new ArrayDeque<RenamePlan>();
+
+	/** Indicates whether the last rename operation can be undone */
+	private boolean undoAvailable;
 
-	/** List of file renamers */
-	private final ArrayList<FileRenamer> fileRenamersList = new ArrayList<FileRenamer>();
+	/** Executor of the renames */
+	private final RenameExecutor renameExecutor = new RenameExecutor();
+
+	/** Journal of the renames, written before executing them */
+	private final RenameJournal renameJournal = new RenameJournal(new File(PreferenceManager.RENAME_JOURNAL_FILE));
+
+	/** Listener that publishes the progress of the renames */
+	private final RenameExecutor.ProgressListener renameProgressListener = new RenameExecutor.ProgressListener() {
+		
+		@Override
+		public void renameProgress(final int completed, final int total, final double throughput) {
+			if (LogManager.ENABLED) LogManager.trace("FilesListManager.renameProgress> " + completed + "/" + total + " files, " + Math.round(throughput) + " files/s");
+			SwingUtilities.invokeLater(new Runnable() {
+				
+				@Override
+				public void run() {
+					for (RenameListener renameListener : FilesListManager.this.renameListeners) {
+						renameListener.renameProgress(completed, total, throughput);
+					}
+				}
+			});
+		}
+	};
+
+	/** Executor that runs the rename operations out of the event dispatch thread */
+	private final ExecutorService renameWorker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "RenameWorker");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
 
 	/** List of listener to notify when the files list change */
 	private final List<FilesListListener> listeners = new ArrayList<FilesListListener>();
 
+	/** List of listener to notify about the rename operations */
+	private final List<RenameListener> renameListeners = new ArrayList<RenameListener>();
+
+	/** Object used to apply the rules to the files list */
+	private final RulesApplier rulesApplier = new RulesApplier();
+
+	/** Loader that lists the current folder in background */
+	private final DirectoryLoader directoryLoader = new DirectoryLoader(new DirectoryLoader.LoadListener() {
+		
+		@Override
+		public void filesLoaded(List<File> files, CancellationSignal signal) {
+			addBatch(files, signal);
+		}
+		
+		@Override
+		public void loadCompleted(CancellationSignal signal) {
+			FilesListManager.this.loadCompleted(signal);
+		}
+	});
+
+	/** Worker that computes the previews in background */
+	private final PreviewWorker previewWorker = new PreviewWorker(this);
+
+	/** Lock that guards the files list against concurrent changes */
+	private final Object lock = new Object();
+
+	/** Indicates whether the rules should be applied concurrently */
+	private boolean parallel = true;
+
+	/** Indicates whether a rename operation renames all the files or none */
+	private boolean transactional;
+
+	/** Maximum depth of the folders to list, 1 lists only the children */
+	private int maxDepth = 1;
+
+	/** Indicates whether symbolic links to folders should be walked */
+	private boolean followLinks;
+
+	/** Folder currently listed, or null if no folder has been loaded yet */
+	private File currentFolder;
+
+	/** Filter of the folder currently listed */
+	private FileFilter currentFilter;
+
+	/** Indicates whether hidden files of the folder currently listed are shown */
+	private boolean currentShowHidden;
+
 	/**
 	 * Returns the list of files
 	 * 
 	 * @return the list of files
 	 */
-	public ArrayList<FileModelItem> getFilesList() {
+	public FileStore getFilesList() {
 		return filesDataList;
 	}
 
@@ -53,95 +151,295 @@ public class FilesListManager implements PropertyChangeListener<File>, FiltersLi
 		}
 	}
 
+	/**
+	 * Add a listener to notify about the rename operations
+	 * 
+	 * @param listener
+	 *            listener to add
+	 */
+	public void addRenameListener(RenameListener listener) {
+		if (listener != null) {
+			this.renameListeners.add(listener);
+		}
+	}
+
 	/** Clear the file list */
 	private void clear() {
 		this.filesDataList.clear();
-		this.fileRenamersList.clear();
-	}
-
-	/** Apply the rules to each file in the list and rename it */
-	public void applyRules(boolean rename) {
-		if (this.fileRenamersList.size() > 0) {
-			List<AbstractRuleFactory> rules = ApplicationManager.getInstance().getRulesManager().getRulesList();
-			if (rules.size() > 0) {
-				FileRenamer renamer;
-				FileModelItem fileData;
-				File newFile;
-
-				// reset rules state
-				for (AbstractRuleFactory ruleFactory : rules) {
-					if (ruleFactory.isEnabled() && ruleFactory.isValid()) {
-						ruleFactory.getRule().reset();
-					}
+		this.renameHistory.clear();
+		this.undoAvailable = false;
+		this.rulesApplier.release();
+	}
+
+	/**
+	 * Sets whether the rules should be applied concurrently to large lists of
+	 * files
+	 * 
+	 * @param parallel
+	 *            true to apply the rules concurrently, false otherwise
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	/**
+	 * Returns true if the rules are applied concurrently to large lists of
+	 * files
+	 * 
+	 * @return true if the rules are applied concurrently to large lists of
+	 *         files
+	 */
+	public boolean isParallel() {
+		return this.parallel;
+	}
+
+	/**
+	 * Sets whether the rename operations should be transactional: if a file
+	 * can't be renamed, the files already renamed are restored
+	 * 
+	 * @param transactional
+	 *            true if a rename operation should rename all the files or
+	 *            none
+	 */
+	public void setTransactional(boolean transactional) {
+		this.transactional = transactional;
+	}
+
+	/**
+	 * Returns true if the rename operations are transactional
+	 * 
+	 * @return true if a rename operation renames all the files or none
+	 */
+	public boolean isTransactional() {
+		return this.transactional;
+	}
+
+	/**
+	 * Schedules the preview of the current rules in background: requests
+	 * received in a short time are coalesced, and a newer request cancels the
+	 * preview already running. Listeners are notified in the event dispatch
+	 * thread, and only with the result of the latest request.
+	 */
+	public void schedulePreview() {
+		this.previewWorker.schedule(ApplicationManager.getInstance().getRulesManager().getCompiledRules());
+	}
+
+	@Override
+	public void configurationChanged(boolean valid) {
+		schedulePreview();
+	}
+
+	/**
+	 * Applies the specified rules to each file in the list, and publish the
+	 * result unless the preview has been cancelled; it is called by the
+	 * {@link PreviewWorker}
+	 * 
+	 * @param rules
+	 *            chain of rules to apply
+	 * @param signal
+	 *            signal that indicates whether the preview has been cancelled
+	 */
+	void preview(CompiledRuleChain rules, CancellationSignal signal) {
+		boolean undoAvailable;
+		FileStore snapshot;
+		synchronized (this.lock) {
+			if (this.filesDataList.size() == 0) {
+				return;
+			}
+			
+			if (!rules.isEmpty()) {
+				if (!this.rulesApplier.apply(rules, this.filesDataList, this.parallel, signal)) {
+					if (LogManager.ENABLED) LogManager.trace("FilesListManager.preview> Preview cancelled");
+					return;
 				}
 				
-				Map<String, Object> fileNamesMap = new HashMap<String, Object>();
-				String name;
-
-				for (int i = 0; i < this.fileRenamersList.size(); i++) {
-					renamer = this.fileRenamersList.get(i);
-					fileData = this.filesDataList.get(i);
-					fileData.reset();
-
-					if (fileData.isChecked()) {
-						// apply rules for each checked file
-						for (AbstractRuleFactory ruleFactory : rules) {
-							if (ruleFactory.isEnabled() && ruleFactory.isValid()) {
-								ruleFactory.getRule().apply(fileData);
-							}
-						}
-						
-						// rename file
-						if (rename) {
-							name = fileData.getNewFullName();
-							if (!fileNamesMap.containsKey(name)) {
-								fileNamesMap.put(name, null);
+			} else {
+				// reset files list
+				this.filesDataList.clearNewNames();
+				this.rulesApplier.invalidate();
+			}
+			
+			undoAvailable = this.undoAvailable;
+			snapshot = this.filesDataList.snapshot();
+		}
+		
+		// notify changes
+		publish(snapshot, undoAvailable, signal);
+	}
+
+	/**
+	 * Sets which subfolders of the current folder should be listed, reloading
+	 * the list if needed
+	 * 
+	 * @param maxDepth
+	 *            maximum depth of the folders to list: 1 lists only the
+	 *            children of the current folder, 0 means unlimited
+	 * @param followLinks
+	 *            true if symbolic links to folders should be walked
+	 */
+	public void setSubfolders(int maxDepth, boolean followLinks) {
+		if (this.maxDepth != maxDepth || this.followLinks != followLinks) {
+			this.maxDepth = maxDepth;
+			this.followLinks = followLinks;
+			
+			if (this.currentFolder != null) {
+				load(this.currentFolder, this.currentFilter, this.currentShowHidden);
+			}
+		}
+	}
+
+	/**
+	 * Apply the rules to each file in the list and rename it in background:
+	 * it must be called in the event dispatch thread, where listeners are
+	 * notified
+	 */
+	public void applyRules(final boolean rename) {
+		// stop the preview running in background
+		this.previewWorker.cancel();
+		
+		runRename(new Runnable() {
+			
+			@Override
+			public void run() {
+				synchronized (FilesListManager.this.lock) {
+					applyRulesLocked(rename);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Apply the rules to each file in the list and rename it; the caller must
+	 * hold the lock
+	 */
+	private void applyRulesLocked(boolean rename) {
+		if (this.filesDataList.size() > 0) {
+			CompiledRuleChain rules = ApplicationManager.getInstance().getRulesManager().getCompiledRules();
+			if (!rules.isEmpty()) {
+				// apply rules to each checked file
+				this.rulesApplier.apply(rules, this.filesDataList, this.parallel);
+				
+				// rename files
+				if (rename) {
+					// paths already used: collisions are checked within the same folder
+					Map<String, Object> filePathsMap = new HashMap<String, Object>();
+					List<RenameStep> steps = new ArrayList<RenameStep>();
+					String path;
+					
+					for (int i = 0; i < this.filesDataList.size(); i++) {
+						if (this.filesDataList.isChecked(i)) {
+							path = this.filesDataList.getNewPath(i);
+							if (!filePathsMap.containsKey(path)) {
+								filePathsMap.put(path, null);
 								
-								// rename
-								newFile = new File(renamer.getCurrentFile().getParentFile(), name);
-								renamer.renameTo(newFile);
-								this.filesDataList.set(i, new FileModelItem(newFile));
+								// rename only the files that change
+								if (this.filesDataList.isChanged(i)) {
+									steps.add(new RenameStep(i, this.filesDataList.getFile(i), new File(path)));
+								}
 								
 							} // else skip it
 						}
 					}
+					
+					// rename files concurrently, following the order of the plan
+					RenamePlan plan = RenamePlan.create(steps, this.transactional);
+					if (execute(plan) > 0) {
+						updateFiles(plan);
+						this.renameHistory.push(plan);
+						this.undoAvailable = true;
+					}
+					
+					// the cached names refer to the previous files
+					this.rulesApplier.invalidate();
 				}
 				
 			} else {
 				// reset files list
-				for (FileModelItem fileData : this.filesDataList) {
-					fileData.reset();
-				}
+				this.filesDataList.clearNewNames();
+				this.rulesApplier.invalidate();
 			}
 			
-			boolean undoAvailable = this.fileRenamersList.get(0).undoAvailable();
-			
 			// notify changes
-			for (FilesListListener filesListListener : this.listeners) {
-				filesListListener.filesListChanged(this.filesDataList, undoAvailable);
-			}
+			publish(this.filesDataList.snapshot(), this.undoAvailable, null);
 		}
 	}
 
-	/** Undo the last rename operation of all files */
+	/**
+	 * Undo the last rename operation of all files in background: it must be
+	 * called in the event dispatch thread, where listeners are notified
+	 */
 	public void undoRename() {
-		FileRenamer fileRenamer;
-		for (int i = 0; i < this.fileRenamersList.size(); i++) {
-			fileRenamer = this.fileRenamersList.get(i);
-			fileRenamer.undoRename();
-			this.filesDataList.set(i, new FileModelItem(fileRenamer.getCurrentFile()));
-		}
+		// stop the preview running in background
+		this.previewWorker.cancel();
 		
-		// reset undoAvailable property
+		runRename(new Runnable() {
+			
+			@Override
+			public void run() {
+				undoRenameNow();
+			}
+		});
+	}
+
+	/** Undo the last rename operation of all files in the current thread */
+	private void undoRenameNow() {
 		boolean undoAvailable = false;
-		if (this.fileRenamersList.size() > 0) {
-			undoAvailable = this.fileRenamersList.get(0).undoAvailable();
+		FileStore snapshot;
+		synchronized (this.lock) {
+			RenamePlan plan = this.renameHistory.poll();
+			if (plan != null) {
+				// restore the names of the files renamed by the latest operation
+				RenamePlan inverse = plan.inverse();
+				execute(inverse);
+				updateFiles(inverse);
+			}
+			this.rulesApplier.invalidate();
+			
+			// reset undoAvailable property
+			undoAvailable = !this.renameHistory.isEmpty();
+			this.undoAvailable = undoAvailable;
+			snapshot = this.filesDataList.snapshot();
 		}
 		
 		// notify changes
-		for (FilesListListener filesListListener : listeners) {
-			filesListListener.filesListChanged(this.filesDataList, undoAvailable);
+		publish(snapshot, undoAvailable, null);
+	}
+
+	/**
+	 * Runs the specified rename operation in the rename worker, notifying the
+	 * rename listeners when it is requested and, in the event dispatch
+	 * thread, when it is completed
+	 * 
+	 * @param operation
+	 *            operation to run
+	 */
+	private void runRename(final Runnable operation) {
+		// listeners disable further requests before this one is queued
+		for (RenameListener renameListener : this.renameListeners) {
+			renameListener.renameStarted();
 		}
+		
+		this.renameWorker.execute(new Runnable() {
+			
+			@Override
+			public void run() {
+				try {
+					operation.run();
+				} catch (Exception e) {
+					if (LogManager.ENABLED) LogManager.error("FilesListManager.runRename> Error renaming files: " + e.getMessage());
+				} finally {
+					SwingUtilities.invokeLater(new Runnable() {
+						
+						@Override
+						public void run() {
+							for (RenameListener renameListener : FilesListManager.this.renameListeners) {
+								renameListener.renameCompleted();
+							}
+						}
+					});
+				}
+			}
+		});
 	}
 
 	/**
@@ -152,10 +450,92 @@ public class FilesListManager implements PropertyChangeListener<File>, FiltersLi
 	 * @return the file at the specified index
 	 */
 	public File getCurrentFile(int index) {
-		if (index >= 0 && index < this.fileRenamersList.size()) {
-			return this.fileRenamersList.get(index).getCurrentFile();
+		synchronized (this.lock) {
+			if (index >= 0 && index < this.filesDataList.size()) {
+				return this.filesDataList.getFile(index);
+			} else {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Executes the specified plan, recording it in the journal; a
+	 * transactional plan is staged and executed as a transaction. The error
+	 * listener is notified if some file can't be renamed. The caller must
+	 * hold the lock
+	 * 
+	 * @param plan
+	 *            plan to execute
+	 * @return the number of renames completed
+	 */
+	private int execute(RenamePlan plan) {
+		if (plan.isTransactional()) {
+			RenamePlan staged = plan.stage();
+			long id = this.renameJournal.begin(staged);
+			if (!this.renameExecutor.executeTransaction(staged, this.renameProgressListener, this.renameJournal)) {
+				if (LogManager.ENABLED) LogManager.warning("FilesListManager.execute> Rename failed, the files have been restored");
+				notifyErrorLater("Error.FilesListManager.renameRolledBack");
+			}
+			this.renameJournal.end(id);
+			return plan.getDoneCount();
+
 		} else {
-			return null;
+			long id = this.renameJournal.begin(plan);
+			int done = this.renameExecutor.execute(plan, this.renameProgressListener, this.renameJournal);
+			this.renameJournal.end(id);
+			int failed = plan.size() - plan.getDoneCount();
+			if (failed > 0) {
+				if (LogManager.ENABLED) LogManager.warning("FilesListManager.execute> Files not renamed: " + failed);
+				notifyErrorLater("Error.FilesListManager.renameIncomplete");
+			}
+			return done;
+		}
+	}
+
+	/**
+	 * Notifies the error listener in the event dispatch thread
+	 * 
+	 * @param errorMessageKey
+	 *            key of the error message
+	 */
+	private void notifyErrorLater(final String errorMessageKey) {
+		SwingUtilities.invokeLater(new Runnable() {
+			
+			@Override
+			public void run() {
+				notifyError(errorMessageKey);
+			}
+		});
+	}
+
+	/**
+	 * Completes the renames interrupted by a crash, replaying the journal; it
+	 * should be called at startup, before listing any folder
+	 */
+	public void recoverRenames() {
+		synchronized (this.lock) {
+			int done = this.renameJournal.recover(this.renameExecutor);
+			if (done >= 0) {
+				if (LogManager.ENABLED) LogManager.info("FilesListManager.recoverRenames> Interrupted renames completed: " + done);
+			}
+		}
+	}
+
+	/**
+	 * Updates the list with the files renamed by the specified plan; the
+	 * caller must hold the lock
+	 * 
+	 * @param plan
+	 *            executed plan
+	 */
+	private void updateFiles(RenamePlan plan) {
+		for (List<RenameStep> chain : plan.getChains()) {
+			for (RenameStep step : chain) {
+				if (step.isDone()) {
+					this.filesDataList.setFile(step.getIndex(), step.getTarget());
+				}
+			}
 		}
 	}
 
@@ -168,42 +548,252 @@ public class FilesListManager implements PropertyChangeListener<File>, FiltersLi
 	 *            true if the file should be renamed, false otherwise
 	 */
 	public void setChecked(int index, boolean checked) {
-		if (index >= 0 && index < this.filesDataList.size()) {
-			this.filesDataList.get(index).setChecked(checked);
+		// indexes out of the list are ignored by the update
+		if (index >= 0) {
+			BitSet files = new BitSet();
+			files.set(index);
+			updateChecked(files, checked, false);
+		}
+	}
+
+	/**
+	 * Sets whether the files at the specified positions should be renamed or
+	 * not
+	 * 
+	 * @param indexes
+	 *            indexes of the files
+	 * @param checked
+	 *            true if the files should be renamed, false otherwise
+	 */
+	public void setChecked(int[] indexes, boolean checked) {
+		BitSet files = new BitSet();
+		for (int index : indexes) {
+			if (index >= 0) {
+				files.set(index);
+			}
+		}
+		updateChecked(files, checked, false);
+	}
+
+	/**
+	 * Sets whether all files should be renamed or not
+	 * 
+	 * @param checked
+	 *            true if the files should be renamed, false otherwise
+	 */
+	public void checkAll(boolean checked) {
+		updateChecked(null, checked, false);
+	}
+
+	/**
+	 * Inverts the checked state of all files
+	 */
+	public void invertChecked() {
+		updateChecked(null, false, true);
+	}
+
+	/**
+	 * Sets whether the files whose current name contains the specified
+	 * pattern should be renamed or not
+	 * 
+	 * @param pattern
+	 *            pattern that the name of the files must contain
+	 * @param checked
+	 *            true if the files should be renamed, false otherwise
+	 */
+	public void setCheckedByName(Pattern pattern, boolean checked) {
+		BitSet files;
+		synchronized (this.lock) {
+			files = this.filesDataList.findByName(pattern);
 		}
+		updateChecked(files, checked, false);
 	}
 
 	/**
-	 * Add specified files to the list
+	 * Sets whether the folders, or the other files, should be renamed or not
 	 * 
-	 * @param children
-	 *            list of files to add
+	 * @param directories
+	 *            true to update the folders, false to update the other files
+	 * @param checked
+	 *            true if the files should be renamed, false otherwise
 	 */
-	private void add(File[] children) {
-		// clear current list
-		clear();
+	public void setCheckedByType(boolean directories, boolean checked) {
+		BitSet files;
+		synchronized (this.lock) {
+			files = this.filesDataList.findDirectories();
+			if (!directories) {
+				files.flip(0, this.filesDataList.size());
+			}
+		}
+		updateChecked(files, checked, false);
+	}
+
+	/**
+	 * Updates the checked state of the specified files with a single
+	 * operation, then notifies the listeners and schedules the preview once:
+	 * only the files whose state changed are processed again
+	 * 
+	 * @param files
+	 *            indexes of the files to update, or null to update all files
+	 * @param checked
+	 *            true if the files should be renamed, false otherwise; it is
+	 *            ignored if <i>invert</i> is true
+	 * @param invert
+	 *            true to invert the state of the files
+	 */
+	private void updateChecked(BitSet files, boolean checked, boolean invert) {
+		// the running preview must be restarted, since the cache is no more valid
+		this.previewWorker.cancel();
+		
+		BitSet changed;
+		boolean undoAvailable;
+		FileStore snapshot;
+		synchronized (this.lock) {
+			changed = invert
+					? this.filesDataList.invertChecked(files)
+					: this.filesDataList.setChecked(files, checked);
+			this.rulesApplier.invalidate(changed);
+			undoAvailable = this.undoAvailable;
+			snapshot = this.filesDataList.snapshot();
+		}
+		if (LogManager.ENABLED) LogManager.trace("FilesListManager.updateChecked> Changed files: " + changed.cardinality());
 		
-		if (children != null) {
-			// sort
-			Arrays.sort(children, new FirstFolderComparator());
-			// add elements to the model
-			for (File file : children) {
-				this.filesDataList.add(new FileModelItem(file));
-				this.fileRenamersList.add(new FileRenamer(file));
+		if (!changed.isEmpty()) {
+			// notify changes
+			for (FilesListListener filesListListener : this.listeners) {
+				filesListListener.filesListChanged(snapshot, undoAvailable);
 			}
 		}
 		
+		schedulePreview();
+	}
+
+	/**
+	 * Clears the list and starts loading the children of the specified folder
+	 * in background
+	 * 
+	 * @param folder
+	 *            folder to list
+	 * @param filter
+	 *            filter that children must satisfy
+	 * @param showHidden
+	 *            true if hidden subfolders should be walked
+	 */
+	private void load(File folder, FileFilter filter, boolean showHidden) {
+		this.currentFolder = folder;
+		this.currentFilter = filter;
+		this.currentShowHidden = showHidden;
+		
+
+		// stop the preview and the loading running in background: batches of
+		// the previous folder that wait for the lock are discarded
+		this.previewWorker.cancel();
+		this.directoryLoader.cancel();
+		
+		FileStore snapshot;
+		synchronized (this.lock) {
+			// clear current list
+			clear();
+			snapshot = this.filesDataList.snapshot();
+		}
+		
 		// notify changes
 		for (FilesListListener filesListListener : this.listeners) {
-			filesListListener.filesListChanged(this.filesDataList, false);
+			filesListListener.filesListChanged(snapshot, false);
+		}
+		
+		this.directoryLoader.load(folder, filter, new WalkPolicy(this.maxDepth, this.followLinks, showHidden));
+	}
+
+	/**
+	 * Appends the specified files to the list, unless the loading has been
+	 * cancelled
+	 * 
+	 * @param files
+	 *            files to add
+	 * @param signal
+	 *            signal that indicates whether the loading has been cancelled
+	 */
+	private void addBatch(List<File> files, CancellationSignal signal) {
+		if (files.isEmpty()) {
+			return;
+		}
+		
+		FileStore snapshot;
+		synchronized (this.lock) {
+			if (signal.isCancelled()) {
+				return;
+			}
+			
+			this.filesDataList.addAll(files);
+			this.rulesApplier.invalidate();
+			snapshot = this.filesDataList.snapshot();
+		}
+		
+		publish(snapshot, false, signal);
+	}
+
+	/**
+	 * Sorts the loaded files, unless the loading has been cancelled
+	 * 
+	 * @param signal
+	 *            signal that indicates whether the loading has been cancelled
+	 */
+	private void loadCompleted(CancellationSignal signal) {
+		FileStore snapshot;
+		synchronized (this.lock) {
+			if (signal.isCancelled()) {
+				return;
+			}
+			
+			// sort, grouping files by folder: no file has been renamed yet, so
+			// there is no renamer to reorder
+			final FirstFolderComparator comparator = new FirstFolderComparator();
+			this.filesDataList.sort(new Comparator<File>() {
+				
+				@Override
+				public int compare(File file1, File file2) {
+					int result = file1.getParent().compareTo(file2.getParent());
+					return result != 0 ? result : comparator.compare(file1, file2);
+				}
+			});
+			this.rulesApplier.invalidate();
+			snapshot = this.filesDataList.snapshot();
 		}
+		
+		publish(snapshot, false, signal);
+	}
+
+	/**
+	 * Notifies the listeners in the event dispatch thread, unless the
+	 * background operation has been cancelled in the meanwhile
+	 * 
+	 * @param snapshot
+	 *            snapshot of the files list to notify
+	 * @param undoAvailable
+	 *            true if undo rename is available, false otherwise
+	 * @param signal
+	 *            signal that indicates whether the operation has been
+	 *            cancelled, null if it can't be cancelled
+	 */
+	private void publish(final FileStore snapshot, final boolean undoAvailable, final CancellationSignal signal) {
+		SwingUtilities.invokeLater(new Runnable() {
+			
+			@Override
+			public void run() {
+				if (signal == null || !signal.isCancelled()) {
+					for (FilesListListener filesListListener : FilesListManager.this.listeners) {
+						filesListListener.filesListChanged(snapshot, undoAvailable);
+					}
+				}
+			}
+		});
 	}
 
 	@Override
 	public void filterChanged(int filterType, boolean showHidden, FileFilter filter) {
 		// current filter is changed
-		File[] children = ApplicationManager.getInstance().getPreferenceManager().getPreviousFolder().listFiles(filter);
-		add(children);
+		load(ApplicationManager.getInstance().getPreferenceManager().getPreviousFolder(), filter, showHidden);
 	}
 
 	/**
@@ -214,9 +804,8 @@ public class FilesListManager implements PropertyChangeListener<File>, FiltersLi
 	@Override
 	public void propertyChanged(File currentFolder) {
 		// current folder is changed
-		File[] children = currentFolder
-				.listFiles(ApplicationManager.getInstance().getPreferenceManager().getPreviousFilter());
-		add(children);
+		PreferenceManager preferenceManager = ApplicationManager.getInstance().getPreferenceManager();
+		load(currentFolder, preferenceManager.getPreviousFilter(), preferenceManager.showHidden());
 	}
 
 	/**
@@ -232,10 +821,42 @@ public class FilesListManager implements PropertyChangeListener<File>, FiltersLi
 		 * Indicates that the list of files is changed
 		 * 
 		 * @param list
-		 *            new list of files
+		 *            snapshot of the new list of files, that doesn't change
 		 * @param undoAvailable
 		 *            true if undo rename is available, false otherwise
 		 */
-		public void filesListChanged(List<FileModelItem> list, boolean undoAvailable);
+		public void filesListChanged(FileStore list, boolean undoAvailable);
+	}
+
+	/**
+	 * Interface to be implemented by listeners that need to be notified about
+	 * the rename operations, that run in background; all methods are invoked
+	 * in the event dispatch thread
+	 *
+	 * @author paco
+	 * @version 0.1
+	 */
+	public static interface RenameListener {
+
+		/** Indicates that a rename operation has been requested */
+		public void renameStarted();
+
+		/**
+		 * Indicates the progress of the rename operation running
+		 * 
+		 * @param completed
+		 *            number of renames processed
+		 * @param total
+		 *            number of renames of the operation
+		 * @param throughput
+		 *            average number of renames processed per second
+		 */
+		public void renameProgress(int completed, int total, double throughput);
+
+		/**
+		 * Indicates that the rename operation is completed; the listeners of
+		 * the files list have already been notified of the renamed files
+		 */
+		public void renameCompleted();
 	}
 }
@@ -21,10 +21,16 @@ public class PreferenceManager {
 	/** Name of the default script file, saved on application exit */
 	public static final String LAST_SCRIPT_FILE = "lastScript.brr";
 	
+	/** Name of the journal of the renames, used to recover an interrupted rename */
+	public static final String RENAME_JOURNAL_FILE = "renames.journal";
+	
 	// Preference keys
 	private static final String PREFS                          = "prefs";
+	private static final String PREFS_FOLLOW_LINKS             = "followLinks";
+	private static final String PREFS_INCLUDE_SUBFOLDERS       = "includeSubfolders";
 	private static final String PREFS_LOCALE_COUNTRY           = "locale.country";
 	private static final String PREFS_LOCALE_LANGUAGE          = "locale.language";
+	private static final String PREFS_PARALLEL_PREVIEW         = "parallelPreview";
 	private static final String PREFS_PREVIOUS_FILTER          = "previousFilter";
 	private static final String PREFS_PREVIOUS_FOLDER          = "previousFolder";
 	private static final String PREFS_PREVIOUS_SCRIPT_FILE     = "previousScriptFile";
@@ -32,6 +38,8 @@ public class PreferenceManager {
 	private static final String PREFS_REMEMBER_PREVIOUS_FOLDER = "rememberPreviousFolder";
 	private static final String PREFS_REMEMBER_PREVIOUS_SCRIPT = "rememberPreviousScript";
 	private static final String PREFS_SHOW_HIDDEN              = "showHidden";
+	private static final String PREFS_SUBFOLDERS_DEPTH         = "subfoldersDepth";
+	private static final String PREFS_TRANSACTIONAL_RENAME     = "transactionalRename";
 	
 	// Local preferences
 	private File previousFolder;
@@ -45,6 +53,12 @@ public class PreferenceManager {
 	
 	/** This method load preferences */
 	public void loadPreferences() {
+		// load subfolders settings, before listing the previous folder
+		updateSubfolders();
+		
+		// load rename settings
+		ApplicationManager.getInstance().getFilesListManager().setTransactional(getTransactionalRename());
+		
 		// load and notify previous folder
 		this.previousFolder         = new File(this.prefs.get(PREFS_PREVIOUS_FOLDER, ""));
 		this.currentFolderNotifier.notifyListeners(this.previousFolder);
@@ -65,6 +79,9 @@ public class PreferenceManager {
 			ApplicationManager.getInstance().getLocaleManager().setLocale(Locale.ENGLISH);
 		}
 
+		// load performance settings
+		ApplicationManager.getInstance().getFilesListManager().setParallel(getParallelPreview());
+
 		// load and notify file filtering settings
 		boolean showHidden = prefs.getBoolean(PREFS_SHOW_HIDDEN, false);
 		int previousFilter = prefs.getInt(PREFS_PREVIOUS_FILTER, FilterManager.FILTER_FILES);
@@ -99,6 +116,102 @@ public class PreferenceManager {
 		}
 	}
 
+	/**
+	 * Returns the "Parallel preview" setting
+	 * 
+	 * @return the "Parallel preview" setting
+	 */
+	public boolean getParallelPreview() {
+		return this.prefs.getBoolean(PREFS_PARALLEL_PREVIEW, true);
+	}
+
+	/**
+	 * Sets the "Parallel preview" setting
+	 * 
+	 * @param parallelPreview
+	 *            if true the rules are applied concurrently to large lists of
+	 *            files
+	 */
+	public void setParallelPreview(boolean parallelPreview) {
+		prefs.putBoolean(PREFS_PARALLEL_PREVIEW, parallelPreview);
+		ApplicationManager.getInstance().getFilesListManager().setParallel(parallelPreview);
+	}
+
+	/**
+	 * Returns the "Transactional rename" setting
+	 * 
+	 * @return the "Transactional rename" setting
+	 */
+	public boolean getTransactionalRename() {
+		return this.prefs.getBoolean(PREFS_TRANSACTIONAL_RENAME, false);
+	}
+
+	/**
+	 * Sets the "Transactional rename" setting
+	 * 
+	 * @param transactionalRename
+	 *            if true a rename operation renames all the files or none
+	 */
+	public void setTransactionalRename(boolean transactionalRename) {
+		prefs.putBoolean(PREFS_TRANSACTIONAL_RENAME, transactionalRename);
+		ApplicationManager.getInstance().getFilesListManager().setTransactional(transactionalRename);
+	}
+
+	/**
+	 * Returns the "Include subfolders" setting
+	 * 
+	 * @return the "Include subfolders" setting
+	 */
+	public boolean getIncludeSubfolders() {
+		return this.prefs.getBoolean(PREFS_INCLUDE_SUBFOLDERS, false);
+	}
+
+	/**
+	 * Returns the "Subfolders depth" setting
+	 * 
+	 * @return the number of levels of subfolders to list, 0 means unlimited
+	 */
+	public int getSubfoldersDepth() {
+		return this.prefs.getInt(PREFS_SUBFOLDERS_DEPTH, 0);
+	}
+
+	/**
+	 * Returns the "Follow symbolic links" setting
+	 * 
+	 * @return the "Follow symbolic links" setting
+	 */
+	public boolean getFollowLinks() {
+		return this.prefs.getBoolean(PREFS_FOLLOW_LINKS, false);
+	}
+
+	/**
+	 * Sets the subfolders settings
+	 * 
+	 * @param includeSubfolders
+	 *            if true the files contained in the subfolders of the current
+	 *            folder are listed too
+	 * @param depth
+	 *            number of levels of subfolders to list, 0 means unlimited
+	 * @param followLinks
+	 *            if true symbolic links to folders are walked
+	 */
+	public void setSubfolders(boolean includeSubfolders, int depth, boolean followLinks) {
+		prefs.putBoolean(PREFS_INCLUDE_SUBFOLDERS, includeSubfolders);
+		prefs.putInt(PREFS_SUBFOLDERS_DEPTH, depth);
+		prefs.putBoolean(PREFS_FOLLOW_LINKS, followLinks);
+		updateSubfolders();
+	}
+
+	/** Updates the files list manager with the subfolders settings */
+	private void updateSubfolders() {
+		int maxDepth = 1;
+		if (getIncludeSubfolders()) {
+			int depth = getSubfoldersDepth();
+			maxDepth = depth > 0 ? depth + 1 : 0;
+		}
+		ApplicationManager.getInstance().getFilesListManager().setSubfolders(maxDepth, getFollowLinks());
+	}
+
 	/**
 	 * Returns the previous selected folder, if null no folder was selected or
 	 * "Remember previous folder" setting is false
@@ -0,0 +1,343 @@
+package com.pasdam.regexren.controller;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import com.pasdam.regexren.engine.FileModelItem;
+
+/**
+ * <p>
+ * Cache of the intermediate names of the files: for some positions of the
+ * rules chain it stores name and extension that each file had before the rule
+ * at that position was applied, or after the last rule for the position that
+ * follows the chain. Only the positions from which the next passes are
+ * expected to restart are {@link #allocate(int) allocated}, so the memory
+ * used doesn't grow with the size of the chain.
+ * </p>
+ * <p>
+ * The values of a position are stored as {@link com.pasdam.regexren.engine.FileStore}
+ * stores the filenames: the characters of the files of a block of
+ * {@link #BLOCK_SIZE} consecutive files are packed in a single array, and each
+ * file only stores its range and the length of its name, so storing a value
+ * doesn't create any object. Different blocks can be written concurrently,
+ * but each block must be written by one thread at a time.
+ * </p>
+ * <p>
+ * A position is {@link #isValid(int) valid} when it stores the values of all
+ * the files; position 0 is never stored, since it is the original name, and
+ * it is always valid.
+ * </p>
+ *
+ * @author paco
+ * @version 0.1
+ */
+class PreviewCache {
+
+	/** Number of consecutive files whose values are packed in the same array */
+	static final int BLOCK_SIZE = 1024;
+
+	/** Average length of a filename, used to size the characters arrays */
+	private static final int AVERAGE_NAME_LENGTH = 24;
+
+	/** Stored values, indexed by position, null if the position is not allocated */
+	private Level[] levels = new Level[0];
+
+	/** Positions that store the values of all the files */
+	private final BitSet valid = new BitSet();
+
+	/** Number of files for which the cache is allocated */
+	private int filesCount;
+
+	/**
+	 * Resizes the cache in order to store the specified number of positions
+	 * and files. If the number of files doesn't change, the positions
+	 * preserved are kept.
+	 *
+	 * @param positions
+	 *            number of positions of the chain, i.e. its size plus one
+	 * @param filesCount
+	 *            number of files
+	 */
+	public void resize(int positions, int filesCount) {
+		if (this.filesCount != filesCount) {
+			this.levels = new Level[positions];
+			this.valid.clear();
+			this.filesCount = filesCount;
+
+		} else if (this.levels.length != positions) {
+			this.levels = Arrays.copyOf(this.levels, positions);
+			this.valid.clear(positions, Math.max(positions, this.valid.length()));
+		}
+	}
+
+	/** Releases all the stored values */
+	public void clear() {
+		this.levels = new Level[0];
+		this.valid.clear();
+		this.filesCount = 0;
+	}
+
+	/** Invalidates all the positions, keeping their memory to be reused */
+	public void invalidate() {
+		this.valid.clear();
+	}
+
+	/**
+	 * Returns true if the specified position stores the values of all the
+	 * files
+	 *
+	 * @param position
+	 *            position in the rules chain
+	 * @return true if the position is valid
+	 */
+	public boolean isValid(int position) {
+		return position == 0 || this.valid.get(position);
+	}
+
+	/**
+	 * Sets whether the specified position stores the values of all the files
+	 *
+	 * @param position
+	 *            position in the rules chain, it must be allocated
+	 * @param valid
+	 *            true if the position is valid
+	 */
+	public void setValid(int position, boolean valid) {
+		this.valid.set(position, valid);
+	}
+
+	/**
+	 * Returns the last valid position that doesn't follow the specified one
+	 *
+	 * @param position
+	 *            position in the rules chain
+	 * @return the last valid position not greater than <i>position</i>, 0 if
+	 *         there is none
+	 */
+	public int floor(int position) {
+		return Math.max(this.valid.previousSetBit(position), 0);
+	}
+
+	/**
+	 * Returns true if the values of the specified position are stored
+	 *
+	 * @param position
+	 *            position in the rules chain
+	 * @return true if the position is allocated
+	 */
+	public boolean isAllocated(int position) {
+		return position > 0 && position < this.levels.length && this.levels[position] != null;
+	}
+
+	/**
+	 * Allocates the specified position, so that the values of the files are
+	 * stored; a new position is not valid until it is set so
+	 *
+	 * @param position
+	 *            position in the rules chain, position 0 is ignored
+	 */
+	public void allocate(int position) {
+		if (position > 0 && this.levels[position] == null) {
+			this.levels[position] = new Level(this.filesCount);
+			this.valid.clear(position);
+		}
+	}
+
+	/**
+	 * Releases the values of the specified position
+	 *
+	 * @param position
+	 *            position in the rules chain
+	 */
+	public void release(int position) {
+		if (position > 0 && position < this.levels.length) {
+			this.levels[position] = null;
+			this.valid.clear(position);
+		}
+	}
+
+	/**
+	 * Stores the current name and extension of the file, if the position is
+	 * allocated
+	 *
+	 * @param position
+	 *            position in the rules chain of the next rule to apply to the
+	 *            file
+	 * @param index
+	 *            index of the file in the list
+	 * @param file
+	 *            file whose values to store
+	 */
+	public void store(int position, int index, FileModelItem file) {
+		if (isAllocated(position)) {
+			this.levels[position].store(index, file);
+		}
+	}
+
+	/**
+	 * Sets name and extension of the file to the values stored for the
+	 * specified position
+	 *
+	 * @param position
+	 *            position in the rules chain of the next rule to apply to the
+	 *            file, it must be allocated
+	 * @param index
+	 *            index of the file in the list
+	 * @param file
+	 *            file to update
+	 */
+	public void restore(int position, int index, FileModelItem file) {
+		this.levels[position].restore(index, file);
+	}
+
+	/** Values of all the files for a position, split in blocks */
+	private static final class Level {
+
+		/** Blocks of values, each one created when its first value is stored */
+		private final Block[] blocks;
+
+		/** Number of files */
+		private final int filesCount;
+
+		/**
+		 * Creates the storage of the specified number of files
+		 *
+		 * @param filesCount
+		 *            number of files
+		 */
+		public Level(int filesCount) {
+			this.blocks     = new Block[(filesCount + BLOCK_SIZE - 1) / BLOCK_SIZE];
+			this.filesCount = filesCount;
+		}
+
+		/**
+		 * Stores name and extension of the file
+		 *
+		 * @param index
+		 *            index of the file in the list
+		 * @param file
+		 *            file whose values to store
+		 */
+		public void store(int index, FileModelItem file) {
+			Block block = this.blocks[index / BLOCK_SIZE];
+			if (block == null) {
+				block = new Block(Math.min(this.filesCount - index / BLOCK_SIZE * BLOCK_SIZE, BLOCK_SIZE));
+				this.blocks[index / BLOCK_SIZE] = block;
+			}
+			block.store(index % BLOCK_SIZE, file);
+		}
+
+		/**
+		 * Sets name and extension of the file to the stored values
+		 *
+		 * @param index
+		 *            index of the file in the list
+		 * @param file
+		 *            file to update
+		 */
+		public void restore(int index, FileModelItem file) {
+			this.blocks[index / BLOCK_SIZE].restore(index % BLOCK_SIZE, file);
+		}
+	}
+
+	/** Values of a block of files, packed in a single array */
+	private static final class Block {
+
+		/** Names and extensions of the files */
+		private char[] chars;
+
+		/** Number of characters used */
+		private int charsLength;
+
+		/** Number of used characters no more referenced by any file */
+		private int unusedChars;
+
+		/** Index of the first character of the name of each file */
+		private final int[] starts;
+
+		/** Length of name and extension of each file */
+		private final int[] lengths;
+
+		/** Length of the name of each file, that is followed by the extension */
+		private final int[] nameLengths;
+
+		/**
+		 * Creates the storage of the specified number of files
+		 *
+		 * @param filesCount
+		 *            number of files of the block
+		 */
+		public Block(int filesCount) {
+			this.chars       = new char[filesCount * AVERAGE_NAME_LENGTH];
+			this.starts      = new int[filesCount];
+			this.lengths     = new int[filesCount];
+			this.nameLengths = new int[filesCount];
+		}
+
+		/**
+		 * Stores name and extension of the file, overwriting the previous
+		 * value if the new one fits in its range
+		 *
+		 * @param index
+		 *            index of the file in the block
+		 * @param file
+		 *            file whose values to store
+		 */
+		public void store(int index, FileModelItem file) {
+			int nameLength = file.getNameChars().length();
+			int length = nameLength + file.getExtensionChars().length();
+			if (length > this.lengths[index]) {
+				// append the value, the previous one is no more referenced
+				this.unusedChars += this.lengths[index];
+				this.lengths[index] = 0;
+				ensureCapacity(length);
+				this.starts[index] = this.charsLength;
+				this.charsLength += length;
+			} else {
+				this.unusedChars += this.lengths[index] - length;
+			}
+			file.getChars(this.chars, this.starts[index]);
+			this.lengths[index]     = length;
+			this.nameLengths[index] = nameLength;
+		}
+
+		/**
+		 * Sets name and extension of the file to the stored values
+		 *
+		 * @param index
+		 *            index of the file in the block
+		 * @param file
+		 *            file to update
+		 */
+		public void restore(int index, FileModelItem file) {
+			file.setChars(this.chars, this.starts[index], this.nameLengths[index], this.lengths[index] - this.nameLengths[index]);
+		}
+
+		/**
+		 * Makes room for the specified number of characters at the end of the
+		 * array: when it is full, the values are copied in a new array
+		 * without the characters no more referenced, leaving room for half of
+		 * the used ones
+		 *
+		 * @param length
+		 *            number of characters to append
+		 */
+		private void ensureCapacity(int length) {
+			if (this.charsLength + length <= this.chars.length) {
+				return;
+			}
+
+			int capacity = this.charsLength - this.unusedChars + length;
+			char[] chars = new char[capacity + (capacity >> 1)];
+			int charsLength = 0;
+			for (int i = 0; i < this.starts.length; i++) {
+				System.arraycopy(this.chars, this.starts[i], chars, charsLength, this.lengths[i]);
+				this.starts[i] = charsLength;
+				charsLength += this.lengths[i];
+			}
+			this.chars       = chars;
+			this.charsLength = charsLength;
+			this.unusedChars = 0;
+		}
+	}
+}
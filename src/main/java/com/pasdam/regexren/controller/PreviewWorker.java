@@ -0,0 +1,137 @@
+package com.pasdam.regexren.controller;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.pasdam.regexren.engine.CompiledRuleChain;
+
+/**
+ * <p>
+ * Worker that computes the preview of the new names in a dedicated background
+ * thread.
+ * </p>
+ * <p>
+ * Requests received within {@link #DEBOUNCE_DELAY} milliseconds are coalesced
+ * into a single preview; a newer request cancels the preview that is already
+ * running, which stops as soon as it checks its {@link CancellationSignal}.
+ * </p>
+ *
+ * @author paco
+ * @version 0.1
+ */
+class PreviewWorker {
+
+	/** Milliseconds to wait for further changes before starting a preview */
+	static final long DEBOUNCE_DELAY = 150;
+
+	/** Executor that runs the previews */
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "PreviewWorker");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/** Generation of the latest request: older tasks are cancelled */
+	private final AtomicLong generation = new AtomicLong();
+
+	/** Manager that computes and publishes the preview */
+	private final FilesListManager filesListManager;
+
+	/** Task waiting for the debounce delay, or null if there is no one */
+	private ScheduledFuture<?> pending;
+
+	/**
+	 * Creates a worker for the specified manager
+	 *
+	 * @param filesListManager
+	 *            manager that computes and publishes the preview
+	 */
+	public PreviewWorker(FilesListManager filesListManager) {
+		this.filesListManager = filesListManager;
+	}
+
+	/**
+	 * Schedules the preview of the specified rules, cancelling the previous
+	 * request
+	 *
+	 * @param rules
+	 *            chain of rules to preview
+	 */
+	public synchronized void schedule(CompiledRuleChain rules) {
+		PreviewTask task = new PreviewTask(this.generation.incrementAndGet(), rules);
+		if (this.pending != null) {
+			this.pending.cancel(false);
+		}
+		this.pending = this.executor.schedule(task, DEBOUNCE_DELAY, TimeUnit.MILLISECONDS);
+	}
+
+	/** Cancels the latest request, if not completed yet */
+	public synchronized void cancel() {
+		this.generation.incrementAndGet();
+		if (this.pending != null) {
+			this.pending.cancel(false);
+			this.pending = null;
+		}
+	}
+
+	/**
+	 * Marks the request of the specified generation as completed
+	 *
+	 * @param generation
+	 *            generation of the completed request
+	 */
+	private synchronized void completed(long generation) {
+		if (this.generation.get() == generation) {
+			this.pending = null;
+		}
+	}
+
+	/** Task that computes a preview, unless a newer request has been received */
+	private class PreviewTask implements Runnable, CancellationSignal {
+
+		/** Generation of the request */
+		private final long generation;
+
+		/** Chain of rules to preview */
+		private final CompiledRuleChain rules;
+
+		/**
+		 * Creates a task for the specified request
+		 *
+		 * @param generation
+		 *            generation of the request
+		 * @param rules
+		 *            chain of rules to preview
+		 */
+		public PreviewTask(long generation, CompiledRuleChain rules) {
+			this.generation = generation;
+			this.rules = rules;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return PreviewWorker.this.generation.get() != this.generation;
+		}
+
+		@Override
+		public void run() {
+			try {
+				if (!isCancelled()) {
+					PreviewWorker.this.filesListManager.preview(this.rules, this);
+				}
+			} catch (Exception e) {
+				if (LogManager.ENABLED) LogManager.error("PreviewWorker.run> Error computing preview: " + e.getMessage());
+			} finally {
+				completed(this.generation);
+			}
+		}
+	}
+}
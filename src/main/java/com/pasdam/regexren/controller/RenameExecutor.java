@@ -0,0 +1,673 @@
+package com.pasdam.regexren.controller;
+
+import java.io.File;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>
+ * Executor of a {@link RenamePlan}.
+ * </p>
+ * <p>
+ * On network file systems each rename is a round-trip to the server, so the
+ * chains of the plan are executed concurrently, with a bounded number of
+ * threads overall and a bounded number of concurrent renames in the same
+ * folder; the renames of a chain are executed in order, and the chain is
+ * stopped at the first failure: if the chain is a cycle, the renames already
+ * done are restored, so that no file is left with a temporary name. Files are
+ * moved with {@link Files#move}, that never replaces an existing file; since
+ * it does nothing when the target is the same file, a case-only rename on a
+ * case insensitive file system is done through a temporary name.
+ * </p>
+ * <p>
+ * The progress is notified in the calling thread, that waits for the whole
+ * plan to be executed; each move done or undone can be notified to a
+ * {@link MoveListener}, in the thread that executed it.
+ * </p>
+ *
+ * @author paco
+ * @version 0.1
+ */
+class RenameExecutor {
+
+	/** Default maximum number of concurrent renames */
+	static final int DEFAULT_PARALLELISM = 8;
+
+	/** Default maximum number of concurrent renames in the same folder */
+	static final int DEFAULT_FOLDER_PARALLELISM = 4;
+
+	/** Minimum number of renames for which the plan is executed concurrently */
+	static final int PARALLEL_THRESHOLD = 64;
+
+	/** Milliseconds between two progress notifications */
+	private static final long PROGRESS_INTERVAL = 250;
+
+	/** Maximum number of concurrent renames */
+	private final int parallelism;
+
+	/** Maximum number of concurrent renames in the same folder */
+	private final int folderParallelism;
+
+	/**
+	 * Creates an executor with the default parallelism
+	 */
+	public RenameExecutor() {
+		this(DEFAULT_PARALLELISM, DEFAULT_FOLDER_PARALLELISM);
+	}
+
+	/**
+	 * Creates an executor with the specified parallelism
+	 *
+	 * @param parallelism
+	 *            maximum number of concurrent renames
+	 * @param folderParallelism
+	 *            maximum number of concurrent renames in the same folder
+	 */
+	public RenameExecutor(int parallelism, int folderParallelism) {
+		this.parallelism       = Math.max(1, parallelism);
+		this.folderParallelism = Math.max(1, Math.min(parallelism, folderParallelism));
+	}
+
+	/**
+	 * Executes the plan, waiting for all the renames to complete; the result
+	 * of each rename is stored in its {@link RenameStep}
+	 *
+	 * @param plan
+	 *            plan to execute
+	 * @param listener
+	 *            listener to notify periodically about the progress, it may
+	 *            be null
+	 * @return the number of renames completed, including the moves to and
+	 *         from the temporary names
+	 */
+	public int execute(RenamePlan plan, ProgressListener listener) {
+		return execute(plan, listener, null);
+	}
+
+	/**
+	 * Executes the plan, waiting for all the renames to complete; the result
+	 * of each rename is stored in its {@link RenameStep}
+	 *
+	 * @param plan
+	 *            plan to execute
+	 * @param listener
+	 *            listener to notify periodically about the progress, it may
+	 *            be null
+	 * @param moveListener
+	 *            listener to notify about each move done or undone, it may be
+	 *            null
+	 * @return the number of renames completed, including the moves to and
+	 *         from the temporary names
+	 */
+	public int execute(RenamePlan plan, ProgressListener listener, final MoveListener moveListener) {
+		final Progress progress = new Progress(plan.size(), listener);
+		run(split(plan), plan.size(), new LaneTask() {
+
+			@Override
+			public void run(Lane lane) {
+				lane.run(progress, null, moveListener);
+			}
+		}, progress);
+
+		plan.completed();
+		progress.notifyListener();
+		return plan.getDoneCount();
+	}
+
+	/**
+	 * Executes a {@link RenamePlan#stage() staged} plan as a transaction: the
+	 * staging folders are created, then each chain moves its files to the
+	 * staging folder, with atomic moves, and from there to their targets;
+	 * chains are executed concurrently as by
+	 * {@link #execute(RenamePlan, ProgressListener)}. If any move fails, the
+	 * other chains are stopped and all the moves done are restored. The
+	 * staging folders are deleted at the end.
+	 *
+	 * @param plan
+	 *            staged plan to execute
+	 * @param listener
+	 *            listener to notify periodically about the progress, it may
+	 *            be null
+	 * @return true if all files have been renamed, false if the transaction
+	 *         has been rolled back
+	 */
+	public boolean executeTransaction(RenamePlan plan, ProgressListener listener) {
+		return executeTransaction(plan, listener, null);
+	}
+
+	/**
+	 * Executes a {@link RenamePlan#stage() staged} plan as a transaction, as
+	 * by {@link #executeTransaction(RenamePlan, ProgressListener)}
+	 *
+	 * @param plan
+	 *            staged plan to execute
+	 * @param listener
+	 *            listener to notify periodically about the progress, it may
+	 *            be null
+	 * @param moveListener
+	 *            listener to notify about each move done or undone, it may be
+	 *            null
+	 * @return true if all files have been renamed, false if the transaction
+	 *         has been rolled back
+	 */
+	public boolean executeTransaction(RenamePlan plan, ProgressListener listener, final MoveListener moveListener) {
+		final Progress progress = new Progress(plan.size(), listener);
+		final Transaction transaction = new Transaction(plan.getStagingFolders());
+		List<Lane> lanes = split(plan);
+
+		// create the staging folders
+		List<File> createdFolders = new ArrayList<File>(plan.getStagingFolders().size());
+		try {
+			for (File folder : plan.getStagingFolders()) {
+				Files.createDirectory(folder.toPath());
+				createdFolders.add(folder);
+			}
+		} catch (Exception e) {
+			if (LogManager.ENABLED) LogManager.warning("RenameExecutor.executeTransaction> Unable to create the staging folder: " + e);
+			transaction.fail(e);
+		}
+
+		if (!transaction.isFailed()) {
+			run(lanes, plan.size(), new LaneTask() {
+
+				@Override
+				public void run(Lane lane) {
+					lane.run(progress, transaction, moveListener);
+				}
+			}, progress);
+		}
+
+		final Exception failure = transaction.getFailure();
+		if (failure != null) {
+			// restore the original names
+			if (moveListener != null) {
+				moveListener.rollbackStarted();
+			}
+			run(lanes, plan.size(), new LaneTask() {
+
+				@Override
+				public void run(Lane lane) {
+					lane.rollback(failure, moveListener);
+				}
+			}, null);
+		}
+
+		// the staging folders are empty, unless some move couldn't be restored
+		for (File folder : createdFolders) {
+			try {
+				Files.delete(folder.toPath());
+			} catch (Exception e) {
+				if (LogManager.ENABLED) LogManager.error("RenameExecutor.executeTransaction> Unable to delete the staging folder " + folder + ": " + e);
+			}
+		}
+
+		plan.completed();
+		progress.notifyListener();
+		return failure == null;
+	}
+
+	/**
+	 * Runs the task on each lane, concurrently if the plan is large enough,
+	 * and waits for all of them to complete
+	 *
+	 * @param lanes
+	 *            lanes to process
+	 * @param size
+	 *            total number of renames of the lanes
+	 * @param task
+	 *            task to run on each lane
+	 * @param progress
+	 *            progress to notify while waiting, it may be null
+	 */
+	private void run(List<Lane> lanes, int size, final LaneTask task, Progress progress) {
+		if (lanes.size() == 1 || size < PARALLEL_THRESHOLD) {
+			for (Lane lane : lanes) {
+				task.run(lane);
+			}
+
+		} else {
+			ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.parallelism, lanes.size()), new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "RenameExecutor");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			final CountDownLatch latch = new CountDownLatch(lanes.size());
+			try {
+				for (final Lane lane : lanes) {
+					executor.execute(new Runnable() {
+
+						@Override
+						public void run() {
+							try {
+								task.run(lane);
+							} finally {
+								latch.countDown();
+							}
+						}
+					});
+				}
+				await(latch, progress);
+
+			} finally {
+				executor.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Waits for the lanes to complete, notifying the progress periodically;
+	 * the renames can't be interrupted, so an interruption is restored only
+	 * at the end
+	 *
+	 * @param latch
+	 *            latch released by each completed lane
+	 * @param progress
+	 *            progress to notify, it may be null
+	 */
+	private static void await(CountDownLatch latch, Progress progress) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				if (latch.await(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS)) {
+					break;
+				}
+				if (progress != null) {
+					progress.notifyListener();
+				}
+
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Splits the chains of the plan in lanes, executed concurrently: the
+	 * chains of each folder are distributed among at most
+	 * {@link #folderParallelism} lanes
+	 *
+	 * @param plan
+	 *            plan to split
+	 * @return the lanes of the plan
+	 */
+	private List<Lane> split(RenamePlan plan) {
+		List<Lane> lanes = new ArrayList<Lane>();
+		Map<File, Lane[]> folderLanes = new HashMap<File, Lane[]>();
+		Map<File, Integer> folderCounts = new HashMap<File, Integer>();
+		File folder;
+		Lane[] current;
+		Integer count;
+		int index;
+
+		for (List<RenameStep> chain : plan.getChains()) {
+			if (chain.isEmpty()) {
+				continue;
+			}
+			folder = chain.get(0).getSource().getParentFile();
+			current = folderLanes.get(folder);
+			if (current == null) {
+				current = new Lane[this.folderParallelism];
+				folderLanes.put(folder, current);
+			}
+
+			// round robin among the lanes of the folder
+			count = folderCounts.get(folder);
+			index = count != null ? count.intValue() : 0;
+			folderCounts.put(folder, index + 1);
+			index %= current.length;
+			if (current[index] == null) {
+				current[index] = new Lane();
+				lanes.add(current[index]);
+			}
+			current[index].chains.add(chain);
+		}
+		return lanes;
+	}
+
+	/**
+	 * Renames a file
+	 *
+	 * @param step
+	 *            rename to execute, updated with its result
+	 * @param atomic
+	 *            true if the move must be atomic
+	 * @return true if the file has been renamed
+	 */
+	private static boolean move(RenameStep step, boolean atomic) {
+		try {
+			Path source = step.getSource().toPath();
+			Path target = step.getTarget().toPath();
+			if (atomic) {
+				Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+			} else if (!source.equals(target) && Files.exists(target) && Files.isSameFile(source, target)) {
+				moveThroughTemporary(source, target);
+			} else {
+				Files.move(source, target);
+			}
+			step.setDone();
+			return true;
+
+		} catch (Exception e) {
+			if (LogManager.ENABLED) LogManager.warning("RenameExecutor.move> Unable to rename " + step + ": " + e);
+			step.setError(e);
+			return false;
+		}
+	}
+
+	/**
+	 * Moves a file to a different path of the same file, as the one of a
+	 * case-only rename on a case insensitive file system: the file is moved to
+	 * a temporary name first, and restored if it can't be moved to the target;
+	 * if the target still exists it is another link to the file, that is not
+	 * replaced
+	 *
+	 * @param source
+	 *            file to move
+	 * @param target
+	 *            new path of the file
+	 * @throws Exception
+	 *             if the file can't be moved
+	 */
+	private static void moveThroughTemporary(Path source, Path target) throws Exception {
+		Path temporary = source.resolveSibling(RenamePlan.TEMPORARY_PREFIX + RenamePlan.newToken());
+		Files.move(source, temporary);
+		try {
+			if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+				throw new FileAlreadyExistsException(target.toString());
+			}
+			Files.move(temporary, target);
+
+		} catch (Exception e) {
+			try {
+				Files.move(temporary, source);
+			} catch (Exception restoreError) {
+				if (LogManager.ENABLED) LogManager.error("RenameExecutor.moveThroughTemporary> Unable to restore " + source + " from " + temporary + ": " + restoreError);
+			}
+			throw e;
+		}
+	}
+
+	/** Sequence of chains executed by the same thread */
+	private static class Lane {
+
+		/** Chains of the lane */
+		private final List<List<RenameStep>> chains = new ArrayList<List<RenameStep>>();
+
+		/**
+		 * Executes the chains of the lane, in order
+		 *
+		 * @param progress
+		 *            progress to update
+		 * @param transaction
+		 *            transaction the plan belongs to, or null if the plan is
+		 *            not executed as a transaction
+		 * @param moveListener
+		 *            listener to notify about each move done or undone, it
+		 *            may be null
+		 */
+		public void run(Progress progress, Transaction transaction, MoveListener moveListener) {
+			for (List<RenameStep> chain : this.chains) {
+				int i = 0;
+				RenameStep step;
+				while (i < chain.size()) {
+					step = chain.get(i);
+					if (transaction != null && transaction.isFailed()
+							|| !move(step, transaction != null && transaction.isStaging(step))) {
+						break;
+					}
+					i++;
+					if (moveListener != null) {
+						moveListener.chainMoved(chain, i);
+					}
+				}
+
+				if (i < chain.size()) {
+					// the following renames depend on the failed one
+					Exception cause = chain.get(i).getError();
+					Exception error;
+					if (cause != null) {
+						error = new IllegalStateException("Rename of " + chain.get(i).getSource() + " failed");
+						i++;
+						if (transaction != null) {
+							transaction.fail(cause);
+						}
+					} else {
+						error = new IllegalStateException("Transaction failed");
+					}
+					for (int j = i; j < chain.size(); j++) {
+						chain.get(j).setError(error);
+					}
+
+					if (transaction == null && RenamePlan.isCycle(chain)) {
+						// a file of the cycle has a temporary name: restore
+						// the renames already done, in reverse order
+						i--;
+						while (--i >= 0 && move(chain.get(i).inverse(), false)) {
+							chain.get(i).setError(cause);
+							if (moveListener != null) {
+								moveListener.chainMoved(chain, i);
+							}
+						}
+					}
+				}
+				progress.add(chain.size());
+			}
+		}
+
+		/**
+		 * Restores the renames done by the chains of the lane, in reverse
+		 * order; a chain is stopped at the first rename that can't be
+		 * restored
+		 *
+		 * @param cause
+		 *            error that caused the rollback
+		 * @param moveListener
+		 *            listener to notify about each move undone, it may be null
+		 */
+		public void rollback(Exception cause, MoveListener moveListener) {
+			RenameStep step;
+			for (List<RenameStep> chain : this.chains) {
+				for (int i = chain.size() - 1; i >= 0; i--) {
+					step = chain.get(i);
+					if (step.isDone()) {
+						if (!move(step.inverse(), false)) {
+							if (LogManager.ENABLED) LogManager.error("RenameExecutor.rollback> Unable to restore " + step);
+							break;
+						}
+						step.setError(cause);
+						if (moveListener != null) {
+							moveListener.chainMoved(chain, i);
+						}
+
+					} else if (step.getError() == null) {
+						// not executed
+						step.setError(cause);
+					}
+				}
+			}
+		}
+	}
+
+	/** Task executed on each lane */
+	private interface LaneTask {
+
+		/**
+		 * Processes the specified lane
+		 *
+		 * @param lane
+		 *            lane to process
+		 */
+		public void run(Lane lane);
+	}
+
+	/** State of a plan executed as a transaction */
+	private static class Transaction {
+
+		/** Staging folders of the plan */
+		private final Set<File> stagingFolders;
+
+		/** First error occurred, or null if all moves succeeded */
+		private final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+
+		/**
+		 * Creates the state of a transaction
+		 *
+		 * @param stagingFolders
+		 *            staging folders of the plan
+		 */
+		public Transaction(Set<File> stagingFolders) {
+			this.stagingFolders = stagingFolders;
+		}
+
+		/**
+		 * Returns true if the specified move is to a staging folder
+		 *
+		 * @param step
+		 *            move to check
+		 * @return true if the move is to a staging folder
+		 */
+		public boolean isStaging(RenameStep step) {
+			return this.stagingFolders.contains(step.getTarget().getParentFile());
+		}
+
+		/**
+		 * Records the specified error, if it is the first one
+		 *
+		 * @param error
+		 *            error occurred
+		 */
+		public void fail(Exception error) {
+			this.failure.compareAndSet(null, error);
+		}
+
+		/**
+		 * Returns true if a move failed
+		 *
+		 * @return true if a move failed
+		 */
+		public boolean isFailed() {
+			return this.failure.get() != null;
+		}
+
+		/**
+		 * Returns the first error occurred
+		 *
+		 * @return the first error occurred, or null if all moves succeeded
+		 */
+		public Exception getFailure() {
+			return this.failure.get();
+		}
+	}
+
+	/** Progress of the execution of a plan */
+	private static class Progress {
+
+		/** Number of renames processed */
+		private final AtomicInteger completed = new AtomicInteger();
+
+		/** Total number of renames */
+		private final int total;
+
+		/** Listener to notify, it may be null */
+		private final ProgressListener listener;
+
+		/** Start time of the execution, in nanoseconds */
+		private final long startTime = System.nanoTime();
+
+		/**
+		 * Creates the progress of a plan
+		 *
+		 * @param total
+		 *            total number of renames
+		 * @param listener
+		 *            listener to notify, it may be null
+		 */
+		public Progress(int total, ProgressListener listener) {
+			this.total    = total;
+			this.listener = listener;
+		}
+
+		/**
+		 * Adds the specified number of processed renames
+		 *
+		 * @param count
+		 *            number of renames processed
+		 */
+		public void add(int count) {
+			this.completed.addAndGet(count);
+		}
+
+		/** Notifies the listener with the current progress */
+		public void notifyListener() {
+			if (this.listener != null) {
+				int completed = this.completed.get();
+				double seconds = (System.nanoTime() - this.startTime) / 1e9;
+				this.listener.renameProgress(completed, this.total, seconds > 0 ? completed / seconds : 0);
+			}
+		}
+	}
+
+	/** Interface implemented by objects notified about the rename progress */
+	public interface ProgressListener {
+
+		/**
+		 * Invoked periodically while the plan is executed, and once when it
+		 * is completed
+		 *
+		 * @param completed
+		 *            number of renames processed, successfully or not
+		 * @param total
+		 *            total number of renames
+		 * @param throughput
+		 *            average number of renames processed per second
+		 */
+		public void renameProgress(int completed, int total, double throughput);
+	}
+
+	/**
+	 * Interface implemented by objects notified about each move of the
+	 * chains, as the journal that records the progress of the plan
+	 */
+	public interface MoveListener {
+
+		/**
+		 * Invoked after a move of the chain has been done or undone, in the
+		 * thread that executed it; the moves of a chain are done in order and
+		 * undone in reverse order, so the ones done are always the first ones
+		 *
+		 * @param chain
+		 *            chain of the move, as returned by
+		 *            {@link RenamePlan#getChains()}
+		 * @param position
+		 *            number of moves of the chain that are done
+		 */
+		public void chainMoved(List<RenameStep> chain, int position);
+
+		/**
+		 * Invoked when a transaction failed, before its moves are undone
+		 */
+		public void rollbackStarted();
+	}
+}
@@ -0,0 +1,626 @@
+package com.pasdam.regexren.controller;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Append-only journal of the renames, used to complete a batch of renames
+ * interrupted by a crash.
+ * </p>
+ * <p>
+ * Before a plan is executed, all its moves are appended to the journal and
+ * synced to the disk at once, then a commit record with the number of moves is
+ * appended and synced: a batch is executed only after its commit record is on
+ * the disk. While the plan is executed, the journal is notified about each
+ * move as a {@link RenameExecutor.MoveListener}, and appends a progress
+ * record with the number of moves of the chain that are done, without
+ * syncing it; a rollback record is appended and synced before the moves of
+ * a failed transaction are undone. When the plan has been executed, an end
+ * record is appended. A batch without commit record, or whose number of
+ * moves doesn't match, was never executed and is ignored.
+ * </p>
+ * <p>
+ * If the application terminates while a plan is executed, the journal ends
+ * with a committed batch without end record: {@link #recover(RenameExecutor)}
+ * replays it, executing the moves of each chain after the ones recorded as
+ * done; an interrupted transaction is completed too, rather than rolled back,
+ * unless its rollback had already started. The state of the files can't
+ * tell where a chain stopped, since the names freed by a move are taken again
+ * by the following ones, as in a cycle or in a staged chain: it is used only
+ * to find the moves done after the last progress record that reached the
+ * disk.
+ * </p>
+ * <p>
+ * The journal is a UTF-8 text file, with one record per line and the fields
+ * separated by tabs; backslashes, tabs and line breaks of the paths are
+ * escaped:
+ * </p>
+ * <pre>
+ * B	id			beginning of a batch
+ * M	chain	source	target	move, in the order of its chain
+ * C	id	count		commit of the batch, with its number of moves
+ * P	chain	position	number of moves of the chain that are done
+ * R	id			rollback of the batch
+ * E	id			end of the batch
+ * </pre>
+ * <p>
+ * A record is complete only if it is followed by a line break, so a last line
+ * truncated by a crash is ignored, and it is terminated before appending the
+ * next record.
+ * </p>
+ * <p>
+ * Only the last batch can be pending, so the journal is truncated when a new
+ * batch begins, if it exceeds {@link #MAX_SIZE} bytes.
+ * </p>
+ *
+ * @author paco
+ * @version 0.1
+ */
+class RenameJournal implements RenameExecutor.MoveListener {
+
+	/** Size beyond which the journal is truncated when a new batch begins */
+	static final long MAX_SIZE = 16L << 20;
+
+	// Record types
+	private static final char RECORD_BEGIN    = 'B';
+	private static final char RECORD_MOVE     = 'M';
+	private static final char RECORD_COMMIT   = 'C';
+	private static final char RECORD_PROGRESS = 'P';
+	private static final char RECORD_ROLLBACK = 'R';
+	private static final char RECORD_END      = 'E';
+
+	/** Charset of the journal */
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+	/** Journal file */
+	private final File file;
+
+	/** Identifier of the next batch */
+	private long nextId = System.currentTimeMillis();
+
+	/** Identifier of the batch being executed */
+	private long batchId;
+
+	/** Channel of the batch being executed, or null if no batch is open */
+	private FileChannel channel;
+
+	/** Writer of the records of the batch being executed */
+	private Writer writer;
+
+	/**
+	 * Chains of the batch being executed: index of the chain in the journal,
+	 * moves done before the first one of the chain, and 1, or -1 if the chain
+	 * undoes the moves in reverse order
+	 */
+	private Map<List<RenameStep>, int[]> chains;
+
+	/**
+	 * Creates a journal stored in the specified file
+	 *
+	 * @param file
+	 *            journal file
+	 */
+	public RenameJournal(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Appends the moves of the plan to the journal, followed by the commit
+	 * record of the batch, syncing both to the disk; the journal is kept open
+	 * to record the progress of the plan, until the batch is
+	 * {@link #end(long) ended}
+	 *
+	 * @param plan
+	 *            plan going to be executed
+	 * @return the identifier of the batch, or -1 if the journal can't be
+	 *         written
+	 */
+	public synchronized long begin(RenamePlan plan) {
+		close();
+		long id = this.nextId++;
+		boolean truncate = this.file.length() > MAX_SIZE;
+		try {
+			FileChannel channel = open(truncate);
+			try {
+				Writer writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), CHARSET), 1 << 16);
+				writer.write(RECORD_BEGIN + "\t" + id + "\n");
+
+				Map<List<RenameStep>, int[]> chains = new IdentityHashMap<List<RenameStep>, int[]>(plan.getChains().size() * 2);
+				int chainIndex = 0;
+				int movesCount = 0;
+				for (List<RenameStep> chain : plan.getChains()) {
+					chains.put(chain, new int[] { chainIndex, 0, 1 });
+					for (RenameStep step : chain) {
+						writer.write(RECORD_MOVE);
+						writer.write('\t');
+						writer.write(Integer.toString(chainIndex));
+						writer.write('\t');
+						writeEscaped(writer, step.getSource().getPath());
+						writer.write('\t');
+						writeEscaped(writer, step.getTarget().getPath());
+						writer.write('\n');
+						movesCount++;
+					}
+					chainIndex++;
+				}
+				writer.flush();
+
+				// a single sync for all the moves, that must be on the disk
+				// before the commit record
+				channel.force(false);
+
+				writer.write(RECORD_COMMIT + "\t" + id + "\t" + movesCount + "\n");
+				writer.flush();
+				channel.force(false);
+
+				this.batchId = id;
+				this.channel = channel;
+				this.writer  = writer;
+				this.chains  = chains;
+
+			} finally {
+				if (this.channel != channel) {
+					channel.close();
+				}
+			}
+			return id;
+
+		} catch (IOException e) {
+			if (LogManager.ENABLED) LogManager.warning("RenameJournal.begin> Unable to write the journal " + this.file + ": " + e.getMessage());
+			return -1;
+		}
+	}
+
+	/**
+	 * Appends the progress record of the chain, without syncing it: after a
+	 * crash the last records may be lost, and the moves they record are found
+	 * through the state of the files
+	 */
+	@Override
+	public synchronized void chainMoved(List<RenameStep> chain, int position) {
+		int[] chainInfo = this.chains != null ? this.chains.get(chain) : null;
+		if (chainInfo != null) {
+			write(RECORD_PROGRESS + "\t" + chainInfo[0] + "\t" + (chainInfo[1] + chainInfo[2] * position) + "\n", false);
+		}
+	}
+
+	/**
+	 * Appends the rollback record of the batch, syncing it to the disk: after
+	 * a crash the rollback is completed, rather than the batch
+	 */
+	@Override
+	public synchronized void rollbackStarted() {
+		if (this.chains != null) {
+			write(RECORD_ROLLBACK + "\t" + this.batchId + "\n", true);
+		}
+	}
+
+	/**
+	 * Appends the end record of the specified batch, that has been executed
+	 *
+	 * @param id
+	 *            identifier of the batch, as returned by
+	 *            {@link #begin(RenamePlan)}; nothing is written if it is
+	 *            negative
+	 */
+	public synchronized void end(long id) {
+		if (id < 0) {
+			return;
+		}
+		try {
+			if (this.channel == null) {
+				this.channel = open(false);
+				this.writer  = new OutputStreamWriter(Channels.newOutputStream(this.channel), CHARSET);
+			}
+			this.writer.write(RECORD_END + "\t" + id + "\n");
+			this.writer.flush();
+			this.channel.force(false);
+
+		} catch (IOException e) {
+			if (LogManager.ENABLED) LogManager.warning("RenameJournal.end> Unable to write the journal " + this.file + ": " + e.getMessage());
+
+		} finally {
+			close();
+		}
+	}
+
+	/**
+	 * Closes the journal without ending the batch being executed, as a crash
+	 * does: the batch is replayed by {@link #recover(RenameExecutor)}
+	 */
+	synchronized void close() {
+		if (this.channel != null) {
+			try {
+				this.channel.close();
+			} catch (IOException e) {
+				if (LogManager.ENABLED) LogManager.warning("RenameJournal.close> Unable to close the journal " + this.file + ": " + e.getMessage());
+			}
+		}
+		this.channel = null;
+		this.writer  = null;
+		this.chains  = null;
+	}
+
+	/**
+	 * Replays the last batch of the journal, if it was committed and
+	 * interrupted: in each chain the moves after the ones recorded as done are
+	 * executed, or, if the batch was being rolled back, the moves recorded as
+	 * done are undone in reverse order
+	 *
+	 * @param executor
+	 *            executor of the moves
+	 * @return the number of moves executed, or -1 if no batch was pending
+	 */
+	public int recover(RenameExecutor executor) {
+		close();
+		if (!this.file.isFile()) {
+			return -1;
+		}
+
+		// read the last batch without end record
+		long pendingId = -1;
+		Map<Integer, List<RenameStep>> chains = null;
+		Map<Integer, Integer> positions = null;
+		int movesCount = 0;
+		boolean committed = false;
+		boolean rollback = false;
+		try {
+			Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(this.file), CHARSET), 1 << 16);
+			try {
+				StringBuilder builder = new StringBuilder(256);
+				String line;
+				String[] fields;
+				List<RenameStep> chain;
+				Integer chainIndex;
+				while (readLine(reader, builder)) {
+					line = builder.toString();
+					fields = line.split("\t", -1);
+					try {
+						if (line.length() == 0) {
+							continue;
+
+						} else if (line.charAt(0) == RECORD_BEGIN && fields.length == 2) {
+							pendingId  = Long.parseLong(fields[1]);
+							chains     = new LinkedHashMap<Integer, List<RenameStep>>();
+							positions  = new HashMap<Integer, Integer>();
+							movesCount = 0;
+							committed  = false;
+							rollback   = false;
+
+						} else if (line.charAt(0) == RECORD_MOVE && fields.length == 4 && chains != null && !committed) {
+							chainIndex = Integer.valueOf(fields[1]);
+							chain = chains.get(chainIndex);
+							if (chain == null) {
+								chain = new ArrayList<RenameStep>(1);
+								chains.put(chainIndex, chain);
+							}
+							chain.add(new RenameStep(-1, new File(unescape(fields[2])), new File(unescape(fields[3]))));
+							movesCount++;
+
+						} else if (line.charAt(0) == RECORD_COMMIT && fields.length == 3 && chains != null
+								&& Long.parseLong(fields[1]) == pendingId && Integer.parseInt(fields[2]) == movesCount) {
+							committed = true;
+
+						} else if (line.charAt(0) == RECORD_PROGRESS && fields.length == 3 && chains != null && committed
+								&& chains.containsKey(chainIndex = Integer.valueOf(fields[1]))) {
+							positions.put(chainIndex, Integer.valueOf(fields[2]));
+
+						} else if (line.charAt(0) == RECORD_ROLLBACK && fields.length == 2 && committed
+								&& Long.parseLong(fields[1]) == pendingId) {
+							rollback = true;
+
+						} else if (line.charAt(0) == RECORD_END && fields.length == 2 && Long.parseLong(fields[1]) == pendingId) {
+							chains = null;
+						}
+
+					} catch (NumberFormatException e) {
+						// a corrupted record doesn't match its batch
+						if (LogManager.ENABLED) LogManager.warning("RenameJournal.recover> Invalid record: " + line);
+					}
+				}
+
+			} finally {
+				reader.close();
+			}
+
+		} catch (IOException e) {
+			if (LogManager.ENABLED) LogManager.warning("RenameJournal.recover> Unable to read the journal " + this.file + ": " + e.getMessage());
+			return -1;
+		}
+
+		if (chains == null || !committed) {
+			return -1;
+		}
+
+		// the moves to execute, recorded as the ones of the pending batch
+		List<List<RenameStep>> remaining = new ArrayList<List<RenameStep>>(chains.size());
+		Map<List<RenameStep>, int[]> remainingInfo = new IdentityHashMap<List<RenameStep>, int[]>(chains.size() * 2);
+		List<RenameStep> chain;
+		List<RenameStep> moves;
+		Integer position;
+		int done;
+		for (Map.Entry<Integer, List<RenameStep>> entry : chains.entrySet()) {
+			chain = entry.getValue();
+			position = positions.get(entry.getKey());
+			done = findDone(chain, position != null ? Math.max(0, Math.min(position.intValue(), chain.size())) : 0);
+
+			if (rollback) {
+				if (done > 0) {
+					moves = new ArrayList<RenameStep>(done);
+					for (int i = done - 1; i >= 0; i--) {
+						moves.add(chain.get(i).inverse());
+					}
+					remaining.add(moves);
+					remainingInfo.put(moves, new int[] { entry.getKey().intValue(), done, -1 });
+				}
+
+			} else if (done < chain.size()) {
+				moves = chain.subList(done, chain.size());
+				remaining.add(moves);
+				remainingInfo.put(moves, new int[] { entry.getKey().intValue(), done, 1 });
+			}
+		}
+
+		if (LogManager.ENABLED) LogManager.info("RenameJournal.recover> " + (rollback ? "Rolling back " : "Replaying ") + remaining.size() + " chains of the interrupted batch " + pendingId);
+		resume(pendingId, remainingInfo);
+		int executed = executor.execute(RenamePlan.fromChains(remaining), null, this);
+
+		// remove the staging folders of an interrupted transaction, if empty
+		File folder;
+		for (List<RenameStep> steps : chains.values()) {
+			for (RenameStep step : steps) {
+				folder = step.getTarget().getParentFile();
+				if (folder != null && folder.getName().startsWith(RenamePlan.STAGING_PREFIX)) {
+					folder.delete();
+				}
+			}
+		}
+		end(pendingId);
+		return executed;
+	}
+
+	/**
+	 * Returns the number of moves of the chain that are done, from the number
+	 * recorded in the journal: the moves done or undone after the last record
+	 * that reached the disk are found through the state of the files, since
+	 * the source of the next move is freed only when it is done
+	 *
+	 * @param chain
+	 *            moves of the chain, in order
+	 * @param position
+	 *            number of moves recorded as done
+	 * @return the number of moves of the chain that are done
+	 */
+	private static int findDone(List<RenameStep> chain, int position) {
+		RenameStep step;
+		while (position < chain.size()) {
+			step = chain.get(position);
+			if (exists(step.getSource()) || !exists(step.getTarget())) {
+				break;
+			}
+			position++;
+		}
+		while (position > 0) {
+			step = chain.get(position - 1);
+			if (!exists(step.getSource()) || exists(step.getTarget())) {
+				break;
+			}
+			position--;
+		}
+		return position;
+	}
+
+	/**
+	 * Returns true if the specified file exists, without following the
+	 * symbolic links
+	 *
+	 * @param file
+	 *            file to check
+	 * @return true if the file exists
+	 */
+	private static boolean exists(File file) {
+		return Files.exists(file.toPath(), LinkOption.NOFOLLOW_LINKS);
+	}
+
+	/**
+	 * Opens the journal to record the progress of the replay of the pending
+	 * batch
+	 *
+	 * @param id
+	 *            identifier of the pending batch
+	 * @param chains
+	 *            chains to replay, with their index and position in the batch
+	 */
+	private synchronized void resume(long id, Map<List<RenameStep>, int[]> chains) {
+		try {
+			this.channel = open(false);
+			this.writer  = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(this.channel), CHARSET), 1 << 12);
+			this.batchId = id;
+			this.chains  = chains;
+
+		} catch (IOException e) {
+			if (LogManager.ENABLED) LogManager.warning("RenameJournal.resume> Unable to write the journal " + this.file + ": " + e.getMessage());
+			close();
+		}
+	}
+
+	/**
+	 * Appends a record of the batch being executed; if it can't be written,
+	 * the journal is closed and the progress of the batch is no more recorded
+	 *
+	 * @param record
+	 *            record to append, with its line break
+	 * @param force
+	 *            true to sync the record to the disk
+	 */
+	private void write(String record, boolean force) {
+		try {
+			this.writer.write(record);
+			this.writer.flush();
+			if (force) {
+				this.channel.force(false);
+			}
+
+		} catch (IOException e) {
+			if (LogManager.ENABLED) LogManager.warning("RenameJournal.write> Unable to write the journal " + this.file + ": " + e.getMessage());
+			close();
+		}
+	}
+
+	/**
+	 * Opens the journal file for appending; if its last record has been
+	 * truncated by a crash, it is terminated, so that it is not joined with
+	 * the next one
+	 *
+	 * @param truncate
+	 *            true to discard the current content
+	 * @return the channel of the journal
+	 * @throws IOException
+	 *             if the file can't be opened
+	 */
+	private FileChannel open(boolean truncate) throws IOException {
+		FileChannel channel = truncate
+				? FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+				: FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			channel.position(size);
+			if (size > 0) {
+				ByteBuffer buffer = ByteBuffer.allocate(1);
+				channel.read(buffer, size - 1);
+				if (buffer.get(0) != '\n') {
+					buffer.clear();
+					buffer.put((byte) '\n');
+					buffer.flip();
+					channel.write(buffer);
+				}
+			}
+			return channel;
+
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the next record of the journal, i.e. the characters up to the
+	 * next line break; the characters that are not followed by a line break
+	 * are ignored
+	 *
+	 * @param reader
+	 *            reader of the journal
+	 * @param line
+	 *            builder where the record is stored, without line break
+	 * @return true if a record has been read, false if the end of the
+	 *         journal has been reached
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	private static boolean readLine(Reader reader, StringBuilder line) throws IOException {
+		line.setLength(0);
+		int c;
+		while ((c = reader.read()) >= 0) {
+			if (c == '\n') {
+				return true;
+			}
+			line.append((char) c);
+		}
+		return false;
+	}
+
+	/**
+	 * Writes the specified path, escaping backslashes, tabs and line breaks
+	 *
+	 * @param writer
+	 *            writer of the journal
+	 * @param path
+	 *            path to write
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	private static void writeEscaped(Writer writer, String path) throws IOException {
+		char c;
+		for (int i = 0; i < path.length(); i++) {
+			c = path.charAt(i);
+			switch (c) {
+				case '\\':
+					writer.write("\\\\");
+					break;
+
+				case '\t':
+					writer.write("\\t");
+					break;
+
+				case '\n':
+					writer.write("\\n");
+					break;
+
+				case '\r':
+					writer.write("\\r");
+					break;
+
+				default:
+					writer.write(c);
+			}
+		}
+	}
+
+	/**
+	 * Restores the characters escaped by {@link #writeEscaped(Writer, String)}
+	 *
+	 * @param value
+	 *            escaped path
+	 * @return the original path
+	 */
+	private static String unescape(String value) {
+		if (value.indexOf('\\') < 0) {
+			return value;
+		}
+
+		StringBuilder builder = new StringBuilder(value.length());
+		char c;
+		for (int i = 0; i < value.length(); i++) {
+			c = value.charAt(i);
+			if (c == '\\' && i + 1 < value.length()) {
+				c = value.charAt(++i);
+				switch (c) {
+					case 't':
+						c = '\t';
+						break;
+
+					case 'n':
+						c = '\n';
+						break;
+
+					case 'r':
+						c = '\r';
+						break;
+				}
+			}
+			builder.append(c);
+		}
+		return builder.toString();
+	}
+}
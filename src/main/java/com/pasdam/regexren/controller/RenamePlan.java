@@ -0,0 +1,436 @@
+package com.pasdam.regexren.controller;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * Ordered plan of a batch of renames.
+ * </p>
+ * <p>
+ * The renames are grouped in chains: when the target of a file is the current
+ * name of another file of the batch, the other file must be renamed first,
+ * so they belong to the same chain, ordered accordingly. Renames of
+ * different chains are independent, so chains can be executed concurrently,
+ * while the renames of a chain must be executed in order.
+ * </p>
+ * <p>
+ * Renames that form a cycle, as a swap of two names or the shift of a counter
+ * of all the files, are grouped in a chain too: the cycle is broken moving
+ * its first file to a unique temporary name, then to its target after all the
+ * other files of the cycle. The result of the original rename is set when the
+ * plan is {@link #completed() completed}.
+ * </p>
+ * <p>
+ * A transactional plan is {@link #stage() staged} before being executed:
+ * each file is moved to a staging folder before being moved to its target,
+ * so its cycles are not broken.
+ * </p>
+ * <p>
+ * Paths are compared ignoring the case in folders whose file system is case
+ * insensitive, so that a case-only rename is planned as a cycle of a single
+ * file and a case-only swap as a cycle of two files.
+ * </p>
+ *
+ * @author paco
+ * @version 0.1
+ */
+final class RenamePlan {
+
+	/** Prefix of the temporary names used to break the cycles */
+	static final String TEMPORARY_PREFIX = ".brr-";
+
+	/** Prefix of the names of the staging folders */
+	static final String STAGING_PREFIX = ".brr-staging-";
+
+	/** Chains of renames, each one in execution order */
+	private final List<List<RenameStep>> chains;
+
+	/** Total number of renames */
+	private final int size;
+
+	/**
+	 * Renames replaced by the moves to and from a temporary name or a staging
+	 * folder: each one is done when its last move is done
+	 */
+	private final Map<RenameStep, RenameStep[]> splitSteps;
+
+	/** Staging folders used by the plan, empty if it is not staged */
+	private final Set<File> stagingFolders;
+
+	/** Indicates whether the plan must be staged before being executed */
+	private final boolean transactional;
+
+	/**
+	 * Creates a plan with the specified chains
+	 *
+	 * @param chains
+	 *            chains of renames, each one in execution order
+	 * @param splitSteps
+	 *            renames replaced by the moves to and from a temporary name or
+	 *            a staging folder
+	 * @param stagingFolders
+	 *            staging folders used by the plan
+	 * @param transactional
+	 *            true if the plan must be staged before being executed
+	 */
+	private RenamePlan(List<List<RenameStep>> chains, Map<RenameStep, RenameStep[]> splitSteps, Set<File> stagingFolders, boolean transactional) {
+		int size = 0;
+		for (List<RenameStep> chain : chains) {
+			size += chain.size();
+		}
+		this.chains         = Collections.unmodifiableList(chains);
+		this.size           = size;
+		this.splitSteps     = splitSteps;
+		this.stagingFolders = stagingFolders;
+		this.transactional  = transactional;
+	}
+
+	/**
+	 * Creates the plan of the specified renames, in linear time: the targets
+	 * must be distinct, and so must be the sources
+	 *
+	 * @param steps
+	 *            renames to execute
+	 * @return the plan of the renames
+	 */
+	public static RenamePlan create(List<RenameStep> steps) {
+		return create(steps, false);
+	}
+
+	/**
+	 * Creates the plan of the specified renames, in linear time: the targets
+	 * must be distinct, and so must be the sources
+	 *
+	 * @param steps
+	 *            renames to execute
+	 * @param transactional
+	 *            true if the plan is going to be {@link #stage() staged}, so
+	 *            its cycles don't need temporary names
+	 * @return the plan of the renames
+	 */
+	public static RenamePlan create(List<RenameStep> steps, boolean transactional) {
+		// index the renames by source and by target path
+		Map<File, Boolean> caseInsensitiveFolders = new HashMap<File, Boolean>();
+		Map<String, RenameStep> bySource = new HashMap<String, RenameStep>(steps.size() * 2);
+		Map<String, RenameStep> byTarget = new HashMap<String, RenameStep>(steps.size() * 2);
+		for (RenameStep step : steps) {
+			bySource.put(key(step.getSource(), caseInsensitiveFolders), step);
+			byTarget.put(key(step.getTarget(), caseInsensitiveFolders), step);
+		}
+
+		List<List<RenameStep>> chains = new ArrayList<List<RenameStep>>();
+		Map<RenameStep, Object> planned = new IdentityHashMap<RenameStep, Object>(steps.size() * 2);
+
+		// each chain starts from a rename whose target is not going to be
+		// freed by another rename, followed by the one that moves to its
+		// source, and so on
+		for (RenameStep step : steps) {
+			if (!bySource.containsKey(key(step.getTarget(), caseInsensitiveFolders))) {
+				chains.add(follow(step, byTarget, planned, caseInsensitiveFolders));
+			}
+		}
+
+		// the remaining renames form cycles, broken through a temporary name
+		Map<RenameStep, RenameStep[]> brokenSteps = new IdentityHashMap<RenameStep, RenameStep[]>();
+		if (planned.size() < steps.size()) {
+			String prefix = TEMPORARY_PREFIX + newToken() + "-";
+			int count = 0;
+			List<RenameStep> cycle;
+			File temporary;
+			for (RenameStep step : steps) {
+				if (!planned.containsKey(step)) {
+					cycle = follow(step, byTarget, planned, caseInsensitiveFolders);
+					if (transactional) {
+						chains.add(cycle);
+						continue;
+					}
+					
+					// the first file of the cycle frees its name for the last one
+					do {
+						temporary = new File(step.getSource().getParentFile(), prefix + count++);
+					} while (bySource.containsKey(key(temporary, caseInsensitiveFolders))
+							|| byTarget.containsKey(key(temporary, caseInsensitiveFolders)));
+					RenameStep[] parts = {
+							new RenameStep(step.getIndex(), step.getSource(), temporary),
+							new RenameStep(step.getIndex(), temporary, step.getTarget())
+					};
+					cycle.set(0, parts[0]);
+					cycle.add(parts[1]);
+					brokenSteps.put(step, parts);
+					chains.add(cycle);
+				}
+			}
+		}
+		return new RenamePlan(chains, brokenSteps, Collections.<File>emptySet(), transactional);
+	}
+
+	/**
+	 * Creates a plan with the specified chains, already ordered
+	 *
+	 * @param chains
+	 *            chains of renames, each one in execution order
+	 * @return the plan of the chains
+	 */
+	static RenamePlan fromChains(List<List<RenameStep>> chains) {
+		return fromChains(chains, false);
+	}
+
+	/**
+	 * Creates a plan with the specified chains, already ordered
+	 *
+	 * @param chains
+	 *            chains of renames, each one in execution order
+	 * @param transactional
+	 *            true if the plan must be staged before being executed
+	 * @return the plan of the chains
+	 */
+	private static RenamePlan fromChains(List<List<RenameStep>> chains, boolean transactional) {
+		return new RenamePlan(chains, Collections.<RenameStep, RenameStep[]>emptyMap(), Collections.<File>emptySet(), transactional);
+	}
+
+	/**
+	 * Returns the key of the specified path in the indexes of the renames:
+	 * the path itself, or the path in lower case if the file system of its
+	 * folder is case insensitive
+	 *
+	 * @param file
+	 *            path of a source or a target
+	 * @param caseInsensitiveFolders
+	 *            folders already checked, updated with the folder of the file
+	 * @return the key of the path
+	 */
+	private static String key(File file, Map<File, Boolean> caseInsensitiveFolders) {
+		File folder = file.getParentFile();
+		Boolean caseInsensitive = caseInsensitiveFolders.get(folder);
+		if (caseInsensitive == null) {
+			caseInsensitive = Boolean.valueOf(isCaseInsensitive(folder));
+			caseInsensitiveFolders.put(folder, caseInsensitive);
+		}
+		return caseInsensitive.booleanValue() ? file.getPath().toLowerCase(Locale.ROOT) : file.getPath();
+	}
+
+	/**
+	 * Returns true if the file system of the specified folder is case
+	 * insensitive, i.e. the folder is found through its name in a different
+	 * case; a folder that doesn't exist, or whose name has no letters, is
+	 * considered case sensitive
+	 *
+	 * @param folder
+	 *            folder to check, it may be null
+	 * @return true if the file system of the folder is case insensitive
+	 */
+	static boolean isCaseInsensitive(File folder) {
+		if (folder == null || folder.getParentFile() == null) {
+			return false;
+		}
+		String name = folder.getName();
+		String otherCase = name.toUpperCase(Locale.ROOT);
+		if (otherCase.equals(name)) {
+			otherCase = name.toLowerCase(Locale.ROOT);
+			if (otherCase.equals(name)) {
+				// no letters in the name: check the parent folder
+				return isCaseInsensitive(folder.getParentFile());
+			}
+		}
+		File other = new File(folder.getParentFile(), otherCase);
+		try {
+			return other.exists() && Files.isSameFile(folder.toPath(), other.toPath());
+		} catch (Exception e) {
+			if (LogManager.ENABLED) LogManager.warning("RenamePlan.isCaseInsensitive> Unable to check the folder " + folder + ": " + e);
+			return false;
+		}
+	}
+
+	/**
+	 * Returns a random token, used to build unique names
+	 *
+	 * @return a random token
+	 */
+	static String newToken() {
+		return Long.toString(System.nanoTime() & 0xFFFFFFFFL, Character.MAX_RADIX);
+	}
+
+	/**
+	 * Builds the chain that starts from the specified rename
+	 *
+	 * @param first
+	 *            first rename of the chain
+	 * @param byTarget
+	 *            renames indexed by target path
+	 * @param planned
+	 *            renames already added to a chain, updated with the ones of
+	 *            the new chain
+	 * @param caseInsensitiveFolders
+	 *            folders already checked by {@link #key(File, Map)}
+	 * @return the chain, in execution order
+	 */
+	private static List<RenameStep> follow(RenameStep first, Map<String, RenameStep> byTarget, Map<RenameStep, Object> planned,
+			Map<File, Boolean> caseInsensitiveFolders) {
+		List<RenameStep> chain = new ArrayList<RenameStep>(1);
+		RenameStep step = first;
+		while (step != null && !planned.containsKey(step)) {
+			planned.put(step, null);
+			chain.add(step);
+			step = byTarget.get(key(step.getSource(), caseInsensitiveFolders));
+		}
+		return chain;
+	}
+
+	/**
+	 * Returns true if the specified chain is a cycle broken through a
+	 * temporary name, i.e. its last rename moves the temporary file
+	 *
+	 * @param chain
+	 *            chain to check
+	 * @return true if the chain is a broken cycle
+	 */
+	static boolean isCycle(List<RenameStep> chain) {
+		return chain.size() > 1 && chain.get(chain.size() - 1).getSource().equals(chain.get(0).getTarget());
+	}
+
+	/**
+	 * Returns the plan that executes this one as a transaction: in each chain,
+	 * all the files are moved to a staging folder created in their folder, then
+	 * each file is moved from the staging folder to its target. The cycles
+	 * don't need temporary names, since all the sources of a chain are freed
+	 * before moving any file to its target.
+	 *
+	 * @return the staged plan
+	 */
+	public RenamePlan stage() {
+		String name = STAGING_PREFIX + newToken();
+		Map<RenameStep, RenameStep[]> stagedSteps = new IdentityHashMap<RenameStep, RenameStep[]>(this.size * 2);
+		Set<File> stagingFolders = new LinkedHashSet<File>();
+		List<List<RenameStep>> chains = new ArrayList<List<RenameStep>>(this.chains.size());
+		List<RenameStep> staged;
+		List<RenameStep> moved;
+		RenameStep[] parts;
+		File folder;
+		File file;
+		int count = 0;
+
+		for (List<RenameStep> chain : this.chains) {
+			staged = new ArrayList<RenameStep>(chain.size() * 2);
+			moved = new ArrayList<RenameStep>(chain.size());
+			for (RenameStep step : chain) {
+				folder = new File(step.getSource().getParentFile(), name);
+				stagingFolders.add(folder);
+				file = new File(folder, Integer.toString(count++));
+				parts = new RenameStep[] {
+						new RenameStep(step.getIndex(), step.getSource(), file),
+						new RenameStep(step.getIndex(), file, step.getTarget())
+				};
+				staged.add(parts[0]);
+				moved.add(parts[1]);
+				stagedSteps.put(step, parts);
+			}
+			staged.addAll(moved);
+			chains.add(staged);
+		}
+		return new RenamePlan(chains, stagedSteps, stagingFolders, false);
+	}
+
+	/**
+	 * Returns true if the plan must be {@link #stage() staged} before being
+	 * executed, since its cycles are not broken
+	 *
+	 * @return true if the plan must be staged before being executed
+	 */
+	public boolean isTransactional() {
+		return this.transactional;
+	}
+
+	/**
+	 * Returns the staging folders used by the plan
+	 *
+	 * @return the staging folders used by the plan, empty if it is not staged
+	 */
+	public Set<File> getStagingFolders() {
+		return this.stagingFolders;
+	}
+
+	/**
+	 * Sets the result of the renames split in more moves, from the results of
+	 * the moves to and from their temporary names or staging folders; it is
+	 * called when the plan has been executed
+	 */
+	void completed() {
+		RenameStep[] parts;
+		for (Map.Entry<RenameStep, RenameStep[]> entry : this.splitSteps.entrySet()) {
+			parts = entry.getValue();
+			if (parts[1].isDone()) {
+				entry.getKey().setDone();
+			} else {
+				entry.getKey().setError(parts[0].getError() != null ? parts[0].getError() : parts[1].getError());
+			}
+		}
+	}
+
+	/**
+	 * Returns the chains of renames, each one in execution order
+	 *
+	 * @return the chains of renames
+	 */
+	public List<List<RenameStep>> getChains() {
+		return this.chains;
+	}
+
+	/**
+	 * Returns the total number of renames
+	 *
+	 * @return the total number of renames
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the number of renames completed
+	 *
+	 * @return the number of renames completed
+	 */
+	public int getDoneCount() {
+		int count = 0;
+		for (List<RenameStep> chain : this.chains) {
+			for (RenameStep step : chain) {
+				if (step.isDone()) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the plan that restores the original names of the files renamed
+	 * by this one
+	 *
+	 * @return the plan that undoes the completed renames
+	 */
+	public RenamePlan inverse() {
+		List<List<RenameStep>> chains = new ArrayList<List<RenameStep>>(this.chains.size());
+		for (List<RenameStep> chain : this.chains) {
+			// the renames are undone in reverse order
+			List<RenameStep> inverse = new ArrayList<RenameStep>(chain.size());
+			for (int i = chain.size() - 1; i >= 0; i--) {
+				if (chain.get(i).isDone()) {
+					inverse.add(chain.get(i).inverse());
+				}
+			}
+			if (!inverse.isEmpty()) {
+				chains.add(inverse);
+			}
+		}
+		return fromChains(chains, this.transactional);
+	}
+}
@@ -0,0 +1,124 @@
+package com.pasdam.regexren.controller;
+
+import java.io.File;
+
+/**
+ * Single rename of a file of the list, with its result.
+ * <p>
+ * The result is set by the thread that executes the rename, and it is visible
+ * to the thread that waited for the execution to complete.
+ * </p>
+ *
+ * @author paco
+ * @version 0.1
+ */
+final class RenameStep {
+
+	/** Index of the file in the list */
+	private final int index;
+
+	/** File to rename */
+	private final File source;
+
+	/** New file */
+	private final File target;
+
+	/** Indicates whether the file has been renamed */
+	private boolean done;
+
+	/** Error that prevented the rename, or null */
+	private Exception error;
+
+	/**
+	 * Creates a step that renames <i>source</i> to <i>target</i>
+	 *
+	 * @param index
+	 *            index of the file in the list
+	 * @param source
+	 *            file to rename
+	 * @param target
+	 *            new file
+	 */
+	public RenameStep(int index, File source, File target) {
+		this.index  = index;
+		this.source = source;
+		this.target = target;
+	}
+
+	/**
+	 * Returns the index of the file in the list
+	 *
+	 * @return the index of the file in the list
+	 */
+	public int getIndex() {
+		return this.index;
+	}
+
+	/**
+	 * Returns the file to rename
+	 *
+	 * @return the file to rename
+	 */
+	public File getSource() {
+		return this.source;
+	}
+
+	/**
+	 * Returns the new file
+	 *
+	 * @return the new file
+	 */
+	public File getTarget() {
+		return this.target;
+	}
+
+	/**
+	 * Returns true if the file has been renamed
+	 *
+	 * @return true if the file has been renamed
+	 */
+	public boolean isDone() {
+		return this.done;
+	}
+
+	/** Marks the file as renamed */
+	void setDone() {
+		this.done  = true;
+		this.error = null;
+	}
+
+	/**
+	 * Returns the error that prevented the rename
+	 *
+	 * @return the error that prevented the rename, or null if the file has been
+	 *         renamed or the step has not been executed
+	 */
+	public Exception getError() {
+		return this.error;
+	}
+
+	/**
+	 * Sets the error that prevented the rename
+	 *
+	 * @param error
+	 *            error that prevented the rename
+	 */
+	void setError(Exception error) {
+		this.done  = false;
+		this.error = error;
+	}
+
+	/**
+	 * Returns a step that restores the original name of the file
+	 *
+	 * @return a step that renames the target to the source
+	 */
+	public RenameStep inverse() {
+		return new RenameStep(this.index, this.target, this.source);
+	}
+
+	@Override
+	public String toString() {
+		return this.source + " -> " + this.target;
+	}
+}
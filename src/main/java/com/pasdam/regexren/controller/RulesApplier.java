@@ -0,0 +1,466 @@
+package com.pasdam.regexren.controller;
+
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.pasdam.regexren.engine.CompiledRuleChain;
+import com.pasdam.regexren.engine.OrderDependentRule;
+import com.pasdam.regexren.engine.FileModelItem;
+import com.pasdam.regexren.engine.FileStore;
+
+/**
+ * <p>
+ * Class that applies a {@link CompiledRuleChain} to a list of files.
+ * </p>
+ * <p>
+ * Rules are applied to a working {@link FileModelItem} bound to a file at a
+ * time, and the result of the whole chain is stored as the new name of the
+ * file in the {@link FileStore}.
+ * </p>
+ * <p>
+ * In parallel mode the chain is split in segments: each run of consecutive
+ * stateless rules is applied to the files list concurrently, using a
+ * fork-join pool, while each {@link OrderDependentRule} is applied
+ * sequentially, following the order of the list. Since every rule sees the
+ * files in the same order and with the same input values of the sequential
+ * pass, the result is identical.
+ * </p>
+ * <p>
+ * The intermediate names of the files are cached at the positions from which
+ * the next passes are expected to restart: the rule edited by the last pass,
+ * that is likely to change again, the first order dependent rule and the end
+ * of the chain. So when a rule of the chain changes, or rules are appended to
+ * it, only the rules from the last cached position before the change are
+ * applied again. When the checked state of some files changes, only those
+ * files are processed from the beginning of the chain, while the others are
+ * processed again only from the first order dependent rule, whose result may
+ * depend on the changed files.
+ * </p>
+ *
+ * @author paco
+ * @version 0.1
+ */
+class RulesApplier {
+
+	/** Minimum number of files for which the parallel mode is used */
+	static final int PARALLEL_THRESHOLD = 4096;
+
+	/**
+	 * Number of files processed by each leaf task: tasks never share a block
+	 * of the cache, that must be written by one thread at a time
+	 */
+	private static final int TASK_SIZE = PreviewCache.BLOCK_SIZE;
+
+	/** Pool used to run the parallel tasks */
+	private final ForkJoinPool pool = new ForkJoinPool();
+
+	/** Cache of the intermediate names */
+	private final PreviewCache cache = new PreviewCache();
+
+	/**
+	 * Chain applied by the last pass, or null if the cache doesn't reflect
+	 * the current files list
+	 */
+	private CompiledRuleChain previousRules;
+
+	/**
+	 * Position from which the last pass restarted, if it was cancelled, or -1
+	 * if it was completed
+	 */
+	private int cancelledFrom = -1;
+
+	/** Files whose cached values are not valid, because they were unchecked */
+	private final BitSet changedFiles = new BitSet();
+
+	/**
+	 * Invalidates the cached results, forcing the next pass to apply the whole
+	 * chain; it must be called whenever the files list changes
+	 */
+	public void invalidate() {
+		// the cached buffers are kept, to be reused by the next pass that
+		// overwrites them before reading any value
+		this.previousRules = null;
+		this.cancelledFrom = -1;
+		this.changedFiles.clear();
+		this.cache.invalidate();
+	}
+
+	/**
+	 * Invalidates the cached results of the specified files, whose checked
+	 * state changed: the next pass applies the whole chain only to them
+	 *
+	 * @param files
+	 *            indexes of the files whose checked state changed
+	 */
+	public void invalidate(BitSet files) {
+		if (this.previousRules != null) {
+			this.changedFiles.or(files);
+		}
+	}
+
+	/**
+	 * Invalidates the cached results and releases the memory used by the
+	 * cache; it should be called when the files list is cleared
+	 */
+	public void release() {
+		invalidate();
+		this.cache.clear();
+	}
+
+	/**
+	 * Applies the rules to each checked file of the list
+	 *
+	 * @param rules
+	 *            chain of rules to apply
+	 * @param files
+	 *            list of files to which apply the rules
+	 * @param parallel
+	 *            if true the stateless rules are applied concurrently, if
+	 *            false all rules are applied in the current thread
+	 * @see #apply(CompiledRuleChain, FileStore, boolean, CancellationSignal)
+	 */
+	public void apply(CompiledRuleChain rules, FileStore files, boolean parallel) {
+		apply(rules, files, parallel, null);
+	}
+
+	/**
+	 * Applies the rules to each checked file of the list. Only the rules that
+	 * follow the first one changed since the previous pass are applied, the
+	 * others results are taken from the cache; the files whose checked state
+	 * changed are processed first, up to that rule.
+	 *
+	 * @param rules
+	 *            chain of rules to apply
+	 * @param files
+	 *            list of files to which apply the rules
+	 * @param parallel
+	 *            if true the stateless rules are applied concurrently, if
+	 *            false all rules are applied in the current thread
+	 * @param signal
+	 *            signal checked periodically to stop the pass, it may be null
+	 * @return true if the pass was completed, false if it was cancelled: in
+	 *         this case the new names of the files are inconsistent until the
+	 *         next completed pass
+	 */
+	public boolean apply(CompiledRuleChain rules, FileStore files, boolean parallel, CancellationSignal signal) {
+		// evaluate the first rule to apply
+		int from = 0;
+		int edited = 0;
+		boolean unchanged = false;
+		if (this.previousRules != null) {
+			from = rules.firstDifference(this.previousRules);
+			edited = from;
+			if (this.cancelledFrom >= 0) {
+				// the cache is valid only up to the position from which the
+				// cancelled pass restarted
+				from = Math.min(from, this.cancelledFrom);
+
+			} else if (from == rules.size() && from == this.previousRules.size()) {
+				if (this.changedFiles.isEmpty()) {
+					// nothing changed
+					return true;
+				}
+				unchanged = true;
+			}
+		}
+		boolean filesChanged = this.previousRules != null && !this.changedFiles.isEmpty();
+		this.previousRules = null;
+		this.cancelledFrom = -1;
+		this.cache.resize(rules.size() + 1, files.size());
+
+		// the changed files have no valid cached value, so every file
+		// continues at most from the first order dependent rule, since its
+		// result may change too; the pass restarts from the last position
+		// cached before the first rule to apply
+		int firstOrderDependent = rules.nextOrderDependentRule(0);
+		int start = this.cache.floor(filesChanged ? Math.min(from, firstOrderDependent) : from);
+
+		// positions from which the next passes are expected to restart: the
+		// value after the last rule is cached too, so that appended rules
+		// start from it
+		BitSet kept = new BitSet();
+		kept.set(edited);
+		kept.set(firstOrderDependent);
+		kept.set(rules.size());
+		kept.clear(0);
+		for (int i = 1; i <= rules.size(); i++) {
+			if (i < start ? !kept.get(i) || !this.cache.isValid(i) : i > start && !kept.get(i)) {
+				this.cache.release(i);
+			} else if (i > start) {
+				this.cache.allocate(i);
+				this.cache.setValid(i, false);
+			}
+		}
+
+		// reset rules state
+		rules.reset();
+
+		boolean useParallel = parallel && files.size() >= PARALLEL_THRESHOLD;
+		if (filesChanged) {
+			// apply the leading rules to the changed files, storing their
+			// values in the positions kept
+			if (start > 0) {
+				boolean completed;
+				if (useParallel) {
+					this.pool.invoke(new ApplyTask(rules, 0, start, files, 0, files.size(), this.changedFiles, this.cache, signal));
+					completed = !isCancelled(signal);
+				} else {
+					completed = applyChunks(rules, 0, start, files, this.changedFiles, this.cache, signal);
+				}
+				if (!completed) {
+					// the changed files will be processed again by the next pass
+					this.previousRules = rules;
+					this.cancelledFrom = start;
+					return false;
+				}
+			}
+			this.changedFiles.clear();
+
+			if (unchanged && start == rules.size()) {
+				// no other file is affected
+				this.previousRules = rules;
+				return true;
+			}
+		}
+
+		boolean completed;
+		if (useParallel) {
+			// prepare files and apply leading stateless rules
+			int first = start;
+			int to = rules.nextOrderDependentRule(first);
+			this.cache.allocate(to);
+			this.pool.invoke(new ApplyTask(rules, first, to, files, 0, files.size(), null, this.cache, signal));
+
+			while (to < rules.size() && !isCancelled(signal)) {
+				// apply the order dependent rule sequentially: the values
+				// between the segments are cached only while they are needed
+				this.cache.allocate(to + 1);
+				applyChunks(rules, to, to + 1, files, null, this.cache, signal);
+				releaseTransient(to, start, kept);
+
+				// apply following stateless rules concurrently
+				first = to + 1;
+				to = rules.nextOrderDependentRule(first);
+				if (first < to) {
+					this.cache.allocate(to);
+					this.pool.invoke(new ApplyTask(rules, first, to, files, 0, files.size(), null, this.cache, signal));
+					releaseTransient(first, start, kept);
+				}
+			}
+			completed = !isCancelled(signal);
+
+		} else {
+			completed = applyChunks(rules, start, rules.size(), files, null, this.cache, signal);
+		}
+
+		// if the pass was cancelled, the cache is still valid up to the
+		// position from which it restarted, that the next pass will restore
+		this.previousRules = rules;
+		if (completed) {
+			for (int i = start + 1; i <= rules.size(); i++) {
+				if (kept.get(i)) {
+					this.cache.setValid(i, true);
+				} else {
+					this.cache.release(i);
+				}
+			}
+			if (!kept.get(start)) {
+				this.cache.release(start);
+			}
+		} else {
+			this.cancelledFrom = start;
+		}
+		return completed;
+	}
+
+	/**
+	 * Releases the cached values of the specified position, if they were
+	 * needed only to pass the values between two segments of the chain
+	 *
+	 * @param position
+	 *            position in the rules chain
+	 * @param start
+	 *            position from which the pass restarted
+	 * @param kept
+	 *            positions cached for the next passes
+	 */
+	private void releaseTransient(int position, int start, BitSet kept) {
+		if (position != start && !kept.get(position)) {
+			this.cache.release(position);
+		}
+	}
+
+	/**
+	 * Returns true if the specified signal requests to stop the pass
+	 *
+	 * @param signal
+	 *            signal to check, it may be null
+	 * @return true if the specified signal requests to stop the pass
+	 */
+	private static boolean isCancelled(CancellationSignal signal) {
+		return signal != null && signal.isCancelled();
+	}
+
+	/**
+	 * Applies the specified rules to the checked files in the current thread,
+	 * in chunks of {@link #TASK_SIZE} files, checking the signal after each
+	 * one
+	 *
+	 * @return true if all files were processed, false if the pass was
+	 *         cancelled
+	 * @see #applyRange(CompiledRuleChain, int, int, FileStore, int, int, BitSet, PreviewCache, FileModelItem)
+	 */
+	private static boolean applyChunks(CompiledRuleChain rules, int fromRule, int toRule, FileStore files,
+			BitSet filter, PreviewCache cache, CancellationSignal signal) {
+		FileModelItem item = new FileModelItem();
+		for (int i = 0; i < files.size(); i += TASK_SIZE) {
+			if (isCancelled(signal)) {
+				return false;
+			}
+			applyRange(rules, fromRule, toRule, files, i, Math.min(i + TASK_SIZE, files.size()), filter, cache, item);
+		}
+		return true;
+	}
+
+	/**
+	 * Applies the specified rules to the checked files in the specified range,
+	 * storing the intermediate results in the cache. Each file starts from the
+	 * value cached before the first rule, or from its original name if it is
+	 * the first of the chain, and the result of the last rule of the chain is
+	 * stored in the files list.
+	 *
+	 * @param rules
+	 *            chain of rules to apply
+	 * @param fromRule
+	 *            index (inclusive) of the first rule to apply
+	 * @param toRule
+	 *            index (exclusive) of the last rule to apply
+	 * @param files
+	 *            list of files to which apply the rules
+	 * @param fromFile
+	 *            index (inclusive) of the first file to process
+	 * @param toFile
+	 *            index (exclusive) of the last file to process
+	 * @param filter
+	 *            indexes of the files of the range to process, or null to
+	 *            process all of them
+	 * @param cache
+	 *            cache of the intermediate names
+	 * @param item
+	 *            working item bound to each file in turn
+	 */
+	private static void applyRange(CompiledRuleChain rules, int fromRule, int toRule, FileStore files,
+			int fromFile, int toFile, BitSet filter, PreviewCache cache, FileModelItem item) {
+		boolean last = toRule == rules.size();
+		for (int i = next(filter, fromFile); i >= 0 && i < toFile; i = next(filter, i + 1)) {
+			if (!files.isChecked(i)) {
+				files.setNewName(i, null);
+				continue;
+			}
+
+			files.load(i, item);
+			if (fromRule > 0) {
+				cache.restore(fromRule, i, item);
+			}
+
+			for (int j = fromRule; j < toRule; j++) {
+				if (j > fromRule) {
+					cache.store(j, i, item);
+				}
+				rules.getRule(j).apply(item);
+			}
+
+			if (fromRule < toRule) {
+				cache.store(toRule, i, item);
+			}
+			if (last) {
+				files.setNewName(i, item);
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of the first file to process starting from the
+	 * specified one
+	 *
+	 * @param filter
+	 *            indexes of the files to process, or null to process all
+	 *            files
+	 * @param index
+	 *            index from which to start
+	 * @return the index of the next file to process, or -1 if there is none
+	 */
+	private static int next(BitSet filter, int index) {
+		return filter != null ? filter.nextSetBit(index) : index;
+	}
+
+	/** Task that applies a segment of stateless rules to a range of files */
+	private static class ApplyTask extends RecursiveAction {
+
+		private static final long serialVersionUID = -4204785372165925170L;
+
+		/** Chain of rules to apply */
+		private final CompiledRuleChain rules;
+
+		/** Index (inclusive) of the first rule to apply */
+		private final int fromRule;
+
+		/** Index (exclusive) of the last rule to apply */
+		private final int toRule;
+
+		/** List of files to which apply the rules */
+		private final FileStore files;
+
+		/** Index (inclusive) of the first file to process */
+		private final int fromFile;
+
+		/** Index (exclusive) of the last file to process */
+		private final int toFile;
+
+		/** Indexes of the files to process, or null to process all files */
+		private final BitSet filter;
+
+		/** Cache of the intermediate names */
+		private final PreviewCache cache;
+
+		/** Signal checked before processing each range of files */
+		private final CancellationSignal signal;
+
+		/**
+		 * Creates a task that applies the rules [fromRule, toRule) to the
+		 * files [fromFile, toFile)
+		 *
+		 * @see RulesApplier#applyRange(CompiledRuleChain, int, int, FileStore, int, int, BitSet, PreviewCache, FileModelItem)
+		 */
+		public ApplyTask(CompiledRuleChain rules, int fromRule, int toRule, FileStore files,
+				int fromFile, int toFile, BitSet filter, PreviewCache cache, CancellationSignal signal) {
+			this.rules       = rules;
+			this.fromRule    = fromRule;
+			this.toRule      = toRule;
+			this.files       = files;
+			this.fromFile    = fromFile;
+			this.toFile      = toFile;
+			this.filter      = filter;
+			this.cache       = cache;
+			this.signal      = signal;
+		}
+
+		@Override
+		protected void compute() {
+			if (RulesApplier.isCancelled(this.signal)) {
+				return;
+
+			} else if (this.toFile - this.fromFile <= TASK_SIZE) {
+				applyRange(this.rules, this.fromRule, this.toRule, this.files, this.fromFile, this.toFile, this.filter, this.cache, new FileModelItem());
+
+			} else {
+				// split at a block boundary
+				int middle = this.fromFile + (((this.toFile - this.fromFile + TASK_SIZE - 1) / TASK_SIZE) >> 1) * TASK_SIZE;
+				invokeAll(
+						new ApplyTask(this.rules, this.fromRule, this.toRule, this.files, this.fromFile, middle, this.filter, this.cache, this.signal),
+						new ApplyTask(this.rules, this.fromRule, this.toRule, this.files, middle, this.toFile, this.filter, this.cache, this.signal));
+			}
+		}
+	}
+}
@@ -11,17 +11,19 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Pattern;
 
-import com.pasdam.regexren.gui.rules.AbstractRuleFactory;
-import com.pasdam.regexren.gui.rules.ChangeCaseFactory;
-import com.pasdam.regexren.gui.rules.InsertCounterAtPositionFactory;
-import com.pasdam.regexren.gui.rules.InsertCounterBeforeAfterFactory;
-import com.pasdam.regexren.gui.rules.InsertCounterOnCollisionFactory;
-import com.pasdam.regexren.gui.rules.InsertTextAtPositionFactory;
-import com.pasdam.regexren.gui.rules.InsertTextBeforeAfterFactory;
-import com.pasdam.regexren.gui.rules.MoveTextBeforeAfterFactory;
-import com.pasdam.regexren.gui.rules.ReplaceFactory;
-import com.pasdam.regexren.gui.rules.RuleFactoryListener;
-import com.pasdam.regexren.model.RuleType;
+import com.pasdam.regexren.engine.AbstractRuleFactory;
+import com.pasdam.regexren.engine.ChangeCaseFactory;
+import com.pasdam.regexren.engine.CompiledRuleChain;
+import com.pasdam.regexren.engine.InsertCounterAtPositionFactory;
+import com.pasdam.regexren.engine.InsertCounterBeforeAfterFactory;
+import com.pasdam.regexren.engine.InsertCounterOnCollisionFactory;
+import com.pasdam.regexren.engine.InsertTextAtPositionFactory;
+import com.pasdam.regexren.engine.InsertTextBeforeAfterFactory;
+import com.pasdam.regexren.engine.MoveTextBeforeAfterFactory;
+import com.pasdam.regexren.engine.PatternCache;
+import com.pasdam.regexren.engine.ReplaceFactory;
+import com.pasdam.regexren.engine.RuleFactoryListener;
+import com.pasdam.regexren.engine.RuleType;
 
 /**
  * Manager that keep a list of all renaming rules to apply
@@ -40,9 +42,15 @@ public class RulesManager extends ErrorListenerManager implements RuleFactoryLis
 	/** List of all rules created */
 	private List<AbstractRuleFactory> rulesList = new ArrayList<AbstractRuleFactory>();
 	
+	/** Chain of the enabled rules, built from the rules list when needed */
+	private CompiledRuleChain compiledRules;
+	
 	/** List of listeners to notify when rules list changes */
 	private final List<RulesListener> rulesListeners = new ArrayList<RulesListener>(); 
 	
+	/** List of listeners to notify when the configuration of the rules changes */
+	private final List<RuleFactoryListener> configurationListeners = new ArrayList<RuleFactoryListener>();
+	
 	/**
 	 * Returns the list of all created rules
 	 * 
@@ -52,6 +60,20 @@ public class RulesManager extends ErrorListenerManager implements RuleFactoryLis
 		return rulesList;
 	}
 	
+	/**
+	 * Returns the chain of the enabled and valid rules, rebuilding it only if
+	 * the configuration changed since the last call
+	 * 
+	 * @return the chain of the enabled and valid rules
+	 */
+	public CompiledRuleChain getCompiledRules() {
+		if (this.compiledRules == null) {
+			this.compiledRules = CompiledRuleChain.compile(this.rulesList);
+			if (LogManager.ENABLED) LogManager.trace("RulesManager.getCompiledRules> Pattern cache: " + PatternCache.size() + " patterns, " + PatternCache.getHitCount() + " hits, " + PatternCache.getMissCount() + " misses");
+		}
+		return this.compiledRules;
+	}
+	
 	/**
 	 * Returns the number of rules created
 	 * 
@@ -232,19 +254,52 @@ public class RulesManager extends ErrorListenerManager implements RuleFactoryLis
 		}
 	}
 	
+	/**
+	 * Add a listener to notify when the configuration of the rules changes,
+	 * i.e. when the chain returned by {@link #getCompiledRules()} may change
+	 * 
+	 * @param listener
+	 *            listener to add
+	 */
+	public void addConfigurationListener(RuleFactoryListener listener) {
+		if (listener != null) {
+			this.configurationListeners.add(listener);
+		}
+	}
+	
 	@Override
 	public void configurationChanged(boolean valid) {
-		if (LogManager.ENABLED) LogManager.trace("RulesManager.configurationChanged> Rule configuration changed: updating files list");
-		ApplicationManager.getInstance().getFilesListManager().applyRules(false);
+		if (LogManager.ENABLED) LogManager.trace("RulesManager.configurationChanged> Rule configuration changed: notifying listeners");
+		this.compiledRules = null;
+		for (RuleFactoryListener listener : this.configurationListeners) {
+			listener.configurationChanged(valid);
+		}
+	}
+	
+	/**
+	 * Open the specified script file, and remember it as the last used one
+	 * 
+	 * @param file
+	 *            script file to open
+	 * @return true if the script has been loaded, false otherwise
+	 */
+	public boolean loadScriptFile(File file) {
+		if (loadScript(file)) {
+			// save last script
+			ApplicationManager.getInstance().getPreferenceManager().setPreviousScriptFile(file);
+			return true;
+		}
+		return false;
 	}
 	
 	/**
-	 * Open the specified script file
+	 * Open the specified script file, without changing the preferences
 	 * 
 	 * @param file
 	 *            script file to open
+	 * @return true if the script has been loaded, false otherwise
 	 */
-	public void loadScriptFile(File file) {
+	public boolean loadScript(File file) {
 		try {
 			if (file.exists()) {
 				BufferedReader reader = new BufferedReader(new FileReader(file));
@@ -276,9 +331,8 @@ public class RulesManager extends ErrorListenerManager implements RuleFactoryLis
 					}
 
 					configurationChanged(true);
-
-					// save last script
-					ApplicationManager.getInstance().getPreferenceManager().setPreviousScriptFile(file);
+					
+					return true;
 
 				} else {
 					if (LogManager.ENABLED) LogManager.error("RulesManager.openScriptFile: wrong rule [" + line + "]");
@@ -290,6 +344,7 @@ public class RulesManager extends ErrorListenerManager implements RuleFactoryLis
 			if (LogManager.ENABLED) LogManager.error("RulesManager.openScriptFile: " + e.getMessage());
 			notifyError("Error.RulesManager.loadScript");
 		}
+		return false;
 	}
 
 	/**
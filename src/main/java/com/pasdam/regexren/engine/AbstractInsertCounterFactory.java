@@ -1,6 +1,5 @@
-package com.pasdam.regexren.gui.rules;
+package com.pasdam.regexren.engine;
 
-import com.pasdam.regexren.model.RuleType;
 
 /**
  * {@link AbstractRuleFactory} used to create rule to insert a counter
@@ -8,7 +7,7 @@ import com.pasdam.regexren.model.RuleType;
  * @author paco
  * @version 0.1
  */
-abstract class AbstractInsertCounterFactory extends AbstractRuleFactory {
+public abstract class AbstractInsertCounterFactory extends AbstractRuleFactory {
 	
 	/** Index of the "padding" parameter */
 	protected static final int PARAMETER_START_COUNT = 0;
@@ -95,7 +94,7 @@ abstract class AbstractInsertCounterFactory extends AbstractRuleFactory {
 	}
 	
 	/** Abstract insert counter rule, with utility methods */
-	protected static abstract class AbstractCounterRule implements Rule {
+	protected static abstract class AbstractCounterRule implements OrderDependentRule {
 		
 		/** Inficates the counter's starting value */
 		private final int countStart;
@@ -103,8 +102,11 @@ abstract class AbstractInsertCounterFactory extends AbstractRuleFactory {
 		/** Inficates the current counter's value */
 		private int countValue;
 
-		/** Inficates the counter value format */
-		private final String valueFormat;
+		/** Inficates the minimum number of characters of the counter */
+		private final int padding;
+		
+		/** Buffer reused to format the counter's value */
+		private final StringBuilder countBuffer = new StringBuilder();
 		
 		/**
 		 * Creates a rule with the specific parameters
@@ -117,16 +119,28 @@ abstract class AbstractInsertCounterFactory extends AbstractRuleFactory {
 		public AbstractCounterRule(int countStart, int padding) {
 			this.countStart  = countStart;
 			this.countValue  = this.countStart;
-			this.valueFormat = "%0" + (padding > 1 ? padding : 1) + "d";
+			this.padding     = padding > 1 ? padding : 1;
 		}
 
 		/**
-		 * Returns the current formatted value of the counter
+		 * Returns the current formatted value of the counter, padded with
+		 * zeros; the returned buffer is reused by the next call, so it must be
+		 * copied before calling this method again
 		 * 
 		 * @return the current formatted value of the counter
 		 */
-		protected String getCount(){
-			return String.format(this.valueFormat, this.countValue++);
+		protected CharSequence getCount(){
+			int value = this.countValue++;
+			StringBuilder buffer = this.countBuffer;
+			buffer.setLength(0);
+			buffer.append(value);
+			
+			// insert padding zeros after the sign, as String.format("%0Nd")
+			int zerosIndex = value < 0 ? 1 : 0;
+			while (buffer.length() < this.padding) {
+				buffer.insert(zerosIndex, '0');
+			}
+			return buffer;
 		}
 
 		@Override
@@ -1,11 +1,10 @@
-package com.pasdam.regexren.gui.rules;
+package com.pasdam.regexren.engine;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 import com.pasdam.regexren.controller.LogManager;
-import com.pasdam.regexren.model.RuleType;
 
 /**
  * 
@@ -1,11 +1,9 @@
-package com.pasdam.regexren.gui.rules;
+package com.pasdam.regexren.engine;
 
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
-import com.pasdam.regexren.model.FileModelItem;
-import com.pasdam.regexren.model.RuleType;
 
 /**
  * {@link AbstractRuleFactory} used to create rules to change case of the name/extension
@@ -212,7 +210,7 @@ public class ChangeCaseFactory extends AbstractRuleFactory {
 	protected void checkConfiguration() throws PatternSyntaxException, NullPointerException {
 		if (this.regex) {
 			super.setValid(false);
-			Pattern.compile(this.sentenceSeparator);
+			PatternCache.compile(this.sentenceSeparator, 0);
 		}
 		super.setValid(true);
 	}
@@ -338,25 +336,13 @@ public class ChangeCaseFactory extends AbstractRuleFactory {
 		
 		@Override
 		public FileModelItem apply(FileModelItem renamer) {
-			String name = renamer.getName();
+			CharSequence name = renamer.getNameChars();
 			Matcher matcher = PATTERN_WORD.matcher(name);
-			StringBuilder builder = new StringBuilder(name.length());
-			int previousIndex = 0;
-			String currentGroup;
-
+			
 			// loop over words 
 			while (matcher.find()) {
-				builder.append(name.substring(previousIndex, matcher.start()));
-				currentGroup = matcher.group();
-				builder.append(Character.toUpperCase(currentGroup.charAt(0))).append(currentGroup.substring(1));
-				previousIndex = matcher.end();
+				renamer.setNameCharAt(matcher.start(), Character.toUpperCase(name.charAt(matcher.start())));
 			}
-			if (builder.length() > 0) {
-				name = builder.toString();
-			}
-			
-			// update renamer
-			renamer.setName(name);
 			
 			return renamer;
 		}
@@ -385,8 +371,8 @@ public class ChangeCaseFactory extends AbstractRuleFactory {
 			if (separator != null && !separator.equals("")) {
 				// capitalize sentences, separated by "separator"
 				patternSentences = regex
-						? Pattern.compile(separator)
-						: Pattern.compile(Pattern.quote(separator));
+						? PatternCache.compile(separator, 0)
+						: PatternCache.compile(Pattern.quote(separator), 0);
 				
 			} else {
 				patternSentences = Pattern.compile("\\.+");
@@ -395,46 +381,42 @@ public class ChangeCaseFactory extends AbstractRuleFactory {
 		
 		@Override
 		public FileModelItem apply(FileModelItem renamer) {
-			String name = renamer.getName();
-			String currentWord;
-			StringBuilder builder = new StringBuilder(name.length());
+			CharSequence name = renamer.getNameChars();
 			Matcher sentencesMatcher = patternSentences.matcher(name);
-			Matcher wordsMatcher;
+			Matcher wordsMatcher = PATTERN_WORD.matcher(name);
 			int previousIndex = 0;
 			
 			// iterate over phrases
 			while (sentencesMatcher.find()) {
-				wordsMatcher = PATTERN_WORD.matcher(name.substring(previousIndex, sentencesMatcher.start()));
-				
-				if (wordsMatcher.find()) {
-					// change case of the first word
-					currentWord = wordsMatcher.group();
-					builder.append(name.substring(previousIndex, wordsMatcher.start()+previousIndex))
-					.append(Character.toUpperCase(currentWord.charAt(0)))
-					.append(name.substring(wordsMatcher.start()+previousIndex+1, sentencesMatcher.end()));
-				} else {
-					// append phrase as is
-					builder.append(name.substring(previousIndex, sentencesMatcher.end()));
-				}
-				
+				capitalizeFirstWord(renamer, wordsMatcher, previousIndex, sentencesMatcher.start());
 				previousIndex = sentencesMatcher.end();
 			}
 			
 			// modify last phrase
-			wordsMatcher = PATTERN_WORD.matcher(name.substring(previousIndex));
-			if (wordsMatcher.find()) {
-				currentWord = wordsMatcher.group();
-				builder.append(name.substring(previousIndex, wordsMatcher.start()+previousIndex))
-				.append(Character.toUpperCase(currentWord.charAt(0)))
-				.append(name.substring(wordsMatcher.start()+previousIndex+1));
-				name = builder.toString();
-			}
-			
-			// update renamer
-			renamer.setName(name);
+			capitalizeFirstWord(renamer, wordsMatcher, previousIndex, name.length());
 			
 			return renamer;
 		}
+		
+		/**
+		 * Capitalizes the first word of the specified range of the name
+		 * 
+		 * @param renamer
+		 *            file whose name to modify
+		 * @param wordsMatcher
+		 *            matcher of the words in the name
+		 * @param start
+		 *            index (inclusive) of the first character of the range
+		 * @param end
+		 *            index (exclusive) of the last character of the range
+		 */
+		private static void capitalizeFirstWord(FileModelItem renamer, Matcher wordsMatcher, int start, int end) {
+			wordsMatcher.region(start, end);
+			if (wordsMatcher.find()) {
+				CharSequence name = renamer.getNameChars();
+				renamer.setNameCharAt(wordsMatcher.start(), Character.toUpperCase(name.charAt(wordsMatcher.start())));
+			}
+		}
 
 		@Override
 		public void reset() {}
@@ -477,9 +459,9 @@ public class ChangeCaseFactory extends AbstractRuleFactory {
 		
 		@Override
 		public FileModelItem apply(FileModelItem renamer) {
-			String extension = renamer.getExtension();
-			if (extension != null) {
-				renamer.setExtension(Character.toUpperCase(extension.charAt(0)) + extension.substring(1));
+			CharSequence extension = renamer.getExtensionChars();
+			if (extension.length() > 0) {
+				renamer.setExtensionCharAt(0, Character.toUpperCase(extension.charAt(0)));
 			}
 			return renamer;
 		}
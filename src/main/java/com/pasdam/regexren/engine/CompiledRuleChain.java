@@ -0,0 +1,190 @@
+package com.pasdam.regexren.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * <p>
+ * Immutable chain of configured rules, ready to be applied.
+ * </p>
+ * <p>
+ * The chain is built once from a list of {@link AbstractRuleFactory}, keeping
+ * only the rules that are enabled and valid: in this way applying the chain to
+ * a file doesn't require to query each factory again.
+ * </p>
+ *
+ * @author paco
+ * @version 0.1
+ */
+public final class CompiledRuleChain {
+
+	/** Chain without rules */
+	public static final CompiledRuleChain EMPTY = new CompiledRuleChain(new Rule[0]);
+
+	/** Configured rules, in the order in which they must be applied */
+	private final Rule[] rules;
+
+	/** Indicates, for each rule, whether it is an {@link OrderDependentRule} */
+	private final boolean[] orderDependent;
+
+	/**
+	 * Creates a chain with the specified rules
+	 *
+	 * @param rules
+	 *            configured rules, in the order in which they must be applied
+	 */
+	private CompiledRuleChain(Rule[] rules) {
+		this.rules = rules;
+		this.orderDependent = new boolean[rules.length];
+		for (int i = 0; i < rules.length; i++) {
+			this.orderDependent[i] = rules[i] instanceof OrderDependentRule;
+		}
+	}
+
+	/**
+	 * Builds the chain of the rules created by the enabled and valid factories
+	 * of the specified list
+	 *
+	 * @param factories
+	 *            list of rule factories
+	 * @return the chain of the rules created by the enabled and valid
+	 *         factories
+	 */
+	public static CompiledRuleChain compile(List<AbstractRuleFactory> factories) {
+		List<Rule> rules = new ArrayList<Rule>(factories.size());
+		Rule rule;
+		for (AbstractRuleFactory ruleFactory : factories) {
+			if (ruleFactory.isEnabled() && ruleFactory.isValid()) {
+				rule = ruleFactory.getRule();
+				if (rule != null) {
+					rules.add(rule);
+				}
+			}
+		}
+
+		if (rules.isEmpty()) {
+			return EMPTY;
+		}
+
+		return new CompiledRuleChain(rules.toArray(new Rule[rules.size()]));
+	}
+
+	/**
+	 * Returns the number of rules in the chain
+	 *
+	 * @return the number of rules in the chain
+	 */
+	public int size() {
+		return this.rules.length;
+	}
+
+	/**
+	 * Returns true if the chain doesn't contain any rule
+	 *
+	 * @return true if the chain doesn't contain any rule
+	 */
+	public boolean isEmpty() {
+		return this.rules.length == 0;
+	}
+
+	/**
+	 * Returns the rule at the specified position
+	 *
+	 * @param index
+	 *            position of the rule
+	 * @return the rule at the specified position
+	 */
+	public Rule getRule(int index) {
+		return this.rules[index];
+	}
+
+	/**
+	 * Returns true if the rule at the specified position is an
+	 * {@link OrderDependentRule}
+	 *
+	 * @param index
+	 *            position of the rule
+	 * @return true if the rule at the specified position is an
+	 *         {@link OrderDependentRule}
+	 */
+	public boolean isOrderDependent(int index) {
+		return this.orderDependent[index];
+	}
+
+	/**
+	 * Returns the position of the first {@link OrderDependentRule}, starting
+	 * from the specified one
+	 *
+	 * @param from
+	 *            position from which start the search
+	 * @return the position of the first {@link OrderDependentRule}, starting
+	 *         from <i>from</i>, or the size of the chain if there is no one
+	 */
+	public int nextOrderDependentRule(int from) {
+		while (from < this.rules.length && !this.orderDependent[from]) {
+			from++;
+		}
+		return from;
+	}
+
+	/**
+	 * Returns the position of the first rule that differs from the rule at the
+	 * same position in the specified chain. Since factories create a new rule
+	 * only when their configuration changes, the rules before such position
+	 * produce the same result in both chains.
+	 *
+	 * @param other
+	 *            chain to compare
+	 * @return the position of the first rule that differs from the rule at
+	 *         the same position in <i>other</i>, or the size of the shortest
+	 *         chain if one is the prefix of the other
+	 */
+	public int firstDifference(CompiledRuleChain other) {
+		int length = Math.min(this.rules.length, other.rules.length);
+		int i = 0;
+		while (i < length && this.rules[i] == other.rules[i]) {
+			i++;
+		}
+		return i;
+	}
+
+	/** Resets the internal state of all the rules */
+	public void reset() {
+		for (Rule rule : this.rules) {
+			rule.reset();
+		}
+	}
+
+	/**
+	 * Applies all the rules of the chain to the specified file
+	 *
+	 * @param file
+	 *            file to which apply the rules
+	 * @return the input file with updated values
+	 */
+	public FileModelItem apply(FileModelItem file) {
+		for (Rule rule : this.rules) {
+			rule.apply(file);
+		}
+		return file;
+	}
+
+	/**
+	 * Applies the rules in the specified range to the specified file
+	 *
+	 * @param file
+	 *            file to which apply the rules
+	 * @param from
+	 *            position (inclusive) of the first rule to apply
+	 * @param to
+	 *            position (exclusive) of the last rule to apply
+	 * @return the input file with updated values
+	 */
+	public FileModelItem apply(FileModelItem file, int from, int to) {
+		for (int i = from; i < to; i++) {
+			this.rules[i].apply(file);
+		}
+		return file;
+	}
+}
@@ -0,0 +1,434 @@
+package com.pasdam.regexren.engine;
+
+import java.io.File;
+
+import com.pasdam.utils.file.FileInfo;
+
+/**
+ * <p>
+ * This class represent a single item in the files model.
+ * </p>
+ * <p>
+ * An item can be created for a single file, or it can be a working item
+ * reused for many entries of a {@link FileStore}: in this case the store binds
+ * it to an entry at a time, and the rules edit its buffers without allocating
+ * any object.
+ * </p>
+ * 
+ * @author paco
+ * @version 0.1
+ */
+public class FileModelItem {
+	
+	/**
+	 * It stores the current file's name, as result of the renaming rules, used
+	 * in the rename operations
+	 */
+	private final NameBuffer name = new NameBuffer();
+
+	/**
+	 * It stores the current file's extension, as result of the renaming rules,
+	 * used in the rename operations
+	 */
+	private final NameBuffer extension = new NameBuffer();
+	
+	/** Builder reused by the rules that rebuild the name or the extension */
+	private final StringBuilder builder = new StringBuilder();
+	
+	/** Last full filename built */
+	private String fullName;
+	
+	/** Version of the name from which the full filename was built */
+	private int fullNameVersion = -1;
+	
+	/** Version of the extension from which the full filename was built */
+	private int fullExtensionVersion = -1;
+	
+	/** Folder that contains the file */
+	private File parent;
+	
+	/**
+	 * It store the current file, or null if the item is bound to an entry of a
+	 * store and the file has not been requested yet
+	 */
+	private File file;
+	
+	/** Array that contains the original filename */
+	private char[] originalChars;
+	
+	/** Index of the first character of the original filename */
+	private int originalStart;
+	
+	/** Length of the original filename */
+	private int originalLength;
+	
+	/** Length of the original name, that starts the filename */
+	private int originalNameLength;
+	
+	/** Length of the original extension, that ends the filename */
+	private int originalExtensionLength;
+
+	/**
+	 * Create an item for the specified file
+	 * 
+	 * @param file
+	 *            file to store
+	 * @throws NullPointerException
+	 *             if the parameter is null
+	 */
+	public FileModelItem(File file) throws NullPointerException {
+		// parse file's info
+		String fileName = file.getName();
+		FileInfo info = FileInfo.parseFileInfo(file);
+		int nameLength = fileName.length();
+		int extensionLength = 0;
+		if (isSplitOf(fileName, info.getName(), info.getExtension())) {
+			nameLength = info.getName().length();
+			extensionLength = info.getExtension().length();
+		}
+		
+		bind(file.getParentFile(), fileName.toCharArray(), 0, fileName.length(), nameLength, extensionLength);
+		this.file = file;
+	}
+
+	/**
+	 * Creates a working item, that must be bound to a file with
+	 * {@link FileStore#load(int, FileModelItem)} before using it
+	 */
+	public FileModelItem() {}
+
+	/**
+	 * Binds the item to the specified file and restores its original name
+	 * 
+	 * @param parent
+	 *            folder that contains the file
+	 * @param chars
+	 *            array that contains the filename
+	 * @param start
+	 *            index of the first character of the filename
+	 * @param length
+	 *            length of the filename
+	 * @param nameLength
+	 *            length of the name, that starts the filename
+	 * @param extensionLength
+	 *            length of the extension, that ends the filename
+	 */
+	void bind(File parent, char[] chars, int start, int length, int nameLength, int extensionLength) {
+		this.parent                  = parent;
+		this.file                    = null;
+		this.originalChars           = chars;
+		this.originalStart           = start;
+		this.originalLength          = length;
+		this.originalNameLength      = nameLength;
+		this.originalExtensionLength = extensionLength;
+		reset();
+	}
+
+	/**
+	 * Returns true if name and extension parsed from the filename are
+	 * respectively its prefix and its suffix, so that they can be stored as
+	 * ranges of the filename
+	 * 
+	 * @param fileName
+	 *            the filename
+	 * @param name
+	 *            name parsed from the filename
+	 * @param extension
+	 *            extension parsed from the filename
+	 * @return true if name and extension are prefix and suffix of the filename
+	 */
+	static boolean isSplitOf(String fileName, String name, String extension) {
+		return name.length() + extension.length() <= fileName.length()
+				&& fileName.startsWith(name)
+				&& fileName.endsWith(extension);
+	}
+
+	/** Restore initial file's info */
+	public void reset() {
+		this.name.set(this.originalChars, this.originalStart, this.originalNameLength);
+		this.extension.set(this.originalChars, this.originalStart + this.originalLength - this.originalExtensionLength, this.originalExtensionLength);
+	}
+	
+	/**
+	 * Returns true if the rules changed name or extension of the file
+	 * 
+	 * @return true if name or extension differ from the original ones
+	 */
+	public boolean isChanged() {
+		return !this.name.contentEquals(this.originalChars, this.originalStart, this.originalNameLength)
+				|| !this.extension.contentEquals(this.originalChars, this.originalStart + this.originalLength - this.originalExtensionLength, this.originalExtensionLength);
+	}
+	
+	/**
+	 * Set the new name of the file
+	 * 
+	 * @param name
+	 *            new name of the file to set
+	 */
+	public void setName(CharSequence name) {
+		this.name.set(name);
+	}
+	
+	/**
+	 * Returns the new name of the file, after the apply of the renaming rules
+	 * 
+	 * @return the new name of the file, after the apply of the renaming rules
+	 */
+	public String getName() {
+		return this.name.toString();
+	}
+	
+	/**
+	 * Returns the new name of the file as a sequence of characters, without
+	 * building a string: the sequence reflects the following changes of the
+	 * name, so it must not be stored
+	 * 
+	 * @return the new name of the file as a sequence of characters
+	 */
+	public CharSequence getNameChars() {
+		return this.name;
+	}
+	
+	/**
+	 * Inserts the specified text in the name
+	 * 
+	 * @param index
+	 *            position at which insert the text
+	 * @param text
+	 *            text to insert
+	 * @throws StringIndexOutOfBoundsException
+	 *             if <i>index</i> is negative or greater than the name's
+	 *             length
+	 */
+	public void insertInName(int index, CharSequence text) {
+		this.name.insert(index, text);
+	}
+	
+	/**
+	 * Removes the specified range of characters from the name
+	 * 
+	 * @param start
+	 *            index (inclusive) of the first character to remove
+	 * @param end
+	 *            index (exclusive) of the last character to remove
+	 * @throws StringIndexOutOfBoundsException
+	 *             if the range is invalid
+	 */
+	public void deleteFromName(int start, int end) {
+		this.name.delete(start, end);
+	}
+	
+	/**
+	 * Replaces the specified range of characters of the name with the
+	 * specified text
+	 * 
+	 * @param start
+	 *            index (inclusive) of the first character to replace
+	 * @param end
+	 *            index (exclusive) of the last character to replace
+	 * @param text
+	 *            text to insert in place of the range
+	 * @throws StringIndexOutOfBoundsException
+	 *             if the range is invalid
+	 */
+	public void replaceInName(int start, int end, CharSequence text) {
+		this.name.replace(start, end, text);
+	}
+	
+	/**
+	 * Sets the character of the name at the specified position
+	 * 
+	 * @param index
+	 *            position of the character to set
+	 * @param character
+	 *            new character
+	 * @throws StringIndexOutOfBoundsException
+	 *             if <i>index</i> is negative or not less than the name's
+	 *             length
+	 */
+	public void setNameCharAt(int index, char character) {
+		this.name.setCharAt(index, character);
+	}
+	
+	/**
+	 * Returns an empty builder, that a rule can use to build the new name or
+	 * extension before setting it: the builder is reused, so it must not be
+	 * stored
+	 * 
+	 * @return an empty builder
+	 */
+	StringBuilder getBuilder() {
+		this.builder.setLength(0);
+		return this.builder;
+	}
+	
+	/**
+	 * Sets the new extension of the file, after the apply of the renaming rules
+	 * 
+	 * @param extension
+	 *            new extension of the file to set
+	 */
+	public void setExtension(CharSequence extension) {
+		this.extension.set(extension);
+	}
+	
+	/**
+	 * Returns the new extension of the file, after the apply of the renaming
+	 * rules
+	 * 
+	 * @return the new extension of the file, after the apply of the renaming
+	 *         rules
+	 */
+	public String getExtension() {
+		return this.extension.toString();
+	}
+	
+	/**
+	 * Returns the new extension of the file as a sequence of characters,
+	 * without building a string: the sequence reflects the following changes
+	 * of the extension, so it must not be stored
+	 * 
+	 * @return the new extension of the file as a sequence of characters
+	 */
+	public CharSequence getExtensionChars() {
+		return this.extension;
+	}
+	
+	/**
+	 * Copies name and extension of the file, one after the other, in the
+	 * specified array: the name takes the first {@link CharSequence#length()}
+	 * characters of {@link #getNameChars()}
+	 * 
+	 * @param destination
+	 *            array in which copy the characters
+	 * @param offset
+	 *            index at which copy the first character of the name
+	 * @throws IndexOutOfBoundsException
+	 *             if the array is too short
+	 */
+	public void getChars(char[] destination, int offset) {
+		this.name.getChars(destination, offset);
+		this.extension.getChars(destination, offset + this.name.length());
+	}
+	
+	/**
+	 * Sets name and extension of the file to the specified characters, that
+	 * contain the name followed by the extension, as copied by
+	 * {@link #getChars(char[], int)}
+	 * 
+	 * @param chars
+	 *            array that contains the characters
+	 * @param start
+	 *            index of the first character of the name
+	 * @param nameLength
+	 *            length of the name
+	 * @param extensionLength
+	 *            length of the extension, that follows the name
+	 */
+	public void setChars(char[] chars, int start, int nameLength, int extensionLength) {
+		this.name.set(chars, start, nameLength);
+		this.extension.set(chars, start + nameLength, extensionLength);
+	}
+	
+	/**
+	 * Inserts the specified text in the extension
+	 * 
+	 * @param index
+	 *            position at which insert the text
+	 * @param text
+	 *            text to insert
+	 * @throws StringIndexOutOfBoundsException
+	 *             if <i>index</i> is negative or greater than the
+	 *             extension's length
+	 */
+	public void insertInExtension(int index, CharSequence text) {
+		this.extension.insert(index, text);
+	}
+	
+	/**
+	 * Removes the specified range of characters from the extension
+	 * 
+	 * @param start
+	 *            index (inclusive) of the first character to remove
+	 * @param end
+	 *            index (exclusive) of the last character to remove
+	 * @throws StringIndexOutOfBoundsException
+	 *             if the range is invalid
+	 */
+	public void deleteFromExtension(int start, int end) {
+		this.extension.delete(start, end);
+	}
+	
+	/**
+	 * Replaces the specified range of characters of the extension with the
+	 * specified text
+	 * 
+	 * @param start
+	 *            index (inclusive) of the first character to replace
+	 * @param end
+	 *            index (exclusive) of the last character to replace
+	 * @param text
+	 *            text to insert in place of the range
+	 * @throws StringIndexOutOfBoundsException
+	 *             if the range is invalid
+	 */
+	public void replaceInExtension(int start, int end, CharSequence text) {
+		this.extension.replace(start, end, text);
+	}
+	
+	/**
+	 * Sets the character of the extension at the specified position
+	 * 
+	 * @param index
+	 *            position of the character to set
+	 * @param character
+	 *            new character
+	 * @throws StringIndexOutOfBoundsException
+	 *             if <i>index</i> is negative or not less than the
+	 *             extension's length
+	 */
+	public void setExtensionCharAt(int index, char character) {
+		this.extension.setCharAt(index, character);
+	}
+	
+	/**
+	 * Returns the full filename, after the apply of the renaming rules
+	 * 
+	 * @return the full filename, after the apply of the renaming rules
+	 */
+	public String getNewFullName () {
+		int nameVersion      = this.name.getVersion();
+		int extensionVersion = this.extension.getVersion();
+		if (this.fullNameVersion != nameVersion || this.fullExtensionVersion != extensionVersion) {
+			String name      = this.name.toString();
+			String extension = this.extension.toString();
+			this.fullName             = extension.length() > 0 ? name + "." + extension : name;
+			this.fullNameVersion      = nameVersion;
+			this.fullExtensionVersion = extensionVersion;
+		}
+		return this.fullName;
+	}
+	
+	/**
+	 * Returns the full path of the file, after the apply of the renaming
+	 * rules: it identifies the file among those of all the folders
+	 * 
+	 * @return the full path of the file, after the apply of the renaming
+	 *         rules
+	 */
+	public String getNewPath() {
+		return new File(this.parent, getNewFullName()).getPath();
+	}
+	
+	/**
+	 * Returns the current file object
+	 * 
+	 * @return the current file object
+	 */
+	public File getFile() {
+		if (this.file == null) {
+			this.file = new File(this.parent, new String(this.originalChars, this.originalStart, this.originalLength));
+		}
+		return this.file;
+	}
+}
\ No newline at end of file
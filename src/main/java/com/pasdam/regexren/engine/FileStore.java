@@ -0,0 +1,801 @@
+package com.pasdam.regexren.engine;
+
+import java.io.File;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.pasdam.utils.file.FileInfo;
+
+/**
+ * <p>
+ * Compact list of files, stored by columns instead of one object per file.
+ * </p>
+ * <p>
+ * The filenames are packed in a single array of characters and each entry
+ * only stores its range and the lengths of name and extension, parsed once
+ * when the file is added; the parent folders are stored once and referenced
+ * by index, and the entries that are folders or that shouldn't be renamed are
+ * marked in bit sets. The new name computed by the rules is kept only for the
+ * files it changes. {@link File} objects are created only when requested, so a list of one
+ * million files takes less than 100 bytes per file instead of several hundred.
+ * </p>
+ * <p>
+ * Rules are applied to a working {@link FileModelItem} that is bound to an
+ * entry at a time, see {@link #load(int, FileModelItem)} and
+ * {@link #setNewName(int, FileModelItem)}.
+ * </p>
+ * <p>
+ * The store must be modified and read by one thread at a time, except for
+ * {@link #setNewName(int, FileModelItem)}. Other threads read a
+ * {@link #snapshot()}: it shares the columns with the store, that copies a
+ * column before changing in place any entry of the snapshot, so appending
+ * files copies nothing, and a pass of the rules copies only the new names.
+ * </p>
+ *
+ * @author paco
+ * @version 0.1
+ */
+public final class FileStore {
+
+	/** Snapshots are read-only */
+	private final boolean readOnly;
+
+	/** Initial number of entries */
+	private static final int INITIAL_CAPACITY = 256;
+
+	/** Average length of a filename, used to size the characters array */
+	private static final int AVERAGE_NAME_LENGTH = 24;
+
+	/** Filenames of all entries */
+	private char[] chars = new char[INITIAL_CAPACITY * AVERAGE_NAME_LENGTH];
+
+	/** Number of characters used */
+	private int charsLength;
+
+	/** Number of used characters no more referenced by any entry */
+	private int unusedChars;
+
+	/** Index of the first character of the filename of each entry */
+	private int[] starts = new int[INITIAL_CAPACITY];
+
+	/** Length of the filename of each entry */
+	private int[] lengths = new int[INITIAL_CAPACITY];
+
+	/** Length of the name of each entry, that starts the filename */
+	private int[] nameLengths = new int[INITIAL_CAPACITY];
+
+	/** Length of the extension of each entry, that ends the filename */
+	private int[] extensionLengths = new int[INITIAL_CAPACITY];
+
+	/** Index of the folder of each entry */
+	private int[] parents = new int[INITIAL_CAPACITY];
+
+	/**
+	 * New name of each entry, or null if the rules don't change it; it is
+	 * volatile since it is copied by the first thread that sets a new name
+	 */
+	private volatile String[] newNames = new String[INITIAL_CAPACITY];
+
+	/** Folders of the entries */
+	private File[] folders = new File[16];
+
+	/** Number of folders */
+	private int foldersCount;
+
+	/** Indexes of the folders */
+	private final Map<File, Integer> folderIndexes = new HashMap<File, Integer>();
+
+	/** Entries that shouldn't be renamed: files are checked when added */
+	private BitSet unchecked = new BitSet();
+
+	/** Entries that are folders, read once when the file is added */
+	private BitSet directories = new BitSet();
+
+	/** Number of entries */
+	private int size;
+
+	/**
+	 * Last snapshot of the store, whose entries are not changed in place, or
+	 * null if no snapshot has been taken since the store was cleared: older
+	 * snapshots share with the store only the columns shared by the last one
+	 */
+	private FileStore snapshot;
+
+	/** Creates an empty store */
+	public FileStore() {
+		this.readOnly = false;
+	}
+
+	/**
+	 * Creates a snapshot of the specified store
+	 *
+	 * @param store
+	 *            store whose columns are shared
+	 */
+	private FileStore(FileStore store) {
+		this.readOnly         = true;
+		this.chars            = store.chars;
+		this.charsLength      = store.charsLength;
+		this.starts           = store.starts;
+		this.lengths          = store.lengths;
+		this.nameLengths      = store.nameLengths;
+		this.extensionLengths = store.extensionLengths;
+		this.parents          = store.parents;
+		this.newNames         = store.newNames;
+		this.folders          = store.folders;
+		this.foldersCount     = store.foldersCount;
+		this.unchecked        = store.unchecked;
+		this.directories      = store.directories;
+		this.size             = store.size;
+	}
+
+	/**
+	 * Returns a read-only copy of the store, that can be read by any thread
+	 * while the store is modified; the columns are copied only when the store
+	 * changes them
+	 *
+	 * @return a read-only copy of the store
+	 */
+	public FileStore snapshot() {
+		if (this.readOnly) {
+			return this;
+		}
+		this.snapshot = new FileStore(this);
+		return this.snapshot;
+	}
+
+	/**
+	 * Returns the number of files
+	 *
+	 * @return the number of files
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Appends the specified file, checked
+	 *
+	 * @param file
+	 *            file to add
+	 */
+	public void add(File file) {
+		checkWritable();
+		int index = this.size;
+		ensureCapacity(index + 1);
+
+		// the entries after the size are not shared with the snapshots
+		this.parents[index] = folderIndex(file.getParentFile());
+		this.newNames[index] = null;
+		if (this.unchecked.get(index)) {
+			unchecked().clear(index);
+		}
+		setFileName(index, file);
+		this.size = index + 1;
+	}
+
+	/**
+	 * Appends the specified files, checked
+	 *
+	 * @param files
+	 *            files to add
+	 */
+	public void addAll(Collection<File> files) {
+		checkWritable();
+		ensureCapacity(this.size + files.size());
+		for (File file : files) {
+			add(file);
+		}
+	}
+
+	/** Removes all files, releasing the memory */
+	public void clear() {
+		checkWritable();
+		this.size             = 0;
+		this.chars            = new char[INITIAL_CAPACITY * AVERAGE_NAME_LENGTH];
+		this.charsLength      = 0;
+		this.unusedChars      = 0;
+		this.starts           = new int[INITIAL_CAPACITY];
+		this.lengths          = new int[INITIAL_CAPACITY];
+		this.nameLengths      = new int[INITIAL_CAPACITY];
+		this.extensionLengths = new int[INITIAL_CAPACITY];
+		this.parents          = new int[INITIAL_CAPACITY];
+		this.newNames         = new String[INITIAL_CAPACITY];
+		this.folders          = new File[16];
+		this.foldersCount     = 0;
+		this.unchecked        = new BitSet();
+		this.directories      = new BitSet();
+		this.snapshot         = null;
+		this.folderIndexes.clear();
+	}
+
+	/**
+	 * Returns the file at the specified index
+	 *
+	 * @param index
+	 *            index of the file
+	 * @return the file at the specified index
+	 */
+	public File getFile(int index) {
+		return new File(getFolder(index), getFileName(index));
+	}
+
+	/**
+	 * Returns the name of the file at the specified index
+	 *
+	 * @param index
+	 *            index of the file
+	 * @return the name of the file at the specified index
+	 */
+	public String getFileName(int index) {
+		return substring(this.chars, this.starts[index], this.lengths[index]);
+	}
+
+	/**
+	 * Returns the folder that contains the file at the specified index
+	 *
+	 * @param index
+	 *            index of the file
+	 * @return the folder that contains the file at the specified index
+	 */
+	public File getFolder(int index) {
+		return this.folders[this.parents[index]];
+	}
+
+	/**
+	 * Returns the index of the folder that contains the file at the specified
+	 * index: files with the same folder index are in the same folder, and the
+	 * index of a folder doesn't change until the store is cleared
+	 *
+	 * @param index
+	 *            index of the file
+	 * @return the index of the folder that contains the file
+	 */
+	public int getFolderIndex(int index) {
+		return this.parents[index];
+	}
+
+	/**
+	 * Returns true if the file at the specified index is a folder, as it was
+	 * when the file has been added: it doesn't access the file system
+	 *
+	 * @param index
+	 *            index of the file
+	 * @return true if the file at the specified index is a folder
+	 */
+	public boolean isDirectory(int index) {
+		return this.directories.get(index);
+	}
+
+	/**
+	 * Replaces the file at the specified index, i.e. after it has been renamed;
+	 * the new name is cleared
+	 *
+	 * @param index
+	 *            index of the file to replace
+	 * @param file
+	 *            new file
+	 */
+	public void setFile(int index, File file) {
+		checkWritable();
+		detachEntries(index);
+		this.unusedChars += this.lengths[index];
+		this.parents[index] = folderIndex(file.getParentFile());
+		this.newNames[index] = null;
+		setFileName(index, file);
+
+		if (this.unusedChars > this.charsLength >> 1) {
+			compact();
+		}
+	}
+
+	/**
+	 * Returns true if the file at the specified index should be renamed
+	 *
+	 * @param index
+	 *            index of the file
+	 * @return true if the file should be renamed, false otherwise
+	 */
+	public boolean isChecked(int index) {
+		return !this.unchecked.get(index);
+	}
+
+	/**
+	 * Sets whether the file at the specified index should be renamed or not
+	 *
+	 * @param index
+	 *            index of the file
+	 * @param checked
+	 *            true if the file should be renamed, false otherwise
+	 */
+	public void setChecked(int index, boolean checked) {
+		checkWritable();
+		if (this.unchecked.get(index) == checked) {
+			unchecked().set(index, !checked);
+		}
+	}
+
+	/**
+	 * Sets whether the specified files should be renamed or not, with a
+	 * single operation on the bit set
+	 *
+	 * @param files
+	 *            indexes of the files to update, or null to update all files
+	 * @param checked
+	 *            true if the files should be renamed, false otherwise
+	 * @return the indexes of the files whose state changed
+	 */
+	public BitSet setChecked(BitSet files, boolean checked) {
+		checkWritable();
+		BitSet changed = files != null ? (BitSet) files.clone() : all();
+		changed.clear(this.size, Math.max(this.size, changed.length()));
+		if (checked) {
+			changed.and(this.unchecked);
+		} else {
+			changed.andNot(this.unchecked);
+		}
+		if (!changed.isEmpty()) {
+			unchecked().xor(changed);
+		}
+		return changed;
+	}
+
+	/**
+	 * Inverts the checked state of the specified files
+	 *
+	 * @param files
+	 *            indexes of the files to update, or null to update all files
+	 * @return the indexes of the files whose state changed
+	 */
+	public BitSet invertChecked(BitSet files) {
+		checkWritable();
+		BitSet changed = files != null ? (BitSet) files.clone() : all();
+		changed.clear(this.size, Math.max(this.size, changed.length()));
+		unchecked().xor(changed);
+		return changed;
+	}
+
+	/**
+	 * Returns the indexes of the files whose current name contains the
+	 * specified pattern
+	 *
+	 * @param pattern
+	 *            pattern to search in the names
+	 * @return the indexes of the files whose name contains the pattern
+	 */
+	public BitSet findByName(Pattern pattern) {
+		BitSet found = new BitSet();
+		int size = this.size;
+		Matcher matcher = pattern.matcher("");
+		for (int i = 0; i < size; i++) {
+			if (matcher.reset(CharBuffer.wrap(this.chars, this.starts[i], this.lengths[i])).find()) {
+				found.set(i);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Returns the indexes of the files that are folders
+	 *
+	 * @return the indexes of the folders
+	 * @see #isDirectory(int)
+	 */
+	public BitSet findDirectories() {
+		BitSet directories = (BitSet) this.directories.clone();
+		directories.clear(this.size, Math.max(this.size, directories.length()));
+		return directories;
+	}
+
+	/**
+	 * Returns the number of files that should be renamed
+	 *
+	 * @return the number of checked files
+	 */
+	public int getCheckedCount() {
+		return this.size - this.unchecked.cardinality();
+	}
+
+	/**
+	 * Returns true if the rules change the name of the file at the specified
+	 * index
+	 *
+	 * @param index
+	 *            index of the file
+	 * @return true if the rules change the name of the file
+	 */
+	public boolean isChanged(int index) {
+		return this.newNames[index] != null;
+	}
+
+	/**
+	 * Returns the full filename of the file at the specified index, after the
+	 * apply of the renaming rules
+	 *
+	 * @param index
+	 *            index of the file
+	 * @return the new full filename of the file
+	 */
+	public String getNewFullName(int index) {
+		String newName = this.newNames[index];
+		if (newName != null) {
+			return newName;
+		}
+
+		// same format of FileModelItem.getNewFullName()
+		char[] chars = this.chars;
+		int start = this.starts[index];
+		int nameLength = this.nameLengths[index];
+		int extensionLength = this.extensionLengths[index];
+		String name = substring(chars, start, nameLength);
+		return extensionLength > 0
+				? name + "." + substring(chars, start + this.lengths[index] - extensionLength, extensionLength)
+				: name;
+	}
+
+	/**
+	 * Returns true if the full filename of the file at the specified index,
+	 * after the apply of the renaming rules, is equal to the specified one;
+	 * unlike {@link #getNewFullName(int)} it doesn't build any string
+	 *
+	 * @param index
+	 *            index of the file
+	 * @param fullName
+	 *            full filename to compare
+	 * @return true if the new full filename is equal to the specified one
+	 */
+	public boolean hasNewFullName(int index, String fullName) {
+		String newName = this.newNames[index];
+		if (newName != null) {
+			return newName.equals(fullName);
+		}
+
+		// compare with name and extension, in the format of getNewFullName()
+		char[] chars = this.chars;
+		int start = this.starts[index];
+		int nameLength = this.nameLengths[index];
+		int extensionLength = this.extensionLengths[index];
+		int extensionStart = start + this.lengths[index] - extensionLength;
+		if (fullName.length() != (extensionLength > 0 ? nameLength + 1 + extensionLength : nameLength)) {
+			return false;
+		}
+		for (int i = 0; i < nameLength; i++) {
+			if (fullName.charAt(i) != chars[start + i]) {
+				return false;
+			}
+		}
+		if (extensionLength > 0) {
+			if (fullName.charAt(nameLength) != '.') {
+				return false;
+			}
+			for (int i = 0; i < extensionLength; i++) {
+				if (fullName.charAt(nameLength + 1 + i) != chars[extensionStart + i]) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the full path of the file at the specified index, after the
+	 * apply of the renaming rules
+	 *
+	 * @param index
+	 *            index of the file
+	 * @return the new full path of the file
+	 */
+	public String getNewPath(int index) {
+		return new File(getFolder(index), getNewFullName(index)).getPath();
+	}
+
+	/**
+	 * Binds the working item to the file at the specified index, restoring its
+	 * original name
+	 *
+	 * @param index
+	 *            index of the file
+	 * @param item
+	 *            working item to bind
+	 */
+	public void load(int index, FileModelItem item) {
+		item.bind(getFolder(index), this.chars, this.starts[index], this.lengths[index],
+				this.nameLengths[index], this.extensionLengths[index]);
+	}
+
+	/**
+	 * Stores the name of the working item as the new name of the file at the
+	 * specified index; entries with different indexes can be set concurrently
+	 *
+	 * @param index
+	 *            index of the file
+	 * @param item
+	 *            working item bound to the file, or null to clear the new name
+	 */
+	public void setNewName(int index, FileModelItem item) {
+		checkWritable();
+		String newName = item != null && item.isChanged() ? item.getNewFullName() : null;
+		String[] newNames = this.newNames;
+		FileStore snapshot = this.snapshot;
+		if (snapshot != null && newNames == snapshot.newNames && index < snapshot.size) {
+			newNames = detachNewNames();
+		}
+		newNames[index] = newName;
+	}
+
+	/** Clears the new names, restoring the original ones */
+	public void clearNewNames() {
+		checkWritable();
+		if (this.snapshot != null && this.newNames == this.snapshot.newNames) {
+			this.newNames = new String[this.newNames.length];
+		} else {
+			Arrays.fill(this.newNames, 0, this.size, null);
+		}
+	}
+
+	/**
+	 * Sorts the files with the specified comparator; the new names are cleared
+	 *
+	 * @param comparator
+	 *            comparator of the files
+	 */
+	public void sort(final Comparator<File> comparator) {
+		checkWritable();
+		int size = this.size;
+		final File[] files = new File[size];
+		Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			files[i] = getFile(i);
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer index1, Integer index2) {
+				return comparator.compare(files[index1], files[index2]);
+			}
+		});
+
+		// rebuild the columns in the new order
+		char[] chars = new char[Math.max(this.charsLength - this.unusedChars, 1)];
+		int[] starts = new int[this.starts.length];
+		int[] lengths = new int[this.starts.length];
+		int[] nameLengths = new int[this.starts.length];
+		int[] extensionLengths = new int[this.starts.length];
+		int[] parents = new int[this.starts.length];
+		BitSet unchecked = new BitSet();
+		BitSet directories = new BitSet();
+		int charsLength = 0;
+		int index;
+		for (int i = 0; i < size; i++) {
+			index = order[i];
+			System.arraycopy(this.chars, this.starts[index], chars, charsLength, this.lengths[index]);
+			starts[i]           = charsLength;
+			lengths[i]          = this.lengths[index];
+			nameLengths[i]      = this.nameLengths[index];
+			extensionLengths[i] = this.extensionLengths[index];
+			parents[i]          = this.parents[index];
+			unchecked.set(i, this.unchecked.get(index));
+			directories.set(i, this.directories.get(index));
+			charsLength += lengths[i];
+		}
+
+		this.chars            = chars;
+		this.charsLength      = charsLength;
+		this.unusedChars      = 0;
+		this.starts           = starts;
+		this.lengths          = lengths;
+		this.nameLengths      = nameLengths;
+		this.extensionLengths = extensionLengths;
+		this.parents          = parents;
+		this.unchecked        = unchecked;
+		this.directories      = directories;
+		clearNewNames();
+	}
+
+	/**
+	 * Returns a bit set with the indexes of all files
+	 *
+	 * @return the indexes of all files
+	 */
+	private BitSet all() {
+		BitSet all = new BitSet(this.size);
+		all.set(0, this.size);
+		return all;
+	}
+
+	/**
+	 * Parses the name of the file and appends it to the characters array,
+	 * updating the entry at the specified index
+	 *
+	 * @param index
+	 *            index of the entry
+	 * @param file
+	 *            file whose name to store
+	 */
+	private void setFileName(int index, File file) {
+		String fileName = file.getName();
+		boolean directory = file.isDirectory();
+		if (this.directories.get(index) != directory) {
+			directories().set(index, directory);
+		}
+		FileInfo info = FileInfo.parseFileInfo(file);
+		int length = fileName.length();
+		int nameLength = length;
+		int extensionLength = 0;
+		if (FileModelItem.isSplitOf(fileName, info.getName(), info.getExtension())) {
+			nameLength = info.getName().length();
+			extensionLength = info.getExtension().length();
+		}
+
+		if (this.charsLength + length > this.chars.length) {
+			this.chars = Arrays.copyOf(this.chars, Math.max(this.charsLength + length, this.chars.length << 1));
+		}
+		fileName.getChars(0, length, this.chars, this.charsLength);
+		this.starts[index]           = this.charsLength;
+		this.lengths[index]          = length;
+		this.nameLengths[index]      = nameLength;
+		this.extensionLengths[index] = extensionLength;
+		this.charsLength += length;
+	}
+
+	/**
+	 * Returns the index of the specified folder, adding it if needed
+	 *
+	 * @param folder
+	 *            folder to search
+	 * @return the index of the folder
+	 */
+	private int folderIndex(File folder) {
+		Integer index = this.folderIndexes.get(folder);
+		if (index == null) {
+			if (this.foldersCount == this.folders.length) {
+				this.folders = Arrays.copyOf(this.folders, this.foldersCount << 1);
+			}
+			this.folders[this.foldersCount] = folder;
+			index = this.foldersCount++;
+			this.folderIndexes.put(folder, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Grows the columns in order to store the specified number of entries
+	 *
+	 * @param capacity
+	 *            number of entries to store
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity > this.starts.length) {
+			capacity = Math.max(capacity, this.starts.length + (this.starts.length >> 1));
+			this.starts           = Arrays.copyOf(this.starts, capacity);
+			this.lengths          = Arrays.copyOf(this.lengths, capacity);
+			this.nameLengths      = Arrays.copyOf(this.nameLengths, capacity);
+			this.extensionLengths = Arrays.copyOf(this.extensionLengths, capacity);
+			this.parents          = Arrays.copyOf(this.parents, capacity);
+			this.newNames         = Arrays.copyOf(this.newNames, capacity);
+		}
+	}
+
+	/** Removes from the characters array the names no more referenced */
+	private void compact() {
+		int size = this.size;
+		char[] chars = new char[Math.max(this.charsLength - this.unusedChars, 1)];
+		int[] starts = new int[this.starts.length];
+		int charsLength = 0;
+		for (int i = 0; i < size; i++) {
+			System.arraycopy(this.chars, this.starts[i], chars, charsLength, this.lengths[i]);
+			starts[i] = charsLength;
+			charsLength += this.lengths[i];
+		}
+		this.chars       = chars;
+		this.starts      = starts;
+		this.charsLength = charsLength;
+		this.unusedChars = 0;
+	}
+
+	/**
+	 * Copies the columns of the files, if the entry at the specified index is
+	 * shared with the last snapshot; the characters are only appended, so
+	 * they are never copied
+	 *
+	 * @param index
+	 *            index of the entry going to be changed
+	 */
+	private void detachEntries(int index) {
+		FileStore snapshot = this.snapshot;
+		if (snapshot != null && index < snapshot.size) {
+			if (this.starts == snapshot.starts) {
+				this.starts = this.starts.clone();
+			}
+			if (this.lengths == snapshot.lengths) {
+				this.lengths = this.lengths.clone();
+			}
+			if (this.nameLengths == snapshot.nameLengths) {
+				this.nameLengths = this.nameLengths.clone();
+			}
+			if (this.extensionLengths == snapshot.extensionLengths) {
+				this.extensionLengths = this.extensionLengths.clone();
+			}
+			if (this.parents == snapshot.parents) {
+				this.parents = this.parents.clone();
+			}
+			if (this.newNames == snapshot.newNames) {
+				detachNewNames();
+			}
+		}
+	}
+
+	/**
+	 * Copies the new names if they are shared with the last snapshot; it is
+	 * synchronized, since the new names are set concurrently
+	 *
+	 * @return the new names, not shared
+	 */
+	private synchronized String[] detachNewNames() {
+		if (this.newNames == this.snapshot.newNames) {
+			this.newNames = this.newNames.clone();
+		}
+		return this.newNames;
+	}
+
+	/**
+	 * Returns the entries that shouldn't be renamed, copying them if they are
+	 * shared with the last snapshot
+	 *
+	 * @return the entries that shouldn't be renamed, not shared
+	 */
+	private BitSet unchecked() {
+		if (this.snapshot != null && this.unchecked == this.snapshot.unchecked) {
+			this.unchecked = (BitSet) this.unchecked.clone();
+		}
+		return this.unchecked;
+	}
+
+	/**
+	 * Returns the entries that are folders, copying them if they are shared
+	 * with the last snapshot
+	 *
+	 * @return the entries that are folders, not shared
+	 */
+	private BitSet directories() {
+		if (this.snapshot != null && this.directories == this.snapshot.directories) {
+			this.directories = (BitSet) this.directories.clone();
+		}
+		return this.directories;
+	}
+
+	/**
+	 * Throws an exception if the store is a snapshot
+	 *
+	 * @throws UnsupportedOperationException
+	 *             if the store is a snapshot
+	 */
+	private void checkWritable() throws UnsupportedOperationException {
+		if (this.readOnly) {
+			throw new UnsupportedOperationException("Snapshot of the files list");
+		}
+	}
+
+	/**
+	 * Returns the specified range of characters
+	 *
+	 * @param chars
+	 *            array of characters
+	 * @param start
+	 *            index of the first character
+	 * @param length
+	 *            number of characters
+	 * @return the string of the specified range
+	 */
+	private static String substring(char[] chars, int start, int length) {
+		return new String(chars, start, length);
+	}
+}
@@ -1,9 +1,7 @@
-package com.pasdam.regexren.gui.rules;
+package com.pasdam.regexren.engine;
 
 import java.util.Arrays;
 
-import com.pasdam.regexren.model.FileModelItem;
-import com.pasdam.regexren.model.RuleType;
 
 /**
  * {@link AbstractRuleFactory} used to create rule to insert a counter at a specific position
@@ -210,42 +208,27 @@ public class InsertCounterAtPositionFactory extends AbstractInsertCounterFactory
 		}
 		
 		/**
-		 * Insert the current value of the counter's value at the specific
-		 * position from begin
+		 * Returns the index at which insert the counter, counting
+		 * {@link #position} characters from the begin of the value
 		 * 
 		 * @param value
-		 *            string in which insert the counter
-		 * @return the string with counter's value
+		 *            text in which insert the counter
+		 * @return the index at which insert the counter
 		 */
-		protected String insertCounterFromBeginning(String value) {
-			if (this.position >= value.length()) {
-				return value + getCount();
-				
-			} else {
-				return value.substring(0, this.position)
-						+ getCount()
-						+ value.substring(this.position);
-			}
+		protected int indexFromBeginning(CharSequence value) {
+			return Math.min(this.position, value.length());
 		}
 		
 		/**
-		 * Insert the current value of the counter's value at the specific
-		 * position from end
+		 * Returns the index at which insert the counter, counting
+		 * {@link #position} characters from the end of the value
 		 * 
 		 * @param value
-		 *            string in which insert the counter
-		 * @return the string with counter's value
+		 *            text in which insert the counter
+		 * @return the index at which insert the counter
 		 */
-		protected String insertCounterFromEnd(String value) {
-			if (this.position >= value.length()) {
-				return getCount() + value;
-
-			} else {
-				int invertedPosition = value.length() - this.position;
-				return value.substring(0, invertedPosition)
-					 + getCount()
-				 	 + value.substring(invertedPosition);
-			}
+		protected int indexFromEnd(CharSequence value) {
+			return Math.max(value.length() - this.position, 0);
 		}
 	}
 
@@ -259,7 +242,7 @@ public class InsertCounterAtPositionFactory extends AbstractInsertCounterFactory
 
 		@Override
 		public FileModelItem apply(FileModelItem file) {
-			file.setName(insertCounterFromBeginning(file.getName()));
+			file.insertInName(indexFromBeginning(file.getNameChars()), getCount());
 			return file;
 		}
 	}
@@ -274,7 +257,7 @@ public class InsertCounterAtPositionFactory extends AbstractInsertCounterFactory
 		
 		@Override
 		public FileModelItem apply(FileModelItem file) {
-			file.setName(insertCounterFromEnd(file.getName()));
+			file.insertInName(indexFromEnd(file.getNameChars()), getCount());
 			return file;
 		}
 	}
@@ -289,7 +272,7 @@ public class InsertCounterAtPositionFactory extends AbstractInsertCounterFactory
 		
 		@Override
 		public FileModelItem apply(FileModelItem file) {
-			file.setExtension(insertCounterFromBeginning(file.getExtension()));
+			file.insertInExtension(indexFromBeginning(file.getExtensionChars()), getCount());
 			return file;
 		}
 	}
@@ -304,7 +287,7 @@ public class InsertCounterAtPositionFactory extends AbstractInsertCounterFactory
 		
 		@Override
 		public FileModelItem apply(FileModelItem file) {
-			file.setExtension(insertCounterFromEnd(file.getExtension()));
+			file.insertInExtension(indexFromEnd(file.getExtensionChars()), getCount());
 			return file;
 		}
 	}
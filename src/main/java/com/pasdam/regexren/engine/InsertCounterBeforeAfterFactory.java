@@ -1,12 +1,8 @@
-package com.pasdam.regexren.gui.rules;
+package com.pasdam.regexren.engine;
 
 import java.util.Arrays;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
-import com.pasdam.regexren.model.FileModelItem;
-import com.pasdam.regexren.model.RuleType;
 
 /**
  * {@link AbstractRuleFactory} used to create rule to insert a counter before/after a specific pattern
@@ -166,7 +162,7 @@ public class InsertCounterBeforeAfterFactory extends AbstractInsertCounterFactor
 			return;
 			
 		} else if (this.regex) {
-			Pattern.compile(this.textToSearch);
+			TextPattern.compile(this.textToSearch, true, this.matchCase);
 		}
 		super.setValid(true);
 	}
@@ -235,7 +231,7 @@ public class InsertCounterBeforeAfterFactory extends AbstractInsertCounterFactor
 	private abstract static class AbstractCounterPatternRule extends AbstractCounterRule {
 		
 		/**	Pattern to search */
-		protected final Pattern pattern;
+		protected final TextPattern pattern;
 		
 		/**
 		 * Creates a rule and configure the pattern to search
@@ -252,12 +248,7 @@ public class InsertCounterBeforeAfterFactory extends AbstractInsertCounterFactor
 		 */
 		public AbstractCounterPatternRule(int countStart, int padding, String textToSearch, boolean matchCase, boolean regex) {
 			super(countStart, padding);
-			if (matchCase) {
-				this.pattern = Pattern.compile(regex ? textToSearch : Pattern.quote(textToSearch));
-				
-			} else {
-				this.pattern = Pattern.compile(regex ? textToSearch : Pattern.quote(textToSearch), Pattern.CASE_INSENSITIVE);
-			}
+			this.pattern = TextPattern.compile(textToSearch, regex, matchCase);
 		}
 	}
 	
@@ -271,11 +262,9 @@ public class InsertCounterBeforeAfterFactory extends AbstractInsertCounterFactor
 		
 		@Override
 		public FileModelItem apply(FileModelItem file) {
-			Matcher matcher = super.pattern.matcher(file.getName());
+			TextMatcher matcher = super.pattern.matcher(file.getNameChars());
 			if (matcher.find()) {
-				file.setName(file.getName().substring(0, matcher.start())
-						+ getCount()
-						+ file.getName().substring(matcher.start()));
+				file.insertInName(matcher.start(), getCount());
 			}
 			return file;
 		}
@@ -291,11 +280,9 @@ public class InsertCounterBeforeAfterFactory extends AbstractInsertCounterFactor
 		
 		@Override
 		public FileModelItem apply(FileModelItem file) {
-			Matcher matcher = super.pattern.matcher(file.getName());
+			TextMatcher matcher = super.pattern.matcher(file.getNameChars());
 			if (matcher.find()) {
-				file.setName(file.getName().substring(0, matcher.end())
-						+ getCount()
-						+ file.getName().substring(matcher.end()));
+				file.insertInName(matcher.end(), getCount());
 			}
 			return file;
 		}
@@ -1,10 +1,8 @@
-package com.pasdam.regexren.gui.rules;
+package com.pasdam.regexren.engine;
 
 import java.util.HashMap;
 import java.util.Map;
 
-import com.pasdam.regexren.model.FileModelItem;
-import com.pasdam.regexren.model.RuleType;
 
 /**
  * {@link AbstractRuleFactory} used to create rule to insert a counter at a specific position
@@ -44,7 +42,7 @@ public class InsertCounterOnCollisionFactory extends AbstractInsertCounterFactor
 	/** Rule that insert a counter in case of name collision */
 	private static class InsertCounterOnCollisionRule extends AbstractCounterRule {
 		
-		/**	Map of names, used to check collision */
+		/**	Map of paths, used to check collision within the same folder */
 		private final Map<String, Object> names = new HashMap<String, Object>();
 		
 		/** @see AbstractCounterRule#AbstractCounterRule(int, int) */
@@ -54,14 +52,15 @@ public class InsertCounterOnCollisionFactory extends AbstractInsertCounterFactor
 
 		@Override
 		public FileModelItem apply(FileModelItem file) {
-			String name = file.getNewFullName();
-			if (this.names.containsKey(name)) {
+			String path = file.getNewPath();
+			if (this.names.containsKey(path)) {
 				// append counter
-				file.setName(file.getName() + " " + getCount());
+				file.insertInName(file.getNameChars().length(), " ");
+				file.insertInName(file.getNameChars().length(), getCount());
 				
 			} else {
-				// store name
-				this.names.put(name, null);
+				// store path
+				this.names.put(path, null);
 			}
 			
 			return file;
@@ -1,8 +1,6 @@
-package com.pasdam.regexren.gui.rules;
+package com.pasdam.regexren.engine;
 
 import com.pasdam.regexren.controller.LogManager;
-import com.pasdam.regexren.model.FileModelItem;
-import com.pasdam.regexren.model.RuleType;
 
 /**
  * {@link AbstractRuleFactory} used to create rule to insert a text at a specific position
@@ -236,46 +234,27 @@ public class InsertTextAtPositionFactory extends AbstractRuleFactory {
 		public void reset() {}
 		
 		/**
-		 * Inserts the specified text at specified position, starting from begin
-		 * of the original text
+		 * Returns the index at which insert the text, counting
+		 * {@link #position} characters from the begin of the original text
 		 * 
-		 * @param textToInsert
-		 *            text to insert
 		 * @param originalText
-		 *            original text in which insert the string
-		 * @param position
-		 *            position at which insert the text
-		 * @return a new string with the inserted text
+		 *            original text in which insert the text
+		 * @return the index at which insert the text
 		 */
-		protected static String insertFromBegin(String textToInsert, String originalText, int position) {
-			if (position >= originalText.length()) {
-				return originalText + textToInsert;
-				
-			} else {
-				return originalText.substring(0, position) + textToInsert + originalText.substring(position);
-			}
+		protected int indexFromBegin(CharSequence originalText) {
+			return Math.min(this.position, originalText.length());
 		}
 		
 		/**
-		 * Inserts the specified text at specified position, starting from end
-		 * of the original text
+		 * Returns the index at which insert the text, counting
+		 * {@link #position} characters from the end of the original text
 		 * 
-		 * @param textToInsert
-		 *            text to insert
 		 * @param originalText
-		 *            original text in which insert the string
-		 * @param position
-		 *            position at which insert the text
-		 * @return a new string with the inserted text
+		 *            original text in which insert the text
+		 * @return the index at which insert the text
 		 */
-		protected static String insertFromEnd(String textToInsert, String originalText, int position) {
-			if (position >= originalText.length()) {
-				return textToInsert + originalText;
-
-			} else {
-				int invertedPosition = originalText.length() - position;
-				return originalText.substring(0, invertedPosition) + textToInsert + originalText.substring(invertedPosition);
-			}
+		protected int indexFromEnd(CharSequence originalText) {
+			return Math.max(originalText.length() - this.position, 0);
 		}
 	}
 	
@@ -289,11 +268,7 @@ public class InsertTextAtPositionFactory extends AbstractRuleFactory {
 
 		@Override
 		public FileModelItem apply(FileModelItem fileModelItem) {
-			fileModelItem.setName(
-					AbstractInsertTextRule.insertFromBegin(
-							super.textToInsert, 
-							fileModelItem.getName(), 
-							super.position));;
+			fileModelItem.insertInName(indexFromBegin(fileModelItem.getNameChars()), super.textToInsert);
 			return fileModelItem;
 		}
 	}
@@ -308,11 +283,7 @@ public class InsertTextAtPositionFactory extends AbstractRuleFactory {
 		
 		@Override
 		public FileModelItem apply(FileModelItem fileModelItem) {
-			fileModelItem.setName(
-					AbstractInsertTextRule.insertFromEnd(
-							super.textToInsert, 
-							fileModelItem.getName(), 
-							super.position));;
+			fileModelItem.insertInName(indexFromEnd(fileModelItem.getNameChars()), super.textToInsert);
 			return fileModelItem;
 		}
 	}
@@ -327,11 +298,7 @@ public class InsertTextAtPositionFactory extends AbstractRuleFactory {
 		
 		@Override
 		public FileModelItem apply(FileModelItem fileModelItem) {
-			fileModelItem.setExtension(
-					AbstractInsertTextRule.insertFromBegin(
-							super.textToInsert, 
-							fileModelItem.getExtension(), 
-							super.position));;
+			fileModelItem.insertInExtension(indexFromBegin(fileModelItem.getExtensionChars()), super.textToInsert);
 			return fileModelItem;
 		}
 	}
@@ -346,11 +313,7 @@ public class InsertTextAtPositionFactory extends AbstractRuleFactory {
 		
 		@Override
 		public FileModelItem apply(FileModelItem fileModelItem) {
-			fileModelItem.setExtension(
-					AbstractInsertTextRule.insertFromEnd(
-							super.textToInsert, 
-							fileModelItem.getExtension(), 
-							super.position));;
+			fileModelItem.insertInExtension(indexFromEnd(fileModelItem.getExtensionChars()), super.textToInsert);
 			return fileModelItem;
 		}
 	}
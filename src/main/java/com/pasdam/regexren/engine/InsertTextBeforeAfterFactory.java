@@ -1,13 +1,9 @@
-package com.pasdam.regexren.gui.rules;
+package com.pasdam.regexren.engine;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
-import com.pasdam.regexren.model.FileModelItem;
-import com.pasdam.regexren.model.RuleType;
 
 /**
  * <p>
@@ -222,7 +218,7 @@ public class InsertTextBeforeAfterFactory extends AbstractRuleFactory {
 
 		} else if (this.regex) {
 			try {
-				Pattern.compile(this.textToSearch);
+				TextPattern.compile(this.textToSearch, true, this.matchCase);
 			} catch (PatternSyntaxException exception) {
 				invalidParameters.add(PARAMETER_TEXT_TO_SEARCH);
 			}
@@ -329,7 +325,7 @@ public class InsertTextBeforeAfterFactory extends AbstractRuleFactory {
 		protected final String textToInsert;
 
 		/** Pattern to find */
-		protected final Pattern pattern;
+		protected final TextPattern pattern;
 
 		/**
 		 * Creates a {@link AbstractInsertRule} with the specified parameters
@@ -346,9 +342,64 @@ public class InsertTextBeforeAfterFactory extends AbstractRuleFactory {
 		 */
 		public AbstractInsertRule(String textToInsert, String textToSearch, boolean matchCase, boolean regex) {
 			this.textToInsert = textToInsert;
-			this.pattern = matchCase 
-					? Pattern.compile(regex ? textToSearch : Pattern.quote(textToSearch))
-					: Pattern.compile(regex ? textToSearch : Pattern.quote(textToSearch), Pattern.CASE_INSENSITIVE);
+			this.pattern = TextPattern.compile(textToSearch, regex, matchCase);
+		}
+
+		/**
+		 * Inserts the text before or after every occurrence of the pattern,
+		 * building the new name in a single pass
+		 * 
+		 * @param fileModelItem
+		 *            item to update
+		 * @param after
+		 *            true to insert the text after the occurrences, false to
+		 *            insert it before
+		 */
+		protected void insertAll(FileModelItem fileModelItem, boolean after) {
+			CharSequence name = fileModelItem.getNameChars();
+			TextMatcher matcher = this.pattern.matcher(name);
+			if (!matcher.find()) {
+				return;
+			}
+			
+			StringBuilder builder = fileModelItem.getBuilder();
+			int previousIndex = 0;
+			int index;
+			do {
+				index = after ? matcher.end() : matcher.start();
+				builder.append(name, previousIndex, index);
+				builder.append(this.textToInsert);
+				previousIndex = index;
+			} while (matcher.find());
+			builder.append(name, previousIndex, name.length());
+			fileModelItem.setName(builder);
+		}
+
+		/**
+		 * Inserts the text before or after the first or the last occurrence of
+		 * the pattern
+		 * 
+		 * @param fileModelItem
+		 *            item to update
+		 * @param after
+		 *            true to insert the text after the occurrence, false to
+		 *            insert it before
+		 * @param last
+		 *            true to insert the text near the last occurrence, false
+		 *            to insert it near the first one
+		 */
+		protected void insertOne(FileModelItem fileModelItem, boolean after, boolean last) {
+			TextMatcher matcher = this.pattern.matcher(fileModelItem.getNameChars());
+			int index = -1;
+			while (matcher.find()) {
+				index = after ? matcher.end() : matcher.start();
+				if (!last) {
+					break;
+				}
+			}
+			if (index > -1) {
+				fileModelItem.insertInName(index, this.textToInsert);
+			}
 		}
 
 		@Override
@@ -368,17 +419,7 @@ public class InsertTextBeforeAfterFactory extends AbstractRuleFactory {
 
 		@Override
 		public FileModelItem apply(FileModelItem fileModelItem) {
-			Matcher matcher = super.pattern.matcher(fileModelItem.getName());
-			StringBuilder builder = new StringBuilder(super.textToInsert.length() + fileModelItem.getName().length());
-			int previousEndIndex = 0;
-			while (matcher.find()) {
-				builder.append(fileModelItem.getName().substring(previousEndIndex, matcher.start()));
-				builder.append(super.textToInsert);
-				previousEndIndex = matcher.start();
-			}
-			if (builder.length() > 0) {
-				fileModelItem.setName(builder.toString() + fileModelItem.getName().substring(previousEndIndex));
-			}
+			insertAll(fileModelItem, false);
 			return fileModelItem;
 		}
 	}
@@ -393,11 +434,7 @@ public class InsertTextBeforeAfterFactory extends AbstractRuleFactory {
 
 		@Override
 		public FileModelItem apply(FileModelItem fileModelItem) {
-			Matcher matcher = super.pattern.matcher(fileModelItem.getName());
-			if (matcher.find()) {
-				fileModelItem.setName(fileModelItem.getName().substring(0, matcher.start()) + super.textToInsert
-						+ fileModelItem.getName().substring(matcher.start()));
-			}
+			insertOne(fileModelItem, false, false);
 			return fileModelItem;
 		}
 	}
@@ -415,15 +452,7 @@ public class InsertTextBeforeAfterFactory extends AbstractRuleFactory {
 
 		@Override
 		public FileModelItem apply(FileModelItem fileModelItem) {
-			Matcher matcher = super.pattern.matcher(fileModelItem.getName());
-			int index = -1;
-			while (matcher.find()) {
-				index = matcher.start();
-			}
-			if (index > -1) {
-				fileModelItem.setName(fileModelItem.getName().substring(0, index) + super.textToInsert
-						+ fileModelItem.getName().substring(index));
-			}
+			insertOne(fileModelItem, false, true);
 			return fileModelItem;
 		}
 	}
@@ -441,17 +470,7 @@ public class InsertTextBeforeAfterFactory extends AbstractRuleFactory {
 
 		@Override
 		public FileModelItem apply(FileModelItem fileModelItem) {
-			Matcher matcher = super.pattern.matcher(fileModelItem.getName());
-			StringBuilder builder = new StringBuilder(super.textToInsert.length() + fileModelItem.getName().length());
-			int previousEndIndex = 0;
-			while (matcher.find()) {
-				builder.append(fileModelItem.getName().substring(previousEndIndex, matcher.end()));
-				builder.append(super.textToInsert);
-				previousEndIndex = matcher.end();
-			}
-			if (builder.length() > 0) {
-				fileModelItem.setName(builder.toString() + fileModelItem.getName().substring(previousEndIndex));
-			}
+			insertAll(fileModelItem, true);
 			return fileModelItem;
 		}
 	}
@@ -469,11 +488,7 @@ public class InsertTextBeforeAfterFactory extends AbstractRuleFactory {
 
 		@Override
 		public FileModelItem apply(FileModelItem fileModelItem) {
-			Matcher matcher = super.pattern.matcher(fileModelItem.getName());
-			if (matcher.find()) {
-				fileModelItem.setName(fileModelItem.getName().substring(0, matcher.end()) + super.textToInsert
-						+ fileModelItem.getName().substring(matcher.end()));
-			}
+			insertOne(fileModelItem, true, false);
 			return fileModelItem;
 		}
 	}
@@ -491,15 +506,7 @@ public class InsertTextBeforeAfterFactory extends AbstractRuleFactory {
 
 		@Override
 		public FileModelItem apply(FileModelItem fileModelItem) {
-			Matcher matcher = super.pattern.matcher(fileModelItem.getName());
-			int previousEndIndex = -1;
-			while (matcher.find()) {
-				previousEndIndex = matcher.end();
-			}
-			if (previousEndIndex > -1) {
-				fileModelItem.setName(fileModelItem.getName().substring(0, previousEndIndex) + super.textToInsert
-						+ fileModelItem.getName().substring(previousEndIndex));
-			}
+			insertOne(fileModelItem, true, true);
 			return fileModelItem;
 		}
 	}
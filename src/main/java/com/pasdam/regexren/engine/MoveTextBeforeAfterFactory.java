@@ -1,13 +1,9 @@
-package com.pasdam.regexren.gui.rules;
+package com.pasdam.regexren.engine;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
-import com.pasdam.regexren.model.FileModelItem;
-import com.pasdam.regexren.model.RuleType;
 
 /**
  * <p>
@@ -199,7 +195,7 @@ public class MoveTextBeforeAfterFactory extends AbstractRuleFactory {
 
 		} else if (this.regex) {
 			try {
-				Pattern.compile(this.textToMove);
+				TextPattern.compile(this.textToMove, true, this.matchCase);
 			} catch (PatternSyntaxException exception) {
 				invalidParameters.add(PARAMETER_TEXT_TO_MOVE);
 			}
@@ -211,7 +207,7 @@ public class MoveTextBeforeAfterFactory extends AbstractRuleFactory {
 
 			} else if (this.regex) {
 				try {
-					Pattern.compile(this.textToSearch);
+					TextPattern.compile(this.textToSearch, true, this.matchCase);
 				} catch (Exception exception) {
 					invalidParameters.add(PARAMETER_TEXT_TO_SEARCH);
 				}
@@ -315,7 +311,7 @@ public class MoveTextBeforeAfterFactory extends AbstractRuleFactory {
 	private abstract static class AbstractMoveRule implements Rule {
 		
 		/** Pattern to move */
-		protected final Pattern patternToMove;
+		protected final TextPattern patternToMove;
 		
 		/**
 		 * Creates a {@link AbstractMoveRule} with the specified parameters
@@ -329,9 +325,47 @@ public class MoveTextBeforeAfterFactory extends AbstractRuleFactory {
 		 *            expression or literal patterns
 		 */
 		public AbstractMoveRule(String textToMove, boolean regex, boolean matchCase) {
-			this.patternToMove = matchCase 
-					? Pattern.compile(regex ? textToMove : Pattern.quote(textToMove))
-					: Pattern.compile(regex ? textToMove : Pattern.quote(textToMove), Pattern.CASE_INSENSITIVE);
+			this.patternToMove = TextPattern.compile(textToMove, regex, matchCase);
+		}
+		
+		/**
+		 * Moves a range of the name to the specified position, building the
+		 * new name at once
+		 * 
+		 * @param fileModelItem
+		 *            item to update
+		 * @param name
+		 *            current name of the item
+		 * @param start
+		 *            index (inclusive) of the first character to move
+		 * @param end
+		 *            index (exclusive) of the last character to move
+		 * @param position
+		 *            position at which move the range, as index of the name
+		 *            without the range
+		 */
+		protected static void move(FileModelItem fileModelItem, CharSequence name, int start, int end, int position) {
+			if (position == start) {
+				// the name doesn't change
+				return;
+			}
+			
+			StringBuilder builder = fileModelItem.getBuilder();
+			if (position < start) {
+				builder.append(name, 0, position);
+				builder.append(name, start, end);
+				builder.append(name, position, start);
+				builder.append(name, end, name.length());
+				
+			} else {
+				// index of the position in the current name
+				position += end - start;
+				builder.append(name, 0, start);
+				builder.append(name, end, position);
+				builder.append(name, start, end);
+				builder.append(name, position, name.length());
+			}
+			fileModelItem.setName(builder);
 		}
 		
 		@Override
@@ -342,7 +376,7 @@ public class MoveTextBeforeAfterFactory extends AbstractRuleFactory {
 	private abstract static class AbstractMoveBeforeAfterRule extends AbstractMoveRule {
 		
 		/** Pattern to find */
-		protected final Pattern patternToSearch;
+		protected final TextPattern patternToSearch;
 		
 		/**
 		 * Creates a {@link AbstractMoveRule} with the specified parameters
@@ -359,9 +393,31 @@ public class MoveTextBeforeAfterFactory extends AbstractRuleFactory {
 		 */
 		public AbstractMoveBeforeAfterRule(String textToMove, String textToSearch, boolean regex, boolean matchCase) {
 			super(textToMove, regex, matchCase);
-			this.patternToSearch = matchCase 
-					? Pattern.compile(regex ? textToSearch : Pattern.quote(textToSearch))
-					: Pattern.compile(regex ? textToSearch : Pattern.quote(textToSearch), Pattern.CASE_INSENSITIVE);
+			this.patternToSearch = TextPattern.compile(textToSearch, regex, matchCase);
+		}
+		
+		/**
+		 * Finds the text to move and the text to search in the name without
+		 * it, then moves the first one at the start or at the end of the
+		 * second one
+		 * 
+		 * @param fileModelItem
+		 *            item to update
+		 * @param after
+		 *            true to move the text after the text to search, false to
+		 *            move it before
+		 */
+		protected void moveNearSearch(FileModelItem fileModelItem, boolean after) {
+			CharSequence name = fileModelItem.getNameChars();
+			TextMatcher matcherToMove = super.patternToMove.matcher(name);
+			if (matcherToMove.find()) {
+				int start = matcherToMove.start();
+				int end   = matcherToMove.end();
+				TextMatcher matcherToSearch = this.patternToSearch.matcher(new TextWithout(name, start, end));
+				if (matcherToSearch.find()) {
+					move(fileModelItem, name, start, end, after ? matcherToSearch.end() : matcherToSearch.start());
+				}
+			}
 		}
 	}
 	
@@ -375,15 +431,7 @@ public class MoveTextBeforeAfterFactory extends AbstractRuleFactory {
 		
 		@Override
 		public FileModelItem apply(FileModelItem fileModelItem) {
-			Matcher matcherToMove = super.patternToMove.matcher(fileModelItem.getName());
-			String textWithoutMove = matcherToMove.replaceFirst("");
-			Matcher matcherToSearch = super.patternToSearch.matcher(textWithoutMove);
-			matcherToMove.reset();
-			if (matcherToSearch.find() && matcherToMove.find()) {
-				fileModelItem.setName(textWithoutMove.substring(0, matcherToSearch.start())
-									+ matcherToMove.group()
-									+ textWithoutMove.substring(matcherToSearch.start()));
-			}
+			moveNearSearch(fileModelItem, false);
 			return fileModelItem;
 		}
 	}
@@ -398,15 +446,7 @@ public class MoveTextBeforeAfterFactory extends AbstractRuleFactory {
 		
 		@Override
 		public FileModelItem apply(FileModelItem fileModelItem) {
-			Matcher matcherToMove = super.patternToMove.matcher(fileModelItem.getName());
-			final String textWithoutMove = matcherToMove.replaceFirst("");
-			Matcher matcherToSearch = super.patternToSearch.matcher(textWithoutMove);
-			matcherToMove.reset();
-			if (matcherToSearch.find() && matcherToMove.find()) {
-				fileModelItem.setName(textWithoutMove.substring(0, matcherToSearch.end())
-									+ matcherToMove.group()
-									+ textWithoutMove.substring(matcherToSearch.end()));
-			}
+			moveNearSearch(fileModelItem, true);
 			return fileModelItem;
 		}
 	}
@@ -421,11 +461,10 @@ public class MoveTextBeforeAfterFactory extends AbstractRuleFactory {
 		
 		@Override
 		public FileModelItem apply(FileModelItem fileModelItem) {
-			Matcher matcherToMove = super.patternToMove.matcher(fileModelItem.getName());
+			CharSequence name = fileModelItem.getNameChars();
+			TextMatcher matcherToMove = super.patternToMove.matcher(name);
 			if (matcherToMove.find()) {
-				String group              = matcherToMove.group();
-				String textWithoutPattern = matcherToMove.replaceFirst("");
-				fileModelItem.setName(group + textWithoutPattern);
+				move(fileModelItem, name, matcherToMove.start(), matcherToMove.end(), 0);
 			}
 			return fileModelItem;
 		}
@@ -441,13 +480,70 @@ public class MoveTextBeforeAfterFactory extends AbstractRuleFactory {
 		
 		@Override
 		public FileModelItem apply(FileModelItem fileModelItem) {
-			Matcher matcherToMove = super.patternToMove.matcher(fileModelItem.getName());
+			CharSequence name = fileModelItem.getNameChars();
+			TextMatcher matcherToMove = super.patternToMove.matcher(name);
 			if (matcherToMove.find()) {
-				String group              = matcherToMove.group();
-				String textWithoutPattern = matcherToMove.replaceFirst("");
-				fileModelItem.setName(textWithoutPattern + group);
+				int start = matcherToMove.start();
+				int end   = matcherToMove.end();
+				move(fileModelItem, name, start, end, name.length() - (end - start));
 			}
 			return fileModelItem;
 		}
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * View of a text without a range of characters, used to search the text
+	 * without copying it
+	 */
+	private static final class TextWithout implements CharSequence {
+		
+		/** Whole text */
+		private final CharSequence text;
+		
+		/** Index (inclusive) of the first character excluded */
+		private final int start;
+		
+		/** Number of characters excluded */
+		private final int gap;
+		
+		/**
+		 * Creates a view of the text without the specified range
+		 * 
+		 * @param text
+		 *            whole text
+		 * @param start
+		 *            index (inclusive) of the first character to exclude
+		 * @param end
+		 *            index (exclusive) of the last character to exclude
+		 */
+		public TextWithout(CharSequence text, int start, int end) {
+			this.text  = text;
+			this.start = start;
+			this.gap   = end - start;
+		}
+		
+		@Override
+		public int length() {
+			return this.text.length() - this.gap;
+		}
+		
+		@Override
+		public char charAt(int index) {
+			return this.text.charAt(index < this.start ? index : index + this.gap);
+		}
+		
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			StringBuilder builder = new StringBuilder(end - start);
+			for (int i = start; i < end; i++) {
+				builder.append(charAt(i));
+			}
+			return builder.toString();
+		}
+		
+		@Override
+		public String toString() {
+			return subSequence(0, length()).toString();
+		}
+	}
+}
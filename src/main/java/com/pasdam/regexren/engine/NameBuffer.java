@@ -0,0 +1,284 @@
+package com.pasdam.regexren.engine;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Mutable and reusable sequence of characters that holds a part (name or
+ * extension) of the new name of a file, while the rules edit it.
+ * </p>
+ * <p>
+ * The internal array grows only when needed and it is kept between the
+ * previews, so editing the buffer doesn't allocate memory; the
+ * {@link String} value is built only when it is requested, and cached until
+ * the next change.
+ * </p>
+ * <p>
+ * The buffer is not thread safe: it is modified and read by the thread that
+ * applies the rules to the file, other threads read the new names from a
+ * snapshot of the {@link FileStore}.
+ * </p>
+ *
+ * @author paco
+ * @version 0.1
+ */
+final class NameBuffer implements CharSequence {
+
+	/** Initial capacity of the buffer */
+	private static final int INITIAL_CAPACITY = 32;
+
+	/** Characters of the buffer */
+	private char[] chars = new char[INITIAL_CAPACITY];
+
+	/** Number of characters used */
+	private int length;
+
+	/** Version of the content, incremented by each change */
+	private int version;
+
+	/** String value of the content, null if it has not been built yet */
+	private String value = "";
+
+	@Override
+	public int length() {
+		return this.length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= this.length) {
+			throw new StringIndexOutOfBoundsException(index);
+		}
+		return this.chars[index];
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		checkRange(start, end);
+		return new String(this.chars, start, end - start);
+	}
+
+	@Override
+	public String toString() {
+		if (this.value == null) {
+			this.value = new String(this.chars, 0, this.length);
+		}
+		return this.value;
+	}
+
+	/**
+	 * Returns the version of the content, that changes whenever the buffer is
+	 * modified
+	 *
+	 * @return the version of the content
+	 */
+	public int getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * Replaces the content of the buffer with the specified text
+	 *
+	 * @param text
+	 *            new content of the buffer, null is considered as empty
+	 */
+	public void set(CharSequence text) {
+		if (text != null && text == this.value) {
+			// the buffer already contains the text
+			return;
+		}
+
+		this.length = 0;
+		if (text != null && text.length() > 0) {
+			insert(0, text);
+		} else {
+			changed();
+		}
+		if (text == null || text instanceof String) {
+			this.value = text != null ? (String) text : "";
+		}
+	}
+
+	/**
+	 * Replaces the content of the buffer with the specified range of
+	 * characters; if the buffer already contains them, i.e. when a file is
+	 * reset and no rule changed it, neither the content nor the version
+	 * change, so the string value already built is kept
+	 *
+	 * @param text
+	 *            array that contains the characters to copy
+	 * @param start
+	 *            index of the first character to copy
+	 * @param length
+	 *            number of characters to copy
+	 */
+	public void set(char[] text, int start, int length) {
+		if (contentEquals(text, start, length)) {
+			// the buffer already contains the text
+			return;
+		}
+
+		if (length > this.chars.length) {
+			this.chars = new char[Math.max(length, this.chars.length << 1)];
+		}
+		System.arraycopy(text, start, this.chars, 0, length);
+		this.length = length;
+		changed();
+	}
+
+	/**
+	 * Copies the content of the buffer in the specified array
+	 *
+	 * @param destination
+	 *            array in which copy the characters
+	 * @param offset
+	 *            index at which copy the first character
+	 * @throws IndexOutOfBoundsException
+	 *             if the array is too short
+	 */
+	public void getChars(char[] destination, int offset) {
+		System.arraycopy(this.chars, 0, destination, offset, this.length);
+	}
+
+	/**
+	 * Returns true if the buffer contains exactly the specified range of
+	 * characters
+	 *
+	 * @param text
+	 *            array that contains the characters to compare
+	 * @param start
+	 *            index of the first character to compare
+	 * @param length
+	 *            number of characters to compare
+	 * @return true if the buffer contains exactly the specified characters
+	 */
+	public boolean contentEquals(char[] text, int start, int length) {
+		if (this.length != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (this.chars[i] != text[start + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Inserts the specified text at the specified position
+	 *
+	 * @param index
+	 *            position at which insert the text
+	 * @param text
+	 *            text to insert
+	 * @throws StringIndexOutOfBoundsException
+	 *             if <i>index</i> is negative or greater than the length
+	 */
+	public void insert(int index, CharSequence text) {
+		replace(index, index, text);
+	}
+
+	/**
+	 * Removes the characters in the specified range
+	 *
+	 * @param start
+	 *            index (inclusive) of the first character to remove
+	 * @param end
+	 *            index (exclusive) of the last character to remove
+	 * @throws StringIndexOutOfBoundsException
+	 *             if the range is invalid
+	 */
+	public void delete(int start, int end) {
+		checkRange(start, end);
+		if (start < end) {
+			System.arraycopy(this.chars, end, this.chars, start, this.length - end);
+			this.length -= end - start;
+			changed();
+		}
+	}
+
+	/**
+	 * Replaces the characters in the specified range with the specified text
+	 *
+	 * @param start
+	 *            index (inclusive) of the first character to replace
+	 * @param end
+	 *            index (exclusive) of the last character to replace
+	 * @param text
+	 *            text to insert in place of the range
+	 * @throws StringIndexOutOfBoundsException
+	 *             if the range is invalid
+	 */
+	public void replace(int start, int end, CharSequence text) {
+		checkRange(start, end);
+		int textLength = text.length();
+		int newLength = this.length - (end - start) + textLength;
+		if (newLength > this.chars.length) {
+			this.chars = Arrays.copyOf(this.chars, Math.max(newLength, this.chars.length << 1));
+		}
+
+		// shift the tail and copy the text
+		System.arraycopy(this.chars, end, this.chars, start + textLength, this.length - end);
+		if (text instanceof String) {
+			((String) text).getChars(0, textLength, this.chars, start);
+
+		} else if (text instanceof NameBuffer) {
+			System.arraycopy(((NameBuffer) text).chars, 0, this.chars, start, textLength);
+
+		} else if (text instanceof StringBuilder) {
+			((StringBuilder) text).getChars(0, textLength, this.chars, start);
+
+		} else {
+			for (int i = 0; i < textLength; i++) {
+				this.chars[start + i] = text.charAt(i);
+			}
+		}
+
+		this.length = newLength;
+		if (start < end || textLength > 0) {
+			changed();
+		}
+	}
+
+	/**
+	 * Sets the character at the specified position
+	 *
+	 * @param index
+	 *            position of the character to set
+	 * @param character
+	 *            new character
+	 * @throws StringIndexOutOfBoundsException
+	 *             if <i>index</i> is negative or not less than the length
+	 */
+	public void setCharAt(int index, char character) {
+		if (index < 0 || index >= this.length) {
+			throw new StringIndexOutOfBoundsException(index);
+		}
+		if (this.chars[index] != character) {
+			this.chars[index] = character;
+			changed();
+		}
+	}
+
+	/** Increments the version and discards the string value */
+	private void changed() {
+		this.version++;
+		this.value = null;
+	}
+
+	/**
+	 * Checks that the specified range is valid
+	 *
+	 * @param start
+	 *            index (inclusive) of the first character of the range
+	 * @param end
+	 *            index (exclusive) of the last character of the range
+	 * @throws StringIndexOutOfBoundsException
+	 *             if the range is invalid
+	 */
+	private void checkRange(int start, int end) {
+		if (start < 0 || start > end || end > this.length) {
+			throw new StringIndexOutOfBoundsException("start " + start + ", end " + end + ", length " + this.length);
+		}
+	}
+}
@@ -0,0 +1,13 @@
+package com.pasdam.regexren.engine;
+
+/**
+ * Marker interface implemented by those rules whose result depends on the
+ * order in which the files are processed (i.e. rules with an internal state,
+ * such as counters). These rules must be applied sequentially, following the
+ * order of the files list, while all other rules can be applied to different
+ * files concurrently.
+ *
+ * @author paco
+ * @version 0.1
+ */
+public interface OrderDependentRule extends Rule {}
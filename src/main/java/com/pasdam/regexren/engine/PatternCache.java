@@ -0,0 +1,170 @@
+package com.pasdam.regexren.engine;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * <p>
+ * Bounded cache of the compiled regular expressions, shared by all the rule
+ * factories.
+ * </p>
+ * <p>
+ * The factories compile the same expression to validate the configuration
+ * and to create the rule, and again whenever any parameter changes: the
+ * cache returns the same {@link Pattern} for the same source and flags,
+ * discarding the least recently used ones when it is full. Invalid
+ * expressions are not cached.
+ * </p>
+ *
+ * @author paco
+ * @version 0.1
+ */
+public final class PatternCache {
+
+	/** Maximum number of patterns kept */
+	static final int MAX_SIZE = 256;
+
+	/** Compiled patterns, in access order */
+	private static final Map<Key, Pattern> PATTERNS = new LinkedHashMap<Key, Pattern>(64, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Pattern> eldest) {
+			return size() > MAX_SIZE;
+		}
+	};
+
+	/** Number of requests served by the cache */
+	private static long hits;
+
+	/** Number of requests that compiled the pattern */
+	private static long misses;
+
+	/** Utility class */
+	private PatternCache() {}
+
+	/**
+	 * Returns the compiled pattern of the specified regular expression,
+	 * compiling it if not cached
+	 *
+	 * @param regex
+	 *            regular expression to compile
+	 * @param flags
+	 *            match flags, as by {@link Pattern#compile(String, int)}
+	 * @return the compiled pattern
+	 * @throws PatternSyntaxException
+	 *             if the expression is invalid
+	 * @throws NullPointerException
+	 *             if the expression is null
+	 */
+	public static Pattern compile(String regex, int flags) throws PatternSyntaxException, NullPointerException {
+		Key key = new Key(regex, flags);
+		Pattern pattern;
+		synchronized (PATTERNS) {
+			pattern = PATTERNS.get(key);
+			if (pattern != null) {
+				hits++;
+				return pattern;
+			}
+			misses++;
+		}
+
+		// compile outside the lock, a concurrent miss compiles it twice at most
+		pattern = Pattern.compile(regex, flags);
+		synchronized (PATTERNS) {
+			PATTERNS.put(key, pattern);
+		}
+		return pattern;
+	}
+
+	/**
+	 * Returns the number of requests served by the cache
+	 *
+	 * @return the number of requests served by the cache
+	 */
+	public static long getHitCount() {
+		synchronized (PATTERNS) {
+			return hits;
+		}
+	}
+
+	/**
+	 * Returns the number of requests that compiled the pattern, including the
+	 * invalid ones
+	 *
+	 * @return the number of requests that compiled the pattern
+	 */
+	public static long getMissCount() {
+		synchronized (PATTERNS) {
+			return misses;
+		}
+	}
+
+	/**
+	 * Returns the number of patterns cached
+	 *
+	 * @return the number of patterns cached
+	 */
+	public static int size() {
+		synchronized (PATTERNS) {
+			return PATTERNS.size();
+		}
+	}
+
+	/** Removes all the patterns and resets the statistics */
+	public static void clear() {
+		synchronized (PATTERNS) {
+			PATTERNS.clear();
+			hits   = 0;
+			misses = 0;
+		}
+	}
+
+	/** Key of a cached pattern: source and flags */
+	private static final class Key {
+
+		/** Source of the regular expression */
+		private final String regex;
+
+		/** Match flags */
+		private final int flags;
+
+		/**
+		 * Creates the key of the specified pattern
+		 *
+		 * @param regex
+		 *            source of the regular expression
+		 * @param flags
+		 *            match flags
+		 * @throws NullPointerException
+		 *             if the expression is null
+		 */
+		public Key(String regex, int flags) throws NullPointerException {
+			if (regex == null) {
+				throw new NullPointerException("Regular expression is null");
+			}
+			this.regex = regex;
+			this.flags = flags;
+		}
+
+		@Override
+		public int hashCode() {
+			return this.regex.hashCode() * 31 + this.flags;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return this.flags == other.flags && this.regex.equals(other.regex);
+		}
+	}
+}
@@ -1,12 +1,10 @@
-package com.pasdam.regexren.gui.rules;
+package com.pasdam.regexren.engine;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.PatternSyntaxException;
 
 import com.pasdam.regexren.controller.LogManager;
-import com.pasdam.regexren.model.FileModelItem;
-import com.pasdam.regexren.model.RuleType;
 
 /**
  * {@link AbstractRuleFactory} used to create rule to replace/remove pattern from name/extension
@@ -278,7 +276,7 @@ public class ReplaceFactory extends AbstractRuleFactory {
 	protected void checkConfiguration() throws PatternSyntaxException, NullPointerException {
 		if (this.regex) {
 			setValid(false);
-			Pattern.compile(this.textToReplace);
+			TextPattern.compile(this.textToReplace, true, this.matchCase);
 		}
 		setValid(true);
 	}
@@ -388,7 +386,10 @@ public class ReplaceFactory extends AbstractRuleFactory {
 		protected final int endIndex;
 
 		/** Pattern to replace */
-		protected final Pattern pattern;
+		protected final TextPattern pattern;
+
+		/** Text to insert, compiled as a replacement of the pattern */
+		protected final Replacement replacement;
 
 		/**
 		 * Creates an abstract replace rule with the specified parameters
@@ -413,13 +414,21 @@ public class ReplaceFactory extends AbstractRuleFactory {
 			this.textToInsert = textToInsert != null ? textToInsert : "";
 			this.startIndex   = startIndex > 0 ? startIndex : 0;
 			this.endIndex     = endIndex >= this.startIndex ? endIndex : Integer.MAX_VALUE;
-			
-			if (matchCase) {
-				this.pattern = Pattern.compile(regex ? textToReplace : Pattern.quote(textToReplace)); 
-				
-			} else {
-				this.pattern = Pattern.compile(regex ? textToReplace : Pattern.quote(textToReplace), Pattern.CASE_INSENSITIVE); 
-			}
+			this.pattern      = TextPattern.compile(textToReplace, regex, matchCase);
+			this.replacement  = new Replacement(this.textToInsert, this.pattern.groupCount());
+		}
+
+		/**
+		 * Returns a matcher of the pattern limited to the range of the
+		 * replace process
+		 * 
+		 * @param originalValue
+		 *            text in which search the pattern, longer than the start
+		 *            index
+		 * @return a matcher of the range of the text
+		 */
+		protected TextMatcher matcher(CharSequence originalValue) {
+			return this.pattern.matcher(originalValue).region(this.startIndex, Math.min(this.endIndex, originalValue.length()));
 		}
 
 		@Override
@@ -436,27 +445,29 @@ public class ReplaceFactory extends AbstractRuleFactory {
 		}
 		
 		/**
-		 * Replace every occurrence of <i>pattern</i> in <i>originalValue</i>
+		 * Replace every occurrence of the pattern in <i>originalValue</i>
 		 * 
-		 * @param pattern
-		 *            pattern to replace
 		 * @param originalValue
-		 *            string in which search and replace the pattern
-		 * @return the string with the replaced pattern
+		 *            text in which search and replace the pattern
+		 * @param builder
+		 *            empty builder in which append the result
+		 * @return true if the pattern has been found, false if the builder has
+		 *         not been modified
 		 */
-		protected String replaceAll(Pattern pattern, String originalValue) {
-			StringBuilder builder = new StringBuilder(originalValue.length() + super.textToInsert.length());
-			builder.append(originalValue.substring(0, super.startIndex));
-			
-			if (super.endIndex >= originalValue.length()) {
-				builder.append(pattern.matcher(originalValue.substring(super.startIndex)).replaceAll(super.textToInsert));
-				
-			} else {
-				builder.append(pattern.matcher(originalValue.substring(super.startIndex, super.endIndex)).replaceAll(super.textToInsert));
-				builder.append(originalValue.substring(super.endIndex));
+		protected boolean replaceAll(CharSequence originalValue, StringBuilder builder) {
+			TextMatcher matcher = matcher(originalValue);
+			if (!matcher.find()) {
+				return false;
 			}
 			
-			return builder.toString();
+			int previousEndIndex = 0;
+			do {
+				builder.append(originalValue, previousEndIndex, matcher.start());
+				super.replacement.append(originalValue, matcher, builder);
+				previousEndIndex = matcher.end();
+			} while (matcher.find());
+			builder.append(originalValue, previousEndIndex, originalValue.length());
+			return true;
 		}
 	}
 	
@@ -470,27 +481,25 @@ public class ReplaceFactory extends AbstractRuleFactory {
 		}
 		
 		/**
-		 * Replace the first occurrence of <i>pattern</i> in <i>originalValue</i>
+		 * Replace the first occurrence of the pattern in <i>originalValue</i>
 		 * 
-		 * @param pattern
-		 *            pattern to replace
 		 * @param originalValue
-		 *            string in which search and replace the pattern
-		 * @return the string with the replaced pattern
+		 *            text in which search and replace the pattern
+		 * @param builder
+		 *            empty builder in which append the result
+		 * @return true if the pattern has been found, false if the builder has
+		 *         not been modified
 		 */
-		protected String replaceFirst(Pattern pattern, String originalValue) {
-			StringBuilder builder = new StringBuilder(originalValue.length() + super.textToInsert.length());
-			builder.append(originalValue.substring(0, super.startIndex));
-			
-			if (super.endIndex >= originalValue.length()) {
-				builder.append(super.pattern.matcher(originalValue.substring(super.startIndex)).replaceFirst(super.textToInsert));
-				
-			} else {
-				builder.append(super.pattern.matcher(originalValue.substring(super.startIndex, super.endIndex)).replaceFirst(super.textToInsert));
-				builder.append(originalValue.substring(super.endIndex));
+		protected boolean replaceFirst(CharSequence originalValue, StringBuilder builder) {
+			TextMatcher matcher = matcher(originalValue);
+			if (!matcher.find()) {
+				return false;
 			}
 			
-			return builder.toString();
+			builder.append(originalValue, 0, matcher.start());
+			super.replacement.append(originalValue, matcher, builder);
+			builder.append(originalValue, matcher.end(), originalValue.length());
+			return true;
 		}
 	}
 	
@@ -504,39 +513,34 @@ public class ReplaceFactory extends AbstractRuleFactory {
 		}
 		
 		/**
-		 * Replace the last occurrence of <i>pattern</i> in <i>originalValue</i>
+		 * Replace the last occurrence of the pattern in <i>originalValue</i>
+		 * with the text to insert, as is
 		 * 
-		 * @param pattern
-		 *            pattern to replace
 		 * @param originalValue
-		 *            string in which search and replace the pattern
-		 * @return the string with the replaced pattern
+		 *            text in which search and replace the pattern
+		 * @param builder
+		 *            empty builder in which append the result
+		 * @return true if the pattern has been found, false if the builder has
+		 *         not been modified
 		 */
-		protected String replaceLast(Pattern pattern, String originalValue) {
-			StringBuilder builder = new StringBuilder(originalValue.length() + super.textToInsert.length());
-			
-			Matcher matcher;
-			if (super.endIndex > originalValue.length()) {
-				matcher = super.pattern.matcher(originalValue.substring(super.startIndex));
-			} else {
-				matcher = super.pattern.matcher(originalValue.substring(super.startIndex, super.endIndex));
-			}
-
-			int lastOccurrenceStart = originalValue.length();
-			int lastOccurrenceEnd   = lastOccurrenceStart;
+		protected boolean replaceLast(CharSequence originalValue, StringBuilder builder) {
+			TextMatcher matcher = matcher(originalValue);
+			int lastOccurrenceStart = -1;
+			int lastOccurrenceEnd   = -1;
 			while (matcher.find()) {
 				lastOccurrenceStart = matcher.start();
 				lastOccurrenceEnd   = matcher.end();
 			}
-
-			if (lastOccurrenceStart < originalValue.length()) {
-				builder.append(originalValue.substring(0, lastOccurrenceStart));
-				builder.append(super.textToInsert);
-				builder.append(originalValue.substring(lastOccurrenceEnd));
-				return builder.toString();
-			} // pattern not matched
-
-			return originalValue;
+			
+			if (lastOccurrenceStart < 0) {
+				// pattern not matched
+				return false;
+			}
+			
+			builder.append(originalValue, 0, lastOccurrenceStart);
+			builder.append(super.textToInsert);
+			builder.append(originalValue, lastOccurrenceEnd, originalValue.length());
+			return true;
 		}
 	}
 	
@@ -550,9 +554,12 @@ public class ReplaceFactory extends AbstractRuleFactory {
 
 		@Override
 		public FileModelItem apply(FileModelItem fileModelItem) {
-			String originalValue = fileModelItem.getName();
+			CharSequence originalValue = fileModelItem.getNameChars();
 			if (super.startIndex < originalValue.length()) {
-				fileModelItem.setName(replaceAll(super.pattern, originalValue));
+				StringBuilder builder = fileModelItem.getBuilder();
+				if (replaceAll(originalValue, builder)) {
+					fileModelItem.setName(builder);
+				}
 			}
 			return fileModelItem;
 		}
@@ -568,9 +575,12 @@ public class ReplaceFactory extends AbstractRuleFactory {
 
 		@Override
 		public FileModelItem apply(FileModelItem fileModelItem) {
-			String originalValue = fileModelItem.getName();
+			CharSequence originalValue = fileModelItem.getNameChars();
 			if (super.startIndex < originalValue.length()) {
-				fileModelItem.setName(replaceFirst(super.pattern, originalValue));
+				StringBuilder builder = fileModelItem.getBuilder();
+				if (replaceFirst(originalValue, builder)) {
+					fileModelItem.setName(builder);
+				}
 			}
 			return fileModelItem;
 		}
@@ -586,9 +596,12 @@ public class ReplaceFactory extends AbstractRuleFactory {
 
 		@Override
 		public FileModelItem apply(FileModelItem fileModelItem) {
-			String originalValue = fileModelItem.getName();
+			CharSequence originalValue = fileModelItem.getNameChars();
 			if (super.startIndex < originalValue.length()) {
-				fileModelItem.setName(replaceLast(super.pattern, originalValue));
+				StringBuilder builder = fileModelItem.getBuilder();
+				if (replaceLast(originalValue, builder)) {
+					fileModelItem.setName(builder);
+				}
 			}
 			return fileModelItem;
 		}
@@ -604,9 +617,12 @@ public class ReplaceFactory extends AbstractRuleFactory {
 
 		@Override
 		public FileModelItem apply(FileModelItem fileModelItem) {
-			String originalValue = fileModelItem.getExtension();
+			CharSequence originalValue = fileModelItem.getExtensionChars();
 			if (super.startIndex < originalValue.length()) {
-				fileModelItem.setExtension(replaceAll(super.pattern, originalValue));
+				StringBuilder builder = fileModelItem.getBuilder();
+				if (replaceAll(originalValue, builder)) {
+					fileModelItem.setExtension(builder);
+				}
 			}
 			return fileModelItem;
 		}
@@ -622,9 +638,12 @@ public class ReplaceFactory extends AbstractRuleFactory {
 
 		@Override
 		public FileModelItem apply(FileModelItem fileModelItem) {
-			String originalValue = fileModelItem.getExtension();
+			CharSequence originalValue = fileModelItem.getExtensionChars();
 			if (super.startIndex < originalValue.length()) {
-				fileModelItem.setExtension(replaceFirst(super.pattern, originalValue));
+				StringBuilder builder = fileModelItem.getBuilder();
+				if (replaceFirst(originalValue, builder)) {
+					fileModelItem.setExtension(builder);
+				}
 			}
 			return fileModelItem;
 		}
@@ -640,11 +659,194 @@ public class ReplaceFactory extends AbstractRuleFactory {
 
 		@Override
 		public FileModelItem apply(FileModelItem fileModelItem) {
-			String originalValue = fileModelItem.getName();
+			CharSequence originalValue = fileModelItem.getExtensionChars();
 			if (super.startIndex < originalValue.length()) {
-				fileModelItem.setExtension(replaceLast(super.pattern, originalValue));
+				StringBuilder builder = fileModelItem.getBuilder();
+				if (replaceLast(originalValue, builder)) {
+					fileModelItem.setExtension(builder);
+				}
 			}
 			return fileModelItem;
 		}
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * Text to insert, parsed once as {@link java.util.regex.Matcher#replaceAll(String)}
+	 * does: "$n" and "${name}" refer to a group of the occurrence, and a
+	 * backslash escapes the following character. Errors are reported as by
+	 * the matcher, when the text is appended.
+	 */
+	private static final class Replacement {
+
+		// Types of the parts
+		private static final int PART_TEXT        = 0;
+		private static final int PART_GROUP       = 1;
+		private static final int PART_NAMED_GROUP = 2;
+		private static final int PART_ERROR       = 3;
+
+		/** Type of each part */
+		private final int[] types;
+
+		/** Text of each part: literal text, group name or error message */
+		private final String[] texts;
+
+		/** Group index of each part */
+		private final int[] groups;
+
+		/**
+		 * Parses the specified text to insert
+		 * 
+		 * @param replacement
+		 *            text to insert
+		 * @param groupCount
+		 *            number of groups of the pattern
+		 */
+		public Replacement(String replacement, int groupCount) {
+			List<Integer> types  = new ArrayList<Integer>();
+			List<String>  texts  = new ArrayList<String>();
+			List<Integer> groups = new ArrayList<Integer>();
+			StringBuilder text = new StringBuilder();
+			String error = null;
+			char c;
+			int i = 0;
+			
+			while (i < replacement.length() && error == null) {
+				c = replacement.charAt(i++);
+				if (c == '\\') {
+					if (i == replacement.length()) {
+						error = "character to be escaped is missing";
+					} else {
+						text.append(replacement.charAt(i++));
+					}
+					
+				} else if (c == '$') {
+					if (i == replacement.length()) {
+						error = "Illegal group reference: group index is missing";
+						continue;
+					}
+					
+					// flush the text before the group
+					if (text.length() > 0) {
+						types.add(PART_TEXT);
+						texts.add(text.toString());
+						groups.add(-1);
+						text.setLength(0);
+					}
+					
+					c = replacement.charAt(i);
+					if (c == '{') {
+						int end = ++i;
+						while (end < replacement.length() && isNameChar(replacement.charAt(end))) {
+							end++;
+						}
+						if (end == i) {
+							error = "named capturing group has 0 length name";
+						} else if (end == replacement.length() || replacement.charAt(end) != '}') {
+							error = "named capturing group is missing trailing '}'";
+						} else if (Character.isDigit(replacement.charAt(i))) {
+							error = "capturing group name {" + replacement.substring(i, end) + "} starts with digit character";
+						} else {
+							types.add(PART_NAMED_GROUP);
+							texts.add(replacement.substring(i, end));
+							groups.add(-1);
+							i = end + 1;
+						}
+						
+					} else if (c >= '0' && c <= '9') {
+						// the longest group index that exists, at least one digit
+						int group = c - '0';
+						i++;
+						while (i < replacement.length() && replacement.charAt(i) >= '0' && replacement.charAt(i) <= '9'
+								&& group * 10 + replacement.charAt(i) - '0' <= groupCount) {
+							group = group * 10 + replacement.charAt(i++) - '0';
+						}
+						types.add(PART_GROUP);
+						texts.add(null);
+						groups.add(group);
+						
+					} else {
+						error = "Illegal group reference";
+					}
+					
+				} else {
+					text.append(c);
+				}
+			}
+			
+			if (text.length() > 0) {
+				types.add(PART_TEXT);
+				texts.add(text.toString());
+				groups.add(-1);
+			}
+			if (error != null) {
+				types.add(PART_ERROR);
+				texts.add(error);
+				groups.add(-1);
+			}
+			
+			this.types  = new int[types.size()];
+			this.texts  = texts.toArray(new String[texts.size()]);
+			this.groups = new int[groups.size()];
+			for (int j = 0; j < this.types.length; j++) {
+				this.types[j]  = types.get(j);
+				this.groups[j] = groups.get(j);
+			}
+		}
+
+		/**
+		 * Returns true if the specified character can be part of a group name
+		 * 
+		 * @param c
+		 *            character to check
+		 * @return true if the character is an US-ASCII letter or digit
+		 */
+		private static boolean isNameChar(char c) {
+			return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+		}
+
+		/**
+		 * Appends the replacement of the current occurrence of the matcher
+		 * 
+		 * @param input
+		 *            text searched by the matcher
+		 * @param matcher
+		 *            matcher positioned on an occurrence
+		 * @param builder
+		 *            builder in which append the replacement
+		 * @throws IllegalArgumentException
+		 *             if the replacement is invalid, or it refers to a group
+		 *             name that doesn't exist
+		 * @throws IndexOutOfBoundsException
+		 *             if the replacement refers to a group index that doesn't
+		 *             exist
+		 */
+		public void append(CharSequence input, TextMatcher matcher, StringBuilder builder) {
+			int start;
+			String group;
+			for (int i = 0; i < this.types.length; i++) {
+				switch (this.types[i]) {
+					case PART_TEXT:
+						builder.append(this.texts[i]);
+						break;
+						
+					case PART_GROUP:
+						start = matcher.start(this.groups[i]);
+						if (start >= 0) {
+							builder.append(input, start, matcher.end(this.groups[i]));
+						}
+						break;
+						
+					case PART_NAMED_GROUP:
+						group = matcher.group(this.texts[i]);
+						if (group != null) {
+							builder.append(group);
+						}
+						break;
+						
+					default:
+						throw new IllegalArgumentException(this.texts[i]);
+				}
+			}
+		}
+	}
+}
@@ -1,6 +1,5 @@
-package com.pasdam.regexren.gui.rules;
+package com.pasdam.regexren.engine;
 
-import com.pasdam.regexren.model.FileModelItem;
 
 /**
  * All rules must implements this interface
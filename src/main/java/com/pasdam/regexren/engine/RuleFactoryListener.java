@@ -1,4 +1,4 @@
-package com.pasdam.regexren.gui.rules;
+package com.pasdam.regexren.engine;
 
 /**
  * Interface implemented by those classes that need to be notified of
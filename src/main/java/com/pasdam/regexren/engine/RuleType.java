@@ -1,4 +1,4 @@
-package com.pasdam.regexren.model;
+package com.pasdam.regexren.engine;
 
 /**
  * Enumeration of all rule types
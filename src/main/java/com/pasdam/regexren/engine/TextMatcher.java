@@ -0,0 +1,318 @@
+package com.pasdam.regexren.engine;
+
+import java.util.regex.Matcher;
+
+/**
+ * <p>
+ * Searches a {@link TextPattern} in an input, with the same semantic of
+ * {@link Matcher}: after an empty occurrence the search continues from the
+ * next character.
+ * </p>
+ * <p>
+ * An instance must be used by one thread only.
+ * </p>
+ *
+ * @author paco
+ * @version 0.1
+ */
+abstract class TextMatcher {
+
+	/**
+	 * Searches the next occurrence of the pattern in the region
+	 *
+	 * @return true if an occurrence has been found
+	 */
+	public abstract boolean find();
+
+	/**
+	 * Returns the index of the first character of the last occurrence found
+	 *
+	 * @return the start index of the last occurrence found
+	 * @throws IllegalStateException
+	 *             if no occurrence has been found
+	 */
+	public abstract int start();
+
+	/**
+	 * Returns the index after the last character of the last occurrence found
+	 *
+	 * @return the end index of the last occurrence found
+	 * @throws IllegalStateException
+	 *             if no occurrence has been found
+	 */
+	public abstract int end();
+
+	/**
+	 * Returns the start index of the specified group of the last occurrence
+	 * found
+	 *
+	 * @param group
+	 *            index of the group, 0 is the whole occurrence
+	 * @return the start index of the group, or -1 if the group didn't match
+	 * @throws IllegalStateException
+	 *             if no occurrence has been found
+	 * @throws IndexOutOfBoundsException
+	 *             if there is no group with the specified index
+	 */
+	public abstract int start(int group);
+
+	/**
+	 * Returns the end index of the specified group of the last occurrence
+	 * found
+	 *
+	 * @param group
+	 *            index of the group, 0 is the whole occurrence
+	 * @return the end index of the group, or -1 if the group didn't match
+	 * @throws IllegalStateException
+	 *             if no occurrence has been found
+	 * @throws IndexOutOfBoundsException
+	 *             if there is no group with the specified index
+	 */
+	public abstract int end(int group);
+
+	/**
+	 * Returns the text of the specified named group of the last occurrence
+	 * found
+	 *
+	 * @param name
+	 *            name of the group
+	 * @return the text of the group, or null if the group didn't match
+	 * @throws IllegalStateException
+	 *             if no occurrence has been found
+	 * @throws IllegalArgumentException
+	 *             if there is no group with the specified name
+	 */
+	public abstract String group(String name);
+
+	/**
+	 * Returns the text of the last occurrence found
+	 *
+	 * @return the text of the last occurrence found
+	 * @throws IllegalStateException
+	 *             if no occurrence has been found
+	 */
+	public abstract String group();
+
+	/**
+	 * Limits the search to the specified region of the input, and resets the
+	 * matcher
+	 *
+	 * @param start
+	 *            index (inclusive) at which the region starts
+	 * @param end
+	 *            index (exclusive) at which the region ends
+	 * @return this matcher
+	 * @throws IndexOutOfBoundsException
+	 *             if the region is invalid
+	 */
+	public abstract TextMatcher region(int start, int end);
+
+	/**
+	 * Resets the matcher, searching again from the start of the input
+	 *
+	 * @return this matcher
+	 */
+	public abstract TextMatcher reset();
+
+	/** Matcher of a regular expression, that delegates to a {@link Matcher} */
+	static final class RegexMatcher extends TextMatcher {
+
+		/** Matcher of the regular expression */
+		private final Matcher matcher;
+
+		/**
+		 * Creates a matcher that delegates to the specified one
+		 *
+		 * @param matcher
+		 *            matcher of the regular expression
+		 */
+		RegexMatcher(Matcher matcher) {
+			this.matcher = matcher;
+		}
+
+		@Override
+		public boolean find() {
+			return this.matcher.find();
+		}
+
+		@Override
+		public int start() {
+			return this.matcher.start();
+		}
+
+		@Override
+		public int end() {
+			return this.matcher.end();
+		}
+
+		@Override
+		public int start(int group) {
+			return this.matcher.start(group);
+		}
+
+		@Override
+		public int end(int group) {
+			return this.matcher.end(group);
+		}
+
+		@Override
+		public String group(String name) {
+			return this.matcher.group(name);
+		}
+
+		@Override
+		public String group() {
+			return this.matcher.group();
+		}
+
+		@Override
+		public TextMatcher region(int start, int end) {
+			this.matcher.region(start, end);
+			return this;
+		}
+
+		@Override
+		public TextMatcher reset() {
+			this.matcher.reset();
+			return this;
+		}
+	}
+
+	/** Matcher of a literal text */
+	static final class LiteralMatcher extends TextMatcher {
+
+		/** Literal pattern to search */
+		private final TextPattern pattern;
+
+		/** Text in which search the pattern */
+		private final CharSequence input;
+
+		/** Index (inclusive) at which the region starts */
+		private int regionStart;
+
+		/** Index (exclusive) at which the region ends */
+		private int regionEnd;
+
+		/** Index from which the next search starts */
+		private int next;
+
+		/** Start index of the last occurrence found, or -1 */
+		private int start = -1;
+
+		/**
+		 * Creates a matcher of the whole input
+		 *
+		 * @param pattern
+		 *            literal pattern to search
+		 * @param input
+		 *            text in which search the pattern
+		 */
+		LiteralMatcher(TextPattern pattern, CharSequence input) {
+			this.pattern = pattern;
+			this.input   = input;
+			region(0, input.length());
+		}
+
+		@Override
+		public boolean find() {
+			if (this.next > this.regionEnd) {
+				this.start = -1;
+				return false;
+			}
+
+			this.start = this.pattern.indexOf(this.input, this.next, this.regionEnd);
+			if (this.start < 0) {
+				// no other occurrence
+				this.next = this.regionEnd + 1;
+				return false;
+			}
+
+			// an empty occurrence is not found twice
+			this.next = this.pattern.length() > 0 ? this.start + this.pattern.length() : this.start + 1;
+			return true;
+		}
+
+		@Override
+		public int start() {
+			checkMatch();
+			return this.start;
+		}
+
+		@Override
+		public int end() {
+			checkMatch();
+			return this.start + this.pattern.length();
+		}
+
+		@Override
+		public int start(int group) {
+			checkGroup(group);
+			return start();
+		}
+
+		@Override
+		public int end(int group) {
+			checkGroup(group);
+			return end();
+		}
+
+		@Override
+		public String group(String name) {
+			checkMatch();
+			throw new IllegalArgumentException("No group with name <" + name + ">");
+		}
+
+		@Override
+		public String group() {
+			checkMatch();
+			return this.input.subSequence(this.start, this.start + this.pattern.length()).toString();
+		}
+
+		@Override
+		public TextMatcher region(int start, int end) {
+			if (start < 0 || start > end || end > this.input.length()) {
+				throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + this.input.length());
+			}
+			this.regionStart = start;
+			this.regionEnd   = end;
+			this.next        = start;
+			this.start       = -1;
+			return this;
+		}
+
+		@Override
+		public TextMatcher reset() {
+			return region(0, this.input.length());
+		}
+
+		/**
+		 * Checks that an occurrence has been found and that the specified
+		 * group exists
+		 *
+		 * @param group
+		 *            index of the group
+		 * @throws IllegalStateException
+		 *             if no occurrence has been found
+		 * @throws IndexOutOfBoundsException
+		 *             if the group is not 0
+		 */
+		private void checkGroup(int group) {
+			checkMatch();
+			if (group != 0) {
+				throw new IndexOutOfBoundsException("No group " + group);
+			}
+		}
+
+		/**
+		 * Checks that an occurrence has been found
+		 *
+		 * @throws IllegalStateException
+		 *             if no occurrence has been found
+		 */
+		private void checkMatch() {
+			if (this.start < 0) {
+				throw new IllegalStateException("No match available");
+			}
+		}
+	}
+}
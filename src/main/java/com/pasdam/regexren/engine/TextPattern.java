@@ -0,0 +1,229 @@
+package com.pasdam.regexren.engine;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * Compiled text searched by the rules, either a regular expression or a
+ * literal text.
+ * </p>
+ * <p>
+ * Regular expressions are compiled through the {@link PatternCache}, while
+ * literal texts are not compiled to a regular expression: they are searched
+ * with the Boyer-Moore-Horspool algorithm, or with {@link String#indexOf(String, int)}
+ * when the case must match and the input is a {@link String}. A case
+ * insensitive literal text is stored folded to lower case, and it matches as
+ * {@link Pattern#CASE_INSENSITIVE} does without
+ * {@link Pattern#UNICODE_CASE}: only US-ASCII characters are folded.
+ * </p>
+ * <p>
+ * Instances are immutable, so they can be shared by the threads that apply
+ * the rules; each search uses its own {@link TextMatcher}.
+ * </p>
+ *
+ * @author paco
+ * @version 0.1
+ */
+final class TextPattern {
+
+	/** Size of the table of the shifts, indexed by the low bits of a character */
+	private static final int SHIFTS_SIZE = 256;
+
+	/** Regular expression, or null if the text is literal */
+	private final Pattern pattern;
+
+	/** Literal text */
+	private final String text;
+
+	/** Characters of the literal text, folded to lower case if the case doesn't match */
+	private final char[] needle;
+
+	/** Indicates whether the case must match */
+	private final boolean matchCase;
+
+	/**
+	 * Shift of the search window for each character of the input aligned to
+	 * the last character of the literal text, indexed by its low bits
+	 */
+	private final int[] shifts;
+
+	/**
+	 * Creates a regular expression pattern
+	 *
+	 * @param pattern
+	 *            compiled regular expression
+	 */
+	private TextPattern(Pattern pattern) {
+		this.pattern   = pattern;
+		this.text      = null;
+		this.needle    = null;
+		this.matchCase = true;
+		this.shifts    = null;
+	}
+
+	/**
+	 * Creates a literal pattern
+	 *
+	 * @param text
+	 *            literal text to search
+	 * @param matchCase
+	 *            true if the case must match
+	 */
+	private TextPattern(String text, boolean matchCase) {
+		this.pattern   = null;
+		this.text      = text;
+		this.matchCase = matchCase;
+		this.needle    = text.toCharArray();
+		if (!matchCase) {
+			for (int i = 0; i < this.needle.length; i++) {
+				this.needle[i] = fold(this.needle[i]);
+			}
+		}
+
+		// a character that is not in the text shifts the window by its length
+		int length = this.needle.length;
+		this.shifts = new int[SHIFTS_SIZE];
+		Arrays.fill(this.shifts, Math.max(length, 1));
+		for (int i = 0; i < length - 1; i++) {
+			// characters with the same low bits keep the smallest shift
+			this.shifts[this.needle[i] & (SHIFTS_SIZE - 1)] = length - 1 - i;
+		}
+	}
+
+	/**
+	 * Compiles the specified text
+	 *
+	 * @param text
+	 *            text to search
+	 * @param regex
+	 *            true if the text is a regular expression, false if it is
+	 *            literal
+	 * @param matchCase
+	 *            true if the case must match
+	 * @return the compiled text
+	 * @throws java.util.regex.PatternSyntaxException
+	 *             if <i>regex</i> is true and the text is an invalid regular
+	 *             expression
+	 * @throws NullPointerException
+	 *             if the text is null
+	 */
+	public static TextPattern compile(String text, boolean regex, boolean matchCase) {
+		if (text == null) {
+			throw new NullPointerException("Text to search is null");
+		}
+		if (regex) {
+			return new TextPattern(PatternCache.compile(text, matchCase ? 0 : Pattern.CASE_INSENSITIVE));
+		} else {
+			return new TextPattern(text, matchCase);
+		}
+	}
+
+	/**
+	 * Returns a matcher that searches this pattern in the specified input
+	 *
+	 * @param input
+	 *            text in which search the pattern
+	 * @return a matcher of the input
+	 */
+	public TextMatcher matcher(CharSequence input) {
+		if (this.pattern != null) {
+			return new TextMatcher.RegexMatcher(this.pattern.matcher(input));
+		} else {
+			return new TextMatcher.LiteralMatcher(this, input);
+		}
+	}
+
+	/**
+	 * Returns the number of capturing groups of the pattern
+	 *
+	 * @return the number of capturing groups, 0 for a literal text
+	 */
+	public int groupCount() {
+		return this.pattern != null ? this.pattern.matcher("").groupCount() : 0;
+	}
+
+	/**
+	 * Returns true if the pattern is a literal text
+	 *
+	 * @return true if the pattern is a literal text, false if it is a regular
+	 *         expression
+	 */
+	public boolean isLiteral() {
+		return this.pattern == null;
+	}
+
+	/**
+	 * Returns the length of the literal text
+	 *
+	 * @return the length of the literal text
+	 */
+	int length() {
+		return this.needle.length;
+	}
+
+	/**
+	 * Searches the literal text in the specified range of the input
+	 *
+	 * @param input
+	 *            text in which search
+	 * @param from
+	 *            index (inclusive) from which start the search
+	 * @param to
+	 *            index (exclusive) at which the occurrence must end
+	 * @return the index of the first occurrence, or -1 if the text is not found
+	 */
+	int indexOf(CharSequence input, int from, int to) {
+		int length = this.needle.length;
+		int last = to - length;
+		if (from > last) {
+			return -1;
+
+		} else if (length == 0) {
+			return from;
+
+		} else if (this.matchCase && input instanceof String) {
+			int index = ((String) input).indexOf(this.text, from);
+			return index <= last ? index : -1;
+		}
+
+		char[] needle = this.needle;
+		char lastChar = needle[length - 1];
+		char c;
+		int j;
+		for (int i = from; i <= last; i += this.shifts[c & (SHIFTS_SIZE - 1)]) {
+			c = input.charAt(i + length - 1);
+			if (!this.matchCase) {
+				c = fold(c);
+			}
+			if (c == lastChar) {
+				for (j = length - 2; j >= 0; j--) {
+					if (needle[j] != (this.matchCase ? input.charAt(i + j) : fold(input.charAt(i + j)))) {
+						break;
+					}
+				}
+				if (j < 0) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Folds a US-ASCII upper case character to lower case
+	 *
+	 * @param c
+	 *            character to fold
+	 * @return the lower case character, or <i>c</i> if it is not a US-ASCII
+	 *         upper case letter
+	 */
+	private static char fold(char c) {
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+	}
+
+	@Override
+	public String toString() {
+		return this.pattern != null ? this.pattern.pattern() : this.text;
+	}
+}
@@ -1,5 +1,7 @@
 package com.pasdam.regexren.gui;
 
+import java.util.regex.Pattern;
+
 /**
  * Interface implemented by components that support check actions on contained
  * elements
@@ -18,7 +20,13 @@ interface CheckItemsListener {
 		/** Indicates only selected elements of the list */
 		SELECTION,
 		/** Indicates only unchecked elements of the list */
-		INVERTED_SELECTION
+		INVERTED_SELECTION,
+		/** Indicates all elements of the list, whose check is inverted */
+		INVERTED_CHECK,
+		/** Indicates only the folders of the list */
+		FOLDERS,
+		/** Indicates only the files of the list that are not folders */
+		FILES
 	}
 
 	/**
@@ -32,4 +40,15 @@ interface CheckItemsListener {
 	 *            unchecked
 	 */
 	public void checkElements(Target type, boolean check);
+
+	/**
+	 * Check elements whose name contains the specified pattern
+	 * 
+	 * @param pattern
+	 *            pattern that the name of the elements must contain
+	 * @param check
+	 *            if true the targets will be checked, otherwise they will be
+	 *            unchecked
+	 */
+	public void checkElements(Pattern pattern, boolean check);
 }
@@ -3,12 +3,16 @@ package com.pasdam.regexren.gui;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import javax.swing.ImageIcon;
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
 import javax.swing.JPopupMenu;
 import javax.swing.JSeparator;
 
+import com.pasdam.regexren.controller.ApplicationManager;
 import com.pasdam.regexren.controller.LocaleManager;
 import com.pasdam.regexren.controller.LocaleManager.Localizable;
 import com.pasdam.regexren.gui.CheckItemsListener.Target;
@@ -24,7 +28,8 @@ class CheckMenu extends JPopupMenu implements ActionListener, Localizable {
 	private static final long serialVersionUID = -7494295291367256330L;
 
 	/** Menu element */
-	public final JMenuItem itemCheckAll, itemCheckNone, itemCheckSelected, itemUncheckSelected, itemInvertSelection;
+	public final JMenuItem itemCheckAll, itemCheckNone, itemCheckSelected, itemUncheckSelected, itemInvertSelection,
+			itemInvertChecks, itemUncheckFolders, itemCheckByName;
 
 	// ID of the menu items
 	private static final int ITEM_CHECK_ALL        = 0;
@@ -32,6 +37,9 @@ class CheckMenu extends JPopupMenu implements ActionListener, Localizable {
 	private static final int ITEM_CHECK_SELECTED   = 2;
 	private static final int ITEM_UNCHECK_SELECTED = 3;
 	private static final int ITEM_INVERT           = 4;
+	private static final int ITEM_INVERT_CHECKS    = 5;
+	private static final int ITEM_UNCHECK_FOLDERS  = 6;
+	private static final int ITEM_CHECK_BY_NAME    = 7;
 
 	/** Listener to notify when the check settings change */
 	private CheckItemsListener checkItemsListener;
@@ -78,13 +86,37 @@ class CheckMenu extends JPopupMenu implements ActionListener, Localizable {
 		this.itemInvertSelection.setIcon(new ImageIcon(ImageProvider.getInstance().getImage(this, "check.png")));
 		this.itemInvertSelection.setActionCommand("" + ITEM_INVERT);
 		add(this.itemInvertSelection);
+
+		// invert checks button
+		this.itemInvertChecks = new JMenuItem();
+		this.itemInvertChecks.addActionListener(this);
+		this.itemInvertChecks.setIcon(new ImageIcon(ImageProvider.getInstance().getImage(this, "check.png")));
+		this.itemInvertChecks.setActionCommand("" + ITEM_INVERT_CHECKS);
+		add(this.itemInvertChecks);
+
+		// Items separator
+		add(new JSeparator(JSeparator.HORIZONTAL));
+
+		// uncheck folders button
+		this.itemUncheckFolders = new JMenuItem();
+		this.itemUncheckFolders.addActionListener(this);
+		this.itemUncheckFolders.setIcon(new ImageIcon(ImageProvider.getInstance().getImage(this, "check_none.gif")));
+		this.itemUncheckFolders.setActionCommand("" + ITEM_UNCHECK_FOLDERS);
+		add(this.itemUncheckFolders);
+
+		// check by name button
+		this.itemCheckByName = new JMenuItem();
+		this.itemCheckByName.addActionListener(this);
+		this.itemCheckByName.setIcon(new ImageIcon(ImageProvider.getInstance().getImage(this, "check_all.gif")));
+		this.itemCheckByName.setActionCommand("" + ITEM_CHECK_BY_NAME);
+		add(this.itemCheckByName);
 	}
 
 	/**
 	 * Sets listener to notify when check setting change.<br />
 	 * Listener must ignore the <i>check</i> parameter of
 	 * {@link CheckItemsListener#checkElements(Target, boolean)}, if target is
-	 * {@link Target#INVERTED_SELECTION}
+	 * {@link Target#INVERTED_SELECTION} or {@link Target#INVERTED_CHECK}
 	 * 
 	 * @param listener
 	 *            listener to notify when check setting change
@@ -100,6 +132,9 @@ class CheckMenu extends JPopupMenu implements ActionListener, Localizable {
 		this.itemCheckSelected 	.setText(localeManager.getString("CheckMenu.checkSelected.label"));
 		this.itemUncheckSelected.setText(localeManager.getString("CheckMenu.uncheckSelected.label"));
 		this.itemInvertSelection.setText(localeManager.getString("CheckMenu.invertSelection.label"));
+		this.itemInvertChecks	.setText(localeManager.getString("CheckMenu.invertChecks.label"));
+		this.itemUncheckFolders	.setText(localeManager.getString("CheckMenu.uncheckFolders.label"));
+		this.itemCheckByName	.setText(localeManager.getString("CheckMenu.checkByName.label"));
 	}
 
 	@Override
@@ -126,7 +161,52 @@ class CheckMenu extends JPopupMenu implements ActionListener, Localizable {
 				case ITEM_INVERT:
 					this.checkItemsListener.checkElements(Target.INVERTED_SELECTION, false);
 					break;
+	
+				case ITEM_INVERT_CHECKS:
+					this.checkItemsListener.checkElements(Target.INVERTED_CHECK, false);
+					break;
+	
+				case ITEM_UNCHECK_FOLDERS:
+					this.checkItemsListener.checkElements(Target.FOLDERS, false);
+					break;
+	
+				case ITEM_CHECK_BY_NAME:
+					Pattern pattern = askPattern();
+					if (pattern != null) {
+						this.checkItemsListener.checkElements(pattern, true);
+					}
+					break;
 			}
 		}
 	}
+
+	/**
+	 * Asks the user the regular expression that the names of the files to
+	 * check must contain
+	 * 
+	 * @return the pattern inserted by the user, or null if the dialog was
+	 *         cancelled or the expression is invalid
+	 */
+	private Pattern askPattern() {
+		LocaleManager localeManager = ApplicationManager.getInstance().getLocaleManager();
+		String regex = JOptionPane.showInputDialog(
+				getInvoker(),
+				localeManager.getString("CheckMenu.checkByName.message"),
+				localeManager.getString("CheckMenu.checkByName.label"),
+				JOptionPane.QUESTION_MESSAGE);
+		if (regex == null || regex.length() == 0) {
+			return null;
+		}
+		
+		try {
+			return Pattern.compile(regex);
+		} catch (PatternSyntaxException e) {
+			JOptionPane.showMessageDialog(
+					getInvoker(),
+					localeManager.getString("Error.CheckMenu.invalidPattern"),
+					localeManager.getString("Alert.error.title"),
+					JOptionPane.ERROR_MESSAGE);
+			return null;
+		}
+	}
 }
\ No newline at end of file
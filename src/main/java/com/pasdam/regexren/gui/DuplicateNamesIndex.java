@@ -0,0 +1,223 @@
+package com.pasdam.regexren.gui;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.pasdam.regexren.engine.FileStore;
+
+/**
+ * <p>
+ * Index of the new names of the files, used to find the names assigned to
+ * more files of the same folder.
+ * </p>
+ * <p>
+ * For each folder the index maps each new full filename to the rows that have
+ * it. It is updated incrementally: each row is compared with the name it is
+ * indexed with, without building any string, and only the rows whose name
+ * changed are moved.
+ * </p>
+ *
+ * @author paco
+ * @version 0.1
+ */
+class DuplicateNamesIndex {
+
+	/** Rows of each new name, indexed by folder */
+	private final List<Map<String, Rows>> folders = new ArrayList<Map<String, Rows>>();
+
+	/** Name with which each row is indexed */
+	private String[] rowNames = new String[0];
+
+	/** Folder with which each row is indexed */
+	private int[] rowFolders = new int[0];
+
+	/** Number of rows indexed */
+	private int rowCount;
+
+	/** Rows whose name is used by other rows too */
+	private final BitSet duplicated = new BitSet();
+
+	/** Number of rows whose name is used by other rows too */
+	private int duplicatedCount;
+
+	/** Removes all rows from the index */
+	public void clear() {
+		this.folders.clear();
+		this.rowNames = new String[0];
+		this.rowFolders = new int[0];
+		this.rowCount = 0;
+		this.duplicated.clear();
+		this.duplicatedCount = 0;
+	}
+
+	/**
+	 * Updates the index with the new names of the first <i>rowCount</i> files
+	 * of the list; if the rows are fewer than the indexed ones, the index is
+	 * rebuilt
+	 *
+	 * @param files
+	 *            files list
+	 * @param rowCount
+	 *            number of rows to index
+	 */
+	public void update(FileStore files, int rowCount) {
+		if (rowCount < this.rowCount) {
+			clear();
+		}
+		if (rowCount > this.rowNames.length) {
+			int capacity = Math.max(rowCount, this.rowNames.length + (this.rowNames.length >> 1));
+			this.rowNames = Arrays.copyOf(this.rowNames, capacity);
+			this.rowFolders = Arrays.copyOf(this.rowFolders, capacity);
+		}
+
+		String name;
+		int folder;
+		for (int row = 0; row < rowCount; row++) {
+			folder = files.getFolderIndex(row);
+			if (row < this.rowCount) {
+				name = this.rowNames[row];
+				if (folder == this.rowFolders[row] && files.hasNewFullName(row, name)) {
+					// not changed
+					continue;
+				}
+				remove(this.rowFolders[row], name, row);
+			}
+
+			name = files.getNewFullName(row);
+			this.rowNames[row] = name;
+			this.rowFolders[row] = folder;
+			add(folder, name, row);
+		}
+		this.rowCount = rowCount;
+	}
+
+	/**
+	 * Returns true if the name of the specified row is used by other rows too
+	 *
+	 * @param row
+	 *            row to check
+	 * @return true if the name of the row is duplicated
+	 */
+	public boolean isDuplicated(int row) {
+		return this.duplicated.get(row);
+	}
+
+	/**
+	 * Returns the number of rows whose name is used by other rows too
+	 *
+	 * @return the number of rows with a duplicated name
+	 */
+	public int getDuplicatedCount() {
+		return this.duplicatedCount;
+	}
+
+	/**
+	 * Adds the row to the specified name
+	 *
+	 * @param folder
+	 *            folder of the row
+	 * @param name
+	 *            name of the row
+	 * @param row
+	 *            row to add
+	 */
+	private void add(int folder, String name, int row) {
+		while (this.folders.size() <= folder) {
+			this.folders.add(null);
+		}
+		Map<String, Rows> names = this.folders.get(folder);
+		if (names == null) {
+			names = new HashMap<String, Rows>();
+			this.folders.set(folder, names);
+		}
+
+		Rows rows = names.get(name);
+		if (rows == null) {
+			rows = new Rows();
+			names.put(name, rows);
+		}
+		rows.add(row);
+
+		if (rows.size == 2) {
+			this.duplicated.set(rows.rows[0]);
+			this.duplicated.set(row);
+			this.duplicatedCount += 2;
+
+		} else if (rows.size > 2) {
+			this.duplicated.set(row);
+			this.duplicatedCount++;
+		}
+	}
+
+	/**
+	 * Removes the row from the specified name
+	 *
+	 * @param folder
+	 *            folder of the row
+	 * @param name
+	 *            name of the row
+	 * @param row
+	 *            row to remove
+	 */
+	private void remove(int folder, String name, int row) {
+		Map<String, Rows> names = this.folders.get(folder);
+		Rows rows = names.get(name);
+		rows.remove(row);
+
+		if (rows.size == 0) {
+			names.remove(name);
+
+		} else if (rows.size == 1) {
+			this.duplicated.clear(row);
+			this.duplicated.clear(rows.rows[0]);
+			this.duplicatedCount -= 2;
+
+		} else {
+			this.duplicated.clear(row);
+			this.duplicatedCount--;
+		}
+	}
+
+	/** List of the rows that have the same name */
+	private static final class Rows {
+
+		/** Rows, only the first {@link #size} are used */
+		private int[] rows = new int[1];
+
+		/** Number of rows */
+		private int size;
+
+		/**
+		 * Adds the specified row
+		 *
+		 * @param row
+		 *            row to add
+		 */
+		public void add(int row) {
+			if (this.size == this.rows.length) {
+				this.rows = Arrays.copyOf(this.rows, this.size << 1);
+			}
+			this.rows[this.size++] = row;
+		}
+
+		/**
+		 * Removes the specified row, if present
+		 *
+		 * @param row
+		 *            row to remove
+		 */
+		public void remove(int row) {
+			for (int i = 0; i < this.size; i++) {
+				if (this.rows[i] == row) {
+					// order is not relevant: replace it with the last one
+					this.rows[i] = this.rows[--this.size];
+					return;
+				}
+			}
+		}
+	}
+}
@@ -28,8 +28,8 @@ import com.pasdam.gui.swing.panel.ExpandableItem;
 import com.pasdam.regexren.controller.LocaleManager;
 import com.pasdam.regexren.controller.LocaleManager.Localizable;
 import com.pasdam.regexren.controller.LogManager;
-import com.pasdam.regexren.gui.rules.AbstractRuleFactory;
-import com.pasdam.regexren.gui.rules.RuleFactoryListener;
+import com.pasdam.regexren.engine.AbstractRuleFactory;
+import com.pasdam.regexren.engine.RuleFactoryListener;
 
 /**
  * Expandable panel that contains a {@link RuleContentPanel}
@@ -40,7 +40,7 @@ import com.pasdam.regexren.gui.rules.RuleFactoryListener;
 class ExpandableRule extends ExpandableItem implements Localizable, Transferable {
 	
 	/**	MIME type that indicates an {@link AbstractRuleFactory} */
-	public static final String MIME_TYPE_RULE_FACTORY = DataFlavor.javaJVMLocalObjectMimeType + ";class=com.pasdam.regexren.gui.rules.AbstractRuleFactory";
+	public static final String MIME_TYPE_RULE_FACTORY = DataFlavor.javaJVMLocalObjectMimeType + ";class=com.pasdam.regexren.engine.AbstractRuleFactory";
 	
 	private static final long serialVersionUID = 8443447294086054937L;
 	
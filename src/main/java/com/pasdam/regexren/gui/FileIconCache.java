@@ -0,0 +1,235 @@
+package com.pasdam.regexren.gui;
+
+import java.io.File;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.Icon;
+import javax.swing.ImageIcon;
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.UIManager;
+import javax.swing.filechooser.FileSystemView;
+
+import com.pasdam.regexren.controller.LogManager;
+
+/**
+ * <p>
+ * Cache of the system icons of the files shown in a table.
+ * </p>
+ * <p>
+ * Icons are cached by file type, i.e. folder or extension, with a least
+ * recently used eviction. An icon not cached yet is loaded in a background
+ * thread, since it may access the file system: in the meanwhile a generic
+ * icon is returned, and the rows that requested it are repainted when it is
+ * loaded. Extensions whose icon depends on the file itself, as executables
+ * and links, are cached by path.
+ * </p>
+ * <p>
+ * The cache must be used only by the event dispatch thread.
+ * </p>
+ *
+ * @author paco
+ * @version 0.1
+ */
+class FileIconCache {
+
+	/** Maximum number of cached icons */
+	private static final int MAX_SIZE = 256;
+
+	/** Key of the folders icon */
+	private static final String DIRECTORY_KEY = "/";
+
+	/** Extensions whose icon is specific of each file */
+	private static final String[] PER_FILE_EXTENSIONS = { "exe", "ico", "lnk", "url" };
+
+	/** Executor that loads the icons */
+	private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "IconLoader");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/** Cached icons, in access order */
+	private final Map<String, Icon> icons = new LinkedHashMap<String, Icon>(MAX_SIZE, 0.75f, true) {
+
+		private static final long serialVersionUID = -3026342711436398237L;
+
+		@Override
+		protected boolean removeEldestEntry(Entry<String, Icon> eldest) {
+			return size() > MAX_SIZE;
+		}
+	};
+
+	/** Rows waiting for each icon being loaded */
+	private final Map<String, BitSet> pendingRows = new HashMap<String, BitSet>();
+
+	/** Table to repaint when an icon is loaded */
+	private final JTable table;
+
+	/** Column of the table that shows the icons */
+	private final int column;
+
+	/**
+	 * Creates a cache for the specified table
+	 *
+	 * @param table
+	 *            table to repaint when an icon is loaded
+	 * @param column
+	 *            column of the table that shows the icons
+	 */
+	public FileIconCache(JTable table, int column) {
+		this.table  = table;
+		this.column = column;
+	}
+
+	/**
+	 * Returns the icon of the specified file if it is cached, otherwise starts
+	 * loading it and returns a generic icon
+	 *
+	 * @param file
+	 *            file whose icon to get
+	 * @param directory
+	 *            true if the file is a folder
+	 * @param row
+	 *            row that shows the file, repainted when the icon is loaded
+	 * @return the icon of the file, or a generic one if it is not loaded yet
+	 */
+	public Icon getIcon(File file, boolean directory, int row) {
+		String key = getKey(file, directory);
+		Icon icon = this.icons.get(key);
+		if (icon != null) {
+			return icon;
+		}
+
+		BitSet rows = this.pendingRows.get(key);
+		if (rows == null) {
+			rows = new BitSet();
+			this.pendingRows.put(key, rows);
+			EXECUTOR.execute(new LoadTask(key, file, directory));
+		}
+		rows.set(row);
+		return getPlaceholder(directory);
+	}
+
+	/**
+	 * Returns the key of the icon of the specified file
+	 *
+	 * @param file
+	 *            file whose icon to get
+	 * @param directory
+	 *            true if the file is a folder
+	 * @return the key of the icon
+	 */
+	private static String getKey(File file, boolean directory) {
+		if (directory) {
+			return DIRECTORY_KEY;
+		}
+
+		String name = file.getName();
+		int index = name.lastIndexOf('.');
+		String extension = index > 0 ? name.substring(index + 1).toLowerCase(Locale.ENGLISH) : "";
+		for (String perFileExtension : PER_FILE_EXTENSIONS) {
+			if (perFileExtension.equals(extension)) {
+				return file.getPath();
+			}
+		}
+		return "." + extension;
+	}
+
+	/**
+	 * Returns the generic icon shown while the actual one is being loaded
+	 *
+	 * @param directory
+	 *            true for the icon of folders, false for the icon of files
+	 * @return the generic icon, it may be null
+	 */
+	private static Icon getPlaceholder(boolean directory) {
+		return UIManager.getIcon(directory ? "FileView.directoryIcon" : "FileView.fileIcon");
+	}
+
+	/**
+	 * Stores the loaded icon and repaints the rows that requested it
+	 *
+	 * @param key
+	 *            key of the icon
+	 * @param icon
+	 *            loaded icon
+	 */
+	private void iconLoaded(String key, Icon icon) {
+		this.icons.put(key, icon);
+		BitSet rows = this.pendingRows.remove(key);
+		if (rows != null) {
+			int rowCount = this.table.getRowCount();
+			for (int row = rows.nextSetBit(0); row >= 0 && row < rowCount; row = rows.nextSetBit(row + 1)) {
+				this.table.repaint(this.table.getCellRect(row, this.column, false));
+			}
+		}
+	}
+
+	/** Task that loads an icon in background */
+	private class LoadTask implements Runnable {
+
+		/** Key of the icon */
+		private final String key;
+
+		/** File whose icon to load */
+		private final File file;
+
+		/** Indicates whether the file is a folder */
+		private final boolean directory;
+
+		/**
+		 * Creates a task that loads the icon of the specified file
+		 *
+		 * @param key
+		 *            key of the icon
+		 * @param file
+		 *            file whose icon to load
+		 * @param directory
+		 *            true if the file is a folder
+		 */
+		public LoadTask(String key, File file, boolean directory) {
+			this.key       = key;
+			this.file      = file;
+			this.directory = directory;
+		}
+
+		@Override
+		public void run() {
+			Icon icon = null;
+			try {
+				icon = FileSystemView.getFileSystemView().getSystemIcon(this.file);
+			} catch (Exception e) {
+				if (LogManager.ENABLED) LogManager.warning("FileIconCache.LoadTask> Unable to load the icon of " + this.file + ": " + e.getMessage());
+			}
+			if (icon == null) {
+				// cache the generic icon, to not load it again
+				icon = getPlaceholder(this.directory);
+				if (icon == null) {
+					icon = new ImageIcon();
+				}
+			}
+
+			final Icon loadedIcon = icon;
+			SwingUtilities.invokeLater(new Runnable() {
+
+				@Override
+				public void run() {
+					iconLoaded(LoadTask.this.key, loadedIcon);
+				}
+			});
+		}
+	}
+}
@@ -10,9 +10,7 @@ import java.awt.event.ComponentListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.io.File;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.regex.Pattern;
 
 import javax.swing.BorderFactory;
 import javax.swing.Box;
@@ -24,19 +22,19 @@ import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.ListSelectionModel;
 import javax.swing.SwingUtilities;
+import javax.swing.UIManager;
 import javax.swing.border.EtchedBorder;
 import javax.swing.event.TableModelEvent;
-import javax.swing.event.TableModelListener;
-import javax.swing.filechooser.FileSystemView;
+import javax.swing.table.AbstractTableModel;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableColumn;
 
 import com.pasdam.regexren.controller.ApplicationManager;
+import com.pasdam.regexren.controller.FilesListManager;
 import com.pasdam.regexren.controller.FilesListManager.FilesListListener;
 import com.pasdam.regexren.controller.LocaleManager;
 import com.pasdam.regexren.controller.LocaleManager.Localizable;
-import com.pasdam.regexren.model.FileModelItem;
+import com.pasdam.regexren.engine.FileStore;
 
 /**
  * GUI element that show a table from a list of files
@@ -61,6 +59,15 @@ class FilesTable extends JPanel implements CheckItemsListener,
 	private final JTable table;
 	private final FilesTableModel model;
 	
+	/** Tooltip of the statistics label */
+	private String statisticsToolTipText;
+	
+	/** Tooltip of the statistics label when some new names are duplicated */
+	private String collisionsToolTipText;
+	
+	/** Cache of the icons shown near the current names */
+	private final FileIconCache iconCache;
+	
 	/** Initialize the element */
 	public FilesTable() {
 		setLayout(new GridLayout(1, 1));
@@ -72,6 +79,7 @@ class FilesTable extends JPanel implements CheckItemsListener,
 		this.table = new JTable();
 		this.model = new FilesTableModel();
 		this.table.setModel(this.model);
+		this.iconCache = new FileIconCache(this.table, 1);
 		this.scrollPane = new JScrollPane(this.table);
 		layeredPane.add(this.scrollPane, new Integer(1), -1);
 		
@@ -116,38 +124,55 @@ class FilesTable extends JPanel implements CheckItemsListener,
 	}
 	
 	@Override
-	public void filesListChanged(List<FileModelItem> list, boolean undoAvailable) {
-		SwingUtilities.invokeLater(new Worker(true));
+	public void filesListChanged(FileStore list, boolean undoAvailable) {
+		if (SwingUtilities.isEventDispatchThread()) {
+			// update the table before any repaint
+			new Worker(list).run();
+		} else {
+			SwingUtilities.invokeLater(new Worker(list));
+		}
 	}
     
 	/** Force the refresh of the UI component */
     public void refresh() {
-    	SwingUtilities.invokeLater(new Worker(false));
+    	SwingUtilities.invokeLater(new Worker(null));
     }
 
 	@Override
 	public void localeChanged(LocaleManager localeManager) {
     	this.table.getColumnModel().getColumn(1).setHeaderValue(localeManager.getString("FilesTable.column1.title"));
     	this.table.getColumnModel().getColumn(2).setHeaderValue(localeManager.getString("FilesTable.column2.title"));
-    	this.filesNumberLabel.setToolTipText(localeManager.getString("RulesPanel.filesNumber.toolTipText"));
+    	this.statisticsToolTipText = localeManager.getString("RulesPanel.filesNumber.toolTipText");
+    	this.collisionsToolTipText = localeManager.getString("RulesPanel.filesNumber.collisions.toolTipText");
+    	updateFileStatistics();
     	this.contextMenu.localeChanged(localeManager);
 	}
 
 	@Override
 	public void checkElements(Target type, boolean check) {
+		// the list is updated with a single operation, that notifies the
+		// changes once
+		FilesListManager filesListManager = ApplicationManager.getInstance().getFilesListManager();
 		int[] selectedIndices;
 		switch (type) {
 			case ALL:
-				for (int i = 0; i < this.model.getRowCount(); i++) {
-					this.model.setValueAt(new Boolean(check), i, 0);
-				}
+				filesListManager.checkAll(check);
 				break;
 				
 			case SELECTION:
-				selectedIndices = this.table.getSelectedRows();
-				for (int index: selectedIndices) {
-					this.model.setValueAt(new Boolean(check), index, 0);
-				}
+				filesListManager.setChecked(this.table.getSelectedRows(), check);
+				break;
+				
+			case INVERTED_CHECK:
+				filesListManager.invertChecked();
+				break;
+				
+			case FOLDERS:
+				filesListManager.setCheckedByType(true, check);
+				break;
+				
+			case FILES:
+				filesListManager.setCheckedByType(false, check);
 				break;
 				
 			case INVERTED_SELECTION:
@@ -159,10 +184,24 @@ class FilesTable extends JPanel implements CheckItemsListener,
 				break;
 		}
 	}
+
+	@Override
+	public void checkElements(Pattern pattern, boolean check) {
+		ApplicationManager.getInstance().getFilesListManager().setCheckedByName(pattern, check);
+	}
 	
 	/** Updates the label with files count */
 	private void updateFileStatistics() {
-		this.filesNumberLabel.setText(this.model.getCheckedCount() + "/" + this.model.getRowCount());
+		int duplicatedCount = this.model.getDuplicatedCount();
+		if (duplicatedCount > 0) {
+			this.filesNumberLabel.setText(this.model.getCheckedCount() + "/" + this.model.getRowCount() + " - " + duplicatedCount);
+			this.filesNumberLabel.setForeground(Color.RED);
+			this.filesNumberLabel.setToolTipText(this.collisionsToolTipText);
+		} else {
+			this.filesNumberLabel.setText(this.model.getCheckedCount() + "/" + this.model.getRowCount());
+			this.filesNumberLabel.setForeground(UIManager.getColor("Label.foreground"));
+			this.filesNumberLabel.setToolTipText(this.statisticsToolTipText);
+		}
 		updateStatisticsBoxPosition(false);
 	}
 	
@@ -192,21 +231,15 @@ class FilesTable extends JPanel implements CheckItemsListener,
 		this.filesNumberBox.setLocation(left ? 0 : getWidth() - boxSize.width - scrollBarWidth, getHeight() - boxSize.height);
 	}
 	
-	/** Custom table model */
-	private class FilesTableModel extends DefaultTableModel implements TableModelListener {
+	/**
+	 * Table model that reads the rows directly from a snapshot of the files
+	 * list: no row is copied, and values are computed only when the table
+	 * requests them, i.e. for the visible rows
+	 */
+	private class FilesTableModel extends AbstractTableModel {
 		
 		private static final long serialVersionUID = 4016175757089191008L;
 
-		/** Indicates how many files are checked */
-		private int checkedCount = 0;
-		
-		/** Creates a model with tree untitled columns and 0 rows */
-		public FilesTableModel() {
-			super(new Object[][] {null, null, null}, 0);
-			
-			addTableModelListener(this);
-		}
-
 		/** Column types */
 		@SuppressWarnings("rawtypes")
 		private final Class[] columnTypes = new Class[] {
@@ -215,90 +248,130 @@ class FilesTable extends JPanel implements CheckItemsListener,
 			String.class	// 2) new name
 		};
 		
-		/** Map of duplicated file names indexes */
-		private final Map<Integer, Object> duplicateNameIndexes = new HashMap<Integer, Object>();
+		/** Snapshot of the files list shown, null if no list has been shown yet */
+		private FileStore files;
+		
+		/** Number of rows, i.e. the size of the snapshot */
+		private int rowCount;
+
+		/** Indicates how many files are checked */
+		private int checkedCount;
+		
+		/** Index of the new names, used to find the duplicated ones */
+		private final DuplicateNamesIndex duplicateNames = new DuplicateNamesIndex();
+		
+		@Override
+		public int getColumnCount() {
+			return this.columnTypes.length;
+		}
 		
 		@SuppressWarnings({ "unchecked", "rawtypes" })
+		@Override
 		public Class getColumnClass(int columnIndex) {
 			return this.columnTypes[columnIndex];
 		}
 		
+		@Override
+		public int getRowCount() {
+			return this.rowCount;
+		}
+
 		@Override
 		public boolean isCellEditable(int row, int column) {
 			return column == 0; // only check column is editable
 		}
-
-		/** Clears the model, removing all elements */
-		public void clear() {
-			for (int i = getRowCount()-1; i >= 0; i--) {
-				removeRow(i);
+		
+		@Override
+		public Object getValueAt(int row, int column) {
+			switch (column) {
+				case 0:
+					return this.files.isChecked(row);
+				case 1:
+					return this.files.getFile(row);
+				default:
+					return this.files.getNewFullName(row);
+			}
+		}
+		
+		@Override
+		public void setValueAt(Object aValue, int row, int column) {
+			if (column == 0) {
+				boolean checked = (Boolean) aValue;
+				if (this.files.isChecked(row) != checked) {
+					// update model: the table is updated when the list
+					// notifies the change
+					ApplicationManager.getInstance().getFilesListManager().setChecked(row, checked);
+				}
 			}
-			this.checkedCount = 0;
 		}
 		
 		/**
-		 * Adds the specified file data objects to the model
+		 * Shows the specified files list, firing a single event
 		 * 
-		 * @param list
-		 *            list of file data to add to the model
+		 * @param files
+		 *            snapshot of the files list to show
 		 */
-		public void addFilesData(List<FileModelItem> list) {
-			this.duplicateNameIndexes.clear();
-
-			Map<String, Integer> names = new HashMap<String, Integer>();
-			String newName;
-			FileModelItem fileData;
+		public void setFiles(FileStore files) {
+			int previousCount = this.rowCount;
+			boolean firstList = this.files == null;
+			this.files = files;
+			this.rowCount = files.size();
+			this.checkedCount = files.getCheckedCount();
+			this.duplicateNames.update(files, this.rowCount);
 			
-			for (int i = 0; i < list.size(); i++) {
-				// check for duplicates
-				fileData = list.get(i);
-				newName = fileData.getNewFullName();
-				if (names.containsKey(newName)) {
-					this.duplicateNameIndexes.put(names.get(newName), null);
-					this.duplicateNameIndexes.put(i, null);
-				} else {
-					names.put(newName, i);
-				}
-				
-				// add single row
-				addRow(new Object[] { 
-						fileData.isChecked(), 
-						fileData.getFile(),
-						newName
-				});
+			if (firstList || this.rowCount < previousCount) {
+				fireTableDataChanged();
 				
-				if (fileData.isChecked()) {
-					this.checkedCount++;
+			} else {
+				// rows are only appended, so selection can be kept
+				if (previousCount > 0) {
+					fireTableRowsUpdated(0, previousCount - 1);
+				}
+				if (this.rowCount > previousCount) {
+					fireTableRowsInserted(previousCount, this.rowCount - 1);
 				}
 			}
 		}
 		
-		@Override
-		public void setValueAt(Object aValue, int row, int column) {
-			if (!FilesTable.this.model.getValueAt(row, column).equals(aValue)) {
-				super.setValueAt(aValue, row, column);
+		/** Repaints the new name of all files */
+		public void refresh() {
+			if (this.rowCount > 0) {
+				this.duplicateNames.update(this.files, this.rowCount);
+				fireTableChanged(new TableModelEvent(this, 0, this.rowCount - 1, 2));
 			}
 		}
 		
-		@Override
-		public void tableChanged(TableModelEvent e) {
-			int row = e.getFirstRow();
-			int column = e.getColumn();
-			if (row >= 0 && column == 0) {
-				Boolean checked = (Boolean) FilesTable.this.model.getValueAt(row, column);
-				
-				// update model
-				ApplicationManager.getInstance().getFilesListManager().setChecked(row, checked);
-				
-				// update checked count
-				if (checked) {
-					this.checkedCount++;
-				} else {
-					this.checkedCount--;
-				}
-				
-				FilesTable.this.updateFileStatistics();
-			}
+		/**
+		 * Returns the file at the specified row
+		 * 
+		 * @param row
+		 *            index of the file
+		 * @return the file at the specified row, null if the row doesn't exist
+		 */
+		public File getFile(int row) {
+			return row >= 0 && row < this.rowCount ? this.files.getFile(row) : null;
+		}
+		
+		/**
+		 * Returns the name of the file at the specified row
+		 * 
+		 * @param row
+		 *            index of the file
+		 * @return the name of the file at the specified row
+		 */
+		public String getFileName(int row) {
+			return this.files.getFileName(row);
+		}
+		
+		/**
+		 * Returns true if the file at the specified row is a folder
+		 * 
+		 * @param row
+		 *            index of the file
+		 * @return true if the file at the specified row is a folder
+		 */
+		public boolean isDirectory(int row) {
+			return this.files.isDirectory(row);
 		}
 		
 		/**
@@ -309,7 +382,17 @@ class FilesTable extends JPanel implements CheckItemsListener,
 		 * @return true if the filename at the specified row is duplicated
 		 */
 		public boolean isDuplicated(int row) {
-			return this.duplicateNameIndexes.containsKey(row);
+			return this.duplicateNames.isDuplicated(row);
+		}
+		
+		/**
+		 * Returns the number of files whose new name is used by other files
+		 * of the same folder too
+		 * 
+		 * @return the number of files with a duplicated new name
+		 */
+		public int getDuplicatedCount() {
+			return this.duplicateNames.getDuplicatedCount();
 		}
 		
 		/**
@@ -337,8 +420,8 @@ class FilesTable extends JPanel implements CheckItemsListener,
 				if (column == 1) {
 					File file = (File) value;
 					label.setText(file.getName());
-					label.setToolTipText(file.getName());
-					label.setIcon(FileSystemView.getFileSystemView().getSystemIcon(file));
+					label.setToolTipText(file.getPath());
+					label.setIcon(FilesTable.this.iconCache.getIcon(file, FilesTable.this.model.isDirectory(row), row));
 					if ((Boolean) table.getValueAt(row, 0)) {
 						label.setForeground(Color.BLACK);
 					} else {
@@ -350,7 +433,7 @@ class FilesTable extends JPanel implements CheckItemsListener,
 						String name = (String) value;
 						label.setText(name);
 						label.setToolTipText(name);
-						if (((File) table.getValueAt(row, 1)).getName().equals(name)) {
+						if (FilesTable.this.model.getFileName(row).equals(name)) {
 							label.setForeground(Color.LIGHT_GRAY);
 						} else if (FilesTable.this.model.isDuplicated(row)) {
 							label.setForeground(Color.RED);
@@ -375,40 +458,33 @@ class FilesTable extends JPanel implements CheckItemsListener,
 	/** Thread worker that refresh/reload current folder children */
 	private class Worker implements Runnable {
 		
-		/** Indicates if the worker should reload the model, or update only the new name column */
-		private final boolean reload;
+		/** Snapshot of the list to show, null to update only the new name column */
+		private final FileStore list;
 		
 		/**
 		 * Creates a worker
 		 * 
-		 * @param reload
-		 *            if true the worker will reload the model, if false it will
-		 *            only update the new name column (the 3rd one)
+		 * @param list
+		 *            snapshot of the list to show; if null the worker will only
+		 *            update the new name column (the 3rd one)
 		 */
-		public Worker(boolean reload) {
-			this.reload = reload;
+		public Worker(FileStore list) {
+			this.list = list;
 		}
 		
 		@Override
 		public void run() {
-			List<FileModelItem> list = ApplicationManager.getInstance().getFilesListManager().getFilesList();
-			if (this.reload) {
-				// clear list
-				FilesTable.this.model.clear();
-				// add new elements to the model
-				FilesTable.this.model.addFilesData(list);
+			if (this.list != null) {
+				// show the new list
+				FilesTable.this.model.setFiles(this.list);
 				// update statistics label
 				FilesTable.this.updateFileStatistics();
 			
 			} else {
-				FileModelItem file;
-				for (int i = 0; i < list.size(); i++) {
-					file = list.get(i);
-					if (file.isChecked()) {
-						// refresh model value
-						FilesTable.this.model.setValueAt(file.getNewFullName(), i, 2);
-					}
-				}
+				// refresh new names
+				FilesTable.this.model.refresh();
+				// update statistics label
+				FilesTable.this.updateFileStatistics();
 			}
 		}
 	}
@@ -420,8 +496,8 @@ class FilesTable extends JPanel implements CheckItemsListener,
 		public void mouseClicked(MouseEvent event) {
 			if (event.getSource() == FilesTable.this.table && event.getClickCount() == 2) {
 				int row = FilesTable.this.table.rowAtPoint(event.getPoint());
-				File file = ApplicationManager.getInstance().getFilesListManager().getCurrentFile(row);
-				if (file.isDirectory()) {
+				File file = FilesTable.this.model.getFile(row);
+				if (file != null && FilesTable.this.model.isDirectory(row)) {
 					ApplicationManager.getInstance().getPreferenceManager().setPreviousFolder(file, false);
 				}
 			}
@@ -449,9 +525,9 @@ class FilesTable extends JPanel implements CheckItemsListener,
 		public void mouseReleased(MouseEvent event) {
 			if (event.getSource() == FilesTable.this.table && event.isPopupTrigger()) {
 				// show context menu
-				if (FilesTable.this.contextMenu != null) {
-					int row = FilesTable.this.table.rowAtPoint(event.getPoint());
-					File file = ApplicationManager.getInstance().getFilesListManager().getCurrentFile(row);
+				int row = FilesTable.this.table.rowAtPoint(event.getPoint());
+				File file = FilesTable.this.model.getFile(row);
+				if (FilesTable.this.contextMenu != null && file != null) {
 					FilesTable.this.contextMenu.show(file, FilesTable.this, event.getX(), event.getY());
 				}
 			}
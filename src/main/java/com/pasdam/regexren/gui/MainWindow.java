@@ -147,6 +147,7 @@ public class MainWindow extends JFrame {
 		
 		// set errors handler
 		ApplicationManager.getInstance().getRulesManager().setErrorListener(internalEventsHandler);
+		ApplicationManager.getInstance().getFilesListManager().setErrorListener(internalEventsHandler);
 
 		if (LogManager.ENABLED) LogManager.trace("MainWindow> main window created.");
 	}
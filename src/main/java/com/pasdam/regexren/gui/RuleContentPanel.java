@@ -7,7 +7,7 @@ import javax.swing.JPanel;
 import javax.swing.UIManager;
 
 import com.pasdam.regexren.controller.LocaleManager.Localizable;
-import com.pasdam.regexren.gui.rules.AbstractRuleFactory;
+import com.pasdam.regexren.engine.AbstractRuleFactory;
 
 /**
  * <p>
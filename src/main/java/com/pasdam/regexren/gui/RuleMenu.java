@@ -10,7 +10,7 @@ import com.pasdam.regexren.controller.ApplicationManager;
 import com.pasdam.regexren.controller.LocaleManager;
 import com.pasdam.regexren.controller.LocaleManager.Localizable;
 import com.pasdam.regexren.controller.RulesManager;
-import com.pasdam.regexren.gui.rules.AbstractRuleFactory;
+import com.pasdam.regexren.engine.AbstractRuleFactory;
 
 /**
  * Context menu for expandable rules
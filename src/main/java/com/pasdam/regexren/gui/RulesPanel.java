@@ -21,23 +21,23 @@ import com.pasdam.regexren.controller.LocaleManager.Localizable;
 import com.pasdam.regexren.controller.LogManager;
 import com.pasdam.regexren.controller.RulesManager;
 import com.pasdam.regexren.controller.RulesManager.RulesListener;
-import com.pasdam.regexren.gui.rules.AbstractRuleFactory;
-import com.pasdam.regexren.gui.rules.ChangeCaseFactory;
+import com.pasdam.regexren.engine.AbstractRuleFactory;
+import com.pasdam.regexren.engine.ChangeCaseFactory;
 import com.pasdam.regexren.gui.rules.ChangeCasePanel;
-import com.pasdam.regexren.gui.rules.InsertCounterAtPositionFactory;
+import com.pasdam.regexren.engine.InsertCounterAtPositionFactory;
 import com.pasdam.regexren.gui.rules.InsertCounterAtPositionPanel;
-import com.pasdam.regexren.gui.rules.InsertCounterBeforeAfterFactory;
+import com.pasdam.regexren.engine.InsertCounterBeforeAfterFactory;
 import com.pasdam.regexren.gui.rules.InsertCounterBeforeAfterPanel;
-import com.pasdam.regexren.gui.rules.InsertCounterOnCollisionFactory;
+import com.pasdam.regexren.engine.InsertCounterOnCollisionFactory;
 import com.pasdam.regexren.gui.rules.InsertCounterOnCollisionPanel;
-import com.pasdam.regexren.gui.rules.InsertTextAtPositionFactory;
+import com.pasdam.regexren.engine.InsertTextAtPositionFactory;
 import com.pasdam.regexren.gui.rules.InsertTextAtPositionPanel;
-import com.pasdam.regexren.gui.rules.InsertTextBeforeAfterFactory;
+import com.pasdam.regexren.engine.InsertTextBeforeAfterFactory;
 import com.pasdam.regexren.gui.rules.InsertTextBeforeAfterPanel;
-import com.pasdam.regexren.gui.rules.MoveTextBeforeAfterFactory;
+import com.pasdam.regexren.engine.MoveTextBeforeAfterFactory;
 import com.pasdam.regexren.gui.rules.MoveTextBeforeAfterPanel;
 import com.pasdam.regexren.gui.rules.RemovePanel;
-import com.pasdam.regexren.gui.rules.ReplaceFactory;
+import com.pasdam.regexren.engine.ReplaceFactory;
 import com.pasdam.regexren.gui.rules.ReplacePanel;
 
 /**
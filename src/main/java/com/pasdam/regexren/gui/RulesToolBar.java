@@ -10,19 +10,22 @@ import javax.swing.Box;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JDialog;
+import javax.swing.JProgressBar;
 import javax.swing.JSeparator;
 import javax.swing.JToolBar;
 import javax.swing.SwingConstants;
 
 import com.pasdam.regexren.controller.ApplicationManager;
+import com.pasdam.regexren.controller.FilesListManager;
 import com.pasdam.regexren.controller.FilesListManager.FilesListListener;
+import com.pasdam.regexren.controller.FilesListManager.RenameListener;
 import com.pasdam.regexren.controller.LocaleManager;
 import com.pasdam.regexren.controller.LocaleManager.Localizable;
 import com.pasdam.regexren.controller.LogManager;
 import com.pasdam.regexren.controller.RulesManager;
 import com.pasdam.regexren.controller.RulesManager.RulesListener;
-import com.pasdam.regexren.gui.rules.AbstractRuleFactory;
-import com.pasdam.regexren.model.FileModelItem;
+import com.pasdam.regexren.engine.AbstractRuleFactory;
+import com.pasdam.regexren.engine.FileStore;
 
 /**
  * Rules panel's toolbar
@@ -33,7 +36,8 @@ import com.pasdam.regexren.model.FileModelItem;
 class RulesToolBar extends JToolBar implements Localizable,
 											   MouseListener,
 											   RulesListener,
-											   FilesListListener {
+											   FilesListListener,
+											   RenameListener {
 
 	private static final long serialVersionUID = -3461213981982443383L;
 	
@@ -57,8 +61,12 @@ class RulesToolBar extends JToolBar implements Localizable,
 	private final JButton scriptButton;
 	private final JButton settingsButton;
 	private final JButton undoButton;
+	private final JProgressBar renameProgressBar;
 	private final ScriptMenu scriptMenu;
 	
+	/** Format of the rename progress, localized */
+	private String renameProgressFormat = "%d/%d - %d/s";
+	
 	/**
 	 * Indicates whether the files list has at least one element (true) or is
 	 * empty (false)
@@ -70,6 +78,12 @@ class RulesToolBar extends JToolBar implements Localizable,
 	 * empty (false)
 	 */
 	private boolean rulesAvailable = false;
+	
+	/** Indicates whether the last rename operation can be undone */
+	private boolean undoAvailable = false;
+	
+	/** Indicates whether a rename operation is running */
+	private boolean renaming = false;
 
 	public RulesToolBar() {
 		// set layout properties
@@ -156,8 +170,17 @@ class RulesToolBar extends JToolBar implements Localizable,
 		this.undoButton.addMouseListener(this);
 		add(this.undoButton);
 		
-		// register itself as files listener
-		ApplicationManager.getInstance().getFilesListManager().addFilesListListener(this);
+		// add rename progress bar, shown only while renaming
+		this.renameProgressBar = new JProgressBar();
+		this.renameProgressBar.setStringPainted(true);
+		this.renameProgressBar.setMaximumSize(new Dimension(200, 30));
+		this.renameProgressBar.setVisible(false);
+		add(this.renameProgressBar);
+		
+		// register itself as files and rename listener
+		FilesListManager filesListManager = ApplicationManager.getInstance().getFilesListManager();
+		filesListManager.addFilesListListener(this);
+		filesListManager.addRenameListener(this);
 		
 		// register itself as rules listener
 		RulesManager rulesManager = ApplicationManager.getInstance().getRulesManager();
@@ -167,9 +190,15 @@ class RulesToolBar extends JToolBar implements Localizable,
 	
 	private void setRulesAvailable(boolean rulesInList) {
 		this.rulesAvailable = rulesInList;
-		boolean buttonsEnabled = this.rulesAvailable && this.filesAvailable;
+		updateButtons();
+	}
+	
+	/** Enables the buttons of the available operations */
+	private void updateButtons() {
+		boolean buttonsEnabled = this.rulesAvailable && this.filesAvailable && !this.renaming;
 		this.previewButton.setEnabled(buttonsEnabled);
 		this.applyButton.setEnabled(buttonsEnabled);
+		this.undoButton.setEnabled(this.undoAvailable && !this.renaming);
 	}
 
 	@Override
@@ -181,19 +210,44 @@ class RulesToolBar extends JToolBar implements Localizable,
     	this.scriptButton	 .setText(localeManager.getString("RulesPanel.script.label"));
     	this.settingsButton	 .setToolTipText(localeManager.getString("Settings.settings"));
     	this.undoButton		 .setToolTipText(localeManager.getString("RulesPanel.undo.toolTipText"));
+    	this.renameProgressFormat = localeManager.getString("RulesPanel.renameProgress");
 		
 		this.addRuleMenu.localeChanged(localeManager);
 		this.scriptMenu.localeChanged(localeManager);
 	}
 	
 	@Override
-	public void filesListChanged(List<FileModelItem> list, boolean undoAvailable) {
+	public void filesListChanged(FileStore list, boolean undoAvailable) {
 		if (LogManager.ENABLED) LogManager.trace("RulesPanel.filesListChanged> filesCount=" + list.size() + ", undoAvailable=" + undoAvailable);
-		this.undoButton.setEnabled(undoAvailable);
+		this.undoAvailable = undoAvailable;
 		this.filesAvailable = list.size() > 0;
-		boolean buttonsEnabled = this.rulesAvailable && this.filesAvailable;
-		this.previewButton.setEnabled(buttonsEnabled);
-		this.applyButton.setEnabled(buttonsEnabled);
+		updateButtons();
+	}
+
+	@Override
+	public void renameStarted() {
+		this.renaming = true;
+		this.renameProgressBar.setIndeterminate(true);
+		this.renameProgressBar.setString(null);
+		this.renameProgressBar.setVisible(true);
+		updateButtons();
+		revalidate();
+	}
+
+	@Override
+	public void renameProgress(int completed, int total, double throughput) {
+		this.renameProgressBar.setIndeterminate(false);
+		this.renameProgressBar.setMaximum(total);
+		this.renameProgressBar.setValue(completed);
+		this.renameProgressBar.setString(String.format(this.renameProgressFormat, completed, total, Math.round(throughput)));
+	}
+
+	@Override
+	public void renameCompleted() {
+		this.renaming = false;
+		this.renameProgressBar.setVisible(false);
+		updateButtons();
+		revalidate();
 	}
 
 	@Override
@@ -234,7 +288,7 @@ class RulesToolBar extends JToolBar implements Localizable,
 				break;
 			
 			case ID_PREVIEW:
-				ApplicationManager.getInstance().getFilesListManager().applyRules(false);
+				ApplicationManager.getInstance().getFilesListManager().schedulePreview();
 				break;
 			
 			case ID_APPLY:
@@ -16,7 +16,7 @@ import com.pasdam.regexren.controller.LocaleManager;
 import com.pasdam.regexren.controller.LocaleManager.Localizable;
 import com.pasdam.regexren.controller.RulesManager;
 import com.pasdam.regexren.controller.RulesManager.RulesListener;
-import com.pasdam.regexren.gui.rules.AbstractRuleFactory;
+import com.pasdam.regexren.engine.AbstractRuleFactory;
 import com.pasdam.regexren.utils.BrrFileFilter;
 
 /** Menu that shows all available rule types */
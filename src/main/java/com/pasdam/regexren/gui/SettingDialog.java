@@ -12,7 +12,10 @@ import javax.swing.DefaultComboBoxModel;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JDialog;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JSpinner;
+import javax.swing.SpinnerNumberModel;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.TitledBorder;
 
@@ -40,22 +43,28 @@ class SettingDialog extends JDialog implements ActionListener {
 	// UI components
 	private JButton cancelButton;
 	private JButton okButton;
+	private JCheckBox followLinksCheckbox;
+	private JCheckBox includeSubfoldersCheckbox;
+	private JCheckBox parallelPreviewCheckbox;
 	private JCheckBox rememberFilterCheckbox;
 	private JCheckBox rememberFolderCheckbox;
 	private JCheckBox rememberScriptCheckbox;
+	private JCheckBox transactionalRenameCheckbox;
+	private JLabel subfoldersDepthLabel;
+	private JSpinner subfoldersDepthSpinner;
 	private WideComboBox localeCombobox;
 
 	/** Create the dialog */
 	public SettingDialog() {
 		// set layout properties
-		setBounds(100, 100, 415, 300);
+		setBounds(100, 100, 415, 480);
 		getContentPane().setLayout(new BorderLayout());
 		setModal(true);
 		
 		// create and add content panel
 		JPanel contentPanel = new JPanel();
 		contentPanel.setBorder(new EmptyBorder(5, 5, 5, 5));
-		contentPanel.setLayout(new GridLayout(3, 1, 0, 0));
+		contentPanel.setLayout(new GridLayout(5, 1, 0, 0));
 		ScrollPane scrollPane = new ScrollPane();
 		scrollPane.add(contentPanel);
 		getContentPane().add(scrollPane, BorderLayout.CENTER);
@@ -92,6 +101,46 @@ class SettingDialog extends JDialog implements ActionListener {
 		this.localeCombobox.setModel(new DefaultComboBoxModel<String>(getLocaleValues()));
 		panel.add(this.localeCombobox);
 		
+		// create "Performance" panel
+		JPanel performancePanel = new JPanel();
+		TitledBorder performanceTitledBorder = new TitledBorder(null, "", TitledBorder.LEADING, TitledBorder.TOP, null, null);
+		performancePanel.setBorder(performanceTitledBorder);
+		contentPanel.add(performancePanel);
+		
+		// create parallel preview checkbox and add it to the panel
+		this.parallelPreviewCheckbox = new JCheckBox();
+		performancePanel.add(this.parallelPreviewCheckbox);
+		
+		// create "Rename" panel
+		JPanel renamePanel = new JPanel();
+		TitledBorder renameTitledBorder = new TitledBorder(null, "", TitledBorder.LEADING, TitledBorder.TOP, null, null);
+		renamePanel.setBorder(renameTitledBorder);
+		contentPanel.add(renamePanel);
+		
+		// create transactional rename checkbox and add it to the panel
+		this.transactionalRenameCheckbox = new JCheckBox();
+		renamePanel.add(this.transactionalRenameCheckbox);
+		
+		// create "Subfolders" panel
+		JPanel subfoldersPanel = new JPanel();
+		TitledBorder subfoldersTitledBorder = new TitledBorder(null, "", TitledBorder.LEADING, TitledBorder.TOP, null, null);
+		subfoldersPanel.setBorder(subfoldersTitledBorder);
+		contentPanel.add(subfoldersPanel);
+		
+		// create include subfolders checkbox and add it to the panel
+		this.includeSubfoldersCheckbox = new JCheckBox();
+		subfoldersPanel.add(this.includeSubfoldersCheckbox);
+		
+		// create depth spinner and add it to the panel
+		this.subfoldersDepthLabel = new JLabel();
+		subfoldersPanel.add(this.subfoldersDepthLabel);
+		this.subfoldersDepthSpinner = new JSpinner(new SpinnerNumberModel(0, 0, Integer.MAX_VALUE, 1));
+		subfoldersPanel.add(this.subfoldersDepthSpinner);
+		
+		// create follow links checkbox and add it to the panel
+		this.followLinksCheckbox = new JCheckBox();
+		subfoldersPanel.add(this.followLinksCheckbox);
+		
 		// create nuyyon panel
 		JPanel buttonPanel = new JPanel();
 		buttonPanel.setLayout(new FlowLayout(FlowLayout.RIGHT));
@@ -113,9 +162,18 @@ class SettingDialog extends JDialog implements ActionListener {
 		setTitle(localeManager.getString("Settings.settings"));
 		rememberTitledBorder.setTitle(localeManager.getString("Settings.rememberOnOpen"));
 		languageTitledBorder.setTitle(localeManager.getString("Settings.language"));
+		performanceTitledBorder.setTitle(localeManager.getString("Settings.performance"));
+		renameTitledBorder.setTitle(localeManager.getString("Settings.rename"));
+		subfoldersTitledBorder.setTitle(localeManager.getString("Settings.subfolders"));
 		this.rememberFolderCheckbox.setText(localeManager.getString("Settings.rememberOnOpen.folder"));
 		this.rememberFilterCheckbox.setText(localeManager.getString("Settings.rememberOnOpen.filter"));
 		this.rememberScriptCheckbox.setText(localeManager.getString("Settings.rememberOnOpen.script"));
+		this.parallelPreviewCheckbox.setText(localeManager.getString("Settings.performance.parallelPreview"));
+		this.transactionalRenameCheckbox.setText(localeManager.getString("Settings.rename.transactional"));
+		this.includeSubfoldersCheckbox.setText(localeManager.getString("Settings.subfolders.include"));
+		this.subfoldersDepthLabel.setText(localeManager.getString("Settings.subfolders.depth"));
+		this.subfoldersDepthSpinner.setToolTipText(localeManager.getString("Settings.subfolders.depth.toolTipText"));
+		this.followLinksCheckbox.setText(localeManager.getString("Settings.subfolders.followLinks"));
 		this.okButton.setText(localeManager.getString("Settings.ok"));
 		this.cancelButton.setText(localeManager.getString("Settings.cancel"));
 		
@@ -124,6 +182,11 @@ class SettingDialog extends JDialog implements ActionListener {
 		this.rememberFilterCheckbox.setSelected(prefs.getRememberPreviousFilter());
 		this.rememberFolderCheckbox.setSelected(prefs.getRememberPreviousFolder());
 		this.rememberScriptCheckbox.setSelected(prefs.getRememberPreviousScript());
+		this.parallelPreviewCheckbox.setSelected(prefs.getParallelPreview());
+		this.transactionalRenameCheckbox.setSelected(prefs.getTransactionalRename());
+		this.includeSubfoldersCheckbox.setSelected(prefs.getIncludeSubfolders());
+		this.subfoldersDepthSpinner.setValue(prefs.getSubfoldersDepth());
+		this.followLinksCheckbox.setSelected(prefs.getFollowLinks());
 		this.localeCombobox.setSelectedIndex(getLocaleId(localeManager.getLocale()));
 	}
 	
@@ -189,6 +252,10 @@ class SettingDialog extends JDialog implements ActionListener {
 			preferenceManager.setRememberPreviousFilter(this.rememberFilterCheckbox.isSelected());
 			preferenceManager.setRememberPreviousFolder(this.rememberFolderCheckbox.isSelected());
 			preferenceManager.setRememberPreviousScript(this.rememberScriptCheckbox.isSelected());
+			preferenceManager.setParallelPreview(this.parallelPreviewCheckbox.isSelected());
+			preferenceManager.setTransactionalRename(this.transactionalRenameCheckbox.isSelected());
+			preferenceManager.setSubfolders(this.includeSubfoldersCheckbox.isSelected(),
+					(Integer) this.subfoldersDepthSpinner.getValue(), this.followLinksCheckbox.isSelected());
 			preferenceManager.setLocale(getLocale(this.localeCombobox.getSelectedIndex()));
 		}
 		setVisible(false);
@@ -12,6 +12,8 @@ import javax.swing.event.ChangeListener;
 
 import com.pasdam.regexren.controller.LocaleManager;
 import com.pasdam.regexren.gui.RuleContentPanel;
+import com.pasdam.regexren.engine.AbstractInsertCounterFactory;
+import com.pasdam.regexren.engine.Rule;
 
 /**
  * Abstract panel used to configure a "Insert counter..." rules
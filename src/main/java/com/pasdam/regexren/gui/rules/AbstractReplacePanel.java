@@ -26,6 +26,8 @@ import com.pasdam.gui.swing.widgets.WideComboBox;
 import com.pasdam.regexren.controller.LocaleManager;
 import com.pasdam.regexren.controller.LogManager;
 import com.pasdam.regexren.gui.RuleContentPanel;
+import com.pasdam.regexren.engine.ReplaceFactory;
+import com.pasdam.regexren.engine.Rule;
 
 /**
  * Abstract Panel used as base class for {@link RemovePanel} and {@link ReplacePanel}
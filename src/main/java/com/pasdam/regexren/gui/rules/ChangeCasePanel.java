@@ -22,6 +22,8 @@ import com.pasdam.gui.swing.widgets.WideComboBox;
 import com.pasdam.regexren.controller.LocaleManager;
 import com.pasdam.regexren.controller.LogManager;
 import com.pasdam.regexren.gui.RuleContentPanel;
+import com.pasdam.regexren.engine.ChangeCaseFactory;
+import com.pasdam.regexren.engine.Rule;
 
 /**
  * Panel used to configure a "Change case" rule
@@ -14,6 +14,8 @@ import javax.swing.event.ChangeListener;
 
 import com.pasdam.gui.swing.widgets.WideComboBox;
 import com.pasdam.regexren.controller.LocaleManager;
+import com.pasdam.regexren.engine.InsertCounterAtPositionFactory;
+import com.pasdam.regexren.engine.Rule;
 
 /**
  * Panel used to configure a "Insert counter at position" rule
@@ -19,6 +19,8 @@ import javax.swing.event.DocumentListener;
 import com.pasdam.gui.swing.widgets.WideComboBox;
 import com.pasdam.regexren.controller.LocaleManager;
 import com.pasdam.regexren.controller.LogManager;
+import com.pasdam.regexren.engine.Rule;
+import com.pasdam.regexren.engine.InsertCounterBeforeAfterFactory;
 
 /**
  * Panel used to configure a "Insert counter before/after pattern" rule
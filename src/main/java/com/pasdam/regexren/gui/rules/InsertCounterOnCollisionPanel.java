@@ -1,6 +1,8 @@
 package com.pasdam.regexren.gui.rules;
 
 import com.pasdam.regexren.controller.LocaleManager;
+import com.pasdam.regexren.engine.InsertCounterOnCollisionFactory;
+import com.pasdam.regexren.engine.Rule;
 
 /**
  * Panel used to configure a "Insert counter on collision" rule
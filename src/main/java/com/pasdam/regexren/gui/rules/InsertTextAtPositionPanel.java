@@ -23,6 +23,8 @@ import com.pasdam.gui.swing.widgets.WideComboBox;
 import com.pasdam.regexren.controller.LocaleManager;
 import com.pasdam.regexren.controller.LogManager;
 import com.pasdam.regexren.gui.RuleContentPanel;
+import com.pasdam.regexren.engine.Rule;
+import com.pasdam.regexren.engine.InsertTextAtPositionFactory;
 
 /**
  * Panel used to configure a "Insert text at position" rule
@@ -23,6 +23,9 @@ import com.pasdam.gui.swing.widgets.WideComboBox;
 import com.pasdam.regexren.controller.LocaleManager;
 import com.pasdam.regexren.controller.LogManager;
 import com.pasdam.regexren.gui.RuleContentPanel;
+import com.pasdam.regexren.engine.Rule;
+import com.pasdam.regexren.engine.InvalidParametersException;
+import com.pasdam.regexren.engine.InsertTextBeforeAfterFactory;
 
 /**
  * Panel used to configure a "Insert text at before/after pattern" rule
@@ -9,6 +9,8 @@ import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 
 import com.pasdam.regexren.controller.LocaleManager;
+import com.pasdam.regexren.engine.ReplaceFactory;
+import com.pasdam.regexren.engine.Rule;
 
 /**
  * Panel used to configure a "Replace..." rule
@@ -0,0 +1,344 @@
+package com.pasdam.regexren.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestRenameJournal {
+
+	/** Name with a multi-byte character, if the platform can encode it */
+	private static final String NON_ASCII = isEncodable("\u00E8") ? "\u00E8" : "e";
+
+	/** Original files, each one containing its own name */
+	private static final String[] ORIGINAL = { "a", "b", "x", "y", NON_ASCII };
+
+	/** Renames of the batch: a chain, a swap and a non-ASCII name */
+	private static final String[] RENAMES = { "b", "c", "a", "b", "x", "y", "y", "x", NON_ASCII, NON_ASCII + "-renamed" };
+
+	/** Files after the batch, from pairs of name and content */
+	private static final String[] RENAMED = { "b", "a", "c", "b", "x", "y", "y", "x", NON_ASCII + "-renamed", NON_ASCII };
+
+	/** Renames of a rotation of five files */
+	private static final String[] ROTATION = { "a", "b", "b", "c", "c", "d", "d", "e", "e", "a" };
+
+	/** Files after the rotation, from pairs of name and content */
+	private static final String[] ROTATED = { "a", "e", "b", "a", "c", "b", "d", "c", "e", "d" };
+
+	@Test
+	public void testTruncatedAtEveryOffset() throws IOException {
+		File folder = Files.createTempDirectory("TestRenameJournal").toFile();
+		File journalFile = new File(folder.getParentFile(), folder.getName() + ".journal");
+		try {
+			RenameJournal journal = new RenameJournal(journalFile);
+			RenamePlan plan = RenamePlan.create(steps(folder, RENAMES));
+			assertTrue(journal.begin(plan) >= 0);
+			byte[] content = Files.readAllBytes(journalFile.toPath());
+
+			for (int length = 0; length <= content.length; length++) {
+				reset(folder);
+				Files.write(journalFile.toPath(), Arrays.copyOf(content, length));
+
+				if (length < content.length) {
+					// the commit record is incomplete: the batch was never executed
+					assertEquals("Length " + length, -1, journal.recover(new RenameExecutor()));
+					assertContents(folder, pairs(ORIGINAL));
+
+				} else {
+					assertEquals(plan.size(), journal.recover(new RenameExecutor()));
+					assertContents(folder, RENAMED);
+
+					// the batch is ended
+					assertEquals(-1, journal.recover(new RenameExecutor()));
+				}
+			}
+
+		} finally {
+			journalFile.delete();
+			delete(folder);
+		}
+	}
+
+	@Test
+	public void testBatchAfterTruncatedRecord() throws IOException {
+		File folder = Files.createTempDirectory("TestRenameJournal").toFile();
+		File journalFile = new File(folder.getParentFile(), folder.getName() + ".journal");
+		try {
+			RenameJournal journal = new RenameJournal(journalFile);
+			journal.begin(RenamePlan.create(steps(folder, "p", "q", "q", "r")));
+			byte[] content = Files.readAllBytes(journalFile.toPath());
+
+			for (int length = 0; length <= content.length; length++) {
+				reset(folder);
+				Files.write(journalFile.toPath(), Arrays.copyOf(content, length));
+
+				// the new batch is not joined with the truncated record
+				RenamePlan plan = RenamePlan.create(steps(folder, RENAMES));
+				journal.begin(plan);
+				assertEquals("Length " + length, plan.size(), journal.recover(new RenameExecutor()));
+				assertContents(folder, RENAMED);
+			}
+
+		} finally {
+			journalFile.delete();
+			delete(folder);
+		}
+	}
+
+	@Test
+	public void testPartiallyExecuted() throws IOException {
+		File folder = Files.createTempDirectory("TestRenameJournal").toFile();
+		File journalFile = new File(folder.getParentFile(), folder.getName() + ".journal");
+		try {
+			reset(folder);
+			RenameJournal journal = new RenameJournal(journalFile);
+			RenamePlan plan = RenamePlan.create(steps(folder, RENAMES));
+			journal.begin(plan);
+
+			// the first move of each chain is done before the crash
+			for (List<RenameStep> chain : plan.getChains()) {
+				RenameStep step = chain.get(0);
+				Files.move(step.getSource().toPath(), step.getTarget().toPath());
+			}
+
+			assertEquals(plan.size() - plan.getChains().size(), journal.recover(new RenameExecutor()));
+			assertContents(folder, RENAMED);
+
+			// a batch ended is not replayed
+			reset(folder);
+			long id = journal.begin(RenamePlan.create(steps(folder, RENAMES)));
+			journal.end(id);
+			assertEquals(-1, journal.recover(new RenameExecutor()));
+			assertContents(folder, pairs(ORIGINAL));
+
+			// a batch executed without end record, with the swap done twice
+			// if its progress were not recorded
+			reset(folder);
+			plan = RenamePlan.create(steps(folder, RENAMES));
+			journal.begin(plan);
+			assertEquals(plan.size(), new RenameExecutor().execute(plan, null, journal));
+			journal.close();
+			assertEquals(0, journal.recover(new RenameExecutor()));
+			assertContents(folder, RENAMED);
+
+		} finally {
+			journalFile.delete();
+			delete(folder);
+		}
+	}
+
+	@Test
+	public void testCycleWithoutEndRecord() throws IOException {
+		File folder = Files.createTempDirectory("TestRenameJournal").toFile();
+		File journalFile = new File(folder.getParentFile(), folder.getName() + ".journal");
+		try {
+			RenamePlan plan = RenamePlan.create(steps(folder, ROTATION));
+			assertEquals(6, plan.size());
+
+			// the crash occurs after each move, before or after its progress
+			// record; the moves done can't be told from the names of the files
+			for (int moves = 0; moves <= plan.size(); moves++) {
+				for (int lost = 0; lost <= Math.min(moves, 1); lost++) {
+					reset(folder, "a", "b", "c", "d", "e");
+					RenameJournal journal = new RenameJournal(journalFile);
+					journal.begin(plan);
+					crash(journal, plan, moves, lost);
+					journal.close();
+
+					String message = moves + " moves, " + lost + " records lost";
+					assertEquals(message, plan.size() - moves, new RenameJournal(journalFile).recover(new RenameExecutor()));
+					assertContents(folder, ROTATED);
+					assertEquals(message, -1, new RenameJournal(journalFile).recover(new RenameExecutor()));
+				}
+			}
+
+		} finally {
+			journalFile.delete();
+			delete(folder);
+		}
+	}
+
+	@Test
+	public void testStagedChainInSecondPhase() throws IOException {
+		File folder = Files.createTempDirectory("TestRenameJournal").toFile();
+		File journalFile = new File(folder.getParentFile(), folder.getName() + ".journal");
+		try {
+			RenamePlan plan = RenamePlan.create(steps(folder, ROTATION), true).stage();
+			assertEquals(10, plan.size());
+
+			for (int moves = 0; moves <= plan.size(); moves++) {
+				for (int lost = 0; lost <= Math.min(moves, 1); lost++) {
+					reset(folder, "a", "b", "c", "d", "e");
+					createStagingFolders(plan);
+					RenameJournal journal = new RenameJournal(journalFile);
+					journal.begin(plan);
+					crash(journal, plan, moves, lost);
+					journal.close();
+
+					// no file is left in the staging folder
+					String message = moves + " moves, " + lost + " records lost";
+					assertEquals(message, plan.size() - moves, new RenameJournal(journalFile).recover(new RenameExecutor()));
+					assertContents(folder, ROTATED);
+				}
+			}
+
+		} finally {
+			journalFile.delete();
+			delete(folder);
+		}
+	}
+
+	@Test
+	public void testInterruptedRollback() throws IOException {
+		File folder = Files.createTempDirectory("TestRenameJournal").toFile();
+		File journalFile = new File(folder.getParentFile(), folder.getName() + ".journal");
+		try {
+			RenamePlan plan = RenamePlan.create(steps(folder, ROTATION), true).stage();
+			List<RenameStep> chain = plan.getChains().get(0);
+
+			// the transaction fails after 7 moves, and is interrupted while
+			// its moves are undone
+			for (int undone = 0; undone <= 7; undone++) {
+				reset(folder, "a", "b", "c", "d", "e");
+				createStagingFolders(plan);
+				RenameJournal journal = new RenameJournal(journalFile);
+				journal.begin(plan);
+				crash(journal, plan, 7, 0);
+				journal.rollbackStarted();
+				for (int i = 6; i >= 7 - undone; i--) {
+					Files.move(chain.get(i).getTarget().toPath(), chain.get(i).getSource().toPath());
+					journal.chainMoved(chain, i);
+				}
+				journal.close();
+
+				assertEquals("Undone " + undone, 7 - undone, new RenameJournal(journalFile).recover(new RenameExecutor()));
+				assertContents(folder, pairs(new String[] { "a", "b", "c", "d", "e" }));
+			}
+
+		} finally {
+			journalFile.delete();
+			delete(folder);
+		}
+	}
+
+	/**
+	 * Executes the first moves of the plan, chain after chain, recording them
+	 * in the journal
+	 *
+	 * @param journal
+	 *            journal of the plan
+	 * @param plan
+	 *            plan being executed
+	 * @param moves
+	 *            number of moves done before the crash
+	 * @param lost
+	 *            number of the last moves whose progress record is lost
+	 */
+	private static void crash(RenameJournal journal, RenamePlan plan, int moves, int lost) throws IOException {
+		int count = 0;
+		for (List<RenameStep> chain : plan.getChains()) {
+			for (int i = 0; i < chain.size() && count < moves; i++, count++) {
+				Files.move(chain.get(i).getSource().toPath(), chain.get(i).getTarget().toPath());
+				if (count < moves - lost) {
+					journal.chainMoved(chain, i + 1);
+				}
+			}
+		}
+	}
+
+	private static void createStagingFolders(RenamePlan plan) {
+		for (File stagingFolder : plan.getStagingFolders()) {
+			stagingFolder.mkdir();
+		}
+	}
+
+	/**
+	 * Creates the renames in the specified folder, from pairs of source and
+	 * target names
+	 */
+	private static List<RenameStep> steps(File folder, String... names) {
+		List<RenameStep> steps = new ArrayList<RenameStep>(names.length / 2);
+		for (int i = 0; i < names.length; i += 2) {
+			steps.add(new RenameStep(i / 2, new File(folder, names[i]), new File(folder, names[i + 1])));
+		}
+		return steps;
+	}
+
+	/**
+	 * Restores the original files of the folder, each one containing its own
+	 * name
+	 */
+	private static void reset(File folder) throws IOException {
+		reset(folder, ORIGINAL);
+	}
+
+	/**
+	 * Replaces the files of the folder with the specified ones, each one
+	 * containing its own name
+	 */
+	private static void reset(File folder, String... names) throws IOException {
+		delete(folder);
+		folder.mkdir();
+		for (String name : names) {
+			Files.write(new File(folder, name).toPath(), name.getBytes("UTF-8"));
+		}
+	}
+
+	/** Returns pairs of name and content of files containing their own name */
+	private static String[] pairs(String[] names) {
+		String[] pairs = new String[names.length * 2];
+		for (int i = 0; i < names.length; i++) {
+			pairs[i * 2]     = names[i];
+			pairs[i * 2 + 1] = names[i];
+		}
+		return pairs;
+	}
+
+	/**
+	 * Checks that the folder contains only the specified files, with the
+	 * specified contents, from pairs of name and content
+	 */
+	private static void assertContents(File folder, String... namesAndContents) throws IOException {
+		String[] names = folder.list();
+		Arrays.sort(names);
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < namesAndContents.length; i += 2) {
+			expected.add(namesAndContents[i]);
+		}
+		Collections.sort(expected);
+		assertEquals(expected.toString(), Arrays.asList(names).toString());
+		for (int i = 0; i < namesAndContents.length; i += 2) {
+			assertEquals(namesAndContents[i + 1], new String(Files.readAllBytes(new File(folder, namesAndContents[i]).toPath()), "UTF-8"));
+		}
+	}
+
+	private static boolean isEncodable(String name) {
+		try {
+			Paths.get(name);
+			return true;
+
+		} catch (InvalidPathException e) {
+			return false;
+		}
+	}
+
+	private static void delete(File folder) {
+		for (File file : folder.listFiles()) {
+			if (file.isDirectory()) {
+				delete(file);
+			}
+			file.delete();
+		}
+		folder.delete();
+	}
+}
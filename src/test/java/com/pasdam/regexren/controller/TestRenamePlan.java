@@ -0,0 +1,185 @@
+package com.pasdam.regexren.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestRenamePlan {
+
+	@Test
+	public void testSwap() throws IOException {
+		File folder = createFolder("a", "b");
+		try {
+			List<RenameStep> steps = steps(folder, "a", "b", "b", "a");
+			RenamePlan plan = RenamePlan.create(steps);
+			assertEquals(1, plan.getChains().size());
+			assertTrue(RenamePlan.isCycle(plan.getChains().get(0)));
+
+			// the first file is moved to a temporary name and back
+			assertEquals(3, plan.size());
+			assertEquals(3, new RenameExecutor().execute(plan, null));
+			assertDone(steps);
+			assertContents(folder, "a", "b", "b", "a");
+
+		} finally {
+			delete(folder);
+		}
+	}
+
+	@Test
+	public void testCycle() throws IOException {
+		File folder = createFolder("a", "b", "c");
+		try {
+			List<RenameStep> steps = steps(folder, "a", "b", "b", "c", "c", "a");
+			RenamePlan plan = RenamePlan.create(steps);
+			assertEquals(1, plan.getChains().size());
+			assertTrue(RenamePlan.isCycle(plan.getChains().get(0)));
+			assertEquals(4, plan.size());
+
+			new RenameExecutor().execute(plan, null);
+			assertDone(steps);
+			assertContents(folder, "a", "c", "b", "a", "c", "b");
+
+		} finally {
+			delete(folder);
+		}
+	}
+
+	@Test
+	public void testCounterShift() throws IOException {
+		File folder = createFolder("1", "2");
+		try {
+			List<RenameStep> steps = steps(folder, "1", "2", "2", "3");
+			RenamePlan plan = RenamePlan.create(steps);
+
+			// 2 must be renamed before 1 takes its name
+			assertEquals(1, plan.getChains().size());
+			List<RenameStep> chain = plan.getChains().get(0);
+			assertFalse(RenamePlan.isCycle(chain));
+			assertEquals(steps.get(1), chain.get(0));
+			assertEquals(steps.get(0), chain.get(1));
+
+			assertEquals(2, new RenameExecutor().execute(plan, null));
+			assertDone(steps);
+			assertContents(folder, "2", "1", "3", "2");
+
+		} finally {
+			delete(folder);
+		}
+	}
+
+	@Test
+	public void testIndependentChains() {
+		File folder = new File("/folder");
+		List<RenameStep> steps = steps(folder, "a", "x", "b", "y", "c", "d", "d", "c");
+		RenamePlan plan = RenamePlan.create(steps);
+		assertEquals(3, plan.getChains().size());
+		assertEquals(5, plan.size());
+		assertEquals(0, plan.getDoneCount());
+	}
+
+	@Test
+	public void testInversePartiallyDone() throws IOException {
+		// the rename of c fails, since its target exists and is not renamed
+		File folder = createFolder("a", "b", "c", "z");
+		try {
+			List<RenameStep> steps = steps(folder, "a", "x", "b", "y", "c", "z");
+			RenamePlan plan = RenamePlan.create(steps);
+			assertEquals(2, new RenameExecutor().execute(plan, null));
+			assertEquals(2, plan.getDoneCount());
+			assertTrue(steps.get(0).isDone());
+			assertTrue(steps.get(1).isDone());
+			assertFalse(steps.get(2).isDone());
+			assertTrue(steps.get(2).getError() != null);
+
+			// the inverse restores only the renamed files
+			RenamePlan inverse = plan.inverse();
+			assertEquals(2, inverse.size());
+			assertEquals(0, inverse.getDoneCount());
+			assertEquals(2, new RenameExecutor().execute(inverse, null));
+			assertEquals(2, inverse.getDoneCount());
+			assertContents(folder, "a", "a", "b", "b", "c", "c", "z", "z");
+
+		} finally {
+			delete(folder);
+		}
+	}
+
+	@Test
+	public void testInverseCycle() throws IOException {
+		File folder = createFolder("a", "b", "c");
+		try {
+			RenamePlan plan = RenamePlan.create(steps(folder, "a", "b", "b", "c", "c", "a"));
+			new RenameExecutor().execute(plan, null);
+			assertEquals(plan.size(), plan.getDoneCount());
+
+			// the moves to and from the temporary name are undone in reverse order
+			RenamePlan inverse = plan.inverse();
+			assertEquals(plan.size(), new RenameExecutor().execute(inverse, null));
+			assertContents(folder, "a", "a", "b", "b", "c", "c");
+
+		} finally {
+			delete(folder);
+		}
+	}
+
+	/**
+	 * Creates the renames in the specified folder, from pairs of source and
+	 * target names
+	 */
+	private static List<RenameStep> steps(File folder, String... names) {
+		List<RenameStep> steps = new ArrayList<RenameStep>(names.length / 2);
+		for (int i = 0; i < names.length; i += 2) {
+			steps.add(new RenameStep(i / 2, new File(folder, names[i]), new File(folder, names[i + 1])));
+		}
+		return steps;
+	}
+
+	private static void assertDone(List<RenameStep> steps) {
+		for (RenameStep step : steps) {
+			assertTrue(step.toString(), step.isDone());
+		}
+	}
+
+	/**
+	 * Creates a temporary folder with the specified files, each one
+	 * containing its own name
+	 */
+	private static File createFolder(String... names) throws IOException {
+		File folder = Files.createTempDirectory("TestRenamePlan").toFile();
+		for (String name : names) {
+			Files.write(new File(folder, name).toPath(), name.getBytes("UTF-8"));
+		}
+		return folder;
+	}
+
+	/**
+	 * Checks that the folder contains only the specified files, with the
+	 * specified contents, from pairs of name and content
+	 */
+	private static void assertContents(File folder, String... namesAndContents) throws IOException {
+		String[] names = folder.list();
+		Arrays.sort(names);
+		assertEquals(namesAndContents.length / 2, names.length);
+		for (int i = 0; i < namesAndContents.length; i += 2) {
+			assertEquals(namesAndContents[i], names[i / 2]);
+			assertEquals(namesAndContents[i + 1], new String(Files.readAllBytes(new File(folder, names[i / 2]).toPath()), "UTF-8"));
+		}
+	}
+
+	private static void delete(File folder) {
+		for (File file : folder.listFiles()) {
+			file.delete();
+		}
+		folder.delete();
+	}
+}
@@ -0,0 +1,321 @@
+package com.pasdam.regexren.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.pasdam.regexren.engine.AbstractRuleFactory;
+import com.pasdam.regexren.engine.CompiledRuleChain;
+import com.pasdam.regexren.engine.FileModelItem;
+import com.pasdam.regexren.engine.FileStore;
+import com.pasdam.regexren.engine.OrderDependentRule;
+import com.pasdam.regexren.engine.Rule;
+import com.pasdam.regexren.engine.RuleType;
+
+public class TestRulesApplier {
+
+	@Test
+	public void testIncrementalPassesSequential() {
+		checkRandomPasses(300, false, 1);
+	}
+
+	@Test
+	public void testIncrementalPassesParallel() {
+		checkRandomPasses(RulesApplier.PARALLEL_THRESHOLD + 1500, true, 2);
+	}
+
+	@Test
+	public void testInvalidateAfterFilesChange() {
+		FileStore files = createFiles(50);
+		List<Rule> rules = new ArrayList<Rule>();
+		rules.add(new Append("-a", false));
+		rules.add(new Counter());
+		RulesApplier applier = new RulesApplier();
+		applier.apply(compile(rules), files, false);
+		assertNames(compile(rules), files);
+
+		// the same chain applied to a different list with the same size
+		files.setFile(3, new File("/other", "renamed.txt"));
+		applier.invalidate();
+		applier.apply(compile(rules), files, false);
+		assertNames(compile(rules), files);
+
+		// a shorter list
+		FileStore shorter = createFiles(20);
+		applier.invalidate();
+		applier.apply(compile(rules), shorter, false);
+		assertNames(compile(rules), shorter);
+
+		// after release the cache is empty, but still usable
+		applier.release();
+		applier.apply(compile(rules), files, false);
+		assertNames(compile(rules), files);
+	}
+
+	@Test
+	public void testInvalidateCheckedFiles() {
+		FileStore files = createFiles(40);
+		List<Rule> rules = new ArrayList<Rule>();
+		rules.add(new Append("-a", false));
+		rules.add(new Counter());
+		rules.add(new Append("x", true));
+		CompiledRuleChain chain = compile(rules);
+		RulesApplier applier = new RulesApplier();
+		applier.apply(chain, files, false);
+
+		// the counter after the unchecked files changes
+		BitSet changed = new BitSet();
+		changed.set(5);
+		changed.set(17);
+		applier.invalidate(files.setChecked(changed, false));
+		applier.apply(chain, files, false);
+		assertNames(chain, files);
+		assertFalse(files.isChanged(5));
+
+		applier.invalidate(files.setChecked(changed, true));
+		applier.apply(chain, files, false);
+		assertNames(chain, files);
+	}
+
+	@Test
+	public void testCancelledPass() {
+		FileStore files = createFiles(5000);
+		List<Rule> rules = new ArrayList<Rule>();
+		rules.add(new Append("-a", false));
+		rules.add(new Trim(2));
+		rules.add(new Counter());
+		RulesApplier applier = new RulesApplier();
+		applier.apply(compile(rules), files, false);
+
+		// the edited rule is cancelled after the first chunk
+		rules.set(1, new Trim(1));
+		assertFalse(applier.apply(compile(rules), files, false, new CancelAfter(1)));
+
+		// the next pass completes from the cached values
+		assertTrue(applier.apply(compile(rules), files, false, new CancelAfter(Integer.MAX_VALUE)));
+		assertNames(compile(rules), files);
+	}
+
+	/**
+	 * Applies random changes to a chain and to the checked state of the files,
+	 * checking after each pass that the new names are the ones computed by a
+	 * sequential pass of the whole chain
+	 */
+	private static void checkRandomPasses(int filesCount, boolean parallel, long seed) {
+		Random random = new Random(seed);
+		FileStore files = createFiles(filesCount);
+		RulesApplier applier = new RulesApplier();
+		List<Rule> rules = new ArrayList<Rule>();
+		rules.add(new Append("_x", false));
+		CompiledRuleChain chain = compile(rules);
+		applier.apply(chain, files, parallel);
+		assertNames(chain, files);
+
+		for (int pass = 0; pass < 60; pass++) {
+			switch (random.nextInt(6)) {
+			case 0:
+				// append a rule
+				rules.add(randomRule(random));
+				break;
+
+			case 1:
+				// remove a rule
+				if (rules.size() > 1) {
+					rules.remove(random.nextInt(rules.size()));
+				}
+				break;
+
+			case 2:
+				// change the checked state of some files
+				BitSet changed = new BitSet();
+				for (int i = random.nextInt(5); i >= 0; i--) {
+					changed.set(random.nextInt(filesCount));
+				}
+				applier.invalidate(files.invertChecked(changed));
+				break;
+
+			case 3:
+				// cancel a pass, that leaves the names inconsistent
+				rules.set(random.nextInt(rules.size()), randomRule(random));
+				applier.apply(compile(rules), files, parallel, new CancelAfter(random.nextInt(3)));
+				break;
+
+			default:
+				// edit a rule
+				rules.set(random.nextInt(rules.size()), randomRule(random));
+				break;
+			}
+
+			chain = compile(rules);
+			assertTrue(applier.apply(chain, files, parallel, null));
+			assertNames(chain, files);
+		}
+	}
+
+	/**
+	 * Checks that the new names of the files are the ones computed by
+	 * applying the whole chain to each checked file, in order
+	 */
+	private static void assertNames(CompiledRuleChain chain, FileStore files) {
+		chain.reset();
+		FileModelItem item = new FileModelItem();
+		for (int i = 0; i < files.size(); i++) {
+			files.load(i, item);
+			if (files.isChecked(i)) {
+				chain.apply(item);
+			}
+			assertEquals("File " + i, item.getNewFullName(), files.getNewFullName(i));
+		}
+	}
+
+	private static FileStore createFiles(int count) {
+		FileStore files = new FileStore();
+		for (int i = 0; i < count; i++) {
+			files.add(new File("/folder" + (i % 3), "file" + i + (i % 4 == 0 ? "" : ".ext" + (i % 5))));
+		}
+		return files;
+	}
+
+	private static Rule randomRule(Random random) {
+		switch (random.nextInt(5)) {
+		case 0:
+			return new Counter();
+
+		case 1:
+			return new Trim(1 + random.nextInt(4));
+
+		case 2:
+			return new Append(Integer.toString(random.nextInt(1000)), true);
+
+		default:
+			// long values grow the arrays of the cache
+			StringBuilder text = new StringBuilder();
+			for (int i = random.nextInt(40); i >= 0; i--) {
+				text.append((char) ('a' + random.nextInt(26)));
+			}
+			return new Append(text.toString(), false);
+		}
+	}
+
+	private static CompiledRuleChain compile(List<Rule> rules) {
+		List<AbstractRuleFactory> factories = new ArrayList<AbstractRuleFactory>();
+		for (Rule rule : rules) {
+			factories.add(new FixedRuleFactory(rule));
+		}
+		return CompiledRuleChain.compile(factories);
+	}
+
+	/** Factory that always returns the same rule */
+	private static class FixedRuleFactory extends AbstractRuleFactory {
+
+		private final Rule rule;
+
+		public FixedRuleFactory(Rule rule) {
+			super(RuleType.INSERT_TEXT_AT_POSITION);
+			this.rule = rule;
+			setEnabled(true);
+			setValid(true);
+		}
+
+		@Override
+		protected Rule createConfiguredRule() {
+			return this.rule;
+		}
+
+		@Override
+		protected void parseRuleSpecificParameters(String[] parameters) {}
+
+		@Override
+		protected String[] getRuleSpecificParameters() {
+			return new String[0];
+		}
+
+		@Override
+		protected void checkConfiguration() {}
+	}
+
+	/** Rule that appends a text to the name or to the extension */
+	private static class Append implements Rule {
+
+		private final String text;
+
+		private final boolean extension;
+
+		public Append(String text, boolean extension) {
+			this.text = text;
+			this.extension = extension;
+		}
+
+		@Override
+		public FileModelItem apply(FileModelItem file) {
+			if (this.extension) {
+				file.insertInExtension(file.getExtensionChars().length(), this.text);
+			} else {
+				file.insertInName(file.getNameChars().length(), this.text);
+			}
+			return file;
+		}
+
+		@Override
+		public void reset() {}
+	}
+
+	/** Rule that removes the first characters of the name */
+	private static class Trim implements Rule {
+
+		private final int count;
+
+		public Trim(int count) {
+			this.count = count;
+		}
+
+		@Override
+		public FileModelItem apply(FileModelItem file) {
+			file.deleteFromName(0, Math.min(this.count, file.getNameChars().length()));
+			return file;
+		}
+
+		@Override
+		public void reset() {}
+	}
+
+	/** Rule that inserts a counter at the beginning of the name */
+	private static class Counter implements OrderDependentRule {
+
+		private int count;
+
+		@Override
+		public FileModelItem apply(FileModelItem file) {
+			file.insertInName(0, (this.count++) + "-");
+			return file;
+		}
+
+		@Override
+		public void reset() {
+			this.count = 0;
+		}
+	}
+
+	/** Signal that cancels the pass after the specified number of checks */
+	private static class CancelAfter implements CancellationSignal {
+
+		private int checks;
+
+		public CancelAfter(int checks) {
+			this.checks = checks;
+		}
+
+		@Override
+		public synchronized boolean isCancelled() {
+			return this.checks-- <= 0;
+		}
+	}
+}
@@ -0,0 +1,386 @@
+package com.pasdam.regexren.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class TestFileStore {
+
+	private static final String[] NAMES = { "file", "file.txt", "archive.tar.gz", ".hidden", "a.b.c", "name.", "IMG_0001.JPG" };
+
+	@Test
+	public void testAddAndReplace() {
+		Random random = new Random(1);
+		FileStore store = new FileStore();
+		List<File> expected = new ArrayList<File>();
+
+		// enough files to grow the columns and the characters array
+		List<File> files = new ArrayList<File>();
+		for (int i = 0; i < 700; i++) {
+			files.add(randomFile(random));
+		}
+		store.addAll(files);
+		expected.addAll(files);
+		for (int i = 0; i < 300; i++) {
+			File file = randomFile(random);
+			store.add(file);
+			expected.add(file);
+		}
+		assertFiles(expected, store);
+
+		// replacing the files compacts the characters array
+		for (int i = 0; i < 5000; i++) {
+			int index = random.nextInt(expected.size());
+			File file = randomFile(random);
+			store.setFile(index, file);
+			expected.set(index, file);
+		}
+		assertFiles(expected, store);
+
+		store.clear();
+		assertEquals(0, store.size());
+		store.add(new File("/folder", "file.txt"));
+		assertEquals(new File("/folder", "file.txt"), store.getFile(0));
+	}
+
+	@Test
+	public void testChecked() {
+		FileStore store = new FileStore();
+		for (int i = 0; i < 100; i++) {
+			store.add(new File("/folder", "file" + i));
+		}
+		assertEquals(100, store.getCheckedCount());
+
+		BitSet files = new BitSet();
+		files.set(3);
+		files.set(5);
+		files.set(150);
+		BitSet changed = store.setChecked(files, false);
+		assertEquals("{3, 5}", changed.toString());
+		assertFalse(store.isChecked(3));
+		assertEquals(98, store.getCheckedCount());
+
+		// files already unchecked don't change
+		files.set(7);
+		assertEquals("{7}", store.setChecked(files, false).toString());
+		assertEquals("{3, 5, 7}", store.setChecked(files, true).toString());
+		assertEquals(100, store.getCheckedCount());
+
+		assertEquals("{3, 5, 7}", store.invertChecked(files).toString());
+		assertEquals(97, store.getCheckedCount());
+		assertEquals(100, store.invertChecked(null).cardinality());
+		assertEquals(3, store.getCheckedCount());
+		assertTrue(store.isChecked(5));
+
+		store.setChecked(8, true);
+		assertEquals(4, store.getCheckedCount());
+	}
+
+	@Test
+	public void testNewNames() {
+		FileStore store = new FileStore();
+		for (String name : NAMES) {
+			store.add(new File("/folder", name));
+		}
+
+		FileModelItem item = new FileModelItem();
+		for (int i = 0; i < store.size(); i++) {
+			store.load(i, item);
+			assertEquals(new FileModelItem(store.getFile(i)).getNewFullName(), item.getNewFullName());
+
+			// an unchanged item doesn't set a new name
+			store.setNewName(i, item);
+			assertFalse(store.isChanged(i));
+
+			if (i % 2 == 0) {
+				item.insertInName(0, "new-");
+				store.setNewName(i, item);
+				assertTrue(store.isChanged(i));
+				assertEquals(item.getNewFullName(), store.getNewFullName(i));
+				assertTrue(store.hasNewFullName(i, item.getNewFullName()));
+				assertEquals(new File("/folder", item.getNewFullName()).getPath(), store.getNewPath(i));
+			}
+		}
+
+		store.clearNewNames();
+		for (int i = 0; i < store.size(); i++) {
+			assertFalse(store.isChanged(i));
+			assertEquals(new FileModelItem(store.getFile(i)).getNewFullName(), store.getNewFullName(i));
+		}
+	}
+
+	@Test
+	public void testFindAndSort() throws IOException {
+		File folder = Files.createTempDirectory("TestFileStore").toFile();
+		File directory = new File(folder, "directory");
+		try {
+			directory.mkdir();
+			FileStore store = new FileStore();
+			store.add(new File("/b", "z.txt"));
+			store.add(directory);
+			store.add(new File("/a", "y.txt"));
+			store.add(new File("/b", "x.doc"));
+			store.setChecked(2, false);
+
+			assertEquals("{0, 2}", store.findByName(Pattern.compile("\\.txt$")).toString());
+			assertEquals("{1}", store.findDirectories().toString());
+			assertTrue(store.isDirectory(1));
+
+			FileModelItem item = new FileModelItem();
+			store.load(0, item);
+			item.insertInName(0, "new-");
+			store.setNewName(0, item);
+
+			// the files are sorted by name, keeping their state; new names are cleared
+			store.sort(new Comparator<File>() {
+
+				@Override
+				public int compare(File file1, File file2) {
+					return file1.getName().compareTo(file2.getName());
+				}
+			});
+			assertEquals("directory", store.getFileName(0));
+			assertTrue(store.isDirectory(0));
+			assertEquals(new File("/b", "x.doc"), store.getFile(1));
+			assertEquals(new File("/a", "y.txt"), store.getFile(2));
+			assertFalse(store.isChecked(2));
+			assertEquals(new File("/b", "z.txt"), store.getFile(3));
+			assertEquals(store.getFolderIndex(1), store.getFolderIndex(3));
+			for (int i = 0; i < store.size(); i++) {
+				assertFalse(store.isChanged(i));
+			}
+
+		} finally {
+			directory.delete();
+			folder.delete();
+		}
+	}
+
+	@Test
+	public void testSnapshot() {
+		Random random = new Random(2);
+		FileStore store = new FileStore();
+		List<File> expected = new ArrayList<File>();
+		for (int i = 0; i < 300; i++) {
+			expected.add(randomFile(random));
+		}
+		store.addAll(expected);
+		FileModelItem item = new FileModelItem();
+		store.load(0, item);
+		item.insertInName(0, "new-");
+		store.setNewName(0, item);
+		store.setChecked(1, false);
+
+		// the snapshot doesn't see any change of the store
+		FileStore snapshot = store.snapshot();
+		String newName = store.getNewFullName(0);
+		for (int i = 0; i < 1000; i++) {
+			store.add(randomFile(random));
+		}
+		store.setFile(2, new File("/other", "renamed"));
+		store.setNewName(3, item);
+		store.setChecked(4, false);
+		store.invertChecked(null);
+		store.sort(new Comparator<File>() {
+
+			@Override
+			public int compare(File file1, File file2) {
+				return file2.getName().compareTo(file1.getName());
+			}
+		});
+		assertFiles(expected, snapshot, 2);
+		assertEquals(newName, snapshot.getNewFullName(0));
+		assertFalse(snapshot.isChecked(1));
+		assertEquals(expected.size() - 1, snapshot.getCheckedCount());
+
+		store.clear();
+		assertFiles(expected, snapshot, 2);
+
+		// a snapshot is read-only
+		assertTrue(snapshot == snapshot.snapshot());
+		try {
+			snapshot.setNewName(0, null);
+			fail("Snapshot changed");
+		} catch (UnsupportedOperationException e) {}
+		try {
+			snapshot.add(new File("/folder", "file"));
+			fail("Snapshot changed");
+		} catch (UnsupportedOperationException e) {}
+	}
+
+	@Test
+	public void testConcurrentNewNames() throws InterruptedException {
+		final FileStore store = new FileStore();
+		for (int i = 0; i < 4000; i++) {
+			store.add(new File("/folder", "file" + i));
+		}
+
+		// the first thread that sets a new name copies them, no name is lost
+		for (int round = 0; round < 20; round++) {
+			FileStore snapshot = store.snapshot();
+			final String prefix = "round" + round + "-";
+			Thread[] threads = new Thread[4];
+			for (int t = 0; t < threads.length; t++) {
+				final int first = t;
+				threads[t] = new Thread(new Runnable() {
+
+					@Override
+					public void run() {
+						FileModelItem item = new FileModelItem();
+						for (int i = first; i < store.size(); i += 4) {
+							store.load(i, item);
+							item.insertInName(0, prefix);
+							store.setNewName(i, item);
+						}
+					}
+				});
+				threads[t].start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			for (int i = 0; i < store.size(); i++) {
+				assertEquals(prefix + "file" + i, store.getNewFullName(i));
+				assertEquals(round > 0 ? "round" + (round - 1) + "-file" + i : "file" + i, snapshot.getNewFullName(i));
+			}
+		}
+	}
+
+	@Test
+	public void testConcurrentReader() throws InterruptedException {
+		final FileStore store = new FileStore();
+		final AtomicReference<Object[]> published = new AtomicReference<Object[]>();
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final Thread writer = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				Random random = new Random(3);
+				List<File> expected = new ArrayList<File>();
+				for (int i = 0; i < 3000; i++) {
+					switch (random.nextInt(4)) {
+					case 0:
+						if (expected.size() > 500) {
+							store.clear();
+							expected.clear();
+						}
+						break;
+
+					case 1:
+						if (!expected.isEmpty()) {
+							int index = random.nextInt(expected.size());
+							File file = randomFile(random);
+							store.setFile(index, file);
+							expected.set(index, file);
+						}
+						break;
+
+					default:
+						for (int j = random.nextInt(50); j > 0; j--) {
+							File file = randomFile(random);
+							store.add(file);
+							expected.add(file);
+						}
+						break;
+					}
+					published.set(new Object[] { store.snapshot(), new ArrayList<File>(expected) });
+				}
+			}
+		});
+		Thread reader = new Thread(new Runnable() {
+
+			@SuppressWarnings("unchecked")
+			@Override
+			public void run() {
+				try {
+					while (writer.isAlive()) {
+						Object[] snapshot = published.get();
+						if (snapshot != null) {
+							assertFiles((List<File>) snapshot[1], (FileStore) snapshot[0], 0);
+						}
+					}
+				} catch (Throwable e) {
+					failure.set(e);
+				}
+			}
+		});
+		writer.start();
+		reader.start();
+		writer.join();
+		reader.join();
+		if (failure.get() != null) {
+			throw new AssertionError(failure.get());
+		}
+	}
+
+	/**
+	 * Checks that the store contains the expected files, with the same split
+	 * of name and extension of {@link FileModelItem}
+	 */
+	private static void assertFiles(List<File> expected, FileStore store) {
+		assertFiles(expected, store, expected.size());
+	}
+
+	/**
+	 * Checks that the store contains the expected files, the first ones with
+	 * their new names unchanged
+	 */
+	private static void assertFiles(List<File> expected, FileStore store, int unchanged) {
+		assertEquals(expected.size(), store.size());
+		FileModelItem item = new FileModelItem();
+		for (int i = 0; i < expected.size(); i++) {
+			File file = expected.get(i);
+			assertEquals(file, store.getFile(i));
+			assertEquals(file.getName(), store.getFileName(i));
+			assertEquals(file.getParentFile(), store.getFolder(i));
+			if (i >= unchanged) {
+				assertEquals(new FileModelItem(file).getNewFullName(), store.getNewFullName(i));
+				assertTrue(store.isChecked(i));
+			}
+			assertTrue(store.hasNewFullName(i, store.getNewFullName(i)));
+			assertFalse(store.hasNewFullName(i, store.getNewFullName(i) + "x"));
+			assertNull(findOtherFolder(store, i));
+
+			store.load(i, item);
+			assertEquals(new FileModelItem(file).getName(), item.getName());
+			assertEquals(new FileModelItem(file).getExtension(), item.getExtension());
+		}
+	}
+
+	/**
+	 * Returns a file that is in the same folder of the file at the specified
+	 * index, but has a different folder index
+	 */
+	private static File findOtherFolder(FileStore store, int index) {
+		for (int i = 0; i < index; i++) {
+			if (store.getFolder(i).equals(store.getFolder(index)) && store.getFolderIndex(i) != store.getFolderIndex(index)) {
+				return store.getFile(i);
+			}
+		}
+		return null;
+	}
+
+	private static File randomFile(Random random) {
+		String name = NAMES[random.nextInt(NAMES.length)];
+		StringBuilder prefix = new StringBuilder();
+		for (int i = random.nextInt(30); i > 0; i--) {
+			prefix.append((char) ('a' + random.nextInt(26)));
+		}
+		return new File("/folder" + random.nextInt(10), prefix + name);
+	}
+}
@@ -0,0 +1,160 @@
+package com.pasdam.regexren.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.CharBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestNameBuffer {
+
+	@Test
+	public void testRandomEdits() {
+		Random random = new Random(1);
+		NameBuffer buffer = new NameBuffer();
+		NameBuffer other = new NameBuffer();
+		StringBuilder expected = new StringBuilder();
+
+		for (int i = 0; i < 20000; i++) {
+			int start = random.nextInt(expected.length() + 1);
+			int end = start + random.nextInt(expected.length() - start + 1);
+			String text = randomText(random);
+			switch (random.nextInt(7)) {
+			case 0:
+				buffer.insert(start, text);
+				expected.insert(start, text);
+				break;
+
+			case 1:
+				buffer.delete(start, end);
+				expected.delete(start, end);
+				break;
+
+			case 2:
+				if (start < expected.length()) {
+					buffer.setCharAt(start, text.length() > 0 ? text.charAt(0) : 'x');
+					expected.setCharAt(start, text.length() > 0 ? text.charAt(0) : 'x');
+				}
+				break;
+
+			case 3:
+				// the text to insert is copied from each kind of sequence
+				other.set(text);
+				CharSequence[] sequences = { text, other, new StringBuilder(text), CharBuffer.wrap(text) };
+				buffer.replace(start, end, sequences[random.nextInt(sequences.length)]);
+				expected.replace(start, end, text);
+				break;
+
+			case 4:
+				char[] chars = ("__" + text + "__").toCharArray();
+				buffer.set(chars, 2, text.length());
+				expected.setLength(0);
+				expected.append(text);
+				break;
+
+			case 5:
+				// long texts grow the array
+				if (expected.length() < 200) {
+					buffer.insert(start, text + text + text);
+					expected.insert(start, text + text + text);
+				}
+				break;
+
+			default:
+				buffer.set(random.nextBoolean() ? text : new StringBuilder(text));
+				expected.setLength(0);
+				expected.append(text);
+				break;
+			}
+
+			assertEquals("Edit " + i, expected.toString(), buffer.toString());
+			assertEquals(expected.length(), buffer.length());
+			if (expected.length() > 0) {
+				int index = random.nextInt(expected.length());
+				assertEquals(expected.charAt(index), buffer.charAt(index));
+				assertEquals(expected.substring(index), buffer.subSequence(index, expected.length()).toString());
+			}
+		}
+	}
+
+	@Test
+	public void testVersion() {
+		NameBuffer buffer = new NameBuffer();
+		buffer.set("name");
+		int version = buffer.getVersion();
+		String value = buffer.toString();
+
+		// changes that leave the content unchanged keep the version and the value
+		buffer.set("name".toCharArray(), 0, 4);
+		buffer.setCharAt(0, 'n');
+		buffer.insert(2, "");
+		buffer.delete(1, 1);
+		buffer.set(value);
+		assertEquals(version, buffer.getVersion());
+		assertTrue(value == buffer.toString());
+
+		// each change increments the version and builds a new value
+		buffer.setCharAt(0, 'N');
+		assertTrue(buffer.getVersion() != version);
+		assertEquals("Name", buffer.toString());
+		version = buffer.getVersion();
+		buffer.replace(0, 4, "name");
+		assertTrue(buffer.getVersion() != version);
+		assertEquals("name", buffer.toString());
+
+		// a string set is returned as is
+		String text = new String("text");
+		buffer.set(text);
+		assertTrue(text == buffer.toString());
+		assertTrue(buffer.contentEquals("a text".toCharArray(), 2, 4));
+		assertFalse(buffer.contentEquals("a text".toCharArray(), 1, 4));
+
+		// the content is copied at the specified offset
+		char[] destination = new char[6];
+		buffer.getChars(destination, 1);
+		assertEquals("\u0000text\u0000", new String(destination));
+
+		buffer.set((CharSequence) null);
+		assertEquals("", buffer.toString());
+		assertEquals(0, buffer.length());
+	}
+
+	@Test
+	public void testInvalidRanges() {
+		NameBuffer buffer = new NameBuffer();
+		buffer.set("abc");
+		try {
+			buffer.delete(2, 4);
+			fail("Range after the end");
+		} catch (StringIndexOutOfBoundsException e) {}
+		try {
+			buffer.replace(2, 1, "x");
+			fail("Inverted range");
+		} catch (StringIndexOutOfBoundsException e) {}
+		try {
+			buffer.insert(-1, "x");
+			fail("Negative index");
+		} catch (StringIndexOutOfBoundsException e) {}
+		try {
+			buffer.charAt(3);
+			fail("Index after the end");
+		} catch (StringIndexOutOfBoundsException e) {}
+		try {
+			buffer.setCharAt(3, 'x');
+			fail("Index after the end");
+		} catch (StringIndexOutOfBoundsException e) {}
+		assertEquals("abc", buffer.toString());
+	}
+
+	private static String randomText(Random random) {
+		StringBuilder text = new StringBuilder();
+		for (int i = random.nextInt(6); i > 0; i--) {
+			text.append((char) ('a' + random.nextInt(26)));
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,84 @@
+package com.pasdam.regexren.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.Test;
+
+public class TestPatternCache {
+
+	@Test
+	public void testSamePattern() {
+		PatternCache.clear();
+		Pattern pattern = PatternCache.compile("a+", 0);
+		assertTrue(pattern == PatternCache.compile("a+", 0));
+		assertEquals(1, PatternCache.getHitCount());
+		assertEquals(1, PatternCache.getMissCount());
+
+		// the flags are part of the key
+		Pattern insensitive = PatternCache.compile("a+", Pattern.CASE_INSENSITIVE);
+		assertTrue(pattern != insensitive);
+		assertEquals(Pattern.CASE_INSENSITIVE, insensitive.flags());
+		assertEquals(2, PatternCache.size());
+
+		PatternCache.clear();
+		assertEquals(0, PatternCache.size());
+		assertEquals(0, PatternCache.getHitCount());
+		assertEquals(0, PatternCache.getMissCount());
+		assertTrue(pattern != PatternCache.compile("a+", 0));
+	}
+
+	@Test
+	public void testInvalidPattern() {
+		PatternCache.clear();
+		for (int i = 0; i < 2; i++) {
+			try {
+				PatternCache.compile("(a", 0);
+				fail("Invalid expression");
+			} catch (PatternSyntaxException e) {}
+		}
+
+		// each request compiles the expression again
+		assertEquals(0, PatternCache.size());
+		assertEquals(2, PatternCache.getMissCount());
+
+		try {
+			PatternCache.compile(null, 0);
+			fail("Null expression");
+		} catch (NullPointerException e) {}
+	}
+
+	@Test
+	public void testEviction() {
+		PatternCache.clear();
+		Pattern first = PatternCache.compile("p0", 0);
+		for (int i = 1; i < PatternCache.MAX_SIZE; i++) {
+			PatternCache.compile("p" + i, 0);
+		}
+		assertEquals(PatternCache.MAX_SIZE, PatternCache.size());
+
+		// the first pattern is used again, so p1 becomes the least recently used
+		// and is discarded by the next new key
+		assertTrue(first == PatternCache.compile("p0", 0));
+		Pattern literal = PatternCache.compile("p1", Pattern.LITERAL);
+		assertEquals(PatternCache.MAX_SIZE, PatternCache.size());
+
+		long misses = PatternCache.getMissCount();
+		assertTrue(first == PatternCache.compile("p0", 0));
+		assertEquals(misses, PatternCache.getMissCount());
+		PatternCache.compile("p1", 0);
+		assertEquals(misses + 1, PatternCache.getMissCount());
+
+		// the size never exceeds the maximum
+		for (int i = 0; i < PatternCache.MAX_SIZE * 2; i++) {
+			PatternCache.compile("q" + i, 0);
+			assertTrue(PatternCache.size() <= PatternCache.MAX_SIZE);
+		}
+		assertTrue(literal != PatternCache.compile("p1", Pattern.LITERAL));
+		PatternCache.clear();
+	}
+}
@@ -1,4 +1,4 @@
-package com.pasdam.regexren.gui.rules;
+package com.pasdam.regexren.engine;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
@@ -8,7 +8,6 @@ import java.util.regex.Pattern;
 
 import org.junit.Test;
 
-import com.pasdam.regexren.model.FileModelItem;
 import com.pasdam.test.TestFileReader;
 
 public class TestReplaceFactory {
@@ -19,8 +18,7 @@ public class TestReplaceFactory {
 											+ "com" + File.separator
 											+ "pasdam" + File.separator
 											+ "regexren" + File.separator
-											+ "gui" + File.separator
-											+ "rules";
+											+ "engine";
 	private static final String TEST_FILE = TEST_FOLDER + File.separator + "replace.tst";
 
 	@Test
@@ -45,7 +43,16 @@ public class TestReplaceFactory {
 				Rule rule = factory.createConfiguredRule();
 				
 				// test result
-				assertEquals(parts[8], rule.apply(new FileModelItem(new File(parts[0]))).getNewFullName());
+				if (parts[8].startsWith("!")) {
+					try {
+						rule.apply(new FileModelItem(new File(parts[0])));
+						fail(parts[0] + ": " + parts[8].substring(1) + " expected");
+					} catch (RuntimeException exception) {
+						assertEquals(parts[8].substring(1), exception.getClass().getSimpleName());
+					}
+				} else {
+					assertEquals(parts[8], rule.apply(new FileModelItem(new File(parts[0]))).getNewFullName());
+				}
 			}
 			
 		} catch (Exception exception) {
@@ -0,0 +1,80 @@
+package com.pasdam.regexren.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class TestTextPattern {
+
+	/**
+	 * Characters of the random texts: US-ASCII letters in both cases,
+	 * non-ASCII letters whose case is folded only by {@link Pattern#UNICODE_CASE},
+	 * the Kelvin sign that folds to 'k' only in Unicode, and characters with
+	 * the same low bits of 'a', that share its shift
+	 */
+	private static final String ALPHABET = "aAbBkK\u00E9\u00C9\u00DF\u0131\u0130\u212A\u0161\u0261.";
+
+	@Test
+	public void testRandomLiterals() {
+		Random random = new Random(1);
+		for (int i = 0; i < 50000; i++) {
+			String input = randomText(random, random.nextInt(16));
+			String text;
+			if (input.length() > 0 && random.nextBoolean()) {
+				// a text that occurs in the input, possibly across the region bounds
+				int start = random.nextInt(input.length());
+				text = input.substring(start, start + random.nextInt(Math.min(input.length() - start, 5) + 1));
+			} else {
+				text = randomText(random, random.nextInt(5));
+			}
+			boolean matchCase = random.nextBoolean();
+			int regionStart = random.nextInt(input.length() + 1);
+			int regionEnd = regionStart + random.nextInt(input.length() - regionStart + 1);
+
+			// the literal search is used for any CharSequence, indexOf only for strings
+			CharSequence sequence = random.nextBoolean() ? input : new StringBuilder(input);
+			String message = "\"" + text + "\" in \"" + input + "\" [" + regionStart + ", " + regionEnd + "], match case " + matchCase;
+
+			Matcher expected = Pattern.compile(Pattern.quote(text), matchCase ? 0 : Pattern.CASE_INSENSITIVE).matcher(input);
+			TextMatcher actual = TextPattern.compile(text, false, matchCase).matcher(sequence);
+			assertSameMatches(message, expected.region(regionStart, regionEnd), actual.region(regionStart, regionEnd));
+			assertSameMatches(message + ", reset", expected.reset(), actual.reset());
+		}
+	}
+
+	@Test
+	public void testEmptyText() {
+		TextMatcher matcher = TextPattern.compile("", false, false).matcher("ab");
+		assertSameMatches("empty text", Pattern.compile("").matcher("ab"), matcher);
+		assertSameMatches("empty region", Pattern.compile("").matcher("ab").region(1, 1), matcher.region(1, 1));
+	}
+
+	/**
+	 * Checks that the matchers find the same occurrences, in the same order
+	 */
+	private static void assertSameMatches(String message, Matcher expected, TextMatcher actual) {
+		int count = 0;
+		while (expected.find()) {
+			assertTrue(message + ", occurrence " + count, actual.find());
+			assertEquals(message + ", start of occurrence " + count, expected.start(), actual.start());
+			assertEquals(message + ", end of occurrence " + count, expected.end(), actual.end());
+			assertEquals(message + ", occurrence " + count, expected.group(), actual.group());
+			count++;
+		}
+		assertFalse(message + ", occurrences after " + count, actual.find());
+	}
+
+	private static String randomText(Random random, int length) {
+		StringBuilder text = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+		}
+		return text.toString();
+	}
+}
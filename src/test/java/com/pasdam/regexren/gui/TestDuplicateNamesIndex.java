@@ -0,0 +1,144 @@
+package com.pasdam.regexren.gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.pasdam.regexren.engine.FileModelItem;
+import com.pasdam.regexren.engine.FileStore;
+
+public class TestDuplicateNamesIndex {
+
+	private static final String[] NAMES = { "a", "b", "c.txt", "d.txt" };
+
+	@Test
+	public void testAddAndRemove() {
+		FileStore files = new FileStore();
+		files.add(new File("/x", "a"));
+		files.add(new File("/x", "b"));
+		files.add(new File("/y", "a"));
+		DuplicateNamesIndex index = new DuplicateNamesIndex();
+		index.update(files, files.size());
+		assertEquals(0, index.getDuplicatedCount());
+
+		// the same name in the same folder
+		rename(files, 1, "a");
+		index.update(files, files.size());
+		assertEquals(2, index.getDuplicatedCount());
+		assertTrue(index.isDuplicated(0));
+		assertTrue(index.isDuplicated(1));
+		assertFalse(index.isDuplicated(2));
+
+		// a third row with the same name
+		files.add(new File("/x", "c"));
+		rename(files, 3, "a");
+		index.update(files, files.size());
+		assertEquals(3, index.getDuplicatedCount());
+		assertTrue(index.isDuplicated(3));
+
+		// removing one of three rows leaves the other two duplicated
+		rename(files, 0, "z");
+		index.update(files, files.size());
+		assertEquals(2, index.getDuplicatedCount());
+		assertFalse(index.isDuplicated(0));
+		assertTrue(index.isDuplicated(1));
+		assertTrue(index.isDuplicated(3));
+
+		// removing one of two rows clears both
+		files.setFile(3, new File("/y", "c"));
+		rename(files, 3, "b");
+		index.update(files, files.size());
+		assertEquals(0, index.getDuplicatedCount());
+		assertFalse(index.isDuplicated(1));
+		assertFalse(index.isDuplicated(3));
+
+		// fewer rows rebuild the index
+		rename(files, 3, "a");
+		index.update(files, files.size());
+		assertEquals(2, index.getDuplicatedCount());
+		index.update(files, 3);
+		assertEquals(0, index.getDuplicatedCount());
+		assertFalse(index.isDuplicated(2));
+
+		index.clear();
+		assertEquals(0, index.getDuplicatedCount());
+	}
+
+	@Test
+	public void testRandomUpdates() {
+		Random random = new Random(1);
+		FileStore files = new FileStore();
+		DuplicateNamesIndex index = new DuplicateNamesIndex();
+		for (int i = 0; i < 2000; i++) {
+			switch (random.nextInt(4)) {
+			case 0:
+				files.add(randomFile(random));
+				break;
+
+			case 1:
+				if (files.size() > 0) {
+					files.setFile(random.nextInt(files.size()), randomFile(random));
+				}
+				break;
+
+			default:
+				for (int j = random.nextInt(4); j > 0 && files.size() > 0; j--) {
+					rename(files, random.nextInt(files.size()), NAMES[random.nextInt(NAMES.length)]);
+				}
+				break;
+			}
+
+			// rows are usually all indexed, sometimes fewer
+			int rowCount = random.nextInt(10) == 0 ? random.nextInt(files.size() + 1) : files.size();
+			index.update(files, rowCount);
+			assertDuplicated("Update " + i, files, rowCount, index);
+		}
+	}
+
+	/**
+	 * Checks the index against the rows counted by folder and new name
+	 */
+	private static void assertDuplicated(String message, FileStore files, int rowCount, DuplicateNamesIndex index) {
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		List<String> keys = new ArrayList<String>(rowCount);
+		for (int row = 0; row < rowCount; row++) {
+			String key = files.getFolderIndex(row) + "/" + files.getNewFullName(row);
+			Integer count = counts.get(key);
+			counts.put(key, count == null ? 1 : count + 1);
+			keys.add(key);
+		}
+
+		int duplicated = 0;
+		for (int row = 0; row < rowCount; row++) {
+			boolean expected = counts.get(keys.get(row)) > 1;
+			assertEquals(message + ", row " + row, expected, index.isDuplicated(row));
+			if (expected) {
+				duplicated++;
+			}
+		}
+		assertEquals(message, duplicated, index.getDuplicatedCount());
+	}
+
+	/** Sets the new full name of the specified row */
+	private static void rename(FileStore files, int row, String fullName) {
+		FileModelItem item = new FileModelItem();
+		files.load(row, item);
+		int dot = fullName.lastIndexOf('.');
+		item.setName(dot < 0 ? fullName : fullName.substring(0, dot));
+		item.setExtension(dot < 0 ? "" : fullName.substring(dot + 1));
+		files.setNewName(row, item);
+	}
+
+	private static File randomFile(Random random) {
+		return new File("/folder" + random.nextInt(3), NAMES[random.nextInt(NAMES.length)]);
+	}
+}
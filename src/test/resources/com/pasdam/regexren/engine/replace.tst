@@ -0,0 +1,26 @@
+# Test format:
+#	<original_name>;<text_to_replace>;<text_to_insert>;<from_index>;<to_index>;<target>;<match_case>;<regex>;<result_name>
+#
+# As target, please use values of static fields of ReplaceFactory.
+# Indexes starts from 0. 
+# <match_case> and <regex> are boolean values: to indicate true insert 1, other values will be interpreted as false.
+# A <result_name> starting with ! is the simple name of the exception expected, as thrown by Matcher.replaceAll.
+
+testTestFileName.ext;t;Z;0;100;0;0;0;ZesZZesZFileName.ext
+testTestFileName.ext;t;Z;0;005;0;0;0;ZesZZestFileName.ext
+testTestFileName.ext;t;Z;0;100;0;1;0;ZesZTesZFileName.ext
+testTestFileName.ext;t;Z;0;005;0;1;0;ZesZTestFileName.ext
+te.mp1. (co.py).brr;t;;0;100;0;0;0;e.mp1. (co.py).brr
+
+# group references and escapes of the text to insert
+abc.txt;b;[$0];0;100;0;1;1;a[b]c.txt
+abc.txt;(b);$12;0;100;0;1;1;ab2c.txt
+abc.txt;(?<x>b);<${x}>;0;100;0;1;1;a<b>c.txt
+abc.txt;b;\$1;0;100;0;1;1;a$1c.txt
+abc.txt;b;\\;0;100;0;1;1;a\c.txt
+a.b.txt;.;[$0];0;100;0;1;0;a[.]b.txt
+abc.txt;b;x\;0;100;0;1;1;!IllegalArgumentException
+abc.txt;b;x$;0;100;0;1;1;!IllegalArgumentException
+abc.txt;b;$x;0;100;0;1;1;!IllegalArgumentException
+abc.txt;(?<x>b);${y};0;100;0;1;1;!IllegalArgumentException
+abc.txt;b;$1;0;100;0;1;1;!IndexOutOfBoundsException
\ No newline at end of file